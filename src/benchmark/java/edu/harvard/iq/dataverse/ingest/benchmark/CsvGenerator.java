@@ -0,0 +1,52 @@
+package edu.harvard.iq.dataverse.ingest.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Comma-separated values, with a header line; the missing values are empty.
+ */
+public class CsvGenerator implements SyntheticFileGenerator {
+
+    @Override
+    public void write(SyntheticTable table, File file) throws IOException {
+        try (Writer out = new BufferedWriter(Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8), 1 << 16)) {
+            for (int column = 0; column < table.getColumnCount(); column++) {
+                if (column > 0) {
+                    out.write(',');
+                }
+                out.write(table.getColumnName(column));
+            }
+            out.write('\n');
+
+            for (int row = 0; row < table.getRowCount(); row++) {
+                for (int column = 0; column < table.getColumnCount(); column++) {
+                    if (column > 0) {
+                        out.write(',');
+                    }
+                    if (table.isMissing(row, column)) {
+                        continue;
+                    }
+                    switch (table.getColumnType(column)) {
+                        case INTEGER:
+                            out.write(Long.toString(table.getInteger(row, column)));
+                            break;
+                        case DOUBLE:
+                            out.write(Double.toString(table.getDouble(row, column)));
+                            break;
+                        case CATEGORICAL:
+                            out.write(Integer.toString(table.getCategory(row, column)));
+                            break;
+                        default:
+                            out.write(table.getString(row, column));
+                    }
+                }
+                out.write('\n');
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package edu.harvard.iq.dataverse.ingest.benchmark;
+
+/**
+ * The shapes of the synthetic tables the ingest benchmarks are run on; the
+ * numbers of the rows are the ones of scale 1.0.
+ */
+public enum DataShape {
+
+    /**
+     * Many columns of mixed types, few rows.
+     */
+    WIDE(2_000, 500, 0.15, 0.05, 0.02, 12),
+    /**
+     * Few columns of mixed types, many rows.
+     */
+    TALL(100_000, 10, 0.2, 0.1, 0.02, 12),
+    /**
+     * Mostly long strings.
+     */
+    STRING_HEAVY(25_000, 20, 0.8, 0.05, 0.02, 40),
+    /**
+     * Mixed types, with more than half of the values missing.
+     */
+    MISSING_HEAVY(25_000, 20, 0.2, 0.1, 0.6, 12);
+
+    private final int rows;
+    private final int columns;
+    private final double stringFraction;
+    private final double categoricalFraction;
+    private final double missingFraction;
+    private final int maxStringLength;
+
+    DataShape(int rows, int columns, double stringFraction, double categoricalFraction, double missingFraction, int maxStringLength) {
+        this.rows = rows;
+        this.columns = columns;
+        this.stringFraction = stringFraction;
+        this.categoricalFraction = categoricalFraction;
+        this.missingFraction = missingFraction;
+        this.maxStringLength = maxStringLength;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public double getStringFraction() {
+        return stringFraction;
+    }
+
+    public double getCategoricalFraction() {
+        return categoricalFraction;
+    }
+
+    public double getMissingFraction() {
+        return missingFraction;
+    }
+
+    public int getMaxStringLength() {
+        return maxStringLength;
+    }
+}
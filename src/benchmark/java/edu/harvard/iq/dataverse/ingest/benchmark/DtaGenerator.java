@@ -0,0 +1,200 @@
+package edu.harvard.iq.dataverse.ingest.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Stata 13 (format 117) files; the categorical columns are bytes, with a
+ * value label table.
+ */
+public class DtaGenerator implements SyntheticFileGenerator {
+
+    private static final int TYPE_DOUBLE = 65526;
+    private static final int TYPE_LONG = 65528;
+    private static final int TYPE_BYTE = 65530;
+
+    private static final int BYTE_MISSING = 101;
+    private static final int LONG_MISSING = 2147483621;
+    private static final double DOUBLE_MISSING = 0x1.0p1023;
+
+    private static final String VALUE_LABEL_NAME = "levels";
+
+    @Override
+    public void write(SyntheticTable table, File file) throws IOException {
+        int columns = table.getColumnCount();
+        long[] map = new long[14];
+        long mapPosition;
+
+        try (LittleEndianOutput out = new LittleEndianOutput(file)) {
+            out.writeAscii("<stata_dta>");
+            map[0] = out.getPosition();
+
+            out.writeAscii("<header><release>117</release><byteorder>LSF</byteorder><K>");
+            out.writeShort(columns);
+            out.writeAscii("</K><N>");
+            out.writeInt(table.getRowCount());
+            out.writeAscii("</N><label>");
+            out.writeByte(0);
+            out.writeAscii("</label><timestamp>");
+            out.writeByte(17);
+            out.writeAscii("01 Jan 2024 00:00");
+            out.writeAscii("</timestamp></header>");
+
+            map[1] = out.getPosition();
+            mapPosition = map[1] + "<map>".length();
+            out.writeAscii("<map>");
+            for (int i = 0; i < map.length; i++) {
+                // (filled in at the end)
+                out.writeLong(0);
+            }
+            out.writeAscii("</map>");
+
+            map[2] = out.getPosition();
+            out.writeAscii("<variable_types>");
+            for (int column = 0; column < columns; column++) {
+                switch (table.getColumnType(column)) {
+                    case INTEGER:
+                        out.writeShort(TYPE_LONG);
+                        break;
+                    case DOUBLE:
+                        out.writeShort(TYPE_DOUBLE);
+                        break;
+                    case CATEGORICAL:
+                        out.writeShort(TYPE_BYTE);
+                        break;
+                    default:
+                        out.writeShort(table.getMaxStringLength());
+                }
+            }
+            out.writeAscii("</variable_types>");
+
+            map[3] = out.getPosition();
+            out.writeAscii("<varnames>");
+            for (int column = 0; column < columns; column++) {
+                out.writePadded(table.getColumnName(column), 33, 0);
+            }
+            out.writeAscii("</varnames>");
+
+            map[4] = out.getPosition();
+            out.writeAscii("<sortlist>");
+            for (int column = 0; column <= columns; column++) {
+                out.writeShort(0);
+            }
+            out.writeAscii("</sortlist>");
+
+            map[5] = out.getPosition();
+            out.writeAscii("<formats>");
+            for (int column = 0; column < columns; column++) {
+                switch (table.getColumnType(column)) {
+                    case INTEGER:
+                        out.writePadded("%12.0g", 49, 0);
+                        break;
+                    case DOUBLE:
+                        out.writePadded("%10.0g", 49, 0);
+                        break;
+                    case CATEGORICAL:
+                        out.writePadded("%8.0g", 49, 0);
+                        break;
+                    default:
+                        out.writePadded("%" + table.getMaxStringLength() + "s", 49, 0);
+                }
+            }
+            out.writeAscii("</formats>");
+
+            map[6] = out.getPosition();
+            out.writeAscii("<value_label_names>");
+            for (int column = 0; column < columns; column++) {
+                boolean categorical = table.getColumnType(column) == SyntheticTable.ColumnType.CATEGORICAL;
+                out.writePadded(categorical ? VALUE_LABEL_NAME : "", 33, 0);
+            }
+            out.writeAscii("</value_label_names>");
+
+            map[7] = out.getPosition();
+            out.writeAscii("<variable_labels>");
+            for (int column = 0; column < columns; column++) {
+                out.writePadded("", 81, 0);
+            }
+            out.writeAscii("</variable_labels>");
+
+            map[8] = out.getPosition();
+            out.writeAscii("<characteristics></characteristics>");
+
+            map[9] = out.getPosition();
+            out.writeAscii("<data>");
+            for (int row = 0; row < table.getRowCount(); row++) {
+                for (int column = 0; column < columns; column++) {
+                    boolean missing = table.isMissing(row, column);
+                    switch (table.getColumnType(column)) {
+                        case INTEGER:
+                            out.writeInt(missing ? LONG_MISSING : (int) table.getInteger(row, column));
+                            break;
+                        case DOUBLE:
+                            out.writeDouble(missing ? DOUBLE_MISSING : table.getDouble(row, column));
+                            break;
+                        case CATEGORICAL:
+                            out.writeByte(missing ? BYTE_MISSING : table.getCategory(row, column));
+                            break;
+                        default:
+                            // (an empty string is a missing value)
+                            out.writePadded(missing ? "" : table.getString(row, column), table.getMaxStringLength(), 0);
+                    }
+                }
+            }
+            out.writeAscii("</data>");
+
+            map[10] = out.getPosition();
+            out.writeAscii("<strls></strls>");
+
+            map[11] = out.getPosition();
+            out.writeAscii("<value_labels>");
+            writeValueLabels(out);
+            out.writeAscii("</value_labels>");
+
+            map[12] = out.getPosition();
+            out.writeAscii("</stata_dta>");
+            map[13] = out.getPosition();
+        }
+
+        ByteBuffer mapBytes = ByteBuffer.allocate(map.length * 8).order(ByteOrder.LITTLE_ENDIAN);
+        for (long offset : map) {
+            mapBytes.putLong(offset);
+        }
+        try (RandomAccessFile patch = new RandomAccessFile(file, "rw")) {
+            patch.seek(mapPosition);
+            patch.write(mapBytes.array());
+        }
+    }
+
+    private static void writeValueLabels(LittleEndianOutput out) throws IOException {
+        int count = SyntheticTable.CATEGORY_COUNT;
+        byte[][] labels = new byte[count][];
+        int textLength = 0;
+        for (int i = 0; i < count; i++) {
+            labels[i] = (SyntheticTable.getCategoryLabel(i + 1) + "\0").getBytes(StandardCharsets.US_ASCII);
+            textLength += labels[i].length;
+        }
+
+        out.writeAscii("<lbl>");
+        out.writeInt(8 + 8 * count + textLength);
+        out.writePadded(VALUE_LABEL_NAME, 33, 0);
+        out.writePadded("", 3, 0);
+        out.writeInt(count);
+        out.writeInt(textLength);
+        int offset = 0;
+        for (int i = 0; i < count; i++) {
+            out.writeInt(offset);
+            offset += labels[i].length;
+        }
+        for (int i = 0; i < count; i++) {
+            out.writeInt(i + 1);
+        }
+        for (byte[] label : labels) {
+            out.writeBytes(label);
+        }
+        out.writeAscii("</lbl>");
+    }
+}
@@ -0,0 +1,56 @@
+package edu.harvard.iq.dataverse.ingest.benchmark;
+
+import edu.harvard.iq.dataverse.ingest.tabulardata.TabularDataFileReader;
+import edu.harvard.iq.dataverse.ingest.tabulardata.impl.plugins.csv.CSVFileReader;
+import edu.harvard.iq.dataverse.ingest.tabulardata.impl.plugins.csv.CSVFileReaderSpi;
+import edu.harvard.iq.dataverse.ingest.tabulardata.impl.plugins.dta.DTAFileReaderSpi;
+import edu.harvard.iq.dataverse.ingest.tabulardata.impl.plugins.dta.NewDTAFileReader;
+import edu.harvard.iq.dataverse.ingest.tabulardata.impl.plugins.por.PORFileReader;
+import edu.harvard.iq.dataverse.ingest.tabulardata.impl.plugins.por.PORFileReaderSpi;
+import edu.harvard.iq.dataverse.ingest.tabulardata.impl.plugins.rdata.RDATAFileReader;
+import edu.harvard.iq.dataverse.ingest.tabulardata.impl.plugins.rdata.RDATAFileReaderSpi;
+import edu.harvard.iq.dataverse.ingest.tabulardata.impl.plugins.sav.SAVFileReader;
+import edu.harvard.iq.dataverse.ingest.tabulardata.impl.plugins.sav.SAVFileReaderSpi;
+import edu.harvard.iq.dataverse.ingest.tabulardata.impl.plugins.xlsx.XLSXFileReader;
+import edu.harvard.iq.dataverse.ingest.tabulardata.impl.plugins.xlsx.XLSXFileReaderSpi;
+import java.util.function.Supplier;
+
+/**
+ * The tabular formats of the ingest benchmarks: the generator of the input
+ * files of each format, and the reader plugin that ingests them.
+ */
+public enum IngestFormat {
+
+    CSV("csv", new CsvGenerator(), () -> new CSVFileReader(new CSVFileReaderSpi(), ',')),
+    DTA("dta", new DtaGenerator(), () -> new NewDTAFileReader(new DTAFileReaderSpi(), 117)),
+    POR("por", new PorGenerator(), () -> new PORFileReader(new PORFileReaderSpi())),
+    RDATA("RData", new RDataGenerator(), () -> new RDATAFileReader(new RDATAFileReaderSpi())),
+    SAV("sav", new SavGenerator(), () -> new SAVFileReader(new SAVFileReaderSpi())),
+    XLSX("xlsx", new XlsxGenerator(), () -> new XLSXFileReader(new XLSXFileReaderSpi()));
+
+    private final String extension;
+    private final SyntheticFileGenerator generator;
+    private final Supplier<TabularDataFileReader> readerFactory;
+
+    IngestFormat(String extension, SyntheticFileGenerator generator, Supplier<TabularDataFileReader> readerFactory) {
+        this.extension = extension;
+        this.generator = generator;
+        this.readerFactory = readerFactory;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    public SyntheticFileGenerator getGenerator() {
+        return generator;
+    }
+
+    /**
+     * A new reader; like the ingest service, the benchmarks use a new reader
+     * for every file, since the readers keep the state of the file they read.
+     */
+    public TabularDataFileReader newReader() {
+        return readerFactory.get();
+    }
+}
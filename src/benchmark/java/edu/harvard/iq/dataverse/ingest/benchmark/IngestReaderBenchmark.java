@@ -0,0 +1,100 @@
+package edu.harvard.iq.dataverse.ingest.benchmark;
+
+import edu.harvard.iq.dataverse.ingest.tabulardata.TabularDataIngest;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The throughput of each tabular reader plugin ingesting a file, that is,
+ * reading it and writing it out as a tab-delimited file, for every shape of
+ * the synthetic tables: in files per second, and, as the rows counter, in
+ * rows per second. The allocation rate and the peak heap come from the
+ * profilers the benchmark profile runs (see the "benchmark" profile in the
+ * pom).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class IngestReaderBenchmark {
+
+    @Param({"CSV", "DTA", "POR", "RDATA", "SAV", "XLSX"})
+    public IngestFormat format;
+
+    @Param({"WIDE", "TALL", "STRING_HEAVY", "MISSING_HEAVY"})
+    public DataShape shape;
+
+    /**
+     * The scale of the numbers of the rows of the shapes.
+     */
+    @Param({"1.0"})
+    public double scale;
+
+    private File directory;
+    private File inputFile;
+    private int rowCount;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class RowCounter {
+
+        public long rows;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            rows = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException {
+        SyntheticTable table = new SyntheticTable(shape, scale, 42L);
+        rowCount = table.getRowCount();
+        directory = Files.createTempDirectory("ingest-benchmark").toFile();
+        inputFile = new File(directory, shape.name().toLowerCase() + "." + format.getExtension());
+        format.getGenerator().write(table, inputFile);
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() {
+        inputFile.delete();
+        directory.delete();
+    }
+
+    @Benchmark
+    public void ingest(RowCounter counter, Blackhole blackhole) throws IOException {
+        TabularDataIngest ingest;
+        try (BufferedInputStream stream = new BufferedInputStream(new FileInputStream(inputFile))) {
+            ingest = format.newReader().read(stream, false, null);
+        }
+        // (the reader leaves the tab-delimited file in the temp directory)
+        File tabFile = ingest.getTabDelimitedFile();
+        if (tabFile != null) {
+            blackhole.consume(tabFile.length());
+            tabFile.delete();
+        }
+        blackhole.consume(ingest.getDataTable());
+        counter.rows += rowCount;
+    }
+}
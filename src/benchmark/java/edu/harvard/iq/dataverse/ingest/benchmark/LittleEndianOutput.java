@@ -0,0 +1,76 @@
+package edu.harvard.iq.dataverse.ingest.benchmark;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A buffered output stream of little-endian binary values, that keeps track
+ * of its position.
+ */
+class LittleEndianOutput implements Closeable {
+
+    private final OutputStream out;
+    private long position = 0;
+
+    LittleEndianOutput(File file) throws IOException {
+        this.out = new BufferedOutputStream(new FileOutputStream(file), 1 << 16);
+    }
+
+    long getPosition() {
+        return position;
+    }
+
+    void writeByte(int value) throws IOException {
+        out.write(value);
+        position++;
+    }
+
+    void writeShort(int value) throws IOException {
+        writeByte(value);
+        writeByte(value >>> 8);
+    }
+
+    void writeInt(int value) throws IOException {
+        writeShort(value);
+        writeShort(value >>> 16);
+    }
+
+    void writeLong(long value) throws IOException {
+        writeInt((int) value);
+        writeInt((int) (value >>> 32));
+    }
+
+    void writeDouble(double value) throws IOException {
+        writeLong(Double.doubleToRawLongBits(value));
+    }
+
+    void writeBytes(byte[] bytes) throws IOException {
+        out.write(bytes);
+        position += bytes.length;
+    }
+
+    void writeAscii(String value) throws IOException {
+        writeBytes(value.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Writes the string, truncated or padded to the length with the padding
+     * byte.
+     */
+    void writePadded(String value, int length, int padding) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.US_ASCII);
+        for (int i = 0; i < length; i++) {
+            writeByte(i < bytes.length ? bytes[i] : padding);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
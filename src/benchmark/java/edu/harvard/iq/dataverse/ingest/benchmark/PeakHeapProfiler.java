@@ -0,0 +1,49 @@
+package edu.harvard.iq.dataverse.ingest.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.Collection;
+import java.util.List;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.profile.InternalProfiler;
+import org.openjdk.jmh.results.AggregationPolicy;
+import org.openjdk.jmh.results.IterationResult;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.ScalarResult;
+
+/**
+ * Reports the peak heap usage of each iteration, as the sum of the peak
+ * usages of the heap memory pools; the pools peak at different moments, so
+ * this is an upper bound, that includes the garbage not yet collected. The
+ * JVM tracks the peaks itself, so, unlike a sampling thread, this does not
+ * miss short-lived spikes, and it adds no overhead to the measurement.
+ *
+ * Run it with "-prof edu.harvard.iq.dataverse.ingest.benchmark.PeakHeapProfiler".
+ */
+public class PeakHeapProfiler implements InternalProfiler {
+
+    private final List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+            .filter(pool -> pool.getType() == MemoryType.HEAP)
+            .toList();
+
+    @Override
+    public String getDescription() {
+        return "Peak heap usage, per iteration";
+    }
+
+    @Override
+    public void beforeIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams) {
+        heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+    }
+
+    @Override
+    public Collection<? extends Result> afterIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams, IterationResult result) {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : heapPools) {
+            peak += pool.getPeakUsage().getUsed();
+        }
+        return List.of(new ScalarResult("heap.peak", peak / (1024.0 * 1024.0), "MB", AggregationPolicy.MAX));
+    }
+}
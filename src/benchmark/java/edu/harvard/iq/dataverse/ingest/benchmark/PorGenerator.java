@@ -0,0 +1,199 @@
+package edu.harvard.iq.dataverse.ingest.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * SPSS portable files: base-30 numbers and length-prefixed strings, in lines
+ * of 80 characters; the categorical columns have value labels.
+ */
+public class PorGenerator implements SyntheticFileGenerator {
+
+    private static final int LINE_LENGTH = 80;
+
+    private static final int FORMAT_A = 1;
+    private static final int FORMAT_F = 5;
+
+    /*
+     * The number of the base-30 digits written after the point of the numbers
+     * that are not integers: enough for the 15 significant digits the reader
+     * keeps, while the digits of the whole number still fit in a long.
+     */
+    private static final int FRACTION_DIGITS = 8;
+    private static final BigDecimal FRACTION_SCALE = BigDecimal.valueOf(30).pow(FRACTION_DIGITS);
+
+    @Override
+    public void write(SyntheticTable table, File file) throws IOException {
+        int columns = table.getColumnCount();
+
+        try (PortableWriter out = new PortableWriter(Files.newBufferedWriter(file.toPath(), StandardCharsets.US_ASCII))) {
+            // the splash strings, the character set translation table and the signature:
+            out.write(pad("ASCII SPSS PORT FILE", 200, ' '));
+            out.write(pad("", 256, '0'));
+            out.write("SPSSPORT");
+            // the creation date and time:
+            out.write("A8/20240101");
+            out.write("6/120000");
+
+            // the product, the number of the variables and the precision:
+            out.write("1");
+            out.writeString("Dataverse benchmark");
+            out.write("4");
+            out.writeNumber(columns);
+            out.write("5");
+            out.writeNumber(11);
+
+            List<String> categoricalNames = new ArrayList<>();
+            for (int column = 0; column < columns; column++) {
+                out.write("7");
+                switch (table.getColumnType(column)) {
+                    case INTEGER:
+                        writeVariable(out, table.getColumnName(column), 0, FORMAT_F, 8, 0);
+                        break;
+                    case DOUBLE:
+                        writeVariable(out, table.getColumnName(column), 0, FORMAT_F, 10, 2);
+                        break;
+                    case CATEGORICAL:
+                        writeVariable(out, table.getColumnName(column), 0, FORMAT_F, 1, 0);
+                        categoricalNames.add(table.getColumnName(column));
+                        break;
+                    default:
+                        int width = table.getMaxStringLength();
+                        writeVariable(out, table.getColumnName(column), width, FORMAT_A, width, 0);
+                }
+            }
+
+            if (!categoricalNames.isEmpty()) {
+                out.write("D");
+                out.writeNumber(categoricalNames.size());
+                for (String name : categoricalNames) {
+                    out.writeString(name);
+                }
+                out.writeNumber(SyntheticTable.CATEGORY_COUNT);
+                for (int category = 1; category <= SyntheticTable.CATEGORY_COUNT; category++) {
+                    out.writeNumber(category);
+                    out.writeString(SyntheticTable.getCategoryLabel(category));
+                }
+            }
+
+            out.write("F");
+            for (int row = 0; row < table.getRowCount(); row++) {
+                for (int column = 0; column < columns; column++) {
+                    if (table.getColumnType(column) == SyntheticTable.ColumnType.STRING) {
+                        // (an empty string is a missing value)
+                        out.writeString(table.isMissing(row, column) ? "" : table.getString(row, column));
+                    } else if (table.isMissing(row, column)) {
+                        out.write("*.");
+                    } else if (table.getColumnType(column) == SyntheticTable.ColumnType.INTEGER) {
+                        out.writeNumber(table.getInteger(row, column));
+                    } else if (table.getColumnType(column) == SyntheticTable.ColumnType.DOUBLE) {
+                        out.writeNumber(table.getDouble(row, column));
+                    } else {
+                        out.writeNumber(table.getCategory(row, column));
+                    }
+                }
+            }
+            out.finish();
+        }
+    }
+
+    private static void writeVariable(PortableWriter out, String name, int type, int format, int width, int decimals) throws IOException {
+        out.writeNumber(type);
+        out.writeString(name);
+        // the print and the write formats:
+        for (int i = 0; i < 2; i++) {
+            out.writeNumber(format);
+            out.writeNumber(width);
+            out.writeNumber(decimals);
+        }
+    }
+
+    private static String pad(String value, int length, char padding) {
+        StringBuilder sb = new StringBuilder(value);
+        while (sb.length() < length) {
+            sb.append(padding);
+        }
+        return sb.toString();
+    }
+
+    private static String toBase30(double value) {
+        if (value == Math.rint(value)) {
+            return Long.toString((long) value, 30).toUpperCase();
+        }
+        // (the decimal value, as printed, is converted exactly, and rounded at the last digit)
+        BigDecimal absolute = BigDecimal.valueOf(value).abs();
+        long integerPart = absolute.longValue();
+        long fraction = absolute.subtract(BigDecimal.valueOf(integerPart))
+                .multiply(FRACTION_SCALE)
+                .setScale(0, RoundingMode.HALF_UP)
+                .longValueExact();
+        if (fraction == FRACTION_SCALE.longValue()) {
+            integerPart++;
+            fraction = 0;
+        }
+
+        StringBuilder digits = new StringBuilder(Long.toString(fraction, 30));
+        while (digits.length() < FRACTION_DIGITS) {
+            digits.insert(0, '0');
+        }
+        while (digits.length() > 1 && digits.charAt(digits.length() - 1) == '0') {
+            digits.setLength(digits.length() - 1);
+        }
+        return (value < 0 ? "-" : "") + Long.toString(integerPart, 30).toUpperCase() + "." + digits.toString().toUpperCase();
+    }
+
+    /*
+     * Breaks the content into the lines of the portable format.
+     */
+    private static class PortableWriter implements AutoCloseable {
+
+        private final Writer out;
+        private int column = 0;
+
+        PortableWriter(Writer out) {
+            this.out = new BufferedWriter(out, 1 << 16);
+        }
+
+        void write(String value) throws IOException {
+            for (int i = 0; i < value.length(); i++) {
+                out.write(value.charAt(i));
+                if (++column == LINE_LENGTH) {
+                    out.write('\n');
+                    column = 0;
+                }
+            }
+        }
+
+        void writeNumber(double value) throws IOException {
+            write(toBase30(value));
+            write("/");
+        }
+
+        void writeString(String value) throws IOException {
+            writeNumber(value.length());
+            write(value);
+        }
+
+        /*
+         * Writes the end of the data, and fills the last line with it.
+         */
+        void finish() throws IOException {
+            do {
+                write("Z");
+            } while (column != 0);
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+}
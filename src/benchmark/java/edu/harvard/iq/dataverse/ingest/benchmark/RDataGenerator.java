@@ -0,0 +1,177 @@
+package edu.harvard.iq.dataverse.ingest.benchmark;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * R workspaces holding one data frame, gzip compressed and serialized in the
+ * XDR format, version 3, the way save() writes them; the categorical columns
+ * are factors.
+ */
+public class RDataGenerator implements SyntheticFileGenerator {
+
+    private static final int NILVALUE_SXP = 254;
+    private static final int REFSXP = 255;
+    private static final int SYMSXP = 1;
+    private static final int LISTSXP = 2;
+    private static final int CHARSXP = 9;
+    private static final int INTSXP = 13;
+    private static final int REALSXP = 14;
+    private static final int STRSXP = 16;
+    private static final int VECSXP = 19;
+
+    private static final int IS_OBJECT = 1 << 8;
+    private static final int HAS_ATTR = 1 << 9;
+    private static final int HAS_TAG = 1 << 10;
+    private static final int UTF8_MASK = (1 << 3) << 12;
+
+    private static final int NA_INTEGER = Integer.MIN_VALUE;
+
+    private static final String DATA_FRAME_NAME = "benchmark";
+
+    @Override
+    public void write(SyntheticTable table, File file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(new FileOutputStream(file), 1 << 16), 1 << 16))) {
+            RWriter writer = new RWriter(out);
+
+            out.writeBytes("RDX3\n");
+            out.writeBytes("X\n");
+            out.writeInt(3);
+            out.writeInt(0x040302);
+            out.writeInt(0x030500);
+            out.writeInt(5);
+            out.writeBytes("UTF-8");
+
+            // the workspace is a pair list of the named objects:
+            writer.pairListCell(DATA_FRAME_NAME);
+            writeDataFrame(writer, table);
+            writer.nil();
+        }
+    }
+
+    private static void writeDataFrame(RWriter writer, SyntheticTable table) throws IOException {
+        DataOutputStream out = writer.out;
+        int rows = table.getRowCount();
+
+        out.writeInt(VECSXP | HAS_ATTR | IS_OBJECT);
+        out.writeInt(table.getColumnCount());
+        // (the vectors are stored column by column)
+        for (int column = 0; column < table.getColumnCount(); column++) {
+            switch (table.getColumnType(column)) {
+                case INTEGER:
+                    writer.vectorHeader(INTSXP, false, rows);
+                    for (int row = 0; row < rows; row++) {
+                        out.writeInt(table.isMissing(row, column) ? NA_INTEGER : (int) table.getInteger(row, column));
+                    }
+                    break;
+                case DOUBLE:
+                    writer.vectorHeader(REALSXP, false, rows);
+                    for (int row = 0; row < rows; row++) {
+                        out.writeLong(table.isMissing(row, column)
+                                ? RWriter.NA_REAL_BITS
+                                : Double.doubleToRawLongBits(table.getDouble(row, column)));
+                    }
+                    break;
+                case CATEGORICAL:
+                    writer.vectorHeader(INTSXP, true, rows);
+                    for (int row = 0; row < rows; row++) {
+                        out.writeInt(table.isMissing(row, column) ? NA_INTEGER : table.getCategory(row, column));
+                    }
+                    String[] levels = new String[SyntheticTable.CATEGORY_COUNT];
+                    for (int i = 0; i < levels.length; i++) {
+                        levels[i] = SyntheticTable.getCategoryLabel(i + 1);
+                    }
+                    writer.pairListCell("levels");
+                    writer.strVector(levels);
+                    writer.pairListCell("class");
+                    writer.strVector("factor");
+                    writer.nil();
+                    break;
+                default:
+                    writer.vectorHeader(STRSXP, false, rows);
+                    for (int row = 0; row < rows; row++) {
+                        writer.charsxp(table.isMissing(row, column) ? null : table.getString(row, column));
+                    }
+            }
+        }
+
+        String[] names = new String[table.getColumnCount()];
+        for (int column = 0; column < names.length; column++) {
+            names[column] = table.getColumnName(column);
+        }
+        writer.pairListCell("names");
+        writer.strVector(names);
+        // the compact form of the row names 1 to rows:
+        writer.pairListCell("row.names");
+        writer.vectorHeader(INTSXP, false, 2);
+        out.writeInt(NA_INTEGER);
+        out.writeInt(-rows);
+        writer.pairListCell("class");
+        writer.strVector("data.frame");
+        writer.nil();
+    }
+
+    private static class RWriter {
+
+        static final long NA_REAL_BITS = 0x7FF00000000007A2L;
+
+        final DataOutputStream out;
+        private final Map<String, Integer> symbols = new HashMap<>();
+
+        RWriter(DataOutputStream out) {
+            this.out = out;
+        }
+
+        void nil() throws IOException {
+            out.writeInt(NILVALUE_SXP);
+        }
+
+        void symbol(String name) throws IOException {
+            Integer reference = symbols.get(name);
+            if (reference != null) {
+                out.writeInt(REFSXP | (reference << 8));
+                return;
+            }
+            out.writeInt(SYMSXP);
+            charsxp(name);
+            symbols.put(name, symbols.size() + 1);
+        }
+
+        void pairListCell(String tag) throws IOException {
+            out.writeInt(LISTSXP | HAS_TAG);
+            symbol(tag);
+        }
+
+        void charsxp(String value) throws IOException {
+            if (value == null) {
+                out.writeInt(CHARSXP);
+                out.writeInt(-1);
+                return;
+            }
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(CHARSXP | UTF8_MASK);
+            out.writeInt(utf8.length);
+            out.write(utf8);
+        }
+
+        void vectorHeader(int type, boolean hasAttributes, int length) throws IOException {
+            out.writeInt(type | (hasAttributes ? HAS_ATTR | IS_OBJECT : 0));
+            out.writeInt(length);
+        }
+
+        void strVector(String... values) throws IOException {
+            vectorHeader(STRSXP, false, values.length);
+            for (String value : values) {
+                charsxp(value);
+            }
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package edu.harvard.iq.dataverse.ingest.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * SPSS system files, with the data compressed the way SPSS compresses it by
+ * default; the categorical columns have value labels.
+ */
+public class SavGenerator implements SyntheticFileGenerator {
+
+    private static final int FORMAT_A = 1;
+    private static final int FORMAT_F = 5;
+
+    private static final double COMPRESSION_BIAS = 100.0;
+
+    private static final int CODE_END_OF_FILE = 252;
+    private static final int CODE_RAW = 253;
+    private static final int CODE_SPACES = 254;
+    private static final int CODE_SYSMIS = 255;
+
+    @Override
+    public void write(SyntheticTable table, File file) throws IOException {
+        int columns = table.getColumnCount();
+        int stringSegments = (table.getMaxStringLength() + 7) / 8;
+
+        // the (1-based) indexes of the columns in the case, counted in 8 byte segments:
+        int[] segmentIndexes = new int[columns];
+        int segments = 0;
+        for (int column = 0; column < columns; column++) {
+            segmentIndexes[column] = segments + 1;
+            segments += table.getColumnType(column) == SyntheticTable.ColumnType.STRING ? stringSegments : 1;
+        }
+
+        try (LittleEndianOutput out = new LittleEndianOutput(file)) {
+            // the file header record:
+            out.writeAscii("$FL2");
+            out.writePadded("@(#) SPSS DATA FILE MS Windows Release 20.0.0", 60, ' ');
+            out.writeInt(2);
+            out.writeInt(segments);
+            out.writeInt(1);
+            out.writeInt(0);
+            out.writeInt(table.getRowCount());
+            out.writeDouble(COMPRESSION_BIAS);
+            out.writeAscii("01 Jan 24");
+            out.writeAscii("00:00:00");
+            out.writePadded("", 64, ' ');
+            out.writePadded("", 3, 0);
+
+            // the variable records:
+            List<Integer> categoricalSegments = new ArrayList<>();
+            for (int column = 0; column < columns; column++) {
+                switch (table.getColumnType(column)) {
+                    case INTEGER:
+                        writeVariable(out, table.getColumnName(column), 0, format(FORMAT_F, 8, 0));
+                        break;
+                    case DOUBLE:
+                        writeVariable(out, table.getColumnName(column), 0, format(FORMAT_F, 10, 2));
+                        break;
+                    case CATEGORICAL:
+                        writeVariable(out, table.getColumnName(column), 0, format(FORMAT_F, 1, 0));
+                        categoricalSegments.add(segmentIndexes[column]);
+                        break;
+                    default:
+                        int width = table.getMaxStringLength();
+                        writeVariable(out, table.getColumnName(column), width, format(FORMAT_A, width, 0));
+                        for (int i = 1; i < stringSegments; i++) {
+                            // the continuation records of a long string:
+                            writeVariable(out, "", -1, 0);
+                        }
+                }
+            }
+
+            if (!categoricalSegments.isEmpty()) {
+                writeValueLabels(out, categoricalSegments);
+            }
+
+            // the dictionary termination record:
+            out.writeInt(999);
+            out.writeInt(0);
+
+            CompressedData data = new CompressedData(out);
+            for (int row = 0; row < table.getRowCount(); row++) {
+                for (int column = 0; column < columns; column++) {
+                    boolean missing = table.isMissing(row, column);
+                    switch (table.getColumnType(column)) {
+                        case INTEGER:
+                            data.writeNumber(missing ? null : (double) table.getInteger(row, column));
+                            break;
+                        case DOUBLE:
+                            data.writeNumber(missing ? null : table.getDouble(row, column));
+                            break;
+                        case CATEGORICAL:
+                            data.writeNumber(missing ? null : (double) table.getCategory(row, column));
+                            break;
+                        default:
+                            // (a blank string is a missing value)
+                            data.writeString(missing ? "" : table.getString(row, column), stringSegments);
+                    }
+                }
+            }
+            data.finish();
+        }
+    }
+
+    private static int format(int type, int width, int decimals) {
+        return (type << 16) | (width << 8) | decimals;
+    }
+
+    private static void writeVariable(LittleEndianOutput out, String name, int type, int format) throws IOException {
+        out.writeInt(2);
+        out.writeInt(type);
+        // no variable label:
+        out.writeInt(0);
+        // no missing values:
+        out.writeInt(0);
+        // the print and the write formats:
+        out.writeInt(format);
+        out.writeInt(format);
+        out.writePadded(name, 8, ' ');
+    }
+
+    private static void writeValueLabels(LittleEndianOutput out, List<Integer> segmentIndexes) throws IOException {
+        out.writeInt(3);
+        out.writeInt(SyntheticTable.CATEGORY_COUNT);
+        for (int category = 1; category <= SyntheticTable.CATEGORY_COUNT; category++) {
+            out.writeDouble(category);
+            byte[] label = SyntheticTable.getCategoryLabel(category).getBytes(StandardCharsets.US_ASCII);
+            out.writeByte(label.length);
+            out.writeBytes(label);
+            // (the length byte and the label are padded to a multiple of 8 bytes)
+            for (int i = (label.length + 1) % 8; i > 0 && i < 8; i++) {
+                out.writeByte(' ');
+            }
+        }
+
+        out.writeInt(4);
+        out.writeInt(segmentIndexes.size());
+        for (int index : segmentIndexes) {
+            out.writeInt(index);
+        }
+    }
+
+    /*
+     * The bytecode compression: blocks of 8 one byte codes, each followed by
+     * the 8 byte values of its codes that are not compressed.
+     */
+    private static class CompressedData {
+
+        private final LittleEndianOutput out;
+        private final byte[] codes = new byte[8];
+        private final byte[] raw = new byte[64];
+        private int codeCount = 0;
+        private int rawLength = 0;
+
+        CompressedData(LittleEndianOutput out) {
+            this.out = out;
+        }
+
+        void writeNumber(Double value) throws IOException {
+            if (value == null) {
+                addCode(CODE_SYSMIS, null);
+            } else if (value == Math.rint(value) && value > -COMPRESSION_BIAS && value < CODE_END_OF_FILE - COMPRESSION_BIAS) {
+                addCode((int) (value + COMPRESSION_BIAS), null);
+            } else {
+                long bits = Double.doubleToRawLongBits(value);
+                byte[] bytes = new byte[8];
+                for (int i = 0; i < 8; i++) {
+                    bytes[i] = (byte) (bits >>> (8 * i));
+                }
+                addCode(CODE_RAW, bytes);
+            }
+        }
+
+        void writeString(String value, int segments) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.US_ASCII);
+            for (int segment = 0; segment < segments; segment++) {
+                if (bytes.length <= segment * 8) {
+                    addCode(CODE_SPACES, null);
+                } else {
+                    byte[] chunk = new byte[8];
+                    for (int i = 0; i < 8; i++) {
+                        int index = segment * 8 + i;
+                        chunk[i] = index < bytes.length ? bytes[index] : (byte) ' ';
+                    }
+                    addCode(CODE_RAW, chunk);
+                }
+            }
+        }
+
+        void finish() throws IOException {
+            if (codeCount > 0) {
+                // (the reader stops after the last case)
+                addCode(CODE_END_OF_FILE, null);
+                while (codeCount > 0) {
+                    addCode(0, null);
+                }
+            }
+        }
+
+        private void addCode(int code, byte[] value) throws IOException {
+            codes[codeCount++] = (byte) code;
+            if (value != null) {
+                System.arraycopy(value, 0, raw, rawLength, 8);
+                rawLength += 8;
+            }
+            if (codeCount == 8) {
+                out.writeBytes(codes);
+                out.writeBytes(Arrays.copyOf(raw, rawLength));
+                codeCount = 0;
+                rawLength = 0;
+            }
+        }
+    }
+}
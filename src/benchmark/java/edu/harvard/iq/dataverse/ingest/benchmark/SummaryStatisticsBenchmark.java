@@ -0,0 +1,120 @@
+package edu.harvard.iq.dataverse.ingest.benchmark;
+
+import edu.harvard.iq.dataverse.DataFile;
+import edu.harvard.iq.dataverse.DataTable;
+import edu.harvard.iq.dataverse.datavariable.DataVariable;
+import edu.harvard.iq.dataverse.ingest.IngestServiceBean;
+import edu.harvard.iq.dataverse.ingest.tabulardata.TabularDataIngest;
+import edu.harvard.iq.dataverse.ingest.tabulardata.impl.plugins.dta.DTAFileReaderSpi;
+import edu.harvard.iq.dataverse.ingest.tabulardata.impl.plugins.dta.NewDTAFileReader;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The throughput of the second stage of the ingest, the one that follows
+ * the reader plugin: the summary statistics, the UNFs and the category
+ * frequencies of an ingested table, calculated from its tab-delimited file.
+ * The tables are ingested from Stata files once, when the trial is set up,
+ * so that the categorical variables have categories.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class SummaryStatisticsBenchmark {
+
+    @Param({"WIDE", "TALL", "STRING_HEAVY", "MISSING_HEAVY"})
+    public DataShape shape;
+
+    /**
+     * The scale of the numbers of the rows of the shapes.
+     */
+    @Param({"1.0"})
+    public double scale;
+
+    // (the methods benchmarked use none of the injected services)
+    private final IngestServiceBean ingestService = new IngestServiceBean();
+
+    private File directory;
+    private File tabFile;
+    private DataFile dataFile;
+    private int rowCount;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class RowCounter {
+
+        public long rows;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            rows = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void ingest() throws IOException {
+        SyntheticTable table = new SyntheticTable(shape, scale, 42L);
+        rowCount = table.getRowCount();
+        directory = Files.createTempDirectory("ingest-benchmark").toFile();
+        File inputFile = new File(directory, shape.name().toLowerCase() + ".dta");
+        new DtaGenerator().write(table, inputFile);
+
+        TabularDataIngest ingest;
+        try (BufferedInputStream stream = new BufferedInputStream(new FileInputStream(inputFile))) {
+            ingest = new NewDTAFileReader(new DTAFileReaderSpi(), 117).read(stream, false, null);
+        }
+        inputFile.delete();
+        tabFile = ingest.getTabDelimitedFile();
+
+        DataTable dataTable = ingest.getDataTable();
+        dataFile = new DataFile();
+        dataFile.setDataTable(dataTable);
+        dataTable.setDataFile(dataFile);
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() {
+        tabFile.delete();
+        directory.delete();
+    }
+
+    @Setup(Level.Invocation)
+    public void clearSummaryStatistics() {
+        for (DataVariable variable : dataFile.getDataTable().getDataVariables()) {
+            variable.setSummaryStatistics(new ArrayList<>());
+        }
+    }
+
+    @Benchmark
+    public DataTable summarize(RowCounter counter) throws IOException {
+        ingestService.produceDiscreteNumericSummaryStatistics(dataFile, tabFile);
+        ingestService.produceContinuousSummaryStatistics(dataFile, tabFile);
+        ingestService.produceCharacterSummaryStatistics(dataFile, tabFile);
+        IngestServiceBean.produceFrequencyStatistics(dataFile, tabFile);
+        ingestService.recalculateDataFileUNF(dataFile);
+        counter.rows += rowCount;
+        return dataFile.getDataTable();
+    }
+}
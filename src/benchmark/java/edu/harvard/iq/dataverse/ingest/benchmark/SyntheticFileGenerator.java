@@ -0,0 +1,12 @@
+package edu.harvard.iq.dataverse.ingest.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Writes a synthetic table as a file of one of the ingestable formats.
+ */
+public interface SyntheticFileGenerator {
+
+    void write(SyntheticTable table, File file) throws IOException;
+}
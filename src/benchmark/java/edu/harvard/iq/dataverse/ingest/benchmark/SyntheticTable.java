@@ -0,0 +1,143 @@
+package edu.harvard.iq.dataverse.ingest.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A synthetic table of the given shape, that the format generators write out
+ * as the input files of the ingest benchmarks.
+ *
+ * None of the values are stored: every value is a pure function of the seed,
+ * the row and the column, so that the generators can write the rows in
+ * whatever order their format needs (the R data frames, for example, are
+ * stored column by column), and so that the files generated for the same
+ * shape always contain the same data.
+ */
+public class SyntheticTable {
+
+    public enum ColumnType {
+        INTEGER, DOUBLE, STRING, CATEGORICAL
+    }
+
+    /**
+     * The number of the categories of the categorical columns; their values
+     * are 1 to CATEGORY_COUNT.
+     */
+    public static final int CATEGORY_COUNT = 5;
+
+    private static final char[] STRING_CHARACTERS = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789".toCharArray();
+
+    private final DataShape shape;
+    private final int rows;
+    private final long seed;
+    private final List<ColumnType> columnTypes;
+
+    public SyntheticTable(DataShape shape, double scale, long seed) {
+        this.shape = shape;
+        this.rows = Math.max(1, (int) Math.round(shape.getRows() * scale));
+        this.seed = seed;
+
+        List<ColumnType> types = new ArrayList<>();
+        for (int i = 0; i < shape.getColumns(); i++) {
+            double position = (i + 0.5) / shape.getColumns();
+            if (position < shape.getStringFraction()) {
+                types.add(ColumnType.STRING);
+            } else if (position < shape.getStringFraction() + shape.getCategoricalFraction()) {
+                types.add(ColumnType.CATEGORICAL);
+            } else if (i % 2 == 0) {
+                types.add(ColumnType.INTEGER);
+            } else {
+                types.add(ColumnType.DOUBLE);
+            }
+        }
+        // mix the types, so that the columns of the same type are not all adjacent:
+        Collections.shuffle(types, new Random(seed));
+        this.columnTypes = Collections.unmodifiableList(types);
+    }
+
+    public DataShape getShape() {
+        return shape;
+    }
+
+    public int getRowCount() {
+        return rows;
+    }
+
+    public int getColumnCount() {
+        return columnTypes.size();
+    }
+
+    public ColumnType getColumnType(int column) {
+        return columnTypes.get(column);
+    }
+
+    /**
+     * The column names are valid in all the formats: short, lower case,
+     * and starting with a letter.
+     */
+    public String getColumnName(int column) {
+        return "v" + (column + 1);
+    }
+
+    public static String getCategoryLabel(int category) {
+        return "level " + category;
+    }
+
+    /**
+     * The maximum length of the values of the string columns.
+     */
+    public int getMaxStringLength() {
+        return shape.getMaxStringLength();
+    }
+
+    public boolean isMissing(int row, int column) {
+        return unit(row, column, 1) < shape.getMissingFraction();
+    }
+
+    public long getInteger(int row, int column) {
+        return (long) (mix(row, column, 2) % 2_000_001L) - 1_000_000L;
+    }
+
+    /**
+     * The doubles have at most 2 digits after the decimal point, so that
+     * they survive the round trip through all the formats the same way.
+     */
+    public double getDouble(int row, int column) {
+        return ((long) (mix(row, column, 3) % 20_000_001L) - 10_000_000L) / 100.0;
+    }
+
+    public int getCategory(int row, int column) {
+        return 1 + (int) (mix(row, column, 4) % CATEGORY_COUNT);
+    }
+
+    public String getString(int row, int column) {
+        long bits = mix(row, column, 5);
+        int length = 1 + (int) (bits % shape.getMaxStringLength());
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            bits = bits * 6364136223846793005L + 1442695040888963407L;
+            chars[i] = STRING_CHARACTERS[(int) ((bits >>> 33) % STRING_CHARACTERS.length)];
+        }
+        return new String(chars);
+    }
+
+    /*
+     * Uniform in [0, 1): the top 53 of the 63 bits of mix().
+     */
+    private double unit(int row, int column, int salt) {
+        return (mix(row, column, salt) >>> 10) * 0x1.0p-53;
+    }
+
+    /*
+     * Non-negative; splitmix64 of the seed, the row, the column and the salt.
+     */
+    private long mix(int row, int column, int salt) {
+        long z = seed + ((long) row << 20) + ((long) column << 4) + salt;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z = z ^ (z >>> 31);
+        return z & Long.MAX_VALUE;
+    }
+}
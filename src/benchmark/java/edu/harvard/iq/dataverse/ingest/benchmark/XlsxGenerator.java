@@ -0,0 +1,174 @@
+package edu.harvard.iq.dataverse.ingest.benchmark;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Excel workbooks with a single sheet, the first row of which holds the
+ * column names; the categorical columns are numbers.
+ *
+ * The package is written directly rather than through POI, so that the
+ * sheet is streamed, and so that the rows have the spans attribute the
+ * reader expects. The string cells are in the shared strings table, as Excel
+ * stores them.
+ */
+public class XlsxGenerator implements SyntheticFileGenerator {
+
+    private static final String CONTENT_TYPES = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n"
+            + "<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">"
+            + "<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>"
+            + "<Default Extension=\"xml\" ContentType=\"application/xml\"/>"
+            + "<Override PartName=\"/xl/workbook.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.sheet.main+xml\"/>"
+            + "<Override PartName=\"/xl/worksheets/sheet1.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml\"/>"
+            + "<Override PartName=\"/xl/sharedStrings.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.sharedStrings+xml\"/>"
+            + "</Types>";
+
+    private static final String PACKAGE_RELATIONSHIPS = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n"
+            + "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">"
+            + "<Relationship Id=\"rId1\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/officeDocument\" Target=\"xl/workbook.xml\"/>"
+            + "</Relationships>";
+
+    private static final String WORKBOOK = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n"
+            + "<workbook xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\" xmlns:r=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships\">"
+            + "<sheets><sheet name=\"Sheet1\" sheetId=\"1\" r:id=\"rId1\"/></sheets>"
+            + "</workbook>";
+
+    private static final String WORKBOOK_RELATIONSHIPS = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n"
+            + "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">"
+            + "<Relationship Id=\"rId1\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/worksheet\" Target=\"worksheets/sheet1.xml\"/>"
+            + "<Relationship Id=\"rId2\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/sharedStrings\" Target=\"sharedStrings.xml\"/>"
+            + "</Relationships>";
+
+    private static final String XML_DECLARATION = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n";
+    private static final String SPREADSHEET_NAMESPACE = "http://schemas.openxmlformats.org/spreadsheetml/2006/main";
+
+    @Override
+    public void write(SyntheticTable table, File file) throws IOException {
+        try (ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+            Writer out = new OutputStreamWriter(zip, StandardCharsets.UTF_8);
+
+            writeEntry(zip, out, "[Content_Types].xml", CONTENT_TYPES);
+            writeEntry(zip, out, "_rels/.rels", PACKAGE_RELATIONSHIPS);
+            writeEntry(zip, out, "xl/workbook.xml", WORKBOOK);
+            writeEntry(zip, out, "xl/_rels/workbook.xml.rels", WORKBOOK_RELATIONSHIPS);
+
+            zip.putNextEntry(new ZipEntry("xl/worksheets/sheet1.xml"));
+            int stringCount = writeSheet(table, out);
+            out.flush();
+            zip.closeEntry();
+
+            // (every string cell has its own entry, in the order of the cells)
+            zip.putNextEntry(new ZipEntry("xl/sharedStrings.xml"));
+            out.write(XML_DECLARATION);
+            out.write("<sst xmlns=\"" + SPREADSHEET_NAMESPACE + "\" count=\"" + stringCount + "\" uniqueCount=\"" + stringCount + "\">");
+            for (int column = 0; column < table.getColumnCount(); column++) {
+                writeSharedString(out, table.getColumnName(column));
+            }
+            for (int row = 0; row < table.getRowCount(); row++) {
+                for (int column = 0; column < table.getColumnCount(); column++) {
+                    if (table.getColumnType(column) == SyntheticTable.ColumnType.STRING && !table.isMissing(row, column)) {
+                        writeSharedString(out, table.getString(row, column));
+                    }
+                }
+            }
+            out.write("</sst>");
+            out.flush();
+            zip.closeEntry();
+        }
+    }
+
+    /*
+     * Returns the number of the string cells.
+     */
+    private static int writeSheet(SyntheticTable table, Writer out) throws IOException {
+        int columns = table.getColumnCount();
+        String[] columnLetters = new String[columns];
+        for (int column = 0; column < columns; column++) {
+            columnLetters[column] = columnLetters(column);
+        }
+        String spans = "1:" + columns;
+        int stringIndex = 0;
+
+        out.write(XML_DECLARATION);
+        out.write("<worksheet xmlns=\"" + SPREADSHEET_NAMESPACE + "\"><sheetData>");
+
+        out.write("<row r=\"1\" spans=\"" + spans + "\">");
+        for (int column = 0; column < columns; column++) {
+            writeCell(out, columnLetters[column], 1, "s", Integer.toString(stringIndex++));
+        }
+        out.write("</row>");
+
+        for (int row = 0; row < table.getRowCount(); row++) {
+            int rowNumber = row + 2;
+            out.write("<row r=\"" + rowNumber + "\" spans=\"" + spans + "\">");
+            for (int column = 0; column < columns; column++) {
+                // (the missing values are the empty cells, which are not stored)
+                if (table.isMissing(row, column)) {
+                    continue;
+                }
+                switch (table.getColumnType(column)) {
+                    case INTEGER:
+                        writeCell(out, columnLetters[column], rowNumber, null, Long.toString(table.getInteger(row, column)));
+                        break;
+                    case DOUBLE:
+                        writeCell(out, columnLetters[column], rowNumber, null, Double.toString(table.getDouble(row, column)));
+                        break;
+                    case CATEGORICAL:
+                        writeCell(out, columnLetters[column], rowNumber, null, Integer.toString(table.getCategory(row, column)));
+                        break;
+                    default:
+                        writeCell(out, columnLetters[column], rowNumber, "s", Integer.toString(stringIndex++));
+                }
+            }
+            out.write("</row>");
+        }
+
+        out.write("</sheetData></worksheet>");
+        return stringIndex;
+    }
+
+    private static void writeCell(Writer out, String columnLetters, int rowNumber, String type, String value) throws IOException {
+        out.write("<c r=\"");
+        out.write(columnLetters);
+        out.write(Integer.toString(rowNumber));
+        if (type != null) {
+            out.write("\" t=\"");
+            out.write(type);
+        }
+        out.write("\"><v>");
+        out.write(value);
+        out.write("</v></c>");
+    }
+
+    private static void writeSharedString(Writer out, String value) throws IOException {
+        // (the generated strings are alphanumeric, and need no escaping)
+        out.write("<si><t>");
+        out.write(value);
+        out.write("</t></si>");
+    }
+
+    private static void writeEntry(ZipOutputStream zip, Writer out, String name, String content) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        out.write(content);
+        out.flush();
+        zip.closeEntry();
+    }
+
+    /*
+     * A, B, ..., Z, AA, AB, ...
+     */
+    private static String columnLetters(int column) {
+        StringBuilder sb = new StringBuilder();
+        for (int n = column + 1; n > 0; n = (n - 1) / 26) {
+            sb.insert(0, (char) ('A' + (n - 1) % 26));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,117 @@
+package edu.harvard.iq.dataverse;
+
+import edu.harvard.iq.dataverse.engine.CommandTrace;
+import edu.harvard.iq.dataverse.settings.JvmSettings;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jakarta.annotation.PostConstruct;
+import jakarta.ejb.ConcurrencyManagement;
+import jakarta.ejb.ConcurrencyManagementType;
+import jakarta.ejb.Singleton;
+import jakarta.ejb.Startup;
+import jakarta.ejb.TransactionAttribute;
+import jakarta.ejb.TransactionAttributeType;
+import jakarta.enterprise.inject.spi.CDI;
+import org.eclipse.microprofile.metrics.Metadata;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.MetricUnits;
+import org.eclipse.microprofile.metrics.Tag;
+import org.eclipse.microprofile.metrics.Timer;
+
+/**
+ * Records the {@link CommandTrace}s of the commands submitted to
+ * {@link EjbDataverseEngine}: the time of each phase of each command goes to
+ * the "command_time" timer of the command and the phase, and the traces of
+ * the top-level commands that took longer than the slow-command threshold
+ * are kept in the slow-command log (the latest ones, in memory), listed by
+ * the admin API.
+ */
+@Singleton
+@Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+@TransactionAttribute(TransactionAttributeType.SUPPORTS)
+public class CommandProfilerBean {
+
+    private static final Logger logger = Logger.getLogger(CommandProfilerBean.class.getCanonicalName());
+
+    private MetricRegistry registry;
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private long slowThresholdNanos;
+    private int slowLogSize;
+    private final Deque<CommandTrace> slowLog = new ArrayDeque<>();
+
+    @PostConstruct
+    public void init() {
+        slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(
+                JvmSettings.COMMANDS_SLOW_THRESHOLD.lookupOptional(Long.class).orElse(5000L));
+        slowLogSize = JvmSettings.COMMANDS_SLOW_LOG_SIZE.lookupOptional(Integer.class).orElse(100);
+        try {
+            registry = CDI.current().select(MetricRegistry.class).get();
+        } catch (RuntimeException ex) {
+            logger.log(Level.FINE, "No metrics for the commands", ex);
+        }
+    }
+
+    /**
+     * Records the trace of a top-level command, that has ended, and of the
+     * commands nested in it.
+     */
+    public void record(CommandTrace trace) {
+        try {
+            if (registry != null) {
+                trace.forEach(this::updateTimers);
+            }
+            if (slowLogSize > 0 && trace.getDurationNanos() >= slowThresholdNanos) {
+                logger.info("Slow command: " + trace);
+                synchronized (slowLog) {
+                    slowLog.addFirst(trace);
+                    while (slowLog.size() > slowLogSize) {
+                        slowLog.removeLast();
+                    }
+                }
+            }
+        } catch (RuntimeException ex) {
+            // (the command itself is done; profiling it must not fail it)
+            logger.log(Level.WARNING, "Failed to record the trace of " + trace.getCommand(), ex);
+        }
+    }
+
+    private void updateTimers(CommandTrace trace) {
+        trace.getPhaseNanos().forEach((phase, nanos) -> timers.computeIfAbsent(trace.getCommand() + "/" + phase.getLabel(),
+                key -> registry.timer(Metadata.builder().withName("command_time").withUnit(MetricUnits.NANOSECONDS)
+                        .withDescription("Displays how long does it take to submit a command, by phase").build(),
+                        new Tag("command", trace.getCommand()), new Tag("phase", phase.getLabel())))
+                .update(Duration.ofNanos(nanos)));
+    }
+
+    /**
+     * @return the traces of the slow commands, the latest first
+     */
+    public List<CommandTrace> getSlowCommands() {
+        synchronized (slowLog) {
+            return new ArrayList<>(slowLog);
+        }
+    }
+
+    public void clearSlowCommands() {
+        synchronized (slowLog) {
+            slowLog.clear();
+        }
+    }
+
+    /**
+     * @return the duration, in milliseconds, from which a top-level command
+     * is logged as slow
+     */
+    public long getSlowThreshold() {
+        return TimeUnit.NANOSECONDS.toMillis(slowThresholdNanos);
+    }
+}
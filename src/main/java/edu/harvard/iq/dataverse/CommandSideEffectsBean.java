@@ -0,0 +1,193 @@
+package edu.harvard.iq.dataverse;
+
+import edu.harvard.iq.dataverse.engine.CommandSideEffects;
+import edu.harvard.iq.dataverse.settings.JvmSettings;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import jakarta.ejb.ConcurrencyManagement;
+import jakarta.ejb.ConcurrencyManagementType;
+import jakarta.ejb.Singleton;
+import jakarta.ejb.Startup;
+import jakarta.ejb.Timeout;
+import jakarta.ejb.TimerConfig;
+import jakarta.ejb.TransactionAttribute;
+import jakarta.ejb.TransactionAttributeType;
+import jakarta.enterprise.inject.spi.CDI;
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+import org.eclipse.microprofile.metrics.Counter;
+import org.eclipse.microprofile.metrics.Metadata;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.Tag;
+
+/**
+ * Runs the {@link CommandSideEffects} deferred by the commands submitted to
+ * {@link EjbDataverseEngine}, once their top-level command has completed and
+ * its transaction is committed; the effects of the commands that failed, or
+ * whose transaction is rolled back, are discarded.
+ *
+ * With a side-effect window, the effects of the command sequences that
+ * complete within the window are coalesced too, and run at its end (e.g. a
+ * dataset updated by a client that submits a command per file is indexed once
+ * per window). The effects, and those that were run, failed or discarded,
+ * are counted in the "command_side_effects" counter of their type.
+ */
+@Singleton
+@Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+@TransactionAttribute(TransactionAttributeType.SUPPORTS)
+public class CommandSideEffectsBean {
+
+    private static final Logger logger = Logger.getLogger(CommandSideEffectsBean.class.getCanonicalName());
+
+    @Resource
+    jakarta.ejb.TimerService timerService;
+
+    @Resource
+    TransactionSynchronizationRegistry transactionSynchronizationRegistry;
+
+    private MetricRegistry registry;
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private long window;
+    // (guarded by itself)
+    private final CommandSideEffects windowed = new CommandSideEffects();
+    private boolean flushScheduled;
+
+    @PostConstruct
+    public void init() {
+        window = JvmSettings.COMMANDS_SIDE_EFFECTS_WINDOW.lookupOptional(Long.class).orElse(0L);
+        try {
+            registry = CDI.current().select(MetricRegistry.class).get();
+        } catch (RuntimeException ex) {
+            logger.log(Level.FINE, "No metrics for the side effects of the commands", ex);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        flush();
+    }
+
+    /**
+     * To be called when the top-level command of a command sequence has
+     * completed: runs its effects once its transaction is committed (right
+     * away, if it is not in one: its commands then committed their own), or
+     * discards them if it failed, or once its transaction is rolled back.
+     * @param failed true if the command failed
+     */
+    public void completed(CommandSideEffects effects, boolean failed) {
+        effects.getRegistered().forEach((type, count) -> count(type, "deferred", count));
+        if (effects.isEmpty()) {
+            return;
+        }
+        if (failed) {
+            discard(effects);
+            return;
+        }
+        int transactionStatus;
+        try {
+            transactionStatus = transactionSynchronizationRegistry == null ? Status.STATUS_NO_TRANSACTION
+                    : transactionSynchronizationRegistry.getTransactionStatus();
+        } catch (IllegalStateException ise) {
+            logger.log(Level.FINE, "Not in a transaction", ise);
+            transactionStatus = Status.STATUS_NO_TRANSACTION;
+        }
+        if (transactionStatus == Status.STATUS_NO_TRANSACTION) {
+            run(effects);
+        } else if (transactionStatus != Status.STATUS_ACTIVE) {
+            // (marked for rollback, or rolled back already)
+            discard(effects);
+        } else {
+            try {
+                transactionSynchronizationRegistry.registerInterposedSynchronization(new Synchronization() {
+                    @Override
+                    public void beforeCompletion() {
+                    }
+
+                    @Override
+                    public void afterCompletion(int status) {
+                        if (status == Status.STATUS_COMMITTED) {
+                            run(effects);
+                        } else {
+                            discard(effects);
+                        }
+                    }
+                });
+            } catch (RuntimeException ex) {
+                // (the commands themselves are done; their side effects must not fail them)
+                logger.log(Level.WARNING, "Failed to defer the side effects of the commands until the commit", ex);
+                discard(effects);
+            }
+        }
+    }
+
+    private void discard(CommandSideEffects effects) {
+        logger.fine("Discarding " + effects.size() + " side effects of commands that did not complete");
+        effects.forEachType(type -> count(type, "discarded", 1));
+        effects.clear();
+    }
+
+    /**
+     * Runs the effects of a command sequence that has completed, or queues
+     * them until the end of the side-effect window.
+     */
+    private void run(CommandSideEffects effects) {
+        try {
+            if (window <= 0) {
+                effects.run(this::ran);
+                return;
+            }
+            synchronized (windowed) {
+                windowed.addAll(effects);
+                if (!flushScheduled) {
+                    timerService.createSingleActionTimer(window, new TimerConfig(null, false));
+                    flushScheduled = true;
+                }
+            }
+        } catch (RuntimeException ex) {
+            // (the commands themselves are done; their side effects must not fail them)
+            logger.log(Level.WARNING, "Failed to run the side effects of the commands", ex);
+        }
+    }
+
+    /**
+     * Runs the effects queued during the side-effect window.
+     */
+    @Timeout
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void flush() {
+        CommandSideEffects due = new CommandSideEffects();
+        synchronized (windowed) {
+            due.addAll(windowed);
+            windowed.clear();
+            flushScheduled = false;
+        }
+        due.run(this::ran);
+    }
+
+    private void ran(CommandSideEffects.Type type, RuntimeException failure) {
+        if (failure == null) {
+            count(type, "run", 1);
+        } else {
+            logger.log(Level.WARNING, "Side effect " + type.getLabel() + " failed", failure);
+            count(type, "failed", 1);
+        }
+    }
+
+    private void count(CommandSideEffects.Type type, String outcome, long n) {
+        if (registry == null) {
+            return;
+        }
+        counters.computeIfAbsent(type.getLabel() + "/" + outcome,
+                key -> registry.counter(Metadata.builder().withName("command_side_effects")
+                        .withDescription("Counts the side effects of the commands deferred, run, failed and discarded (the deferred ones that were not run or discarded were coalesced)").build(),
+                        new Tag("type", type.getLabel()), new Tag("outcome", outcome)))
+                .inc(n);
+    }
+}
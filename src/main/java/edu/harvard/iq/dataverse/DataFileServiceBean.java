@@ -756,7 +756,45 @@ public class DataFileServiceBean implements java.io.Serializable {
             return null;
         }
     }
-    
+
+    /**
+     * Looks up an earlier, successfully completed ingest of a file with the
+     * same content (i.e., the same checksum of the original file), produced
+     * by the same version of the ingest plugin, with the same original format
+     * and stored the same way (with or without the variable name header), 
+     * and not requested with extra options (see {@link DataTable#isIngestedWithOptions()}).
+     *
+     * @param dataFile the file about to be ingested
+     * @param originalFileFormat the mime type of the file to be ingested
+     * @param ingestPluginVersion see {@link DataTable#getIngestPluginVersion()}
+     * @param storedWithVariableHeader whether the tab file is to be stored with the variable header
+     * @return the DataTable of the earlier ingest, or null if none found
+     */
+    public DataTable findIngestedDuplicate(DataFile dataFile, String originalFileFormat, String ingestPluginVersion, boolean storedWithVariableHeader) {
+        if (dataFile.getChecksumType() == null || dataFile.getChecksumValue() == null || ingestPluginVersion == null) {
+            return null;
+        }
+        TypedQuery<DataTable> query = em.createQuery("SELECT o FROM DataTable o"
+                + " WHERE o.dataFile.checksumValue = :checksumValue"
+                + " AND o.dataFile.checksumType = :checksumType"
+                + " AND o.dataFile.id <> :dataFileId"
+                + " AND o.dataFile.ingestStatus = :ingestStatus"
+                + " AND o.originalFileFormat = :originalFileFormat"
+                + " AND o.ingestPluginVersion = :ingestPluginVersion"
+                + " AND o.storedWithVariableHeader = :storedWithVariableHeader"
+                + " AND o.ingestedWithOptions = false"
+                + " ORDER BY o.id DESC", DataTable.class);
+        query.setParameter("checksumValue", dataFile.getChecksumValue());
+        query.setParameter("checksumType", dataFile.getChecksumType());
+        query.setParameter("dataFileId", dataFile.getId());
+        query.setParameter("ingestStatus", DataFile.INGEST_STATUS_NONE);
+        query.setParameter("originalFileFormat", originalFileFormat);
+        query.setParameter("ingestPluginVersion", ingestPluginVersion);
+        query.setParameter("storedWithVariableHeader", storedWithVariableHeader);
+        List<DataTable> results = query.setMaxResults(1).getResultList();
+        return results.isEmpty() ? null : results.get(0);
+    }
+
     public List<DataFile> findAll() {
         return em.createQuery("select object(o) from DataFile as o order by o.id", DataFile.class).getResultList();
     }
@@ -122,6 +122,23 @@ public class DataTable implements Serializable {
     @Column(nullable = false)
     private boolean storedWithVariableHeader = false;  
     
+    /**
+     * Identifies the ingest plugin (and its version) that produced this 
+     * table. Together with the checksum of the original file, it is used to
+     * find an existing ingest of a byte-identical file, the results of which
+     * can be reused instead of ingesting the file again. 
+     */
+    @Column( nullable = true )
+    private String ingestPluginVersion;
+    
+    /**
+     * Whether this table was produced by an ingest requested with some extra
+     * options (a text encoding, a labels file): its results are then not
+     * those of a plain ingest of the same file, and are not reused. 
+     */
+    @Column(nullable = false)
+    private boolean ingestedWithOptions = false;
+    
     /*
      * Getter and Setter methods:
      */
@@ -224,6 +241,22 @@ public class DataTable implements Serializable {
         this.storedWithVariableHeader = storedWithVariableHeader;
     }
     
+    public String getIngestPluginVersion() {
+        return ingestPluginVersion;
+    }
+    
+    public void setIngestPluginVersion(String ingestPluginVersion) {
+        this.ingestPluginVersion = ingestPluginVersion;
+    }
+    
+    public boolean isIngestedWithOptions() {
+        return ingestedWithOptions;
+    }
+    
+    public void setIngestedWithOptions(boolean ingestedWithOptions) {
+        this.ingestedWithOptions = ingestedWithOptions;
+    }
+    
     /* 
      * Custom overrides for hashCode(), equals() and toString() methods:
      */
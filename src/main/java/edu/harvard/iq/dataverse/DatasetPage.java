@@ -1201,6 +1201,7 @@ public class DatasetPage implements java.io.Serializable {
     }
 
     public boolean canComputeAllFiles(boolean isCartCompute){
+        fileDownloadHelper.checkDownloadPermissions(workingVersion.getFileMetadatas());
         for (FileMetadata fmd : workingVersion.getFileMetadatas()) {
              if (!fileDownloadHelper.canDownloadFile(fmd)) {
                  PrimeFaces.current().executeScript("PF('computeInvalid').show()");
@@ -1223,6 +1224,7 @@ public class DatasetPage implements java.io.Serializable {
     public boolean canDownloadFiles() {
         if (canDownloadFiles == null) {
             canDownloadFiles = false;
+            fileDownloadHelper.checkDownloadPermissions(workingVersion.getFileMetadatas());
             for (FileMetadata fmd : workingVersion.getFileMetadatas()) {
                 if (fileDownloadHelper.canDownloadFile(fmd)) {
                     if (isVersionHasGlobus()) {
@@ -3450,6 +3452,7 @@ public class DatasetPage implements java.io.Serializable {
 
         boolean someFiles = false;
         boolean globusDownloadEnabled = settingsWrapper.isGlobusDownload();
+        this.fileDownloadHelper.checkDownloadPermissions(this.selectedFiles);
         for (FileMetadata fmd : this.selectedFiles){
             boolean downloadable=this.fileDownloadHelper.canDownloadFile(fmd);
             
@@ -5380,6 +5383,7 @@ public class DatasetPage implements java.io.Serializable {
             return downloadButtonAvailable;
         }
 
+        this.fileDownloadHelper.checkDownloadPermissions(workingVersion.getFileMetadatas());
         for (FileMetadata fmd : workingVersion.getFileMetadatas()) {
             if (this.fileDownloadHelper.canDownloadFile(fmd)) {
                 downloadButtonAvailable = true;
@@ -5400,6 +5404,7 @@ public class DatasetPage implements java.io.Serializable {
         if (!workingVersion.getTermsOfUseAndAccess().isFileAccessRequest()){
            // return false;
         }
+        this.fileDownloadHelper.checkDownloadPermissions(workingVersion.getFileMetadatas());
         for (FileMetadata fmd : workingVersion.getFileMetadatas()){
             AuthenticatedUser authenticatedUser = (AuthenticatedUser) session.getUser();
             //Change here so that if all restricted files have pending requests there's no Request Button
@@ -5436,6 +5441,7 @@ public class DatasetPage implements java.io.Serializable {
         if (!dataset.isFileAccessRequest()){
             return false;
         }
+        this.fileDownloadHelper.checkDownloadPermissions(workingVersion.getFileMetadatas());
         for (FileMetadata fmd : workingVersion.getFileMetadatas()){
             if (!this.fileDownloadHelper.canDownloadFile(fmd) && !FileUtil.isActivelyEmbargoed(fmd)){
                 return true;
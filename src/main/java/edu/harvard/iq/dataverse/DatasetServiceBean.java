@@ -18,9 +18,11 @@ import edu.harvard.iq.dataverse.engine.command.exception.CommandException;
 import edu.harvard.iq.dataverse.engine.command.impl.DestroyDatasetCommand;
 import edu.harvard.iq.dataverse.engine.command.impl.FinalizeDatasetPublicationCommand;
 import edu.harvard.iq.dataverse.engine.command.impl.GetDatasetStorageSizeCommand;
+import edu.harvard.iq.dataverse.export.DDIExporter;
 import edu.harvard.iq.dataverse.export.ExportService;
 import edu.harvard.iq.dataverse.globus.GlobusServiceBean;
 import edu.harvard.iq.dataverse.harvest.server.OAIRecordServiceBean;
+import edu.harvard.iq.dataverse.pidproviders.PidUtil;
 import edu.harvard.iq.dataverse.search.IndexServiceBean;
 import edu.harvard.iq.dataverse.settings.SettingsServiceBean;
 import edu.harvard.iq.dataverse.util.BundleUtil;
@@ -29,6 +31,7 @@ import edu.harvard.iq.dataverse.workflows.WorkflowComment;
 
 import java.io.*;
 import java.text.SimpleDateFormat;
+import java.time.LocalDate;
 import java.util.*;
 import java.util.logging.FileHandler;
 import java.util.logging.Level;
@@ -36,6 +39,7 @@ import java.util.logging.Logger;
 import jakarta.ejb.Asynchronous;
 import jakarta.ejb.EJB;
 import jakarta.ejb.EJBException;
+import jakarta.ejb.Schedule;
 import jakarta.ejb.Stateless;
 import jakarta.ejb.TransactionAttribute;
 import jakarta.ejb.TransactionAttributeType;
@@ -346,6 +350,46 @@ public class DatasetServiceBean implements java.io.Serializable {
         }
     }
 
+    /**
+     * Looks up the datasets with the global ids specified, with one query
+     * for each PID authority (rather than one per dataset, as
+     * {@link #findByGlobalId(String)}). The alternative PIDs are not
+     * looked up.
+     *
+     * @param globalIds the global ids, as strings
+     * @return the datasets found, by the global ids specified
+     */
+    public Map<String, Dataset> findByGlobalIds(Collection<String> globalIds) {
+        Map<String, Dataset> datasets = new HashMap<>();
+        Map<String, Map<String, String>> idsByAuthority = new HashMap<>();
+        Map<String, GlobalId> parsedIds = new HashMap<>();
+        for (String globalId : globalIds) {
+            try {
+                GlobalId gid = PidUtil.parseAsGlobalID(globalId);
+                String key = gid.getProtocol() + ":" + gid.getAuthority();
+                parsedIds.putIfAbsent(key, gid);
+                idsByAuthority.computeIfAbsent(key, k -> new HashMap<>()).put(gid.getIdentifier(), globalId);
+            } catch (IllegalArgumentException iae) {
+                logger.fine("Invalid identifier: " + globalId);
+            }
+        }
+        for (Map.Entry<String, Map<String, String>> entry : idsByAuthority.entrySet()) {
+            GlobalId gid = parsedIds.get(entry.getKey());
+            List<Dataset> found = em.createQuery("SELECT d FROM Dataset d WHERE d.protocol=:protocol AND d.authority=:authority AND d.identifier IN :identifiers", Dataset.class)
+                    .setParameter("protocol", gid.getProtocol())
+                    .setParameter("authority", gid.getAuthority())
+                    .setParameter("identifiers", entry.getValue().keySet())
+                    .getResultList();
+            for (Dataset dataset : found) {
+                String globalId = entry.getValue().get(dataset.getIdentifier());
+                if (globalId != null) {
+                    datasets.put(globalId, dataset);
+                }
+            }
+        }
+        return datasets;
+    }
+
     /**
      * Instantiate dataset, and its components (DatasetVersions and FileMetadatas)
      * this method is used for object validation; if there are any invalid values
@@ -813,6 +857,39 @@ public class DatasetServiceBean implements java.io.Serializable {
 
     }
 
+    /**
+     * Refreshes, every night, the exports of the datasets whose files had an
+     * embargo end since they were exported (the DDI export of an embargoed
+     * file omits its description), so that the requests for the exports don't
+     * have to look for them.
+     */
+    @Schedule(hour = "0", minute = "20", persistent = false)
+    public void refreshExportsAfterEmbargoesTimer() {
+        if (systemConfig.isTimerServer()) {
+            int count = refreshExportsAfterEmbargoes();
+            logger.info("Refreshed the exports of " + count + " datasets after the end of embargoes");
+        }
+    }
+
+    /**
+     * @return the number of datasets re-exported
+     */
+    public int refreshExportsAfterEmbargoes() {
+        List<Long> datasetIds = em.createNamedQuery("DatasetVersion.findDatasetIdsByNextEmbargoEnd", Long.class)
+                .setParameter("date", LocalDate.now())
+                .getResultList();
+        int count = 0;
+        ExportService exportService = ExportService.getInstance();
+        for (Long datasetId : datasetIds) {
+            Dataset dataset = this.find(datasetId);
+            if (dataset != null && !exportService.isCachedExportCurrent(dataset, DDIExporter.PROVIDER_NAME)) {
+                exportDataset(dataset, true);
+                count++;
+            }
+        }
+        return count;
+    }
+
     //get a string to add to save success message
     //depends on page (dataset/file) and user privleges
     public String getReminderString(Dataset dataset, boolean canPublishDataset, boolean filePage, boolean isValid) {
@@ -20,6 +20,7 @@ import java.io.Serializable;
 import java.sql.Timestamp;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.time.LocalDate;
 import java.util.*;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -72,13 +73,15 @@ import org.apache.commons.lang3.StringUtils;
     @NamedQuery(name = "DatasetVersion.findByDataset",
                 query = "SELECT o FROM DatasetVersion o WHERE o.dataset.id=:datasetId ORDER BY o.versionNumber DESC, o.minorVersionNumber DESC"), 
     @NamedQuery(name = "DatasetVersion.findReleasedByDataset",
-                query = "SELECT o FROM DatasetVersion o WHERE o.dataset.id=:datasetId AND o.versionState=edu.harvard.iq.dataverse.DatasetVersion.VersionState.RELEASED ORDER BY o.versionNumber DESC, o.minorVersionNumber DESC")/*,
+                query = "SELECT o FROM DatasetVersion o WHERE o.dataset.id=:datasetId AND o.versionState=edu.harvard.iq.dataverse.DatasetVersion.VersionState.RELEASED ORDER BY o.versionNumber DESC, o.minorVersionNumber DESC"),
+    @NamedQuery(name = "DatasetVersion.findDatasetIdsByNextEmbargoEnd",
+                query = "SELECT DISTINCT o.dataset.id FROM DatasetVersion o WHERE o.nextEmbargoEnd IS NOT NULL AND o.nextEmbargoEnd <= :date")/*,
     @NamedQuery(name = "DatasetVersion.findVersionElements",
                 query = "SELECT o.id, o.versionState, o.versionNumber, o.minorVersionNumber FROM DatasetVersion o WHERE o.dataset.id=:datasetId ORDER BY o.versionNumber DESC, o.minorVersionNumber DESC")*/})
     
     
 @Entity
-@Table(indexes = {@Index(columnList="dataset_id")},
+@Table(indexes = {@Index(columnList="dataset_id"), @Index(columnList="nextembargoend")},
         uniqueConstraints = @UniqueConstraint(columnNames = {"dataset_id,versionnumber,minorversionnumber"}))
 @ValidateVersionNote(versionNote = "versionNote", versionState = "versionState")
 public class DatasetVersion implements Serializable {
@@ -172,6 +175,11 @@ public class DatasetVersion implements Serializable {
     
     @Temporal(value = TemporalType.TIMESTAMP)
     private Date archiveTime;
+
+    // The earliest end of an embargo of the files of this (released)
+    // version, after the last export of the dataset; or null if there is
+    // none. Once it is past, the exports made before are out of date.
+    private LocalDate nextEmbargoEnd;
     
     @Size(min=0, max=ARCHIVE_NOTE_MAX_LENGTH)
     @Column(length = ARCHIVE_NOTE_MAX_LENGTH)
@@ -357,6 +365,34 @@ public class DatasetVersion implements Serializable {
         this.archiveTime = archiveTime;
     }
 
+    public LocalDate getNextEmbargoEnd() {
+        return nextEmbargoEnd;
+    }
+
+    public void setNextEmbargoEnd(LocalDate nextEmbargoEnd) {
+        this.nextEmbargoEnd = nextEmbargoEnd;
+    }
+
+    /**
+     * @return the earliest end of an embargo of the files of this version
+     * that is after the date specified, or null if there is none
+     */
+    public LocalDate findNextEmbargoEnd(LocalDate after) {
+        LocalDate next = null;
+        Set<Long> embargoIds = new HashSet<>();
+        for (FileMetadata fm : getFileMetadatas()) {
+            Embargo e = fm.getDataFile().getEmbargo();
+            // (an embargo is usually shared by many files)
+            if (e != null && embargoIds.add(e.getId())) {
+                LocalDate end = e.getDateAvailable();
+                if (end.isAfter(after) && (next == null || end.isBefore(next))) {
+                    next = end;
+                }
+            }
+        }
+        return next;
+    }
+
     public String getArchiveNote() {
         return archiveNote;
     }
@@ -5,6 +5,7 @@ import edu.harvard.iq.dataverse.authorization.Permission;
 import edu.harvard.iq.dataverse.authorization.RoleAssignee;
 import edu.harvard.iq.dataverse.authorization.users.User;
 import edu.harvard.iq.dataverse.authorization.RoleAssignmentSet;
+import edu.harvard.iq.dataverse.engine.CommandSequenceMemo;
 import edu.harvard.iq.dataverse.search.IndexAsync;
 import edu.harvard.iq.dataverse.search.IndexResponse;
 import edu.harvard.iq.dataverse.search.IndexServiceBean;
@@ -46,6 +47,8 @@ public class DataverseRoleServiceBean implements java.io.Serializable {
     SolrIndexServiceBean solrIndexService;
     @EJB
     IndexAsync indexAsync;
+    @EJB
+    PermissionCacheBean permissionCache;
 
     public DataverseRole save(DataverseRole aRole) {
         if (aRole.getId() == null) {
@@ -57,6 +60,7 @@ public class DataverseRoleServiceBean implements java.io.Serializable {
             return aRole;
         } else {
             DataverseRole merged = em.merge(aRole);
+            rolesChanged();
             /**
              * @todo update permissionModificationTime here.
              */
@@ -76,6 +80,7 @@ public class DataverseRoleServiceBean implements java.io.Serializable {
         } else {
             assignment = em.merge(assignment);
         }
+        permissionsChangedOn(assignment.getDefinitionPoint());
         /**
          * @todo update permissionModificationTime here.
          */
@@ -106,6 +111,7 @@ public class DataverseRoleServiceBean implements java.io.Serializable {
         em.createNamedQuery("DataverseRole.deleteById", DataverseRole.class)
             .setParameter("id", id)
             .executeUpdate();
+        rolesChanged();
     }
 
     public List<DataverseRole> findByOwnerId(Long ownerId) {
@@ -142,6 +148,7 @@ public class DataverseRoleServiceBean implements java.io.Serializable {
             em.refresh(role);
         }
         em.refresh(assignee);
+        permissionsChangedOn(defPoint);
     }
 
     public void revoke(RoleAssignment ra) {
@@ -149,6 +156,7 @@ public class DataverseRoleServiceBean implements java.io.Serializable {
             ra = em.merge(ra);
         }
         em.remove(ra);
+        permissionsChangedOn(ra.getDefinitionPoint());
         /**
          * @todo update permissionModificationTime here.
          */
@@ -170,10 +178,29 @@ public class DataverseRoleServiceBean implements java.io.Serializable {
 
             reindexSet.add(ra.getDefinitionPoint());
         }
+        if (permissionCache != null) {
+            permissionCache.assigneeChanged(assignee.getIdentifier());
+        }
+        CommandSequenceMemo.invalidate();
 
         indexAsync.indexRoles(reindexSet);
     }
 
+    // (drop the permissions cached by PermissionServiceBean)
+    private void permissionsChangedOn(DvObject definitionPoint) {
+        if (permissionCache != null) {
+            permissionCache.dvObjectChanged(definitionPoint);
+        }
+        CommandSequenceMemo.invalidate();
+    }
+
+    private void rolesChanged() {
+        if (permissionCache != null) {
+            permissionCache.rolesChanged();
+        }
+        CommandSequenceMemo.invalidate();
+    }
+
     public RoleAssignmentSet roleAssignments(User user, Dataverse dv) {
         RoleAssignmentSet retVal = new RoleAssignmentSet(user);
         while (dv != null) {
@@ -114,6 +114,8 @@ public class DataverseServiceBean implements java.io.Serializable {
        
         dataverse.setModificationTime(new Timestamp(new Date().getTime()));
         Dataverse savedDataverse = em.merge(dataverse);
+        // (it may have been moved, or become, or stopped being, a permission root)
+        permissionService.permissionsChangedOn(savedDataverse);
         return savedDataverse;
     }
     
@@ -5,6 +5,9 @@ import edu.harvard.iq.dataverse.actionlogging.ActionLogServiceBean;
 import edu.harvard.iq.dataverse.authorization.AuthenticationServiceBean;
 import edu.harvard.iq.dataverse.authorization.providers.builtin.BuiltinUserServiceBean;
 import edu.harvard.iq.dataverse.util.cache.CacheFactoryBean;
+import edu.harvard.iq.dataverse.engine.CommandSequenceMemo;
+import edu.harvard.iq.dataverse.engine.CommandSideEffects;
+import edu.harvard.iq.dataverse.engine.CommandTrace;
 import edu.harvard.iq.dataverse.engine.DataverseEngine;
 import edu.harvard.iq.dataverse.authorization.Permission;
 import edu.harvard.iq.dataverse.authorization.groups.GroupServiceBean;
@@ -194,6 +197,12 @@ public class EjbDataverseEngine {
 
     @EJB
     CacheFactoryBean cacheFactory;
+
+    @EJB
+    CommandProfilerBean commandProfiler;
+
+    @EJB
+    CommandSideEffectsBean sideEffectsService;
     
     @Resource
     EJBContext ejbCtxt;
@@ -216,15 +225,21 @@ public class EjbDataverseEngine {
     public <R> R submit(Command<R> aCommand) throws CommandException {
         
         final ActionLogRecord logRec = new ActionLogRecord(ActionLogRecord.ActionType.Command, aCommand.getClass().getCanonicalName());
+        final CommandSequenceMemo memo = CommandSequenceMemo.enter();
+        final CommandTrace trace = CommandTrace.begin(aCommand);
+        final CommandSideEffects sideEffects = CommandSideEffects.enter();
+        boolean succeeded = false;
 
         try {
             logRec.setUserIdentifier( aCommand.getRequest().getUser().getIdentifier() );
             // Check for rate limit exceeded. Must be done before anything else to prevent unnecessary processing.
+            trace.phase(CommandTrace.Phase.RATE_LIMIT);
             if (!cacheFactory.checkRate(aCommand.getRequest().getUser(), aCommand)) {
                 throw new RateLimitCommandException(BundleUtil.getStringFromBundle("command.exception.user.ratelimited", Arrays.asList(aCommand.getClass().getSimpleName())), aCommand);
             }
 
             // Check permissions - or throw an exception
+            trace.phase(CommandTrace.Phase.PERMISSIONS);
             Map<String, ? extends Set<Permission>> requiredMap = aCommand.getRequiredPermissions();
             if (requiredMap == null) {
                 throw new RuntimeException("Command " + aCommand + " does not define required permissions.");
@@ -233,7 +248,8 @@ public class EjbDataverseEngine {
             DataverseRequest dvReq = aCommand.getRequest();
 
             AuthenticatedUser authenticatedUser = dvReq.getAuthenticatedUser();
-            if (authenticatedUser != null) {
+            // (once per command sequence)
+            if (authenticatedUser != null && !memo.isUserChecked(authenticatedUser.getId())) {
                 AuthenticatedUser auFreshLookup = authentication.findByID(authenticatedUser.getId());
                 if (auFreshLookup == null) {
                     logger.fine("submit method found user no longer exists (was deleted).");
@@ -244,6 +260,7 @@ public class EjbDataverseEngine {
                         throw new CommandException(BundleUtil.getStringFromBundle("command.exception.user.deactivated", Arrays.asList(aCommand.getClass().getSimpleName())), aCommand);
                     }
                 }
+                memo.userChecked(authenticatedUser.getId());
             }
 
             Map<String, DvObject> affectedDvObjects = aCommand.getAffectedDvObjects();
@@ -283,7 +300,9 @@ public class EjbDataverseEngine {
                 //This list of commands is held by the outermost command's context
                 //to be run on completeCommand method when the outermost command is completed
                 Stack<Command> previouslyCalled = getContext().getCommandsCalled();
+                trace.phase(CommandTrace.Phase.EXECUTE);
                 R r = innerEngine.submit(aCommand, getContext());   
+                trace.endPhase();
                 if (getContext().getCommandsCalled().empty() && !previouslyCalled.empty()){
                     for (Command c: previouslyCalled){
                         getContext().getCommandsCalled().add(c);
@@ -291,6 +310,7 @@ public class EjbDataverseEngine {
                 }
                 //This runs the onSuccess Methods for all commands in the stack when the outermost command completes
                 this.completeCommand(aCommand, r, getContext().getCommandsCalled());
+                succeeded = true;
                 return r;
                 
             } catch ( EJBException ejbe ) {
@@ -322,6 +342,11 @@ public class EjbDataverseEngine {
             throw re;
             
         } finally {
+            memo.exit();
+            // (the side effects deferred by the commands of the sequence run
+            // once the top-level command is done, and committed)
+            final boolean sequenceCompleted = sideEffects.exit();
+            trace.end((logRec.getActionResult() != null ? logRec.getActionResult() : ActionLogRecord.Result.OK).name());
             //when we get here we need to wipe out the command list so that
             //failed commands don't have their onSuccess methods run.
             getContext().cancelCommandSequence();
@@ -336,6 +361,12 @@ public class EjbDataverseEngine {
             }
             logRec.setEndTime(new java.util.Date());
             logSvc.log(logRec);
+            if (trace.isTopLevel()) {
+                commandProfiler.record(trace);
+            }
+            if (sequenceCompleted) {
+                sideEffectsService.completed(sideEffects, !succeeded);
+            }
         }
     }
     
@@ -352,8 +383,14 @@ public class EjbDataverseEngine {
             return;
         }
         
+        CommandTrace trace = CommandTrace.current();
         for (Command commandLoop : called) {
+           long start = System.nanoTime();
            commandLoop.onSuccess(ctxt, r);
+           if (trace != null) {
+               CommandTrace commandTrace = trace.find(commandLoop);
+               (commandTrace != null ? commandTrace : trace).addTime(CommandTrace.Phase.ON_SUCCESS, System.nanoTime() - start);
+           }
         }
         
     }
@@ -2,6 +2,7 @@ package edu.harvard.iq.dataverse;
 
 import edu.harvard.iq.dataverse.actionlogging.ActionLogRecord;
 import edu.harvard.iq.dataverse.actionlogging.ActionLogServiceBean;
+import edu.harvard.iq.dataverse.export.ExportService;
 
 import jakarta.ejb.EJB;
 import jakarta.ejb.Stateless;
@@ -62,4 +63,16 @@ public class EmbargoServiceBean {
                 .setParameter("id", id)
                 .executeUpdate();
     }
+
+    /**
+     * Updates the end of the next embargo stored with the released version
+     * of the dataset (see ExportService.isCachedExportCurrent()), after the
+     * embargoes of released files have changed.
+     */
+    public void updateNextEmbargoEnd(Long datasetId) {
+        Dataset dataset = em.find(Dataset.class, datasetId);
+        if (dataset != null) {
+            ExportService.getInstance().updateNextEmbargoEnd(dataset);
+        }
+    }
 }
@@ -17,9 +17,13 @@ import edu.harvard.iq.dataverse.util.FileUtil;
 import edu.harvard.iq.dataverse.util.JsfHelper;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 import java.util.logging.Logger;
 import jakarta.ejb.EJB;
 import jakarta.faces.view.ViewScoped;
@@ -268,6 +272,38 @@ public class FileDownloadHelper implements java.io.Serializable {
         return false;
     }
 
+    /**
+     * Checks the download permission on all the restricted or embargoed files
+     * of the list at once, rather than one at a time, so that the following
+     * calls to {@link #canDownloadFile(FileMetadata)} for them are answered
+     * from the cache. To be called before going through all the files of a
+     * version.
+     *
+     * @param fileMetadatas
+     */
+    public void checkDownloadPermissions(Collection<FileMetadata> fileMetadatas) {
+        if (session.getUser() instanceof PrivateUrlUser) {
+            return;
+        }
+        // (the files canDownloadFile would check the permission on)
+        List<FileMetadata> toCheck = fileMetadatas.stream()
+                .filter(fmd -> fmd != null && fmd.getId() != null && fmd.getDataFile().getId() != null)
+                .filter(fmd -> !this.fileDownloadPermissionMap.containsKey(fmd.getId()))
+                .filter(fmd -> !FileUtil.isRetentionExpired(fmd) && !fmd.getDatasetVersion().isDeaccessioned())
+                .filter(fmd -> fmd.isRestricted() || fmd.getDataFile().isRestricted() || FileUtil.isActivelyEmbargoed(fmd))
+                .collect(Collectors.toList());
+        if (toCheck.size() < 2) {
+            return;
+        }
+
+        List<DataFile> dataFiles = toCheck.stream().map(FileMetadata::getDataFile).collect(Collectors.toList());
+        Set<Long> permitted = permissionService.whichHavePermissionsFor(dvRequestService.getDataverseRequest(), dataFiles, EnumSet.of(Permission.DownloadFile))
+                .stream().map(DataFile::getId).collect(Collectors.toSet());
+        for (FileMetadata fmd : toCheck) {
+            this.fileDownloadPermissionMap.put(fmd.getId(), permitted.contains(fmd.getDataFile().getId()));
+        }
+    }
+
     public boolean isRestrictedOrEmbargoed(FileMetadata fileMetadata) {
         return fileMetadata.isRestricted() || FileUtil.isActivelyEmbargoed(fileMetadata);
     }
@@ -0,0 +1,151 @@
+package edu.harvard.iq.dataverse;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import edu.harvard.iq.dataverse.authorization.Permission;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * The permissions granted by the roles assigned to a set of role assignees
+ * (a user, and the groups it is in) over a {@link DvObject} - that is, the
+ * roles assigned to them on the object and on its ancestors, up to its
+ * permission root - kept in memory, so that the role assignments aren't
+ * looked up again each time the permissions of a user are checked.
+ *
+ * The groups a user is in are part of the key, so the permissions don't
+ * depend on the memberships of the groups; they only change when a role is
+ * assigned or revoked on one of the ancestors of the object (or to one of
+ * the assignees), when a role is changed, or when one of the ancestors is
+ * moved or becomes (or stops being) a permission root. They are then
+ * dropped, along with those that are being loaded at that time.
+ */
+class PermissionCache {
+
+    /**
+     * What is loaded, when the permissions are not in the cache.
+     */
+    static class Loaded {
+        final Set<Permission> permissions;
+        final Collection<Long> ancestorIds;
+
+        /**
+         * @param permissions the permissions granted by the roles assigned
+         * @param ancestorIds the ids of the object and of its ancestors, up
+         * to its permission root
+         */
+        Loaded(Set<Permission> permissions, Collection<Long> ancestorIds) {
+            this.permissions = permissions;
+            this.ancestorIds = ancestorIds;
+        }
+    }
+
+    private record Key(Set<String> assigneeIdentifiers, long dvObjectId) {
+    }
+
+    private static class Entry {
+        private final EnumSet<Permission> permissions;
+        private final long[] ancestorIds;
+
+        Entry(Set<Permission> permissions, Collection<Long> ancestorIds) {
+            this.permissions = permissions.isEmpty() ? EnumSet.noneOf(Permission.class) : EnumSet.copyOf(permissions);
+            this.ancestorIds = ancestorIds.stream().mapToLong(Long::longValue).toArray();
+        }
+
+        boolean hasAncestor(long id) {
+            for (long ancestorId : ancestorIds) {
+                if (ancestorId == id) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private final Cache<Key, Entry> entries;
+    private final AtomicLong generation = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param maxSize the maximum number of entries kept
+     * @param maxAge how long an entry is kept at most, in milliseconds (in
+     * case the role assignments are changed some other way)
+     */
+    PermissionCache(long maxSize, long maxAge) {
+        entries = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMillis(maxAge))
+                .build();
+    }
+
+    /**
+     * @param assigneeIdentifiers the identifiers of the role assignees
+     * @param dvObjectId the id of the object
+     * @param loader loads the permissions, if they are not in the cache
+     * @return the permissions (a copy, that can be modified)
+     */
+    Set<Permission> get(Collection<String> assigneeIdentifiers, long dvObjectId, Supplier<Loaded> loader) {
+        Key key = new Key(Set.copyOf(assigneeIdentifiers), dvObjectId);
+        Entry entry = entries.getIfPresent(key);
+        if (entry != null) {
+            hits.increment();
+            return EnumSet.copyOf(entry.permissions);
+        }
+        misses.increment();
+        long loadGeneration = generation.get();
+        Loaded loaded = loader.get();
+        entry = new Entry(loaded.permissions, loaded.ancestorIds);
+        synchronized (this) {
+            // (not kept if the permissions changed while being loaded)
+            if (generation.get() == loadGeneration) {
+                entries.put(key, entry);
+            }
+        }
+        return EnumSet.copyOf(entry.permissions);
+    }
+
+    /**
+     * Drops the permissions over the object specified and over its
+     * descendants (the roles assigned on it changed, or it was moved, or it
+     * became, or stopped being, a permission root).
+     */
+    synchronized void invalidateDvObject(long dvObjectId) {
+        generation.incrementAndGet();
+        entries.asMap().values().removeIf(entry -> entry.hasAncestor(dvObjectId));
+    }
+
+    /**
+     * Drops the permissions of the sets of role assignees that include the
+     * one specified (its roles changed, wherever they are assigned).
+     */
+    synchronized void invalidateAssignee(String assigneeIdentifier) {
+        generation.incrementAndGet();
+        entries.asMap().keySet().removeIf(key -> key.assigneeIdentifiers().contains(assigneeIdentifier));
+    }
+
+    /**
+     * Drops all the permissions (a role was changed).
+     */
+    synchronized void invalidateAll() {
+        generation.incrementAndGet();
+        entries.invalidateAll();
+    }
+
+    long getHits() {
+        return hits.sum();
+    }
+
+    long getMisses() {
+        return misses.sum();
+    }
+
+    long size() {
+        return entries.estimatedSize();
+    }
+}
@@ -0,0 +1,294 @@
+package edu.harvard.iq.dataverse;
+
+import edu.harvard.iq.dataverse.authorization.Permission;
+import edu.harvard.iq.dataverse.authorization.RoleAssignee;
+import edu.harvard.iq.dataverse.settings.JvmSettings;
+import java.io.Serializable;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import jakarta.ejb.ConcurrencyManagement;
+import jakarta.ejb.ConcurrencyManagementType;
+import jakarta.ejb.Singleton;
+import jakarta.ejb.Startup;
+import jakarta.ejb.TransactionAttribute;
+import jakarta.ejb.TransactionAttributeType;
+import jakarta.enterprise.inject.spi.CDI;
+import jakarta.inject.Inject;
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+import org.eclipse.microprofile.metrics.Metadata;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.configuration.FactoryBuilder;
+import javax.cache.configuration.MutableCacheEntryListenerConfiguration;
+import javax.cache.configuration.MutableConfiguration;
+import javax.cache.event.CacheEntryCreatedListener;
+import javax.cache.event.CacheEntryEvent;
+import javax.cache.event.CacheEntryListenerException;
+import javax.cache.event.CacheEntryUpdatedListener;
+
+/**
+ * Keeps the permissions granted by the role assignments in memory, for
+ * {@link PermissionServiceBean} (see {@link PermissionCache}), and keeps
+ * them coherent across the servers of a cluster: the changes of the role
+ * assignments, of the roles and of the hierarchy of the objects are, once
+ * committed, announced through a cache of the Hazelcast/JCache
+ * infrastructure, and the servers listening to it drop the permissions
+ * concerned.
+ */
+@Singleton
+@Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+@TransactionAttribute(TransactionAttributeType.SUPPORTS)
+public class PermissionCacheBean {
+
+    private static final Logger logger = Logger.getLogger(PermissionCacheBean.class.getCanonicalName());
+
+    public static final String PERMISSIONS_CHANGES_CACHE = "permissionsChangesCache";
+    private static final String CHANGE_KEY = "change";
+
+    // (the changes announced: "dvobject:<id>", "assignee:<identifier>" or "all",
+    // followed by a random suffix, so that the same change announced twice
+    // is an update of the cache)
+    private static final String DVOBJECT_CHANGE = "dvobject:";
+    private static final String ASSIGNEE_CHANGE = "assignee:";
+    private static final String ALL_CHANGE = "all";
+    // (the key of the changes made by the current transaction)
+    private static final String CHANGED_IN_TRANSACTION = PermissionCacheBean.class.getName() + ".changes";
+
+    // (static, for the listeners of the cluster cache, that are not beans)
+    private static volatile PermissionCache permissionCache;
+
+    @Inject
+    CacheManager manager;
+
+    @Resource
+    TransactionSynchronizationRegistry transactionSynchronizationRegistry;
+
+    private Cache<String, String> changesCache;
+    private MutableCacheEntryListenerConfiguration<String, String> listenerConfiguration;
+
+    @PostConstruct
+    public void init() {
+        long size = JvmSettings.PERMISSIONS_CACHE_SIZE.lookupOptional(Long.class).orElse(10000L);
+        long maxAge = TimeUnit.SECONDS.toMillis(JvmSettings.PERMISSIONS_CACHE_MAX_AGE.lookupOptional(Long.class).orElse(600L));
+        if (size <= 0 || maxAge <= 0) {
+            logger.info("The permissions are not cached");
+            permissionCache = null;
+            return;
+        }
+        PermissionCache cache = new PermissionCache(size, maxAge);
+        permissionCache = cache;
+        try {
+            changesCache = manager.getCache(PERMISSIONS_CHANGES_CACHE);
+            if (changesCache == null) {
+                changesCache = manager.createCache(PERMISSIONS_CHANGES_CACHE,
+                        new MutableConfiguration<String, String>().setTypes(String.class, String.class));
+            }
+            listenerConfiguration = new MutableCacheEntryListenerConfiguration<>(
+                    FactoryBuilder.factoryOf(ChangeListener.class), null, false, false);
+            changesCache.registerCacheEntryListener(listenerConfiguration);
+        } catch (RuntimeException ex) {
+            // (the permissions are then only kept coherent by their maximum age)
+            logger.log(Level.WARNING, "No cache for the changes of the permissions; the permissions cached by the other servers will be dropped after "
+                    + maxAge + " ms at most", ex);
+            changesCache = null;
+        }
+        try {
+            MetricRegistry registry = CDI.current().select(MetricRegistry.class).get();
+            registry.gauge(Metadata.builder().withName("permissions_cache_hits")
+                    .withDescription("Counts the permissions found in the permissions cache").build(), cache::getHits);
+            registry.gauge(Metadata.builder().withName("permissions_cache_misses")
+                    .withDescription("Counts the permissions looked up because they were not in the permissions cache").build(), cache::getMisses);
+            registry.gauge(Metadata.builder().withName("permissions_cache_size")
+                    .withDescription("Displays the number of entries of the permissions cache").build(), cache::size);
+        } catch (RuntimeException ex) {
+            logger.log(Level.FINE, "No metrics for the permissions cache", ex);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (changesCache != null && listenerConfiguration != null) {
+            try {
+                changesCache.deregisterCacheEntryListener(listenerConfiguration);
+            } catch (RuntimeException ex) {
+                logger.log(Level.FINE, "Failed to deregister the listener of the changes of the permissions", ex);
+            }
+        }
+    }
+
+    /**
+     * @param ras the role assignees (a user, and the groups it is in)
+     * @param dvo the object (the permissions over an object that hasn't
+     * been saved yet aren't cached)
+     * @param loader loads the permissions granted by the roles assigned to
+     * {@code ras} over {@code dvo}, along with the ids of the objects they
+     * are assigned on, when they are not cached - and always, if the
+     * current transaction changed the permissions: they are then loaded as
+     * this transaction sees them, and not cached, so that the other threads
+     * never see the change before it is committed
+     * @return the permissions (a set that can be modified)
+     */
+    public Set<Permission> getRolePermissions(Set<RoleAssignee> ras, DvObject dvo, Supplier<PermissionCache.Loaded> loader) {
+        PermissionCache cache = permissionCache;
+        if (cache == null || dvo.getId() == null || isChangedInTransaction()) {
+            return loader.get().permissions;
+        }
+        Set<String> identifiers = ras.stream().map(RoleAssignee::getIdentifier).collect(Collectors.toSet());
+        return cache.get(identifiers, dvo.getId(), loader);
+    }
+
+    /**
+     * The roles assigned on the object changed, or it was moved, or it
+     * became, or stopped being, a permission root: drops the permissions
+     * over it and over its descendants.
+     */
+    public void dvObjectChanged(DvObject dvo) {
+        if (dvo != null && dvo.getId() != null) {
+            changed(DVOBJECT_CHANGE + dvo.getId());
+        }
+    }
+
+    /**
+     * The roles assigned to the role assignee changed, wherever they are
+     * assigned.
+     */
+    public void assigneeChanged(String assigneeIdentifier) {
+        if (assigneeIdentifier != null) {
+            changed(ASSIGNEE_CHANGE + assigneeIdentifier);
+        }
+    }
+
+    /**
+     * A role changed (or was deleted).
+     */
+    public void rolesChanged() {
+        changed(ALL_CHANGE);
+    }
+
+    /**
+     * Applies the change now and once the transaction making it completes
+     * (so that permissions loaded in the meantime, by other transactions,
+     * aren't kept), and announces it to the other servers once it is
+     * committed. Until then, the transaction making the change does not
+     * use the cache (see {@link #getRolePermissions(Set, DvObject, Supplier)}).
+     */
+    private void changed(String change) {
+        apply(change);
+        try {
+            if (transactionSynchronizationRegistry != null && transactionSynchronizationRegistry.getTransactionStatus() == Status.STATUS_ACTIVE) {
+                @SuppressWarnings("unchecked")
+                Set<String> changes = (Set<String>) transactionSynchronizationRegistry.getResource(CHANGED_IN_TRANSACTION);
+                if (changes != null) {
+                    // (applied and announced once the transaction completes already)
+                    changes.add(change);
+                    return;
+                }
+                Set<String> transactionChanges = new LinkedHashSet<>();
+                transactionChanges.add(change);
+                transactionSynchronizationRegistry.putResource(CHANGED_IN_TRANSACTION, transactionChanges);
+                transactionSynchronizationRegistry.registerInterposedSynchronization(new Synchronization() {
+                    @Override
+                    public void beforeCompletion() {
+                    }
+
+                    @Override
+                    public void afterCompletion(int status) {
+                        for (String transactionChange : transactionChanges) {
+                            apply(transactionChange);
+                            if (status == Status.STATUS_COMMITTED) {
+                                announce(transactionChange);
+                            }
+                        }
+                    }
+                });
+                return;
+            }
+        } catch (IllegalStateException ise) {
+            logger.log(Level.FINE, "Not in a transaction", ise);
+        }
+        announce(change);
+    }
+
+    private boolean isChangedInTransaction() {
+        try {
+            return transactionSynchronizationRegistry != null
+                    && transactionSynchronizationRegistry.getTransactionStatus() == Status.STATUS_ACTIVE
+                    && transactionSynchronizationRegistry.getResource(CHANGED_IN_TRANSACTION) != null;
+        } catch (IllegalStateException ise) {
+            return false;
+        }
+    }
+
+    private void announce(String change) {
+        if (changesCache == null) {
+            return;
+        }
+        try {
+            changesCache.put(CHANGE_KEY, change + " " + UUID.randomUUID());
+        } catch (RuntimeException ex) {
+            logger.log(Level.WARNING, "Failed to announce a change of the permissions", ex);
+        }
+    }
+
+    private static void apply(String change) {
+        PermissionCache cache = permissionCache;
+        if (cache == null || change == null) {
+            return;
+        }
+        int end = change.indexOf(' ');
+        if (end >= 0) {
+            change = change.substring(0, end);
+        }
+        try {
+            if (change.startsWith(DVOBJECT_CHANGE)) {
+                cache.invalidateDvObject(Long.parseLong(change.substring(DVOBJECT_CHANGE.length())));
+            } else if (change.startsWith(ASSIGNEE_CHANGE)) {
+                cache.invalidateAssignee(change.substring(ASSIGNEE_CHANGE.length()));
+            } else {
+                cache.invalidateAll();
+            }
+        } catch (NumberFormatException nfe) {
+            cache.invalidateAll();
+        }
+    }
+
+    /**
+     * Applies the changes of the permissions made on any server (including
+     * this one).
+     */
+    public static class ChangeListener implements CacheEntryCreatedListener<String, String>,
+            CacheEntryUpdatedListener<String, String>, Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public void onCreated(Iterable<CacheEntryEvent<? extends String, ? extends String>> events) throws CacheEntryListenerException {
+            applyAll(events);
+        }
+
+        @Override
+        public void onUpdated(Iterable<CacheEntryEvent<? extends String, ? extends String>> events) throws CacheEntryListenerException {
+            applyAll(events);
+        }
+
+        private void applyAll(Iterable<CacheEntryEvent<? extends String, ? extends String>> events) {
+            for (CacheEntryEvent<? extends String, ? extends String> event : events) {
+                apply(event.getValue());
+            }
+        }
+    }
+}
@@ -14,7 +14,9 @@ import edu.harvard.iq.dataverse.authorization.users.User;
 import edu.harvard.iq.dataverse.engine.command.Command;
 import java.util.EnumSet;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.function.Supplier;
 import java.util.logging.Logger;
 import jakarta.ejb.EJB;
 import jakarta.ejb.Stateless;
@@ -25,6 +27,7 @@ import java.util.List;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 import static edu.harvard.iq.dataverse.engine.command.CommandHelper.CH;
+import edu.harvard.iq.dataverse.engine.CommandSequenceMemo;
 import edu.harvard.iq.dataverse.engine.command.DataverseRequest;
 import edu.harvard.iq.dataverse.engine.command.exception.IllegalCommandException;
 import edu.harvard.iq.dataverse.engine.command.impl.PublishDatasetCommand;
@@ -33,7 +36,9 @@ import edu.harvard.iq.dataverse.util.BundleUtil;
 import edu.harvard.iq.dataverse.workflow.PendingWorkflowInvocation;
 import edu.harvard.iq.dataverse.workflow.WorkflowServiceBean;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedList;
@@ -64,6 +69,10 @@ public class PermissionServiceBean {
                     .filter(Permission::requiresAuthenticatedUser)
                     .collect(Collectors.toList()));
 
+    // (the number of objects whose role assignments are read in one query,
+    // well under the limit on the parameters of a PostgreSQL statement)
+    static final int BULK_CHUNK_SIZE = 5000;
+
     @EJB
     BuiltinUserServiceBean userService;
 
@@ -91,6 +100,9 @@ public class PermissionServiceBean {
     @EJB
     GroupServiceBean groupService;
 
+    @EJB
+    PermissionCacheBean permissionCache;
+
     @Inject
     DataverseSession session;
 
@@ -329,9 +341,89 @@ public class PermissionServiceBean {
             }
         }
         
-        Set<RoleAssignee> ras = new HashSet<>(groupService.groupsFor(req, dvo));
-        ras.add(user);
-        return hasGroupPermissionsFor(ras, dvo, required);
+        required.removeAll(rolePermissionsFor(req, dvo));
+        return required.isEmpty();
+    }
+
+    /**
+     * Returns the objects of {@code dvos} on which {@code req} has all the
+     * {@code required} permissions; the same objects as calling
+     * {@link #hasPermissionsFor(DataverseRequest, DvObject, Set)} for each one,
+     * but the groups of the request are found once per dataset (or dataverse)
+     * and the role assignments on all the objects and their permission
+     * ancestors are read at once (in chunks of {@value #BULK_CHUNK_SIZE}
+     * objects). Meant for long lists, such as the files of a dataset.
+     *
+     * @param req The request whose permissions are queried
+     * @param dvos The objects to filter
+     * @param required The permissions {@code req} must have on the objects
+     * @return The objects of {@code dvos} (in their order) on which {@code req}
+     * has at least the {@code required} permissions.
+     */
+    public <T extends DvObject> List<T> whichHavePermissionsFor(DataverseRequest req, Collection<T> dvos, Set<Permission> required) {
+        User user = req.getUser();
+        if (user.isSuperuser() || required.isEmpty()) {
+            return new ArrayList<>(dvos);
+        } else if (!user.isAuthenticated()) {
+            if (required.stream().anyMatch(PERMISSIONS_FOR_AUTHENTICATED_USERS_ONLY::contains)) {
+                return new ArrayList<>();
+            }
+        }
+
+        // 1. The groups of the request, and the permission ancestors, of each object.
+        // (explicit groups are defined on dataverses, so the files of a
+        // dataset are in the context of their dataset)
+        Map<DvObject, Set<String>> assigneesByContext = new HashMap<>();
+        Map<DvObject, Set<DvObject>> ancestorsByOwner = new HashMap<>();
+        Map<T, Set<String>> assigneesOf = new HashMap<>();
+        Map<T, Set<DvObject>> ancestorsOf = new HashMap<>();
+        Set<RoleAssignee> allAssignees = new HashSet<>();
+        Set<DvObject> allAncestors = new HashSet<>();
+        for (T dvo : dvos) {
+            DvObject context = (dvo instanceof DataFile && dvo.getOwner() != null) ? dvo.getOwner() : dvo;
+            assigneesOf.put(dvo, assigneesByContext.computeIfAbsent(context, ctx -> {
+                Set<RoleAssignee> ras = new HashSet<>(groupService.groupsFor(req, ctx));
+                ras.add(user);
+                allAssignees.addAll(ras);
+                return ras.stream().map(RoleAssignee::getIdentifier).collect(Collectors.toSet());
+            }));
+
+            Set<DvObject> ancestors = new HashSet<>();
+            ancestors.add(dvo);
+            if (dvo.getOwner() != null && !(dvo instanceof Dataverse && ((Dataverse) dvo).isEffectivelyPermissionRoot())) {
+                ancestors.addAll(ancestorsByOwner.computeIfAbsent(dvo.getOwner(), this::getPermissionAncestors));
+            }
+            ancestorsOf.put(dvo, ancestors);
+            allAncestors.addAll(ancestors);
+        }
+
+        // 2. The role assignments on all these objects, by definition point.
+        Map<Long, List<RoleAssignment>> assignmentsByDefinitionPoint = new HashMap<>();
+        List<DvObject> definitionPoints = new ArrayList<>(allAncestors);
+        for (int i = 0; i < definitionPoints.size(); i += BULK_CHUNK_SIZE) {
+            List<DvObject> chunk = definitionPoints.subList(i, Math.min(i + BULK_CHUNK_SIZE, definitionPoints.size()));
+            for (RoleAssignment asmnt : roleService.directRoleAssignments(allAssignees, chunk)) {
+                assignmentsByDefinitionPoint.computeIfAbsent(asmnt.getDefinitionPoint().getId(), id -> new ArrayList<>()).add(asmnt);
+            }
+        }
+
+        // 3. Filter by the permissions granted on each object.
+        List<T> permitted = new ArrayList<>();
+        for (T dvo : dvos) {
+            Set<String> assignees = assigneesOf.get(dvo);
+            Set<Permission> granted = EnumSet.noneOf(Permission.class);
+            for (DvObject ancestor : ancestorsOf.get(dvo)) {
+                for (RoleAssignment asmnt : assignmentsByDefinitionPoint.getOrDefault(ancestor.getId(), Collections.emptyList())) {
+                    if (assignees.contains(asmnt.getAssigneeIdentifier())) {
+                        granted.addAll(asmnt.getRole().permissions());
+                    }
+                }
+            }
+            if (granted.containsAll(required)) {
+                permitted.add(dvo);
+            }
+        }
+        return permitted;
     }
 
     public boolean hasPermissionsFor(RoleAssignee ra, DvObject dvo, Set<Permission> required) {
@@ -358,9 +450,7 @@ public class PermissionServiceBean {
     }
     
     private boolean hasGroupPermissionsFor(Set<RoleAssignee> ras, DvObject dvo, Set<Permission> required) {
-        for (RoleAssignment asmnt : assignmentsFor(ras, dvo)) {
-            required.removeAll(asmnt.getRole().permissions());
-        }
+        required.removeAll(rolePermissionsFor(ras, dvo));
         return required.isEmpty();
     }
 
@@ -380,9 +470,7 @@ public class PermissionServiceBean {
         Set<Permission> permissions = getInferredPermissions(dvo);
 
         // Add permissions gained from ras
-        Set<RoleAssignee> ras = new HashSet<>(groupService.groupsFor(req, dvo));
-        ras.add(req.getUser());
-        addGroupPermissionsFor(ras, dvo, permissions);
+        permissions.addAll(rolePermissionsFor(req, dvo));
 
         if (!req.getUser().isAuthenticated()) {
             permissions.removeAll(PERMISSIONS_FOR_AUTHENTICATED_USERS_ONLY);
@@ -417,9 +505,66 @@ public class PermissionServiceBean {
     }
     
     private void addGroupPermissionsFor(Set<RoleAssignee> ras, DvObject dvo, Set<Permission> permissions) {
-        for (RoleAssignment asmnt : assignmentsFor(ras, dvo)) {
-            permissions.addAll(asmnt.getRole().permissions());
+        permissions.addAll(rolePermissionsFor(ras, dvo));
+    }
+
+    /**
+     * Returns the permissions granted by the roles assigned to the user and
+     * the groups of {@code req} over {@code dvo}; memoized while a command
+     * sequence runs (see {@link CommandSequenceMemo}).
+     */
+    private Set<Permission> rolePermissionsFor(DataverseRequest req, DvObject dvo) {
+        Supplier<Set<Permission>> loader = () -> {
+            Set<RoleAssignee> ras = new HashSet<>(groupService.groupsFor(req, dvo));
+            ras.add(req.getUser());
+            return rolePermissionsFor(ras, dvo);
+        };
+        CommandSequenceMemo memo = CommandSequenceMemo.current();
+        return (memo != null) ? memo.rolePermissionsFor(req, dvo, loader) : loader.get();
+    }
+
+    /**
+     * Returns the permissions granted by the roles assigned to {@code ras}
+     * over {@code dvo} (on it, or on its permission ancestors), from the
+     * permission cache if they are there (see {@link PermissionCacheBean}).
+     */
+    private Set<Permission> rolePermissionsFor(Set<RoleAssignee> ras, DvObject dvo) {
+        Supplier<PermissionCache.Loaded> loader = () -> {
+            Set<DvObject> permAncestors = getPermissionAncestors(dvo);
+            Set<Permission> permissions = EnumSet.noneOf(Permission.class);
+            for (RoleAssignment asmnt : roleService.directRoleAssignments(ras, permAncestors)) {
+                permissions.addAll(asmnt.getRole().permissions());
+            }
+            return new PermissionCache.Loaded(permissions,
+                    permAncestors.stream().map(DvObject::getId).filter(Objects::nonNull).collect(toList()));
+        };
+        if (permissionCache == null) {
+            return loader.get().permissions;
         }
+        return permissionCache.getRolePermissions(ras, dvo, loader);
+    }
+
+    /**
+     * Drops the permissions cached over {@code dvo} and its descendants. To
+     * be called when the roles assigned on it change, or when it is moved, or
+     * when it becomes (or stops being) a permission root.
+     */
+    public void permissionsChangedOn(DvObject dvo) {
+        if (permissionCache != null) {
+            permissionCache.dvObjectChanged(dvo);
+        }
+        CommandSequenceMemo.invalidate();
+    }
+
+    /**
+     * Drops the permissions cached for the sets of role assignees that
+     * include {@code ra}. To be called when the roles assigned to it change.
+     */
+    public void permissionsChangedFor(RoleAssignee ra) {
+        if (permissionCache != null) {
+            permissionCache.assigneeChanged(ra.getIdentifier());
+        }
+        CommandSequenceMemo.invalidate();
     }
 
 
@@ -846,16 +991,10 @@ public class PermissionServiceBean {
         if (hasUnrestrictedReleasedFiles(datasetVersion)) {
             return true;
         }
-        List<FileMetadata> fileMetadatas = datasetVersion.getFileMetadatas();
-        for (FileMetadata fileMetadata : fileMetadatas) {
-            DataFile dataFile = fileMetadata.getDataFile();
-            Set<RoleAssignee> roleAssignees = new HashSet<>(groupService.groupsFor(dataverseRequest, dataFile));
-            roleAssignees.add(dataverseRequest.getUser());
-            if (hasGroupPermissionsFor(roleAssignees, dataFile, EnumSet.of(Permission.DownloadFile))) {
-                return true;
-            }
-        }
-        return false;
+        List<DataFile> dataFiles = datasetVersion.getFileMetadatas().stream()
+                .map(FileMetadata::getDataFile)
+                .collect(toList());
+        return !whichHavePermissionsFor(dataverseRequest, dataFiles, EnumSet.of(Permission.DownloadFile)).isEmpty();
     }
 
     /**
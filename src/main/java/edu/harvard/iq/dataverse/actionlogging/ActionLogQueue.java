@@ -0,0 +1,144 @@
+package edu.harvard.iq.dataverse.actionlogging;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * A bounded queue of the {@link ActionLogRecord}s waiting to be written to
+ * the database, and what is done with a record when the queue is full.
+ */
+public class ActionLogQueue {
+
+    private static final Logger logger = Logger.getLogger(ActionLogQueue.class.getCanonicalName());
+
+    /**
+     * What is done with a record when the queue is full.
+     */
+    public enum Overflow {
+        /** The caller waits until there is room in the queue. */
+        BLOCK,
+        /**
+         * The records of the successful read-only commands ({@code Get*} and
+         * {@code List*} commands) are dropped; the caller waits for the
+         * others, as with {@link #BLOCK}.
+         */
+        DROP_READS,
+        /** The record is appended to a local file, to be written later. */
+        SPILL;
+
+        /**
+         * @param value {@code block}, {@code drop-reads} or {@code spill}
+         * @return the overflow behaviour
+         * @throws IllegalArgumentException if the value is none of these
+         */
+        public static Overflow parse(String value) {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+        }
+    }
+
+    private final BlockingQueue<ActionLogRecord> queue;
+    private final Overflow overflow;
+    private final Consumer<ActionLogRecord> spill;
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong spilled = new AtomicLong();
+
+    /**
+     * @param capacity the maximum number of records in the queue
+     * @param overflow what is done with a record when the queue is full
+     * @param spill where the records are spilled to, with {@link Overflow#SPILL}
+     */
+    public ActionLogQueue(int capacity, Overflow overflow, Consumer<ActionLogRecord> spill) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.overflow = overflow;
+        this.spill = spill;
+    }
+
+    /**
+     * Queues the record, or, if the queue is full, waits, drops it or spills
+     * it, depending on the overflow behaviour.
+     */
+    public void add(ActionLogRecord rec) {
+        if (queue.offer(rec)) {
+            return;
+        }
+        if (overflow == Overflow.SPILL) {
+            spill.accept(rec);
+            spilled.incrementAndGet();
+        } else if (overflow == Overflow.DROP_READS && isRead(rec)) {
+            dropped.incrementAndGet();
+        } else {
+            try {
+                queue.put(rec);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                logger.warning("Interrupted while waiting for room in the action log queue; dropping " + rec);
+                dropped.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Waits for a record, then takes it, and the records after it.
+     * @param max the maximum number of records taken
+     * @return the records taken, none if there was none before the timeout
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public List<ActionLogRecord> take(int max, long timeout, TimeUnit unit) throws InterruptedException {
+        ActionLogRecord first = queue.poll(timeout, unit);
+        if (first == null) {
+            return Collections.emptyList();
+        }
+        List<ActionLogRecord> records = new ArrayList<>(Math.min(max, queue.size() + 1));
+        records.add(first);
+        queue.drainTo(records, max - 1);
+        return records;
+    }
+
+    /**
+     * @return all the records in the queue, that is emptied
+     */
+    public List<ActionLogRecord> drain() {
+        List<ActionLogRecord> records = new ArrayList<>();
+        queue.drainTo(records);
+        return records;
+    }
+
+    public int size() {
+        return queue.size();
+    }
+
+    /**
+     * @return the number of records dropped since the queue was created
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * @return the number of records spilled since the queue was created
+     */
+    public long getSpilled() {
+        return spilled.get();
+    }
+
+    /**
+     * @return true for the record of a successful read-only command
+     */
+    static boolean isRead(ActionLogRecord rec) {
+        if (rec.getActionType() != ActionLogRecord.ActionType.Command
+                || rec.getActionResult() != ActionLogRecord.Result.OK
+                || rec.getActionSubType() == null) {
+            return false;
+        }
+        String command = rec.getActionSubType().substring(rec.getActionSubType().lastIndexOf('.') + 1);
+        return command.startsWith("Get") || command.startsWith("List");
+    }
+}
@@ -1,6 +1,7 @@
 package edu.harvard.iq.dataverse.actionlogging;
 
 import java.util.Date;
+import jakarta.ejb.EJB;
 import jakarta.ejb.Stateless;
 import jakarta.ejb.TransactionAttribute;
 import jakarta.ejb.TransactionAttributeType;
@@ -17,11 +18,16 @@ public class ActionLogServiceBean {
     @PersistenceContext(unitName = "VDCNet-ejbPU")
     private EntityManager em;
     
+    @EJB
+    ActionLogWriterBean writer;
+    
     /**
-     * Log the record. Set default values.
+     * Log the record. Set default values. The record is written to the DB
+     * by {@link ActionLogWriterBean}, in the background, outside of the
+     * current transaction.
      * @param rec 
      */
-    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
     public void log( ActionLogRecord rec ) {
         if ( rec.getEndTime() == null ) {
             rec.setEndTime( new Date() );
@@ -30,12 +36,14 @@ public class ActionLogServiceBean {
                 && rec.getActionType() != ActionLogRecord.ActionType.Command ) {
             rec.setActionResult(ActionLogRecord.Result.OK);
         }
-        em.persist(rec);
+        writer.submit(rec);
     }
 
     //Switches all actions from one identifier to another identifier, via native query
     //This is needed for when we change a userIdentifier or merge one account into another
+    //(the records logged but not written yet are written first, so that they are switched too)
     public void changeUserIdentifierInHistory(String oldIdentifier, String newIdentifier) {
+        writer.flush();
         em.createNativeQuery(
                 "UPDATE actionlogrecord "
                         + "SET useridentifier='"+newIdentifier+"', "
@@ -0,0 +1,387 @@
+package edu.harvard.iq.dataverse.actionlogging;
+
+import edu.harvard.iq.dataverse.settings.JvmSettings;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import jakarta.ejb.ConcurrencyManagement;
+import jakarta.ejb.ConcurrencyManagementType;
+import jakarta.ejb.Singleton;
+import jakarta.ejb.Startup;
+import jakarta.ejb.TransactionAttribute;
+import jakarta.ejb.TransactionAttributeType;
+import jakarta.enterprise.concurrent.ManagedThreadFactory;
+import jakarta.json.Json;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonObjectBuilder;
+import jakarta.json.JsonReader;
+import javax.sql.DataSource;
+
+/**
+ * Writes the {@link ActionLogRecord}s to the database, in batches, from a
+ * background thread, so that logging an action does not cost its caller an
+ * insert in a transaction of its own.
+ *
+ * The records wait in a bounded {@link ActionLogQueue}. When it is full, the
+ * caller waits, the record is dropped or it is appended to a spill file,
+ * depending on the configured overflow behaviour. The records that fail to be
+ * written (e.g. while the database is down), and those still in the queue at
+ * shutdown, are appended to the spill file too. The spill file is written to
+ * the database when the queue is idle, and at startup. The records are only
+ * lost if the server stops abruptly while they are in the queue.
+ *
+ * The spill file is named after the server, so that the servers of a cluster
+ * sharing the files directory (where it is by default) don't write to the
+ * same file.
+ */
+@Singleton
+@Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+@TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+public class ActionLogWriterBean {
+
+    private static final Logger logger = Logger.getLogger(ActionLogWriterBean.class.getCanonicalName());
+
+    // (ignores the records that were written already, when a spill file is
+    // written again after a failure)
+    private static final String INSERT = "INSERT INTO actionlogrecord "
+            + "(id, actionresult, actionsubtype, actiontype, endtime, info, starttime, useridentifier) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?) ON CONFLICT (id) DO NOTHING";
+    private static final String SPILL_FILE = "actionlog-spill-%s.jsonl";
+    private static final String REPLAYED_FILE = "actionlog-replay-%s.jsonl";
+    private static final long RETRY_DELAY = TimeUnit.SECONDS.toMillis(30);
+
+    @Resource(lookup = "java:app/jdbc/dataverse")
+    DataSource dataSource;
+
+    @Resource
+    ManagedThreadFactory threadFactory;
+
+    private ActionLogQueue queue;
+    private int batchSize;
+    private Path spillDirectory;
+    private Path spillFile;
+    private Path replayedFile;
+    private final Object spillLock = new Object();
+    // (held while a batch is taken from the queue and written, so that
+    // flush() can wait for the batch the writer has taken; fair, so that
+    // flush() gets it before the writer takes the next batch)
+    private final ReentrantLock writeLock = new ReentrantLock(true);
+    private volatile boolean running;
+    private volatile long nextReplay;
+    private Thread writer;
+
+    @PostConstruct
+    public void init() {
+        int capacity = JvmSettings.ACTION_LOG_QUEUE_SIZE.lookupOptional(Integer.class).orElse(10000);
+        batchSize = Math.max(1, JvmSettings.ACTION_LOG_BATCH_SIZE.lookupOptional(Integer.class).orElse(500));
+        spillDirectory = Paths.get(JvmSettings.ACTION_LOG_SPILL_DIRECTORY.lookupOptional()
+                .orElseGet(() -> JvmSettings.FILES_DIRECTORY.lookup() + File.separator + "actionlog"));
+        String node = getNodeName();
+        spillFile = spillDirectory.resolve(String.format(SPILL_FILE, node));
+        replayedFile = spillDirectory.resolve(String.format(REPLAYED_FILE, node));
+        ActionLogQueue.Overflow overflow;
+        String overflowSetting = JvmSettings.ACTION_LOG_OVERFLOW.lookupOptional().orElse("block");
+        try {
+            overflow = ActionLogQueue.Overflow.parse(overflowSetting);
+        } catch (IllegalArgumentException iae) {
+            logger.warning("Unknown overflow behaviour for the action log: " + overflowSetting + "; using block");
+            overflow = ActionLogQueue.Overflow.BLOCK;
+        }
+
+        if (capacity <= 0) {
+            logger.info("The action log records are written synchronously");
+            replaySpilled();
+            return;
+        }
+        queue = new ActionLogQueue(capacity, overflow, this::spill);
+        running = true;
+        writer = threadFactory.newThread(this::writeQueued);
+        writer.setName("action-log-writer");
+        writer.start();
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (writer == null) {
+            return;
+        }
+        running = false;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+        // (what could not be written in time is written at the next start)
+        List<ActionLogRecord> left = queue.drain();
+        left.forEach(this::spill);
+        if (!left.isEmpty()) {
+            logger.info("Spilled " + left.size() + " action log records at shutdown");
+        }
+        if (queue.getDropped() > 0 || queue.getSpilled() > 0) {
+            logger.info("Action log records dropped: " + queue.getDropped() + ", spilled on overflow: " + queue.getSpilled());
+        }
+    }
+
+    /**
+     * Queues the record to be written, or writes it right away if there is
+     * no queue.
+     */
+    public void submit(ActionLogRecord rec) {
+        if (rec.getId() == null) {
+            rec.setId(UUID.randomUUID().toString());
+        }
+        if (queue != null) {
+            queue.add(rec);
+        } else {
+            writeOrSpill(List.of(rec));
+        }
+    }
+
+    /**
+     * Writes the records logged so far - those waiting in the queue, the
+     * batch being written, and the spilled ones - to the database, before
+     * returning; e.g. before the records of a user are updated.
+     */
+    public void flush() {
+        writeLock.lock();
+        try {
+            if (queue != null) {
+                List<ActionLogRecord> records = queue.drain();
+                for (int i = 0; i < records.size(); i += batchSize) {
+                    writeOrSpill(records.subList(i, Math.min(records.size(), i + batchSize)));
+                }
+            }
+            nextReplay = 0;
+            replaySpilled();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void writeQueued() {
+        writeLock.lock();
+        try {
+            replaySpilled();
+        } finally {
+            writeLock.unlock();
+        }
+        while (running || queue.size() > 0) {
+            writeLock.lock();
+            try {
+                List<ActionLogRecord> records = queue.take(batchSize, 1, TimeUnit.SECONDS);
+                if (records.isEmpty()) {
+                    replaySpilled();
+                } else {
+                    writeOrSpill(records);
+                }
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException ex) {
+                logger.log(Level.WARNING, "Failure in the action log writer", ex);
+            } finally {
+                writeLock.unlock();
+            }
+        }
+    }
+
+    private void writeOrSpill(List<ActionLogRecord> records) {
+        try {
+            write(records);
+        } catch (SQLException | RuntimeException ex) {
+            logger.log(Level.WARNING, "Failed to write " + records.size() + " action log records; spilling them to "
+                    + spillFile, ex);
+            records.forEach(this::spill);
+            nextReplay = System.currentTimeMillis() + RETRY_DELAY;
+        }
+    }
+
+    private void write(List<ActionLogRecord> records) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+                PreparedStatement insert = connection.prepareStatement(INSERT)) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                for (ActionLogRecord rec : records) {
+                    insert.setString(1, rec.getId());
+                    insert.setString(2, rec.getActionResult() != null ? rec.getActionResult().name() : null);
+                    insert.setString(3, rec.getActionSubType());
+                    insert.setString(4, rec.getActionType() != null ? rec.getActionType().name() : null);
+                    setTimestamp(insert, 5, rec.getEndTime());
+                    insert.setString(6, rec.getInfo());
+                    setTimestamp(insert, 7, rec.getStartTime());
+                    insert.setString(8, rec.getUserIdentifier());
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+                connection.commit();
+            } catch (SQLException ex) {
+                connection.rollback();
+                throw ex;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    private static void setTimestamp(PreparedStatement statement, int index, Date date) throws SQLException {
+        if (date != null) {
+            statement.setTimestamp(index, new Timestamp(date.getTime()));
+        } else {
+            statement.setNull(index, Types.TIMESTAMP);
+        }
+    }
+
+    private void spill(ActionLogRecord rec) {
+        JsonObjectBuilder json = Json.createObjectBuilder().add("id", rec.getId());
+        if (rec.getActionResult() != null) {
+            json.add("actionResult", rec.getActionResult().name());
+        }
+        if (rec.getActionType() != null) {
+            json.add("actionType", rec.getActionType().name());
+        }
+        if (rec.getActionSubType() != null) {
+            json.add("actionSubType", rec.getActionSubType());
+        }
+        if (rec.getUserIdentifier() != null) {
+            json.add("userIdentifier", rec.getUserIdentifier());
+        }
+        if (rec.getInfo() != null) {
+            json.add("info", rec.getInfo());
+        }
+        if (rec.getStartTime() != null) {
+            json.add("startTime", rec.getStartTime().getTime());
+        }
+        if (rec.getEndTime() != null) {
+            json.add("endTime", rec.getEndTime().getTime());
+        }
+        synchronized (spillLock) {
+            try {
+                Files.createDirectories(spillDirectory);
+                try (BufferedWriter out = Files.newBufferedWriter(spillFile, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                    out.write(json.build().toString());
+                    out.newLine();
+                }
+            } catch (IOException ex) {
+                logger.log(Level.SEVERE, "Failed to spill the action log record " + rec + " (info: " + rec.getInfo() + ")", ex);
+            }
+        }
+    }
+
+    private static ActionLogRecord unspill(String line) {
+        JsonObject json;
+        try (JsonReader reader = Json.createReader(new StringReader(line))) {
+            json = reader.readObject();
+        }
+        ActionLogRecord rec = new ActionLogRecord();
+        rec.setId(json.getString("id"));
+        if (json.containsKey("actionResult")) {
+            rec.setActionResult(ActionLogRecord.Result.valueOf(json.getString("actionResult")));
+        }
+        if (json.containsKey("actionType")) {
+            rec.setActionType(ActionLogRecord.ActionType.valueOf(json.getString("actionType")));
+        }
+        rec.setActionSubType(json.getString("actionSubType", null));
+        rec.setUserIdentifier(json.getString("userIdentifier", null));
+        rec.setInfo(json.getString("info", null));
+        if (json.containsKey("startTime")) {
+            rec.setStartTime(new Date(json.getJsonNumber("startTime").longValue()));
+        }
+        if (json.containsKey("endTime")) {
+            rec.setEndTime(new Date(json.getJsonNumber("endTime").longValue()));
+        }
+        return rec;
+    }
+
+    /**
+     * Writes the spilled records to the database, if there are any, and if
+     * the last attempt didn't fail just before.
+     */
+    private void replaySpilled() {
+        if (System.currentTimeMillis() < nextReplay) {
+            return;
+        }
+        Path replayed = replayedFile;
+        try {
+            synchronized (spillLock) {
+                // (the records spilled from now on go to a new file)
+                if (!Files.exists(replayed)) {
+                    if (!Files.exists(spillFile)) {
+                        return;
+                    }
+                    Files.move(spillFile, replayed, StandardCopyOption.ATOMIC_MOVE);
+                }
+            }
+            int count = 0;
+            try (BufferedReader in = Files.newBufferedReader(replayed, StandardCharsets.UTF_8)) {
+                List<ActionLogRecord> records = new ArrayList<>(batchSize);
+                for (String line = in.readLine(); line != null; line = in.readLine()) {
+                    if (line.isBlank()) {
+                        continue;
+                    }
+                    try {
+                        records.add(unspill(line));
+                    } catch (RuntimeException ex) {
+                        logger.log(Level.WARNING, "Skipping an unreadable spilled action log record: " + line, ex);
+                        continue;
+                    }
+                    if (records.size() == batchSize) {
+                        write(records);
+                        count += records.size();
+                        records.clear();
+                    }
+                }
+                if (!records.isEmpty()) {
+                    write(records);
+                    count += records.size();
+                }
+            }
+            Files.delete(replayed);
+            logger.info("Wrote " + count + " spilled action log records");
+        } catch (IOException | SQLException | RuntimeException ex) {
+            logger.log(Level.WARNING, "Failed to write the spilled action log records of " + replayed + "; will try again", ex);
+            nextReplay = System.currentTimeMillis() + RETRY_DELAY;
+        }
+    }
+
+    /**
+     * @return the name of this server, usable in a file name
+     */
+    private static String getNodeName() {
+        String name;
+        try {
+            name = InetAddress.getLocalHost().getHostName();
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "Unknown host name; naming the action log spill file after localhost", ex);
+            name = "localhost";
+        }
+        return name.replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+}
@@ -86,9 +86,16 @@ import java.io.OutputStream;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Date;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.stream.Collectors;
 import java.util.logging.Level;
 import jakarta.inject.Inject;
 import jakarta.json.Json;
@@ -854,6 +861,8 @@ public class Access extends AbstractApiBean {
                 
                 if (fileIdParams != null && fileIdParams.length > 0) {
                     logger.fine(fileIdParams.length + " tokens;");
+                    Map<Long, DataFile> files = findFiles(fileIdParams);
+                    Set<Long> authorizedIds = findAccessAuthorized(user, files.values());
                     for (int i = 0; i < fileIdParams.length; i++) {
                         logger.fine("token: " + fileIdParams[i]);
                         Long fileId = null;
@@ -863,10 +872,9 @@ public class Access extends AbstractApiBean {
                             fileId = null;
                         }
                         if (fileId != null) {
-                            logger.fine("attempting to look up file id " + fileId);
-                            DataFile file = dataFileService.find(fileId);
+                            DataFile file = files.get(fileId);
                             if (file != null) {
-                                if (isAccessAuthorized(user, file)) {
+                                if (authorizedIds.contains(file.getId())) {
 
                                     logger.fine("adding datafile (id=" + file.getId() + ") to the download list of the ZippedDownloadInstance.");
                                     //downloadInstance.addDataFile(file);
@@ -1756,6 +1764,92 @@ public class Access extends AbstractApiBean {
     
 
     private boolean isAccessAuthorized(User requestUser, DataFile df) {
+        return !findAccessAuthorized(requestUser, List.of(df)).isEmpty();
+    }
+
+    /**
+     * Looks up the files with the ids specified, once each, for the bulk
+     * permission check and then for the download.
+     * @return the files found, by id
+     */
+    private Map<Long, DataFile> findFiles(String[] fileIdParams) {
+        Map<Long, DataFile> files = new HashMap<>();
+        for (String fileIdParam : fileIdParams) {
+            try {
+                Long fileId = Long.parseLong(fileIdParam);
+                if (!files.containsKey(fileId)) {
+                    DataFile file = dataFileService.find(fileId);
+                    if (file != null) {
+                        files.put(fileId, file);
+                    }
+                }
+            } catch (NumberFormatException nfe) {
+                // (skipped in the download too)
+            }
+        }
+        return files;
+    }
+
+    /**
+     * The bulk version of {@link #isAccessAuthorized(User, DataFile)}: the
+     * permissions are looked up for all the files at once.
+     * @return the ids of the files {@code requestUser} may download
+     */
+    private Set<Long> findAccessAuthorized(User requestUser, Collection<DataFile> files) {
+        Set<Long> authorized = new HashSet<>();
+        List<DataFile> downloadChecked = new ArrayList<>();
+        List<DataFile> viewUnpublishedChecked = new ArrayList<>();
+        for (DataFile df : files) {
+            switch (accessCheckFor(df)) {
+                case GRANTED -> authorized.add(df.getId());
+                case DOWNLOAD -> downloadChecked.add(df);
+                case VIEW_UNPUBLISHED -> viewUnpublishedChecked.add(df);
+                case DENIED -> { }
+            }
+        }
+        if (downloadChecked.isEmpty() && viewUnpublishedChecked.isEmpty()) {
+            return authorized;
+        }
+
+        DataverseRequest dvr = findAccessRequest(requestUser);
+        if (dvr == null) {
+            return authorized;
+        }
+        // These lines handle all three authenticated session user, token user, and guest cases.
+        if (!viewUnpublishedChecked.isEmpty()) {
+            // If the file is not published, they can still download the file, if the user
+            // has the permission to view unpublished versions (it's not unthinkable, that
+            // a GuestUser could be given the ViewUnpublished permission!):
+            Set<Dataset> owners = viewUnpublishedChecked.stream().map(DataFile::getOwner).collect(Collectors.toSet());
+            Set<Dataset> viewable = new HashSet<>(permissionService.whichHavePermissionsFor(dvr, owners, EnumSet.of(Permission.ViewUnpublishedDataset)));
+            viewUnpublishedChecked.stream().filter(df -> viewable.contains(df.getOwner())).forEach(df -> authorized.add(df.getId()));
+        }
+        if (!downloadChecked.isEmpty()) {
+            permissionService.whichHavePermissionsFor(dvr, downloadChecked, EnumSet.of(Permission.DownloadFile))
+                    .forEach(df -> authorized.add(df.getId()));
+        }
+        if (logger.isLoggable(Level.FINE) && authorized.size() < files.size()) {
+            logger.log(Level.FINE, "User {0} has NO access rights on {1} of the requested datafiles.",
+                    new Object[]{dvr.getUser().getIdentifier(), files.size() - authorized.size()});
+        }
+        return authorized;
+    }
+
+    /**
+     * What it takes to download a file.
+     */
+    private enum AccessCheck {
+        /** Nobody may download it. */
+        DENIED,
+        /** Everybody may download it. */
+        GRANTED,
+        /** The permission to view the unpublished versions of its dataset. */
+        VIEW_UNPUBLISHED,
+        /** The permission to download it. */
+        DOWNLOAD
+    }
+
+    private AccessCheck accessCheckFor(DataFile df) {
     // First, check if the file belongs to a released Dataset version: 
         
         boolean published = false; 
@@ -1766,7 +1860,7 @@ public class Access extends AbstractApiBean {
         // access is also blocked for retention expired files
         boolean retentionExpired = FileUtil.isRetentionExpired(df);
         // No access ever if retention is expired
-        if(retentionExpired) return false;
+        if(retentionExpired) return AccessCheck.DENIED;
 
         /*
         SEK 7/26/2018 for 3661 relying on the version state of the dataset versions
@@ -1836,9 +1930,23 @@ public class Access extends AbstractApiBean {
             // If they are not published, they can still be downloaded, if the user
             // has the permission to view unpublished versions! (this case will 
             // be handled below)
-            return true;
+            return AccessCheck.GRANTED;
         }
-        
+
+        /*
+         * Since published and not restricted/embargoed is handled above, the main split
+         * now is whether it is published or not. If it's published, the only case left
+         * is with restricted/embargoed. With unpublished, both the restricted/embargoed
+         * and not restricted/embargoed both get handled the same way.
+         */
+        return published ? AccessCheck.DOWNLOAD : AccessCheck.VIEW_UNPUBLISHED;
+    }
+
+    /**
+     * @return the request whose permissions are checked, or null if there is
+     * no user
+     */
+    private DataverseRequest findAccessRequest(User requestUser) {
         //For permissions check decide if we have a session user, or an API user
         User sessionUser = null;
         
@@ -1879,50 +1987,15 @@ public class Access extends AbstractApiBean {
         //If we don't have a user, nothing more to do. (Note session could have returned GuestUser)
         if (sessionUser == null && apiUser == null) {
             logger.warning("Unable to find a user via session or with a token.");
-            return false;
+            return null;
         }
 
-        /*
-         * Since published and not restricted/embargoed is handled above, the main split
-         * now is whether it is published or not. If it's published, the only case left
-         * is with restricted/embargoed. With unpublished, both the restricted/embargoed
-         * and not restricted/embargoed both get handled the same way.
-         */
-
-        DataverseRequest dvr = null;
         if (apiUser != null) {
-            dvr = createDataverseRequest(apiUser);
+            return createDataverseRequest(apiUser);
         } else {
             // used in JSF context, user may be Guest
-            dvr = dvRequestService.getDataverseRequest();
-        }
-        if (!published) { // and restricted or embargoed (implied by earlier processing)
-            // If the file is not published, they can still download the file, if the user
-            // has the permission to view unpublished versions:
-
-            // This line handles all three authenticated session user, token user, and guest cases.
-            if (permissionService.requestOn(dvr, df.getOwner()).has(Permission.ViewUnpublishedDataset)) {
-                // it's not unthinkable, that a GuestUser could be given
-                // the ViewUnpublished permission!
-                logger.log(Level.FINE,
-                        "Session-based auth: user {0} has access rights on the non-restricted, unpublished datafile.",
-                        dvr.getUser().getIdentifier());
-                return true;
-            }
-        } else { // published and restricted and/or embargoed
-            // This line also handles all three authenticated session user, token user, and guest cases.
-            if (permissionService.requestOn(dvr, df).has(Permission.DownloadFile)) {
-                return true;
-            }
+            return dvRequestService.getDataverseRequest();
         }
-        if (sessionUser != null) {
-            logger.log(Level.FINE, "Session-based auth: user {0} has NO access rights on the requested datafile.", sessionUser.getIdentifier());
-        } 
-        
-        if (apiUser != null) {
-            logger.log(Level.FINE, "Token-based auth: user {0} has NO access rights on the requested datafile.", apiUser.getIdentifier());
-        } 
-        return false; 
     }   
     
 
@@ -1956,6 +2029,8 @@ public class Access extends AbstractApiBean {
         if (fileIdParams == null || fileIdParams.length == 0) {
             throw new BadRequestException();
         }
+        Map<Long, DataFile> files = findFiles(fileIdParams);
+        Set<Long> authorizedIds = findAccessAuthorized(user, files.values());
         
         for (int i = 0; i < fileIdParams.length; i++) {
             Long fileId = null;
@@ -1966,10 +2041,10 @@ public class Access extends AbstractApiBean {
                 fileId = null;
             }
             if (fileId != null) {
-                DataFile file = dataFileService.find(fileId);
+                DataFile file = files.get(fileId);
                 if (file != null) {
                     validFileCount++;
-                    if (isAccessAuthorized(user, file)) {
+                    if (authorizedIds.contains(file.getId())) {
                         logger.fine("adding datafile (id=" + file.getId() + ") to the download list of the ZippedDownloadInstance.");
                         if (donotwriteGBResponse != true && file.isReleased()) {
                             GuestbookResponse gbr = guestbookResponseService.initAPIGuestbookResponse(file.getOwner(), file, session, apiTokenUser);
@@ -19,6 +19,7 @@ import edu.harvard.iq.dataverse.api.auth.AuthRequired;
 import edu.harvard.iq.dataverse.settings.JvmSettings;
 import edu.harvard.iq.dataverse.util.StringUtil;
 import edu.harvard.iq.dataverse.validation.EMailValidator;
+import edu.harvard.iq.dataverse.CommandProfilerBean;
 import edu.harvard.iq.dataverse.EjbDataverseEngine;
 import edu.harvard.iq.dataverse.Template;
 import edu.harvard.iq.dataverse.TemplateServiceBean;
@@ -179,6 +180,8 @@ public class Admin extends AbstractApiBean {
     BannerMessageServiceBean bannerMessageService;
     @EJB
     TemplateServiceBean templateService;
+    @EJB
+    CommandProfilerBean commandProfiler;
 
     // Make the session available
     @Inject
@@ -2543,4 +2546,25 @@ public class Admin extends AbstractApiBean {
         }
     }
 
+    /**
+     * Lists the traces of the latest top-level commands that took longer than
+     * the slow-command threshold, the latest first.
+     */
+    @GET
+    @Path("/commands/slow")
+    public Response getSlowCommands() {
+        JsonArrayBuilder commands = Json.createArrayBuilder();
+        commandProfiler.getSlowCommands().forEach(trace -> commands.add(trace.toJson()));
+        return ok(Json.createObjectBuilder()
+                .add("thresholdMs", commandProfiler.getSlowThreshold())
+                .add("commands", commands));
+    }
+
+    @DELETE
+    @Path("/commands/slow")
+    public Response clearSlowCommands() {
+        commandProfiler.clearSlowCommands();
+        return ok("Slow-command log cleared.");
+    }
+
 }
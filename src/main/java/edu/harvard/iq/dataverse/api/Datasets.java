@@ -29,6 +29,7 @@ import edu.harvard.iq.dataverse.engine.command.DataverseRequest;
 import edu.harvard.iq.dataverse.engine.command.exception.CommandException;
 import edu.harvard.iq.dataverse.engine.command.exception.UnforcedCommandException;
 import edu.harvard.iq.dataverse.engine.command.impl.*;
+import edu.harvard.iq.dataverse.export.CachedExport;
 import edu.harvard.iq.dataverse.export.DDIExportServiceBean;
 import edu.harvard.iq.dataverse.export.ExportService;
 import edu.harvard.iq.dataverse.externaltools.ExternalTool;
@@ -237,17 +238,36 @@ public class Datasets extends AbstractApiBean {
             
             ExportService instance = ExportService.getInstance();
             
-            InputStream is = instance.getExport(dataset, exporter);
+            CachedExport cachedExport = instance.getExportAsCached(dataset, exporter);
            
             String mediaType = instance.getMediaType(exporter);
             //Export is only possible for released (non-draft) dataset versions so we can log without checking to see if this is a request for a draft 
             MakeDataCountLoggingServiceBean.MakeDataCountEntry entry = new MakeDataCountEntry(uriInfo, headers, dvRequestService, dataset);
             mdcLogService.logEntry(entry);
-            
-            return Response.ok()
-                    .entity(is)
-                    .type(mediaType).
-                    build();
+
+            // The client that already has this export gets a 304; the one
+            // that accepts the content encoding the export is cached with
+            // gets it as cached; the others get it decompressed.
+            String eTag = cachedExport.getETag();
+            if (cachedExport.matchesETag(headers.getHeaderString(HttpHeaders.IF_NONE_MATCH))) {
+                cachedExport.close();
+                return Response.notModified()
+                        .header(HttpHeaders.ETAG, eTag)
+                        .build();
+            }
+            Response.ResponseBuilder responseBuilder = Response.ok()
+                    .type(mediaType)
+                    .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            if (eTag != null) {
+                responseBuilder.header(HttpHeaders.ETAG, eTag);
+            }
+            if (cachedExport.isAcceptedAsStored(headers.getHeaderString(HttpHeaders.ACCEPT_ENCODING))) {
+                responseBuilder.entity(cachedExport.getStoredInputStream())
+                        .header(HttpHeaders.CONTENT_ENCODING, cachedExport.getContentEncoding());
+            } else {
+                responseBuilder.entity(cachedExport.getInputStream());
+            }
+            return responseBuilder.build();
         } catch (Exception wr) {
             logger.warning(wr.getMessage());
             return error(Response.Status.FORBIDDEN, "Export Failed");
@@ -1596,6 +1616,7 @@ public class Datasets extends AbstractApiBean {
                                     .setInfo("Embargo id: " + embargo.getId() + " added for released file(s), id(s) "
                                             + releasedFiles + ".")
                                     .setUserIdentifier(authenticatedUser.getIdentifier()));
+                    embargoService.updateNextEmbargoEnd(dataset.getId());
                 }
             }
             return ok(Json.createObjectBuilder().add("message", "Files were embargoed"));
@@ -300,6 +300,9 @@ public class HarvestingClients extends AbstractApiBean {
             if (newHarvestingClient.getCustomHttpHeaders() != null) {
                 harvestingClient.setCustomHttpHeaders(newHarvestingClient.getCustomHttpHeaders());
             }
+            if (json.containsKey("useListRecords")) {
+                harvestingClient.setUseListRecords(newHarvestingClient.getUseListRecords());
+            }
             // TODO: Make schedule configurable via this API too. 
             
             harvestingClient = execCommand( new UpdateHarvestingClientCommand(req, harvestingClient));
@@ -7,6 +7,10 @@ package edu.harvard.iq.dataverse.api;
 
 import edu.harvard.iq.dataverse.Dataset;
 import edu.harvard.iq.dataverse.DatasetServiceBean;
+import edu.harvard.iq.dataverse.export.ReExportJob;
+import edu.harvard.iq.dataverse.export.ReExportJobServiceBean;
+import edu.harvard.iq.dataverse.export.ReExportServiceBean;
+import edu.harvard.iq.dataverse.util.json.JsonPrinter;
 
 import java.util.logging.Logger;
 import jakarta.ejb.EJB;
@@ -36,6 +40,12 @@ public class Metadata extends AbstractApiBean {
     @EJB
     DatasetServiceBean datasetService;
 
+    @EJB
+    ReExportJobServiceBean reExportJobService;
+
+    @EJB
+    ReExportServiceBean reExportService;
+
     // The following 2 commands start export all jobs in the background, 
     // asynchronously. 
     // (These API calls should probably not be here;
@@ -82,6 +92,95 @@ public class Metadata extends AbstractApiBean {
         return ok("cleared: " + numItemsCleared);
     }
 
+    // A re-export job goes through the published, local datasets in pages,
+    // re-exporting them on a pool of workers, and records its progress as
+    // it goes; so it can be followed, stopped, and resumed from where it
+    // stopped. With force=false, only the datasets that haven't been
+    // exported since their last publication are re-exported.
+    @POST
+    @Path("reExportJob")
+    @Produces("application/json")
+    public Response startReExportJob(@QueryParam("force") Boolean force) {
+        if (reExportService.isAnyRunning()) {
+            return conflict("A re-export job is already running");
+        }
+        ReExportJob job = reExportJobService.createJob(force == null || force);
+        reExportService.runJob(job.getId());
+        return accepted(JsonPrinter.json(job));
+    }
+
+    @GET
+    @Path("reExportJob")
+    @Produces("application/json")
+    public Response getLatestReExportJob() {
+        ReExportJob job = reExportJobService.findLatest();
+        if (job == null) {
+            return notFound("No re-export job found");
+        }
+        return ok(JsonPrinter.json(job));
+    }
+
+    @GET
+    @Path("reExportJobs")
+    @Produces("application/json")
+    public Response listReExportJobs() {
+        JsonArrayBuilder jobs = Json.createArrayBuilder();
+        for (ReExportJob job : reExportJobService.findAll()) {
+            jobs.add(JsonPrinter.json(job));
+        }
+        return ok(jobs);
+    }
+
+    @GET
+    @Path("reExportJob/{id}")
+    @Produces("application/json")
+    public Response getReExportJob(@PathParam("id") Long id) {
+        ReExportJob job = reExportJobService.find(id);
+        if (job == null) {
+            return notFound("Re-export job " + id + " not found");
+        }
+        return ok(JsonPrinter.json(job));
+    }
+
+    @POST
+    @Path("reExportJob/{id}/stop")
+    @Produces("application/json")
+    public Response stopReExportJob(@PathParam("id") Long id) {
+        ReExportJob job = reExportJobService.find(id);
+        if (job == null) {
+            return notFound("Re-export job " + id + " not found");
+        }
+        if (!job.isInProgress()) {
+            return badRequest("Re-export job " + id + " is not in progress");
+        }
+        if (reExportService.isRunning(id)) {
+            reExportJobService.requestStop(id);
+        } else {
+            // (left in progress by a restart)
+            reExportJobService.setFinished(id, ReExportJob.Status.STOPPED);
+        }
+        return ok("Re-export job " + id + " stopping");
+    }
+
+    @POST
+    @Path("reExportJob/{id}/resume")
+    @Produces("application/json")
+    public Response resumeReExportJob(@PathParam("id") Long id) {
+        ReExportJob job = reExportJobService.find(id);
+        if (job == null) {
+            return notFound("Re-export job " + id + " not found");
+        }
+        if (job.isCompleted()) {
+            return badRequest("Re-export job " + id + " is completed");
+        }
+        if (reExportService.isAnyRunning()) {
+            return conflict("A re-export job is already running");
+        }
+        reExportJobService.setInProgress(id);
+        reExportService.runJob(id);
+        return accepted(JsonPrinter.json(reExportJobService.find(id)));
+    }
+
     /**
      * initial attempt at triggering indexing/creation/population of a OAI set without going throught
      * the UI.
@@ -45,6 +45,7 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Date;
@@ -54,7 +55,9 @@ import java.util.logging.Formatter;
 import java.util.logging.Level;
 import java.util.logging.LogRecord;
 import java.util.logging.Logger;
+import jakarta.annotation.Resource;
 import jakarta.ejb.EJB;
+import jakarta.ejb.EJBContext;
 import jakarta.ejb.EJBException;
 import jakarta.ejb.Stateless;
 import jakarta.ejb.TransactionAttribute;
@@ -112,6 +115,36 @@ public class ImportServiceBean {
     @EJB
     DatasetTypeServiceBean datasetTypeService;
 
+    @Resource
+    EJBContext ejbCtxt;
+
+    /**
+     * A harvested record to import with doImportHarvestedDatasets().
+     */
+    public static class HarvestedRecord {
+        private final String harvestIdentifier;
+        private final File metadataFile;
+        private final Date oaiDateStamp;
+
+        public HarvestedRecord(String harvestIdentifier, File metadataFile, Date oaiDateStamp) {
+            this.harvestIdentifier = harvestIdentifier;
+            this.metadataFile = metadataFile;
+            this.oaiDateStamp = oaiDateStamp;
+        }
+
+        public String getHarvestIdentifier() {
+            return harvestIdentifier;
+        }
+
+        public File getMetadataFile() {
+            return metadataFile;
+        }
+
+        public Date getOaiDateStamp() {
+            return oaiDateStamp;
+        }
+    }
+
     /**
      * This is just a convenience method, for testing migration.  It creates 
      * a dummy dataverse with the directory name as dataverse name & alias.
@@ -205,11 +238,64 @@ public class ImportServiceBean {
         }
     }
 
+    /**
+     * Imports a harvested record, in its own transaction.
+     * 
+     * @param deferIndexing if true, the dataset is not indexed; it is then
+     * up to the caller to index it
+     */
     @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
-    public Dataset doImportHarvestedDataset(DataverseRequest dataverseRequest, HarvestingClient harvestingClient, String harvestIdentifier, String metadataFormat, File metadataFile, Date oaiDateStamp, PrintWriter cleanupLog) throws ImportException, IOException {
+    public Dataset doImportHarvestedDataset(DataverseRequest dataverseRequest, HarvestingClient harvestingClient, String harvestIdentifier, String metadataFormat, File metadataFile, Date oaiDateStamp, PrintWriter cleanupLog, boolean deferIndexing) throws ImportException, IOException {
         if (harvestingClient == null || harvestingClient.getDataverse() == null) {
             throw new ImportException("importHarvestedDataset called wiht a null harvestingClient, or an invalid harvestingClient.");
         }
+        return importHarvestedDataset(dataverseRequest, harvestingClient, harvestIdentifier, metadataFormat, metadataFile, oaiDateStamp, cleanupLog, createHarvestJsonParser(harvestingClient), deferIndexing);
+    }
+    
+    /**
+     * Imports a group of harvested records in a single transaction. The
+     * lookups of the metadata field types and of the controlled vocabulary
+     * values are shared by the records of the group; and the datasets are
+     * not indexed - that is up to the caller. 
+     * 
+     * The group is imported as a whole, or not at all: if any of the records
+     * fails, the transaction is rolled back, and an ImportException is 
+     * thrown; the caller can then import the records one at a time, to tell
+     * the failed ones apart. 
+     * 
+     * @return the imported datasets, in the order of the records
+     */
+    @TransactionAttribute(REQUIRES_NEW)
+    public List<Dataset> doImportHarvestedDatasets(DataverseRequest dataverseRequest, HarvestingClient harvestingClient, String metadataFormat, List<HarvestedRecord> records, PrintWriter cleanupLog) throws ImportException, IOException {
+        if (harvestingClient == null || harvestingClient.getDataverse() == null) {
+            throw new ImportException("importHarvestedDatasets called with a null harvestingClient, or an invalid harvestingClient.");
+        }
+        JsonParser parser = createHarvestJsonParser(harvestingClient);
+        parser.setCachingLookups(true);
+        
+        // (the notes on the records go to the cleanup log only if the group
+        // is imported; otherwise the records are imported again, one by one)
+        StringWriter groupLog = new StringWriter();
+        List<Dataset> importedDatasets = new ArrayList<>();
+        try (PrintWriter groupCleanupLog = new PrintWriter(groupLog)) {
+            for (HarvestedRecord record : records) {
+                importedDatasets.add(importHarvestedDataset(dataverseRequest, harvestingClient, record.getHarvestIdentifier(), metadataFormat, record.getMetadataFile(), record.getOaiDateStamp(), groupCleanupLog, parser, true));
+            }
+        } catch (ImportException | IOException ex) {
+            ejbCtxt.setRollbackOnly();
+            throw ex;
+        }
+        cleanupLog.print(groupLog.toString());
+        return importedDatasets;
+    }
+    
+    private JsonParser createHarvestJsonParser(HarvestingClient harvestingClient) {
+        JsonParser parser = new JsonParser(datasetfieldService, metadataBlockService, settingsService, licenseService, datasetTypeService, harvestingClient);
+        parser.setLenient(true);
+        return parser;
+    }
+    
+    private Dataset importHarvestedDataset(DataverseRequest dataverseRequest, HarvestingClient harvestingClient, String harvestIdentifier, String metadataFormat, File metadataFile, Date oaiDateStamp, PrintWriter cleanupLog, JsonParser parser, boolean deferIndexing) throws ImportException, IOException {
         Dataverse owner = harvestingClient.getDataverse();
         Dataset importedDataset = null;
 
@@ -270,8 +356,6 @@ public class ImportServiceBean {
         JsonObject obj = JsonUtil.getJsonObject(json);
         //and call parse Json to read it into a dataset   
         try {
-            JsonParser parser = new JsonParser(datasetfieldService, metadataBlockService, settingsService, licenseService, datasetTypeService, harvestingClient);
-            parser.setLenient(true);
             Dataset ds = parser.parseDataset(obj);
 
             // For ImportType.NEW, if the metadata contains a global identifier, and it's not a protocol
@@ -377,7 +461,7 @@ public class ImportServiceBean {
                 engineSvc.submit(new DestroyDatasetCommand(merged, dataverseRequest));
             }
             
-            importedDataset = engineSvc.submit(new CreateHarvestedDatasetCommand(ds, dataverseRequest));
+            importedDataset = engineSvc.submit(new CreateHarvestedDatasetCommand(ds, dataverseRequest, deferIndexing));
 
         } catch (JsonParseException | ImportException | CommandException ex) {
             logger.fine("Failed to import harvested dataset: " + ex.getClass() + ": " + ex.getMessage());
@@ -520,6 +520,7 @@ public class AuthenticationServiceBean {
             for(ExplicitGroup explicitGroup: explicitGroupService.findGroups(au)){
                 explicitGroup.removeByRoleAssgineeIdentifier(au.getIdentifier());
             }            
+            explicitGroupService.membershipsChanged();
         }
         
     }
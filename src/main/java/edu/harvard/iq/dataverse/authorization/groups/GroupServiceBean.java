@@ -16,6 +16,7 @@ import edu.harvard.iq.dataverse.authorization.groups.impl.maildomain.MailDomainG
 import edu.harvard.iq.dataverse.authorization.groups.impl.shib.ShibGroup;
 import edu.harvard.iq.dataverse.authorization.groups.impl.shib.ShibGroupProvider;
 import edu.harvard.iq.dataverse.authorization.groups.impl.shib.ShibGroupServiceBean;
+import edu.harvard.iq.dataverse.engine.CommandSequenceMemo;
 import edu.harvard.iq.dataverse.engine.command.DataverseRequest;
 import java.util.Collection;
 import java.util.HashMap;
@@ -100,6 +101,15 @@ public class GroupServiceBean {
      * @return The groups {@code req} is part of under {@code dvo}.
      */
     public Set<Group> groupsFor( DataverseRequest req, DvObject dvo ) {
+        // (found once per command sequence)
+        CommandSequenceMemo memo = CommandSequenceMemo.current();
+        if ( memo != null ) {
+            return memo.groupsFor(req, dvo, () -> findGroupsFor(req, dvo));
+        }
+        return findGroupsFor(req, dvo);
+    }
+    
+    private Set<Group> findGroupsFor( DataverseRequest req, DvObject dvo ) {
         Set<Group> ret = groupProviders.values().stream()
                               .flatMap(gp->(Stream<Group>)gp.groupsFor(req, dvo).stream())
                               .collect(toSet());
@@ -66,7 +66,17 @@ import org.hibernate.validator.constraints.NotBlank;
                      + "WHERE cra=:roleAssigneeIdentifier"),
     @NamedQuery( name="ExplicitGroup.findByContainedExplicitGroupId",
                  query="SELECT eg FROM ExplicitGroup eg join eg.containedExplicitGroups ceg "
-                      +"WHERE ceg.id=:containedExplicitGroupId")
+                      +"WHERE ceg.id=:containedExplicitGroupId"),
+    @NamedQuery( name="ExplicitGroup.findByIds",
+                 query="SELECT eg FROM ExplicitGroup eg WHERE eg.id IN :ids"),
+    @NamedQuery( name="ExplicitGroup.findAllIdsAndOwnerIds",
+                 query="SELECT eg.id, o.id FROM ExplicitGroup eg LEFT JOIN eg.owner o"),
+    @NamedQuery( name="ExplicitGroup.findAllContainedAuthenticatedUserIds",
+                 query="SELECT eg.id, au.id FROM ExplicitGroup eg JOIN eg.containedAuthenticatedUsers au"),
+    @NamedQuery( name="ExplicitGroup.findAllContainedExplicitGroupIds",
+                 query="SELECT eg.id, ceg.id FROM ExplicitGroup eg JOIN eg.containedExplicitGroups ceg"),
+    @NamedQuery( name="ExplicitGroup.findAllContainedRoleAssignees",
+                 query="SELECT eg.id, cra FROM ExplicitGroup eg JOIN eg.containedRoleAssignees cra")
 })
 @Entity
 @Table(indexes = {@Index(columnList="owner_id"),
@@ -0,0 +1,156 @@
+package edu.harvard.iq.dataverse.authorization.groups.impl.explicit;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An immutable index of the memberships of the explicit groups, with their
+ * transitive closure precomputed: for each authenticated user, each other
+ * role assignee and each explicit group, the ids of all the explicit groups
+ * it is a member of, directly or through the groups it is in. Along with
+ * the owner of each group, so that the groups can be filtered by the
+ * context they are defined in.
+ */
+public class ExplicitGroupIndex {
+
+    private static final long[] NONE = new long[0];
+
+    /**
+     * Collects the memberships, then builds the index.
+     */
+    public static class Builder {
+        private final Map<Long, Long> owners = new HashMap<>();
+        // (group id -> the ids of the groups that contain it directly)
+        private final Map<Long, Set<Long>> parents = new HashMap<>();
+        private final Map<Long, Set<Long>> userGroups = new HashMap<>();
+        private final Map<String, Set<Long>> roleAssigneeGroups = new HashMap<>();
+
+        public Builder addGroup(long groupId, Long ownerId) {
+            owners.put(groupId, ownerId);
+            return this;
+        }
+
+        public Builder addContainedGroup(long groupId, long containedGroupId) {
+            parents.computeIfAbsent(containedGroupId, id -> new HashSet<>()).add(groupId);
+            return this;
+        }
+
+        public Builder addContainedUser(long groupId, long authenticatedUserId) {
+            userGroups.computeIfAbsent(authenticatedUserId, id -> new HashSet<>()).add(groupId);
+            return this;
+        }
+
+        public Builder addContainedRoleAssignee(long groupId, String roleAssigneeIdentifier) {
+            roleAssigneeGroups.computeIfAbsent(roleAssigneeIdentifier, id -> new HashSet<>()).add(groupId);
+            return this;
+        }
+
+        public ExplicitGroupIndex build() {
+            // (the closure of each group: itself, and the groups that contain
+            // it, recursively)
+            Map<Long, Set<Long>> closures = new HashMap<>();
+            for (Long groupId : owners.keySet()) {
+                Set<Long> closure = new LinkedHashSet<>();
+                Deque<Long> toVisit = new ArrayDeque<>();
+                toVisit.add(groupId);
+                while (!toVisit.isEmpty()) {
+                    Long current = toVisit.poll();
+                    // (a group that isn't there anymore isn't part of any closure)
+                    if (owners.containsKey(current) && closure.add(current)) {
+                        toVisit.addAll(parents.getOrDefault(current, Collections.emptySet()));
+                    }
+                }
+                closures.put(groupId, closure);
+            }
+
+            Map<Long, long[]> groupGroups = new HashMap<>();
+            parents.forEach((groupId, groupParents) -> groupGroups.put(groupId, closureOf(groupParents, closures)));
+            Map<Long, long[]> users = new HashMap<>();
+            userGroups.forEach((userId, groups) -> users.put(userId, closureOf(groups, closures)));
+            Map<String, long[]> roleAssignees = new HashMap<>();
+            roleAssigneeGroups.forEach((identifier, groups) -> roleAssignees.put(identifier, closureOf(groups, closures)));
+            return new ExplicitGroupIndex(owners, groupGroups, users, roleAssignees);
+        }
+
+        private static long[] closureOf(Collection<Long> groupIds, Map<Long, Set<Long>> closures) {
+            Set<Long> closure = new LinkedHashSet<>();
+            for (Long groupId : groupIds) {
+                closure.addAll(closures.getOrDefault(groupId, Collections.emptySet()));
+            }
+            return closure.stream().mapToLong(Long::longValue).toArray();
+        }
+    }
+
+    private final Map<Long, Long> owners;
+    private final Map<Long, long[]> groupGroups;
+    private final Map<Long, long[]> userGroups;
+    private final Map<String, long[]> roleAssigneeGroups;
+
+    private ExplicitGroupIndex(Map<Long, Long> owners, Map<Long, long[]> groupGroups,
+            Map<Long, long[]> userGroups, Map<String, long[]> roleAssigneeGroups) {
+        this.owners = owners;
+        this.groupGroups = groupGroups;
+        this.userGroups = userGroups;
+        this.roleAssigneeGroups = roleAssigneeGroups;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return the ids of all the groups the authenticated user is a member of
+     */
+    public long[] findGroupIdsOfUser(Long authenticatedUserId) {
+        return userGroups.getOrDefault(authenticatedUserId, NONE);
+    }
+
+    /**
+     * @return the ids of all the groups the group is a member of (not
+     * including itself)
+     */
+    public long[] findGroupIdsOfGroup(Long groupId) {
+        return groupGroups.getOrDefault(groupId, NONE);
+    }
+
+    /**
+     * @return the ids of all the groups the role assignee (neither an
+     * authenticated user nor an explicit group) is a member of
+     */
+    public long[] findGroupIdsOf(String roleAssigneeIdentifier) {
+        return roleAssigneeGroups.getOrDefault(roleAssigneeIdentifier, NONE);
+    }
+
+    /**
+     * @param groupIds ids of groups
+     * @param ownerIds ids of {@code DvObject}s
+     * @return the ids of the groups that are defined in one of the objects
+     */
+    public Set<Long> filterByOwner(long[] groupIds, Set<Long> ownerIds) {
+        if (groupIds.length == 0) {
+            return Collections.emptySet();
+        }
+        Set<Long> filtered = new HashSet<>();
+        for (long groupId : groupIds) {
+            Long ownerId = owners.get(groupId);
+            if (ownerId != null && ownerIds.contains(ownerId)) {
+                filtered.add(groupId);
+            }
+        }
+        return filtered;
+    }
+
+    /**
+     * @return the number of groups indexed
+     */
+    public int size() {
+        return owners.size();
+    }
+}
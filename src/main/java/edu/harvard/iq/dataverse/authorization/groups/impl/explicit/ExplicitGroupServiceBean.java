@@ -4,6 +4,7 @@ import edu.harvard.iq.dataverse.DvObject;
 import edu.harvard.iq.dataverse.RoleAssigneeServiceBean;
 import edu.harvard.iq.dataverse.authorization.RoleAssignee;
 import edu.harvard.iq.dataverse.authorization.users.AuthenticatedUser;
+import edu.harvard.iq.dataverse.engine.CommandSequenceMemo;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedList;
@@ -35,6 +36,9 @@ public class ExplicitGroupServiceBean {
     @EJB
     private RoleAssigneeServiceBean roleAssigneeSvc;
     
+    @EJB
+    ExplicitGroupIndexBean explicitGroupIndex;
+    
     @PersistenceContext(unitName = "VDCNet-ejbPU")
     protected EntityManager em;
 	
@@ -75,6 +79,7 @@ public class ExplicitGroupServiceBean {
     }
     
     public ExplicitGroup persist( ExplicitGroup g ) {
+        membershipsChanged();
         if ( g.getId() == null ) {
             em.persist( g );
             return g;
@@ -126,6 +131,7 @@ public class ExplicitGroupServiceBean {
 
     public void removeGroup(ExplicitGroup explicitGroup) {
         em.remove( explicitGroup );
+        membershipsChanged();
     }
     
     /**
@@ -177,11 +183,22 @@ public class ExplicitGroupServiceBean {
 
     
     /**
-     * Finds all the explicit groups {@code ra} is a member of.
+     * Finds all the explicit groups {@code ra} is a member of. The memberships
+     * are looked up in the in-memory index of {@link ExplicitGroupIndexBean}
+     * (the database is then only queried for the groups found, if any).
      * @param ra the role assignee whose membership list we seek
      * @return set of the explicit groups that contain {@code ra}.
      */
     public Set<ExplicitGroup> findGroups( RoleAssignee ra ) {
+        ExplicitGroupIndex index = getIndex();
+        if ( index != null ) {
+            long[] groupIds = findGroupIds(index, ra);
+            Set<Long> ids = new HashSet<>(groupIds.length);
+            for ( long groupId : groupIds ) {
+                ids.add(groupId);
+            }
+            return findByIds(ids);
+        }
         return findClosure(findDirectlyContainingGroups(ra));
     }
     
@@ -193,6 +210,15 @@ public class ExplicitGroupServiceBean {
      * @return All the groups in {@code o}'s context that {@code ra} is a member of.
      */
     public Set<ExplicitGroup> findGroups( RoleAssignee ra, DvObject o ) {
+        ExplicitGroupIndex index = getIndex();
+        if ( index != null ) {
+            // (the groups defined at o or one of its ancestors)
+            Set<Long> ownerIds = new HashSet<>();
+            for ( DvObject cur = o; cur != null; cur = cur.getOwner() ) {
+                ownerIds.add(cur.getId());
+            }
+            return findByIds(index.filterByOwner(findGroupIds(index, ra), ownerIds));
+        }
         return findGroups(ra).stream()
                 .filter( g -> g.owner.isAncestorOf(o) )
                 .collect( Collectors.toSet() );
@@ -265,6 +291,58 @@ public class ExplicitGroupServiceBean {
             .getResultList());
     }
     
+    private ExplicitGroupIndex getIndex() {
+        return (explicitGroupIndex != null) ? explicitGroupIndex.getIndex(this::buildIndex) : null;
+    }
+    
+    private ExplicitGroupIndex buildIndex() {
+        ExplicitGroupIndex.Builder builder = ExplicitGroupIndex.builder();
+        for ( Object[] row : em.createNamedQuery("ExplicitGroup.findAllIdsAndOwnerIds", Object[].class).getResultList() ) {
+            builder.addGroup((Long) row[0], (Long) row[1]);
+        }
+        for ( Object[] row : em.createNamedQuery("ExplicitGroup.findAllContainedAuthenticatedUserIds", Object[].class).getResultList() ) {
+            builder.addContainedUser((Long) row[0], (Long) row[1]);
+        }
+        for ( Object[] row : em.createNamedQuery("ExplicitGroup.findAllContainedExplicitGroupIds", Object[].class).getResultList() ) {
+            builder.addContainedGroup((Long) row[0], (Long) row[1]);
+        }
+        for ( Object[] row : em.createNamedQuery("ExplicitGroup.findAllContainedRoleAssignees", Object[].class).getResultList() ) {
+            builder.addContainedRoleAssignee((Long) row[0], (String) row[1]);
+        }
+        return builder.build();
+    }
+    
+    private static long[] findGroupIds( ExplicitGroupIndex index, RoleAssignee ra ) {
+        if ( ra instanceof AuthenticatedUser ) {
+            return index.findGroupIdsOfUser(((AuthenticatedUser) ra).getId());
+        } else if ( ra instanceof ExplicitGroup ) {
+            return index.findGroupIdsOfGroup(((ExplicitGroup) ra).getId());
+        } else {
+            return index.findGroupIdsOf(ra.getIdentifier());
+        }
+    }
+    
+    private Set<ExplicitGroup> findByIds( Set<Long> ids ) {
+        if ( ids.isEmpty() ) {
+            return Collections.emptySet();
+        }
+        return provider.updateProvider(new HashSet<>(
+                em.createNamedQuery("ExplicitGroup.findByIds", ExplicitGroup.class)
+                  .setParameter("ids", ids)
+                  .getResultList()));
+    }
+    
+    /**
+     * To be called when groups are stored or deleted, or when their members
+     * change outside of this bean: drops the index of the memberships.
+     */
+    public void membershipsChanged() {
+        if ( explicitGroupIndex != null ) {
+            explicitGroupIndex.membershipsChanged();
+        }
+        CommandSequenceMemo.invalidate();
+    }
+    
     /**
      * 
      * Fully strips the assignee of membership in all the explicit groups.
@@ -277,6 +355,7 @@ public class ExplicitGroupServiceBean {
         } else if (assignee instanceof ExplicitGroup) {
             em.createNativeQuery("DELETE FROM explicitgroup_explicitgroup WHERE containedexplicitgroups_id=" + ((ExplicitGroup) assignee).getId()).executeUpdate();
         }
+        membershipsChanged();
     }
     
     
@@ -0,0 +1,231 @@
+package edu.harvard.iq.dataverse.authorization.groups.impl.ipaddress;
+
+import edu.harvard.iq.dataverse.authorization.groups.impl.ipaddress.ip.IpRangeIndex;
+import edu.harvard.iq.dataverse.settings.JvmSettings;
+import java.io.Serializable;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import jakarta.ejb.ConcurrencyManagement;
+import jakarta.ejb.ConcurrencyManagementType;
+import jakarta.ejb.Singleton;
+import jakarta.ejb.Startup;
+import jakarta.ejb.TransactionAttribute;
+import jakarta.ejb.TransactionAttributeType;
+import jakarta.inject.Inject;
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.configuration.FactoryBuilder;
+import javax.cache.configuration.MutableCacheEntryListenerConfiguration;
+import javax.cache.configuration.MutableConfiguration;
+import javax.cache.event.CacheEntryCreatedListener;
+import javax.cache.event.CacheEntryEvent;
+import javax.cache.event.CacheEntryListenerException;
+import javax.cache.event.CacheEntryUpdatedListener;
+
+/**
+ * Keeps an index of the ranges of all the IP groups in memory, for
+ * {@link IpGroupsServiceBean}, so that the IP groups of a request are found
+ * without querying the database. The index is built again, as a whole, when
+ * an IP group is stored or deleted on any server of a cluster (the change is
+ * announced through a cache of the Hazelcast/JCache infrastructure), or when
+ * it gets older than its maximum age.
+ */
+@Singleton
+@Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+@TransactionAttribute(TransactionAttributeType.SUPPORTS)
+public class IpGroupIndexBean {
+
+    private static final Logger logger = Logger.getLogger(IpGroupIndexBean.class.getCanonicalName());
+
+    public static final String IP_GROUPS_CHANGES_CACHE = "ipGroupsChangesCache";
+    private static final String CHANGE_KEY = "change";
+    // (the key of the mark of the transactions that changed the IP groups)
+    private static final String CHANGED_IN_TRANSACTION = IpGroupIndexBean.class.getName() + ".changed";
+
+    // (static, for the listeners of the cluster cache, that are not beans)
+    private static final AtomicLong generation = new AtomicLong();
+    private static volatile Index index;
+
+    private static class Index {
+        final IpRangeIndex<Long> ranges;
+        final long generation;
+        final long loadTime;
+
+        Index(IpRangeIndex<Long> ranges, long generation, long loadTime) {
+            this.ranges = ranges;
+            this.generation = generation;
+            this.loadTime = loadTime;
+        }
+    }
+
+    @Inject
+    CacheManager manager;
+
+    @Resource
+    TransactionSynchronizationRegistry transactionSynchronizationRegistry;
+
+    private long maxAge;
+    private Cache<String, String> changesCache;
+    private MutableCacheEntryListenerConfiguration<String, String> listenerConfiguration;
+
+    @PostConstruct
+    public void init() {
+        maxAge = TimeUnit.SECONDS.toMillis(JvmSettings.IP_GROUPS_INDEX_MAX_AGE.lookupOptional(Long.class).orElse(300L));
+        if (maxAge <= 0) {
+            logger.info("The ranges of the IP groups are not indexed");
+            return;
+        }
+        try {
+            changesCache = manager.getCache(IP_GROUPS_CHANGES_CACHE);
+            if (changesCache == null) {
+                changesCache = manager.createCache(IP_GROUPS_CHANGES_CACHE,
+                        new MutableConfiguration<String, String>().setTypes(String.class, String.class));
+            }
+            listenerConfiguration = new MutableCacheEntryListenerConfiguration<>(
+                    FactoryBuilder.factoryOf(ChangeListener.class), null, false, false);
+            changesCache.registerCacheEntryListener(listenerConfiguration);
+        } catch (RuntimeException ex) {
+            logger.log(Level.WARNING, "No cache for the changes of the IP groups; the indexes of the other servers will be built again after "
+                    + maxAge + " ms at most", ex);
+            changesCache = null;
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (changesCache != null && listenerConfiguration != null) {
+            try {
+                changesCache.deregisterCacheEntryListener(listenerConfiguration);
+            } catch (RuntimeException ex) {
+                logger.log(Level.FINE, "Failed to deregister the listener of the changes of the IP groups", ex);
+            }
+        }
+    }
+
+    /**
+     * @param loader builds the index of the ranges of all the IP groups (the
+     * values of the ranges being the ids of their groups), if it needs to be
+     * @return the index; or null if the ranges are not to be indexed, or if
+     * the IP groups were changed in the current transaction (the groups are
+     * then looked up in the database, as this transaction sees them, and the
+     * index isn't built from its uncommitted ranges)
+     */
+    public IpRangeIndex<Long> getIndex(Supplier<IpRangeIndex<Long>> loader) {
+        if (maxAge <= 0 || isChangedInTransaction()) {
+            return null;
+        }
+        Index current = index;
+        long now = System.currentTimeMillis();
+        if (current != null && current.generation == generation.get() && now - current.loadTime < maxAge) {
+            return current.ranges;
+        }
+        long loadGeneration = generation.get();
+        Index loaded = new Index(loader.get(), loadGeneration, now);
+        synchronized (IpGroupIndexBean.class) {
+            // (not kept if the groups changed while it was being built)
+            if (generation.get() == loadGeneration) {
+                index = loaded;
+            }
+        }
+        logger.fine("Indexed the ranges of the IP groups: " + loaded.ranges.size() + " segments");
+        return loaded.ranges;
+    }
+
+    /**
+     * To be called when an IP group is stored or deleted: drops the index,
+     * now and once the transaction completes - so that an index built in the
+     * meantime, by another transaction, isn't kept - and announces the
+     * change to the other servers once it is committed. Until then, the
+     * transaction making the change does not use the index (see
+     * {@link #getIndex(Supplier)}).
+     */
+    public void groupsChanged() {
+        invalidate();
+        try {
+            if (transactionSynchronizationRegistry != null && transactionSynchronizationRegistry.getTransactionStatus() == Status.STATUS_ACTIVE) {
+                if (transactionSynchronizationRegistry.getResource(CHANGED_IN_TRANSACTION) != null) {
+                    // (the change is announced once the transaction completes already)
+                    return;
+                }
+                transactionSynchronizationRegistry.putResource(CHANGED_IN_TRANSACTION, Boolean.TRUE);
+                transactionSynchronizationRegistry.registerInterposedSynchronization(new Synchronization() {
+                    @Override
+                    public void beforeCompletion() {
+                    }
+
+                    @Override
+                    public void afterCompletion(int status) {
+                        invalidate();
+                        if (status == Status.STATUS_COMMITTED) {
+                            announceChange();
+                        }
+                    }
+                });
+                return;
+            }
+        } catch (IllegalStateException ise) {
+            logger.log(Level.FINE, "Not in a transaction", ise);
+        }
+        announceChange();
+    }
+
+    private boolean isChangedInTransaction() {
+        try {
+            return transactionSynchronizationRegistry != null
+                    && transactionSynchronizationRegistry.getTransactionStatus() == Status.STATUS_ACTIVE
+                    && transactionSynchronizationRegistry.getResource(CHANGED_IN_TRANSACTION) != null;
+        } catch (IllegalStateException ise) {
+            return false;
+        }
+    }
+
+    private void announceChange() {
+        if (changesCache == null) {
+            return;
+        }
+        try {
+            changesCache.put(CHANGE_KEY, UUID.randomUUID().toString());
+        } catch (RuntimeException ex) {
+            logger.log(Level.WARNING, "Failed to announce a change of the IP groups", ex);
+        }
+    }
+
+    private static void invalidate() {
+        synchronized (IpGroupIndexBean.class) {
+            generation.incrementAndGet();
+            index = null;
+        }
+    }
+
+    /**
+     * Drops the index of this server when an IP group is changed on any
+     * server (including this one).
+     */
+    public static class ChangeListener implements CacheEntryCreatedListener<String, String>,
+            CacheEntryUpdatedListener<String, String>, Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public void onCreated(Iterable<CacheEntryEvent<? extends String, ? extends String>> events) throws CacheEntryListenerException {
+            invalidate();
+        }
+
+        @Override
+        public void onUpdated(Iterable<CacheEntryEvent<? extends String, ? extends String>> events) throws CacheEntryListenerException {
+            invalidate();
+        }
+    }
+}
@@ -6,6 +6,9 @@ import edu.harvard.iq.dataverse.actionlogging.ActionLogServiceBean;
 import edu.harvard.iq.dataverse.authorization.groups.impl.ipaddress.ip.IPv4Address;
 import edu.harvard.iq.dataverse.authorization.groups.impl.ipaddress.ip.IPv6Address;
 import edu.harvard.iq.dataverse.authorization.groups.impl.ipaddress.ip.IpAddress;
+import edu.harvard.iq.dataverse.authorization.groups.impl.ipaddress.ip.IpRangeIndex;
+import edu.harvard.iq.dataverse.engine.CommandSequenceMemo;
+import java.math.BigInteger;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -36,6 +39,9 @@ public class IpGroupsServiceBean {
 	
     @EJB
     RoleAssigneeServiceBean roleAssigneeSvc;
+
+    @EJB
+    IpGroupIndexBean ipGroupIndex;
     
     /**
      * Stores (inserts/updates) the passed IP group.
@@ -57,6 +63,7 @@ public class IpGroupsServiceBean {
                 if ( existing == null ) {
                     // new group
                     em.persist( grp );
+                    groupsChanged();
                     actionLogSvc.log( alr );
                     return grp;
                     
@@ -65,17 +72,21 @@ public class IpGroupsServiceBean {
                     existing.setDisplayName(grp.getDisplayName());
                     existing.setIpv4Ranges(grp.getIpv4Ranges());
                     existing.setIpv6Ranges(grp.getIpv6Ranges());
+                    groupsChanged();
                     actionLogSvc.log( alr.setActionSubType("ipUpdate") );
                     return existing;
                 }
             } else {
                 actionLogSvc.log( alr );
                 em.persist( grp );
+                groupsChanged();
                 return grp;
             }
         } else {
             actionLogSvc.log( alr.setActionSubType("ipUpdate") );
-            return em.merge(grp);
+            IpGroup merged = em.merge(grp);
+            groupsChanged();
+            return merged;
         }
     }
     
@@ -97,7 +108,26 @@ public class IpGroupsServiceBean {
         return em.createNamedQuery("IpGroup.findAll", IpGroup.class).getResultList();
     }
     
+    /**
+     * Finds the groups with a range that includes the address. The ranges
+     * are looked up in the in-memory index of {@link IpGroupIndexBean} (the
+     * database is then only queried for the groups found, if any).
+     * @param ipa the address
+     * @return the groups that include the address
+     */
     public Set<IpGroup> findAllIncludingIp( IpAddress ipa ) {
+        IpRangeIndex<Long> index = (ipGroupIndex != null) ? ipGroupIndex.getIndex(this::buildIndex) : null;
+        if ( index != null ) {
+            Set<IpGroup> groups = new HashSet<>();
+            for ( Long groupId : index.findAllIncluding(ipa) ) {
+                IpGroup group = em.find(IpGroup.class, groupId);
+                if ( group != null ) {
+                    groups.add(group);
+                }
+            }
+            return groups;
+        }
+        
         if ( ipa instanceof IPv4Address ) {
             IPv4Address ip4 = (IPv4Address) ipa;
             List<IpGroup> groupList = em.createNamedQuery("IPv4Range.findGroupsContainingAddressAsLong", IpGroup.class)
@@ -120,6 +150,30 @@ public class IpGroupsServiceBean {
         }
     }
     
+    /**
+     * @return an index of the ranges of all the groups, the value of each
+     * range being the id of its group.
+     */
+    private IpRangeIndex<Long> buildIndex() {
+        IpRangeIndex.Builder<Long> builder = IpRangeIndex.builder();
+        for ( Object[] row : em.createNamedQuery("IPv4Range.findAllBoundsAndOwnerIds", Object[].class).getResultList() ) {
+            builder.add(new IPv4Address((BigInteger) row[0]), new IPv4Address((BigInteger) row[1]), (Long) row[2]);
+        }
+        for ( Object[] row : em.createNamedQuery("IPv6Range.findAllBoundsAndOwnerIds", Object[].class).getResultList() ) {
+            builder.add(new IPv6Address(new long[]{(Long) row[0], (Long) row[1], (Long) row[2], (Long) row[3]}),
+                        new IPv6Address(new long[]{(Long) row[4], (Long) row[5], (Long) row[6], (Long) row[7]}),
+                        (Long) row[8]);
+        }
+        return builder.build();
+    }
+    
+    private void groupsChanged() {
+        if ( ipGroupIndex != null ) {
+            ipGroupIndex.groupsChanged();
+        }
+        CommandSequenceMemo.invalidate();
+    }
+    
     /**
      * Deletes the group - if it has no assignments.
      * @param grp the group to be deleted
@@ -131,6 +185,7 @@ public class IpGroupsServiceBean {
         alr.setInfo( grp.getIdentifier() );
         if ( roleAssigneeSvc.getAssignmentsFor(grp.getIdentifier()).isEmpty() ) {
             em.remove( grp );
+            groupsChanged();
             actionLogSvc.log(alr);
             
         } else {
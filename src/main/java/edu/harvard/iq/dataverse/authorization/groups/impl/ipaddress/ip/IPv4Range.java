@@ -22,7 +22,9 @@ import jakarta.persistence.Table;
     @NamedQuery( name="IPv4Range.findAllContainingAddressAsLong",
             query="SELECT r FROM IPv4Range r WHERE r.bottomAsLong<=:addressAsLong AND r.topAsLong>=:addressAsLong"),
     @NamedQuery( name="IPv4Range.findGroupsContainingAddressAsLong", 
-                query="SELECT DISTINCT r.owner from IPv4Range r WHERE r.bottomAsLong<=:addressAsLong AND r.topAsLong>=:addressAsLong")
+                query="SELECT DISTINCT r.owner from IPv4Range r WHERE r.bottomAsLong<=:addressAsLong AND r.topAsLong>=:addressAsLong"),
+    @NamedQuery( name="IPv4Range.findAllBoundsAndOwnerIds",
+                query="SELECT r.bottomAsLong, r.topAsLong, r.owner.id FROM IPv4Range r")
 })
 @Entity
 public class IPv4Range extends IpAddressRange implements java.io.Serializable {
@@ -26,7 +26,9 @@ import jakarta.persistence.Table;
                           + "or (r.bottomA=:a and r.bottomB<:b) " 
                           + "or (r.bottomA=:a and r.bottomB=:b and r.bottomC<:c) "
                           + "or (r.bottomA=:a and r.bottomB=:b and r.bottomC=:c and r.bottomD<=:d))"
-                         )
+                         ),
+    @NamedQuery( name="IPv6Range.findAllBoundsAndOwnerIds",
+                query="SELECT r.bottomA, r.bottomB, r.bottomC, r.bottomD, r.topA, r.topB, r.topC, r.topD, r.owner.id FROM IPv6Range r")
 })
 @Entity
 public class IPv6Range extends IpAddressRange implements Serializable {
@@ -0,0 +1,241 @@
+package edu.harvard.iq.dataverse.authorization.groups.impl.ipaddress.ip;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * An immutable index of IP address ranges, each associated with a value (e.g.
+ * the id of the group the range belongs to), to find the values of the ranges
+ * that include an address without going over all the ranges.
+ *
+ * The address space (of each IP version) is split into the segments the
+ * bounds of the ranges delimit; all the addresses of a segment are included
+ * in the same ranges. Finding the values of an address is then a binary
+ * search among the segments. The addresses are handled as unsigned 128 bit
+ * numbers, IPv4 addresses included.
+ *
+ * @param <T> the type of the values associated to the ranges
+ */
+public class IpRangeIndex<T> {
+
+    /**
+     * Adds ranges, then builds the index.
+     *
+     * @param <T> the type of the values associated to the ranges
+     */
+    public static class Builder<T> {
+
+        private final List<Range<T>> ipv4Ranges = new ArrayList<>();
+        private final List<Range<T>> ipv6Ranges = new ArrayList<>();
+
+        /**
+         * @param bottom the first address of the range
+         * @param top the last address of the range (both of the same IP version)
+         * @param value the value associated to the range
+         * @return {@code this}
+         */
+        public Builder<T> add(IpAddress bottom, IpAddress top, T value) {
+            Objects.requireNonNull(value);
+            if (bottom instanceof IPv4Address && top instanceof IPv4Address) {
+                ipv4Ranges.add(new Range<>(key(bottom), key(top), value));
+            } else if (bottom instanceof IPv6Address && top instanceof IPv6Address) {
+                ipv6Ranges.add(new Range<>(key(bottom), key(top), value));
+            } else {
+                throw new IllegalArgumentException("Both addresses have to be of the same type (either IPv4 or IPv6)");
+            }
+            return this;
+        }
+
+        public Builder<T> add(IpAddressRange range, T value) {
+            return add(range.getBottom(), range.getTop(), value);
+        }
+
+        public IpRangeIndex<T> build() {
+            return new IpRangeIndex<>(new Segments<>(ipv4Ranges), new Segments<>(ipv6Ranges));
+        }
+    }
+
+    private static class Range<T> {
+        final long[] bottom;
+        final long[] top;
+        final T value;
+
+        Range(long[] bottom, long[] top, T value) {
+            this.bottom = bottom;
+            this.top = top;
+            this.value = value;
+        }
+    }
+
+    /**
+     * The segments of the address space of an IP version: segment {@code i}
+     * goes from {@code (startHigh[i], startLow[i])} to the start of segment
+     * {@code i+1} (excluded), and all its addresses are included in the
+     * ranges of {@code values[i]}.
+     */
+    private static class Segments<T> {
+        private final long[] startHigh;
+        private final long[] startLow;
+        private final Object[][] values;
+
+        Segments(List<Range<T>> ranges) {
+            // (a range adds its value at its bottom, and removes it after its top)
+            List<long[]> points = new ArrayList<>();
+            points.add(new long[]{0, 0});
+            for (Range<T> range : ranges) {
+                if (compare(range.bottom, range.top) > 0) {
+                    continue;
+                }
+                points.add(range.bottom);
+                if (range.top[0] != -1 || range.top[1] != -1) {
+                    points.add(next(range.top));
+                }
+            }
+            points.sort(Segments::compare);
+
+            List<Range<T>> byBottom = new ArrayList<>(ranges);
+            byBottom.removeIf(range -> compare(range.bottom, range.top) > 0);
+            byBottom.sort(Comparator.comparing(range -> range.bottom, Segments::compare));
+            List<Range<T>> byEnd = new ArrayList<>(byBottom);
+            byEnd.sort(Comparator.comparing(range -> range.top, Segments::compare));
+
+            List<long[]> starts = new ArrayList<>();
+            List<Object[]> segmentValues = new ArrayList<>();
+            // (the number of the ranges including the current segment, per value)
+            Map<T, Integer> included = new LinkedHashMap<>();
+            int nextAdded = 0;
+            int nextRemoved = 0;
+            long[] previous = null;
+            for (long[] point : points) {
+                if (previous != null && compare(previous, point) == 0) {
+                    continue;
+                }
+                previous = point;
+                while (nextRemoved < byEnd.size() && compare(byEnd.get(nextRemoved).top, point) < 0) {
+                    included.computeIfPresent(byEnd.get(nextRemoved++).value, (value, count) -> count == 1 ? null : count - 1);
+                }
+                while (nextAdded < byBottom.size() && compare(byBottom.get(nextAdded).bottom, point) <= 0) {
+                    included.merge(byBottom.get(nextAdded++).value, 1, Integer::sum);
+                }
+                Object[] current = included.keySet().toArray();
+                if (!segmentValues.isEmpty() && Arrays.equals(segmentValues.get(segmentValues.size() - 1), current)) {
+                    continue;
+                }
+                starts.add(point);
+                segmentValues.add(current);
+            }
+
+            startHigh = new long[starts.size()];
+            startLow = new long[starts.size()];
+            for (int i = 0; i < starts.size(); i++) {
+                startHigh[i] = starts.get(i)[0];
+                startLow[i] = starts.get(i)[1];
+            }
+            values = segmentValues.toArray(new Object[0][]);
+        }
+
+        /**
+         * @return the values of the segment including the address
+         */
+        Object[] find(long[] address) {
+            int low = 0;
+            int high = startHigh.length - 1;
+            // (the first segment starts at 0, so the address is in one of them)
+            while (low < high) {
+                int middle = (low + high + 1) >>> 1;
+                int comparison = Long.compareUnsigned(startHigh[middle], address[0]);
+                if (comparison == 0) {
+                    comparison = Long.compareUnsigned(startLow[middle], address[1]);
+                }
+                if (comparison <= 0) {
+                    low = middle;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            return values[low];
+        }
+
+        int size() {
+            return values.length;
+        }
+
+        private static int compare(long[] a, long[] b) {
+            int comparison = Long.compareUnsigned(a[0], b[0]);
+            return comparison != 0 ? comparison : Long.compareUnsigned(a[1], b[1]);
+        }
+
+        private static long[] next(long[] address) {
+            return address[1] == -1 ? new long[]{address[0] + 1, 0} : new long[]{address[0], address[1] + 1};
+        }
+    }
+
+    private final Segments<T> ipv4Segments;
+    private final Segments<T> ipv6Segments;
+
+    private IpRangeIndex(Segments<T> ipv4Segments, Segments<T> ipv6Segments) {
+        this.ipv4Segments = ipv4Segments;
+        this.ipv6Segments = ipv6Segments;
+    }
+
+    public static <T> Builder<T> builder() {
+        return new Builder<>();
+    }
+
+    /**
+     * @param address an IPv4 or IPv6 address
+     * @return the values of all the ranges that include the address
+     */
+    @SuppressWarnings("unchecked")
+    public Set<T> findAllIncluding(IpAddress address) {
+        Object[] found;
+        if (address instanceof IPv4Address) {
+            found = ipv4Segments.find(key(address));
+        } else if (address instanceof IPv6Address) {
+            found = ipv6Segments.find(key(address));
+        } else {
+            throw new IllegalArgumentException("Unknown IpAddress type: " + address.getClass() + " (for IpAddress:" + address + ")");
+        }
+        if (found.length == 0) {
+            return Collections.emptySet();
+        }
+        Set<T> result = new HashSet<>();
+        for (Object value : found) {
+            result.add((T) value);
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of segments of the address spaces (a measure of the
+     * size of the index)
+     */
+    public int size() {
+        return ipv4Segments.size() + ipv6Segments.size();
+    }
+
+    /**
+     * @return the address, as an unsigned 128 bit number (high and low bits)
+     */
+    private static long[] key(IpAddress address) {
+        if (address instanceof IPv4Address ipv4) {
+            return new long[]{0, ipv4.toBigInteger().longValue()};
+        }
+        IPv6Address ipv6 = (IPv6Address) address;
+        long high = 0;
+        long low = 0;
+        for (int i = 0; i < 4; i++) {
+            high = (high << 16) | (ipv6.get(i) & 0xffff);
+            low = (low << 16) | (ipv6.get(i + 4) & 0xffff);
+        }
+        return new long[]{high, low};
+    }
+}
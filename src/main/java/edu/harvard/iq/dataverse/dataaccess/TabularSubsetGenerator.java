@@ -186,25 +186,7 @@ public class TabularSubsetGenerator implements SubsetGenerator {
             for (int caseIndex = 0; caseIndex < numCases; caseIndex++) {
                 if (scanner.hasNext()) {
                     String[] line = (scanner.next()).split("\t", -1);
-                    // Verified: new Float("nan") works correctly,
-                    // resulting in Float.NaN;
-                    // Float("[+-]Inf") doesn't work however;
-                    // (the constructor appears to be expecting it
-                    // to be spelled as "Infinity", "-Infinity", etc.
-                    if ("inf".equalsIgnoreCase(line[column]) || "+inf".equalsIgnoreCase(line[column])) {
-                        retVector[caseIndex] = java.lang.Float.POSITIVE_INFINITY;
-                    } else if ("-inf".equalsIgnoreCase(line[column])) {
-                        retVector[caseIndex] = java.lang.Float.NEGATIVE_INFINITY;
-                    } else if (line[column] == null || line[column].equals("")) {
-                        // missing value:
-                        retVector[caseIndex] = null;
-                    } else {
-                        try {
-                            retVector[caseIndex] = new Float(line[column]);
-                        } catch (NumberFormatException ex) {
-                            retVector[caseIndex] = null; // missing value
-                        }
-                    }
+                    retVector[caseIndex] = parseFloatValue(line[column]);
                 } else {
                     throw new RuntimeException("Tab file has fewer rows than the stored number of cases!");
                 }
@@ -224,6 +206,33 @@ public class TabularSubsetGenerator implements SubsetGenerator {
 
     }
     
+    /**
+     * Parses a value of a numeric variable, as stored in a tab file. 
+     * 
+     * @param value the token from the tab file
+     * @return the value as a Float; or null for a missing value.
+     */
+    public static Float parseFloatValue(String value) {
+        // Verified: new Float("nan") works correctly,
+        // resulting in Float.NaN;
+        // Float("[+-]Inf") doesn't work however;
+        // (the constructor appears to be expecting it
+        // to be spelled as "Infinity", "-Infinity", etc.
+        if ("inf".equalsIgnoreCase(value) || "+inf".equalsIgnoreCase(value)) {
+            return java.lang.Float.POSITIVE_INFINITY;
+        } else if ("-inf".equalsIgnoreCase(value)) {
+            return java.lang.Float.NEGATIVE_INFINITY;
+        } else if (value == null || value.equals("")) {
+            // missing value:
+            return null;
+        }
+        try {
+            return new Float(value);
+        } catch (NumberFormatException ex) {
+            return null; // missing value
+        }
+    }
+
     /*
      * Same deal as with the method above - straightforward, but (potentially) slow. 
      * Not a resource hog though - will only try to store one vector in memory. 
@@ -280,50 +289,7 @@ public class TabularSubsetGenerator implements SubsetGenerator {
             for (int caseIndex = 0; caseIndex < numCases; caseIndex++) {
                 if (scanner.hasNext()) {
                     String[] line = (scanner.next()).split("\t", -1);
-                    retVector[caseIndex] = line[column];
-
-                    if ("".equals(line[column])) {
-                        // An empty string is a string missing value!
-                        // An empty string in quotes is an empty string!
-                        retVector[caseIndex] = null;
-                    } else {
-                        // Strip the outer quotes:
-                        line[column] = line[column].replaceFirst("^\\\"", "");
-                        line[column] = line[column].replaceFirst("\\\"$", "");
-
-                        // We need to restore the special characters that
-                        // are stored in tab files escaped - quotes, new lines
-                        // and tabs. Before we do that however, we need to
-                        // take care of any escaped backslashes stored in
-                        // the tab file. I.e., "foo\t" should be transformed
-                        // to "foo<TAB>"; but "foo\\t" should be transformed
-                        // to "foo\t". This way new lines and tabs that were
-                        // already escaped in the original data are not
-                        // going to be transformed to unescaped tab and
-                        // new line characters!
-                        String[] splitTokens = line[column].split(Matcher.quoteReplacement("\\\\"), -2);
-
-                        // (note that it's important to use the 2-argument version
-                        // of String.split(), and set the limit argument to a
-                        // negative value; otherwise any trailing backslashes
-                        // are lost.)
-                        for (int i = 0; i < splitTokens.length; i++) {
-                            splitTokens[i] = splitTokens[i].replaceAll(Matcher.quoteReplacement("\\\""), "\"");
-                            splitTokens[i] = splitTokens[i].replaceAll(Matcher.quoteReplacement("\\t"), "\t");
-                            splitTokens[i] = splitTokens[i].replaceAll(Matcher.quoteReplacement("\\n"), "\n");
-                            splitTokens[i] = splitTokens[i].replaceAll(Matcher.quoteReplacement("\\r"), "\r");
-                        }
-                        // TODO:
-                        // Make (some of?) the above optional; for ex., we
-                        // do need to restore the newlines when calculating UNFs;
-                        // But if we are subsetting these vectors in order to
-                        // create a new tab-delimited file, they will
-                        // actually break things! -- L.A. Jul. 28 2014
-
-                        line[column] = StringUtils.join(splitTokens, '\\');
-
-                        retVector[caseIndex] = line[column];
-                    }
+                    retVector[caseIndex] = decodeStringValue(line[column]);
 
                 } else {
                     throw new RuntimeException("Tab file has fewer rows than the stored number of cases!");
@@ -344,6 +310,55 @@ public class TabularSubsetGenerator implements SubsetGenerator {
 
     }
 
+    /**
+     * Decodes a value of a character variable, as stored in a tab file. 
+     * 
+     * @param value the token from the tab file
+     * @return the original string value; or null for a missing value.
+     */
+    public static String decodeStringValue(String value) {
+        if ("".equals(value)) {
+            // An empty string is a string missing value!
+            // An empty string in quotes is an empty string!
+            return null;
+        }
+
+        // Strip the outer quotes:
+        value = value.replaceFirst("^\\\"", "");
+        value = value.replaceFirst("\\\"$", "");
+
+        // We need to restore the special characters that
+        // are stored in tab files escaped - quotes, new lines
+        // and tabs. Before we do that however, we need to
+        // take care of any escaped backslashes stored in
+        // the tab file. I.e., "foo\t" should be transformed
+        // to "foo<TAB>"; but "foo\\t" should be transformed
+        // to "foo\t". This way new lines and tabs that were
+        // already escaped in the original data are not
+        // going to be transformed to unescaped tab and
+        // new line characters!
+        String[] splitTokens = value.split(Matcher.quoteReplacement("\\\\"), -2);
+
+        // (note that it's important to use the 2-argument version
+        // of String.split(), and set the limit argument to a
+        // negative value; otherwise any trailing backslashes
+        // are lost.)
+        for (int i = 0; i < splitTokens.length; i++) {
+            splitTokens[i] = splitTokens[i].replaceAll(Matcher.quoteReplacement("\\\""), "\"");
+            splitTokens[i] = splitTokens[i].replaceAll(Matcher.quoteReplacement("\\t"), "\t");
+            splitTokens[i] = splitTokens[i].replaceAll(Matcher.quoteReplacement("\\n"), "\n");
+            splitTokens[i] = splitTokens[i].replaceAll(Matcher.quoteReplacement("\\r"), "\r");
+        }
+        // TODO:
+        // Make (some of?) the above optional; for ex., we
+        // do need to restore the newlines when calculating UNFs;
+        // But if we are subsetting these vectors in order to
+        // create a new tab-delimited file, they will
+        // actually break things! -- L.A. Jul. 28 2014
+
+        return StringUtils.join(splitTokens, '\\');
+    }
+
     private static void skipFirstLine(Scanner scanner) {
         if (!scanner.hasNext()) {
             throw new RuntimeException("Failed to read the variable name header line from the tab-delimited file!");
@@ -6,10 +6,15 @@
 
 package edu.harvard.iq.dataverse.datavariable;
 
+import edu.harvard.iq.dataverse.util.json.JsonPrinter;
+import java.util.ArrayList;
 import java.util.List;
 
 import jakarta.ejb.Stateless;
+import jakarta.ejb.TransactionAttribute;
+import jakarta.ejb.TransactionAttributeType;
 import jakarta.inject.Named;
+import jakarta.json.JsonObject;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 import jakarta.persistence.TypedQuery;
@@ -52,6 +57,40 @@ public class VariableServiceBean {
          return query.getResultList();
     }
 
+    /**
+     * Reads a page of the variables of the data file, in file order, and
+     * prints them as json (as JsonPrinter.json(DataVariable) does), in a
+     * transaction of its own: so that the variables read are let go once
+     * printed, and a whole data table can be exported a page at a time.
+     * The summary statistics, categories, etc. of the variables of the page
+     * are read in batches, with a query per collection.
+     *
+     * @param afterFileOrder the file order of the last variable of the
+     * previous page (or -1 for the first page)
+     * @param afterId the id of the last variable of the previous page (or
+     * null for the first page)
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public List<JsonObject> findPageAsJsonByDataFileId(Long fileId, int afterFileOrder, Long afterId, int pageSize) {
+        TypedQuery<DataVariable> query = em.createQuery("select object(o) from DataVariable as o where o.dataTable.dataFile.id =:fileId"
+                + " and (o.fileOrder > :afterFileOrder or (o.fileOrder = :afterFileOrder and o.id > :afterId))"
+                + " order by o.fileOrder, o.id", DataVariable.class)
+                .setParameter("fileId", fileId)
+                .setParameter("afterFileOrder", afterFileOrder)
+                .setParameter("afterId", afterId == null ? Long.valueOf(0) : afterId)
+                .setHint("eclipselink.batch.type", "IN")
+                .setHint("eclipselink.batch", "o.invalidRanges")
+                .setHint("eclipselink.batch", "o.summaryStatistics")
+                .setHint("eclipselink.batch", "o.categories")
+                .setHint("eclipselink.batch", "o.variableMetadatas")
+                .setMaxResults(pageSize);
+        List<JsonObject> page = new ArrayList<>();
+        for (DataVariable variable : query.getResultList()) {
+            page.add(JsonPrinter.json(variable).build());
+        }
+        return page;
+    }
+
     public List<VariableMetadata> findByDataVarIdAndFileMetaId(Long datVarId, Long metaId) {
         TypedQuery<VariableMetadata> query = em.createQuery("SELECT object(o) FROM VariableMetadata as o where o.dataVariable.id =:dvId and o.fileMetadata.id =:fmId", VariableMetadata.class);
 
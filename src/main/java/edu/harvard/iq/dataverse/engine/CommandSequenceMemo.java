@@ -0,0 +1,136 @@
+package edu.harvard.iq.dataverse.engine;
+
+import edu.harvard.iq.dataverse.DvObject;
+import edu.harvard.iq.dataverse.authorization.Permission;
+import edu.harvard.iq.dataverse.authorization.groups.Group;
+import edu.harvard.iq.dataverse.engine.command.DataverseRequest;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * What is found out once while a top-level command, and the commands it
+ * submits, run: that the user of the request still exists and is active, the
+ * groups of the request in the context of an object, and the permissions
+ * granted by the roles of the request on an object.
+ *
+ * The memo is bound to the thread running the commands, from the submission
+ * of the top-level command until it completes (see
+ * {@link edu.harvard.iq.dataverse.EjbDataverseEngine}); outside of a command
+ * sequence, nothing is memoized. It is cleared whenever roles, role
+ * assignments or group memberships change (see {@link #invalidate()}).
+ */
+public class CommandSequenceMemo {
+
+    private static final ThreadLocal<CommandSequenceMemo> current = new ThreadLocal<>();
+
+    // (the request is compared by identity: the commands of a sequence
+    // usually pass theirs on to the commands they submit)
+    private record Key(DataverseRequest request, long dvObjectId) {
+    }
+
+    private int depth;
+    private final Set<Long> checkedUserIds = new HashSet<>();
+    private final Map<Key, Set<Group>> groups = new HashMap<>();
+    private final Map<Key, Set<Permission>> rolePermissions = new HashMap<>();
+
+    private CommandSequenceMemo() {
+    }
+
+    /**
+     * Begins a command sequence on this thread, or joins the sequence in
+     * progress. Each call has to be followed by a call to {@link #exit()}.
+     * @return the memo of the sequence
+     */
+    public static CommandSequenceMemo enter() {
+        CommandSequenceMemo memo = current.get();
+        if (memo == null) {
+            memo = new CommandSequenceMemo();
+            current.set(memo);
+        }
+        memo.depth++;
+        return memo;
+    }
+
+    /**
+     * Leaves the command sequence; the memo is dropped when the top-level
+     * command leaves it.
+     */
+    public void exit() {
+        if (--depth == 0) {
+            current.remove();
+        }
+    }
+
+    /**
+     * @return the memo of the command sequence running on this thread, or
+     * null if there is none
+     */
+    public static CommandSequenceMemo current() {
+        return current.get();
+    }
+
+    /**
+     * Clears the memo of the command sequence running on this thread, if
+     * any. To be called when roles, role assignments or group memberships
+     * change.
+     */
+    public static void invalidate() {
+        CommandSequenceMemo memo = current.get();
+        if (memo != null) {
+            memo.checkedUserIds.clear();
+            memo.groups.clear();
+            memo.rolePermissions.clear();
+        }
+    }
+
+    /**
+     * @return true if the user was found to exist and be active already
+     */
+    public boolean isUserChecked(Long authenticatedUserId) {
+        return checkedUserIds.contains(authenticatedUserId);
+    }
+
+    public void userChecked(Long authenticatedUserId) {
+        checkedUserIds.add(authenticatedUserId);
+    }
+
+    /**
+     * @param loader finds the groups, if they are not memoized
+     * @return (a copy of) the groups of the request in the context of the
+     * object
+     */
+    public Set<Group> groupsFor(DataverseRequest req, DvObject dvo, Supplier<Set<Group>> loader) {
+        if (dvo == null || dvo.getId() == null) {
+            return loader.get();
+        }
+        Key key = new Key(req, dvo.getId());
+        Set<Group> found = groups.get(key);
+        if (found == null) {
+            found = loader.get();
+            groups.put(key, found);
+        }
+        return new HashSet<>(found);
+    }
+
+    /**
+     * @param loader finds the permissions, if they are not memoized
+     * @return (a copy of) the permissions granted by the roles of the user
+     * and the groups of the request, on the object
+     */
+    public Set<Permission> rolePermissionsFor(DataverseRequest req, DvObject dvo, Supplier<Set<Permission>> loader) {
+        if (dvo == null || dvo.getId() == null) {
+            return loader.get();
+        }
+        Key key = new Key(req, dvo.getId());
+        Set<Permission> permissions = rolePermissions.get(key);
+        if (permissions == null) {
+            permissions = loader.get();
+            rolePermissions.put(key, permissions);
+        }
+        return permissions.isEmpty() ? EnumSet.noneOf(Permission.class) : EnumSet.copyOf(permissions);
+    }
+}
@@ -0,0 +1,237 @@
+package edu.harvard.iq.dataverse.engine;
+
+import edu.harvard.iq.dataverse.Dataset;
+import edu.harvard.iq.dataverse.engine.command.CommandContext;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+
+/**
+ * The side effects of the commands of a command sequence (reindexing a
+ * dataset, exporting its metadata), deferred until the top-level command
+ * completes, and coalesced: the effects of a type on the same target run
+ * once, with their arguments merged. E.g. a dataset updated by each of the
+ * commands of a sequence is indexed once, in its latest state, after the
+ * sequence. (The updates made in the database, such as those of the
+ * storage use, are not side effects: they belong in the transaction of
+ * the command.)
+ *
+ * The effects are bound to the thread running the commands, from the
+ * submission of the top-level command until it completes (see
+ * {@link edu.harvard.iq.dataverse.EjbDataverseEngine}); they are then run
+ * once its transaction is committed, or discarded if it failed (see
+ * {@link edu.harvard.iq.dataverse.CommandSideEffectsBean}). Outside of a
+ * command sequence, an effect runs right away.
+ */
+public class CommandSideEffects {
+
+    /**
+     * The types of the side effects.
+     */
+    public enum Type {
+        /** Indexing a dataset (asynchronously). */
+        INDEX_DATASET("index-dataset"),
+        /** Exporting the metadata of a dataset (asynchronously). */
+        EXPORT_DATASET("export-dataset");
+
+        private final String label;
+
+        Type(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private static final ThreadLocal<CommandSideEffects> current = new ThreadLocal<>();
+
+    private record Key(Type type, Long targetId) {
+    }
+
+    private static class Effect<T> {
+        private T argument;
+        private final BinaryOperator<T> merge;
+        private Consumer<T> action;
+
+        Effect(T argument, BinaryOperator<T> merge, Consumer<T> action) {
+            this.argument = argument;
+            this.merge = merge;
+            this.action = action;
+        }
+
+        void run() {
+            action.accept(argument);
+        }
+    }
+
+    private record IndexDataset(Dataset dataset, boolean doNormalSolrDocCleanUp) {
+    }
+
+    private int depth;
+    private final Map<Key, Effect<?>> effects = new LinkedHashMap<>();
+    private final Map<Type, Integer> registered = new EnumMap<>(Type.class);
+
+    public CommandSideEffects() {
+    }
+
+    /**
+     * Begins a command sequence on this thread, or joins the sequence in
+     * progress. Each call has to be followed by a call to {@link #exit()}.
+     * @return the side effects of the sequence
+     */
+    public static CommandSideEffects enter() {
+        CommandSideEffects effects = current.get();
+        if (effects == null) {
+            effects = new CommandSideEffects();
+            current.set(effects);
+        }
+        effects.depth++;
+        return effects;
+    }
+
+    /**
+     * Leaves the command sequence; the effects are no longer bound to the
+     * thread when the top-level command leaves it.
+     * @return true if the top-level command left the sequence, whose effects
+     * then have to be run (see {@link #run(BiConsumer)})
+     */
+    public boolean exit() {
+        if (--depth == 0) {
+            current.remove();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return the side effects of the command sequence running on this
+     * thread, or null if there is none
+     */
+    public static CommandSideEffects current() {
+        return current.get();
+    }
+
+    /**
+     * Defers an effect until the end of the command sequence running on this
+     * thread, or runs it right away if there is none (or if it has no target).
+     * @param merge merges the argument of an effect deferred already, of the
+     * same type on the same target, with this one (the action of the latest
+     * effect is run)
+     */
+    public static <T> void defer(Type type, Long targetId, T argument, BinaryOperator<T> merge, Consumer<T> action) {
+        CommandSideEffects effects = current.get();
+        if (effects == null || targetId == null) {
+            action.accept(argument);
+        } else {
+            effects.add(type, targetId, argument, merge, action);
+        }
+    }
+
+    /**
+     * Indexes a dataset, once, after the command sequence.
+     * @see edu.harvard.iq.dataverse.search.IndexServiceBean#asyncIndexDataset(Dataset, boolean)
+     */
+    public static void indexDataset(CommandContext ctxt, Dataset dataset, boolean doNormalSolrDocCleanUp) {
+        defer(Type.INDEX_DATASET, dataset.getId(), new IndexDataset(dataset, doNormalSolrDocCleanUp),
+                (earlier, later) -> new IndexDataset(later.dataset(), earlier.doNormalSolrDocCleanUp() || later.doNormalSolrDocCleanUp()),
+                index -> ctxt.index().asyncIndexDataset(index.dataset(), index.doNormalSolrDocCleanUp()));
+    }
+
+    /**
+     * Exports the metadata of a dataset, once, after the command sequence.
+     * @see edu.harvard.iq.dataverse.DatasetServiceBean#reExportDatasetAsync(Dataset)
+     */
+    public static void exportDataset(CommandContext ctxt, Dataset dataset) {
+        defer(Type.EXPORT_DATASET, dataset.getId(), dataset, (earlier, later) -> later,
+                latest -> ctxt.datasets().reExportDatasetAsync(latest));
+    }
+
+    /**
+     * Adds an effect, coalesced with the effect of the same type on the same
+     * target, if any.
+     */
+    public <T> void add(Type type, Long targetId, T argument, BinaryOperator<T> merge, Consumer<T> action) {
+        registered.merge(type, 1, Integer::sum);
+        add(new Key(type, targetId), new Effect<>(argument, merge, action));
+    }
+
+    /**
+     * Adds the effects of another sequence (not counted as registered here),
+     * coalesced with these.
+     */
+    public void addAll(CommandSideEffects other) {
+        other.effects.forEach(this::add);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> void add(Key key, Effect<T> effect) {
+        Effect<T> deferred = (Effect<T>) effects.get(key);
+        if (deferred == null) {
+            effects.put(key, new Effect<>(effect.argument, effect.merge, effect.action));
+        } else {
+            deferred.argument = deferred.merge.apply(deferred.argument, effect.argument);
+            deferred.action = effect.action;
+        }
+    }
+
+    /**
+     * @return the number of effects registered, by type, before they were
+     * coalesced
+     */
+    public Map<Type, Integer> getRegistered() {
+        return Collections.unmodifiableMap(registered);
+    }
+
+    /**
+     * @return the number of effects to run
+     */
+    public int size() {
+        return effects.size();
+    }
+
+    public boolean isEmpty() {
+        return effects.isEmpty();
+    }
+
+    /**
+     * Passes the type of each effect to run to the consumer specified.
+     */
+    public void forEachType(Consumer<Type> consumer) {
+        effects.keySet().forEach(key -> consumer.accept(key.type()));
+    }
+
+    /**
+     * Forgets the effects, without running them.
+     */
+    public void clear() {
+        effects.clear();
+        registered.clear();
+    }
+
+    /**
+     * Runs the effects, in the order they were first registered, and forgets
+     * them. An effect that fails does not keep the next ones from running.
+     * @param done told about each effect run, and its failure if any (or null)
+     */
+    public void run(BiConsumer<Type, RuntimeException> done) {
+        List<Map.Entry<Key, Effect<?>>> toRun = new ArrayList<>(effects.entrySet());
+        effects.clear();
+        registered.clear();
+        for (Map.Entry<Key, Effect<?>> entry : toRun) {
+            try {
+                entry.getValue().run();
+                done.accept(entry.getKey().type(), null);
+            } catch (RuntimeException ex) {
+                done.accept(entry.getKey().type(), ex);
+            }
+        }
+    }
+}
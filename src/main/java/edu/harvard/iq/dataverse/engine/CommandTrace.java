@@ -0,0 +1,244 @@
+package edu.harvard.iq.dataverse.engine;
+
+import edu.harvard.iq.dataverse.engine.command.Command;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import jakarta.json.Json;
+import jakarta.json.JsonArrayBuilder;
+import jakarta.json.JsonObjectBuilder;
+
+/**
+ * The times a command took in each phase of its submission, and the traces
+ * of the commands it submitted, as a tree.
+ *
+ * A trace is bound to the thread running the command, from its submission
+ * until it completes (see {@link edu.harvard.iq.dataverse.EjbDataverseEngine});
+ * the commands submitted meanwhile are nested in it. The time of a phase
+ * includes that of the commands nested in it (e.g. the execution of a
+ * command includes the submission of the commands it executes).
+ */
+public class CommandTrace {
+
+    /**
+     * The phases of the submission of a command.
+     */
+    public enum Phase {
+        /** Checking the rate limit of the user. */
+        RATE_LIMIT("rate-limit"),
+        /** Checking the user, and the permissions required by the command. */
+        PERMISSIONS("permissions"),
+        /** Executing the command (in the transaction of the command). */
+        EXECUTE("execute"),
+        /** Running the onSuccess method of the command (after the transaction). */
+        ON_SUCCESS("on-success");
+
+        private final String label;
+
+        Phase(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private static final ThreadLocal<CommandTrace> current = new ThreadLocal<>();
+
+    private final String command;
+    private final CommandTrace parent;
+    // (forgotten when the top-level command ends, not to keep the command
+    // and its objects in the slow-command log)
+    private Command<?> subject;
+    private final Instant started = Instant.now();
+    private final long startNanos = System.nanoTime();
+    private long durationNanos = -1;
+    private String outcome;
+    private final Map<Phase, Long> phaseNanos = new EnumMap<>(Phase.class);
+    private Phase phase;
+    private long phaseStartNanos;
+    private final List<CommandTrace> nested = new ArrayList<>();
+
+    private CommandTrace(Command<?> subject, CommandTrace parent) {
+        this.command = subject.getClass().getSimpleName();
+        this.subject = subject;
+        this.parent = parent;
+    }
+
+    /**
+     * Starts the trace of a command, nested in the trace of the command
+     * running on this thread, if any. Has to be followed by a call to
+     * {@link #end(String)}.
+     */
+    public static CommandTrace begin(Command<?> command) {
+        CommandTrace parent = current.get();
+        CommandTrace trace = new CommandTrace(command, parent);
+        if (parent != null) {
+            parent.nested.add(trace);
+        }
+        current.set(trace);
+        return trace;
+    }
+
+    /**
+     * @return the trace of the command running on this thread, or null if
+     * there is none
+     */
+    public static CommandTrace current() {
+        return current.get();
+    }
+
+    /**
+     * Ends the phase in progress, if any, and starts {@code next}.
+     */
+    public void phase(Phase next) {
+        endPhase();
+        phase = next;
+        phaseStartNanos = System.nanoTime();
+    }
+
+    /**
+     * Ends the phase in progress, if any.
+     */
+    public void endPhase() {
+        if (phase != null) {
+            addTime(phase, System.nanoTime() - phaseStartNanos);
+            phase = null;
+        }
+    }
+
+    /**
+     * Adds time to a phase (e.g. the onSuccess phase, that the top-level
+     * command runs for the commands nested in it).
+     */
+    public void addTime(Phase aPhase, long nanos) {
+        phaseNanos.merge(aPhase, nanos, Long::sum);
+    }
+
+    /**
+     * Ends the trace; the command running on this thread is then the one
+     * the command was nested in, if any.
+     * @param anOutcome how the command ended (e.g. {@code OK})
+     */
+    public void end(String anOutcome) {
+        endPhase();
+        durationNanos = System.nanoTime() - startNanos;
+        outcome = anOutcome;
+        if (parent != null) {
+            current.set(parent);
+        } else {
+            current.remove();
+            forEach(trace -> trace.subject = null);
+        }
+    }
+
+    /**
+     * @return the trace of {@code aCommand} (compared by identity), among this
+     * trace and the traces nested in it; null if there is none
+     */
+    public CommandTrace find(Command<?> aCommand) {
+        if (subject == aCommand) {
+            return this;
+        }
+        for (CommandTrace trace : nested) {
+            CommandTrace found = trace.find(aCommand);
+            if (found != null) {
+                return found;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Visits this trace and the traces nested in it, depth first.
+     */
+    public void forEach(Consumer<CommandTrace> visitor) {
+        visitor.accept(this);
+        for (CommandTrace trace : nested) {
+            trace.forEach(visitor);
+        }
+    }
+
+    public boolean isTopLevel() {
+        return parent == null;
+    }
+
+    /**
+     * @return the simple name of the class of the command
+     */
+    public String getCommand() {
+        return command;
+    }
+
+    public Instant getStarted() {
+        return started;
+    }
+
+    /**
+     * @return the time from the submission of the command to its end, or -1
+     * while it runs
+     */
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    public String getOutcome() {
+        return outcome;
+    }
+
+    public Map<Phase, Long> getPhaseNanos() {
+        return Collections.unmodifiableMap(phaseNanos);
+    }
+
+    public List<CommandTrace> getNested() {
+        return Collections.unmodifiableList(nested);
+    }
+
+    /**
+     * @return the trace, and the traces nested in it, as JSON (the times in
+     * milliseconds)
+     */
+    public JsonObjectBuilder toJson() {
+        JsonObjectBuilder phases = Json.createObjectBuilder();
+        phaseNanos.forEach((aPhase, nanos) -> phases.add(aPhase.getLabel(), toMillis(nanos)));
+        JsonObjectBuilder json = Json.createObjectBuilder()
+                .add("command", command)
+                .add("started", started.toString())
+                .add("durationMs", toMillis(durationNanos))
+                .add("phasesMs", phases);
+        if (outcome != null) {
+            json.add("outcome", outcome);
+        }
+        if (!nested.isEmpty()) {
+            JsonArrayBuilder nestedJson = Json.createArrayBuilder();
+            nested.forEach(trace -> nestedJson.add(trace.toJson()));
+            json.add("nested", nestedJson);
+        }
+        return json;
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos < 0 ? -1 : Math.round(nanos / 1000.0) / 1000.0;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(command).append(" took ")
+                .append(TimeUnit.NANOSECONDS.toMillis(durationNanos)).append(" ms (");
+        String sep = "";
+        for (Map.Entry<Phase, Long> entry : phaseNanos.entrySet()) {
+            sb.append(sep).append(entry.getKey().getLabel()).append(' ')
+                    .append(TimeUnit.NANOSECONDS.toMillis(entry.getValue())).append(" ms");
+            sep = ", ";
+        }
+        int[] count = {-1};
+        forEach(trace -> count[0]++);
+        return sb.append("; ").append(count[0]).append(" nested commands)").toString();
+    }
+}
@@ -7,6 +7,7 @@ import edu.harvard.iq.dataverse.authorization.Permission;
 import edu.harvard.iq.dataverse.authorization.users.AuthenticatedUser;
 import edu.harvard.iq.dataverse.dataaccess.DataAccess;
 import edu.harvard.iq.dataverse.dataset.DatasetType;
+import edu.harvard.iq.dataverse.engine.CommandSideEffects;
 import edu.harvard.iq.dataverse.engine.command.CommandContext;
 import edu.harvard.iq.dataverse.engine.command.DataverseRequest;
 import edu.harvard.iq.dataverse.engine.command.RequiredPermissions;
@@ -71,6 +72,16 @@ public abstract class AbstractCreateDatasetCommand extends AbstractDatasetComman
     
     protected abstract void handlePid( Dataset theDataset, CommandContext ctxt ) throws CommandException ;
     
+    /**
+     * Indexes the new dataset, once it has been flushed (the indexing is
+     * deferred until the command sequence completes).
+     * @param theDataset The em-managed dataset.
+     * @param ctxt 
+     */
+    protected void indexDataset( Dataset theDataset, CommandContext ctxt ) {
+        CommandSideEffects.indexDataset(ctxt, theDataset, true);
+    }
+    
     @Override
     public Dataset execute(CommandContext ctxt) throws CommandException {
         
@@ -147,7 +158,7 @@ public abstract class AbstractCreateDatasetCommand extends AbstractDatasetComman
         //Use for code that requires database ids
         postDBFlush(theDataset, ctxt);
         
-        ctxt.index().asyncIndexDataset(theDataset, true);
+        indexDataset(theDataset, ctxt);
                  
         return theDataset;
     }
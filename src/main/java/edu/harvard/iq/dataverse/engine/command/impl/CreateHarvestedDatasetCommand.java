@@ -15,8 +15,19 @@ import edu.harvard.iq.dataverse.engine.command.RequiredPermissions;
 @RequiredPermissions(Permission.AddDataset)
 public class CreateHarvestedDatasetCommand extends AbstractCreateDatasetCommand {
 
+    /**
+     * If true, the dataset is not indexed by the command; the harvester
+     * indexes the datasets it imports once their import is committed.
+     */
+    private final boolean deferIndexing;
+
     public CreateHarvestedDatasetCommand(Dataset theDataset, DataverseRequest aRequest) {
+        this(theDataset, aRequest, false);
+    }
+    
+    public CreateHarvestedDatasetCommand(Dataset theDataset, DataverseRequest aRequest, boolean deferIndexing) {
         super(theDataset, aRequest, true);
+        this.deferIndexing = deferIndexing;
     }
     
     @Override
@@ -24,4 +35,11 @@ public class CreateHarvestedDatasetCommand extends AbstractCreateDatasetCommand
         theDataset.setGlobalIdCreateTime(getTimestamp());
     }
     
+    @Override
+    protected void indexDataset(Dataset theDataset, CommandContext ctxt) {
+        if (!deferIndexing) {
+            super.indexDataset(theDataset, ctxt);
+        }
+    }
+    
 }
@@ -3,6 +3,7 @@ package edu.harvard.iq.dataverse.engine.command.impl;
 import edu.harvard.iq.dataverse.authorization.Permission;
 import edu.harvard.iq.dataverse.batch.util.LoggingUtil;
 import edu.harvard.iq.dataverse.datavariable.VarGroup;
+import edu.harvard.iq.dataverse.engine.CommandSideEffects;
 import edu.harvard.iq.dataverse.engine.command.CommandContext;
 import edu.harvard.iq.dataverse.engine.command.DataverseRequest;
 import edu.harvard.iq.dataverse.engine.command.RequiredPermissions;
@@ -225,7 +226,7 @@ public class CuratePublishedDatasetVersionCommand extends AbstractDatasetCommand
         boolean retVal = true;
         Dataset d = (Dataset) r;
         
-        ctxt.index().asyncIndexDataset(d, true);
+        CommandSideEffects.indexDataset(ctxt, d, true);
         
         // And the exported metadata files
         try {
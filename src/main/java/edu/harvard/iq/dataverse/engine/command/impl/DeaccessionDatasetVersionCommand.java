@@ -9,6 +9,7 @@ package edu.harvard.iq.dataverse.engine.command.impl;
 import edu.harvard.iq.dataverse.Dataset;
 import edu.harvard.iq.dataverse.DatasetVersion;
 import edu.harvard.iq.dataverse.authorization.Permission;
+import edu.harvard.iq.dataverse.engine.CommandSideEffects;
 import edu.harvard.iq.dataverse.engine.command.AbstractCommand;
 
 import edu.harvard.iq.dataverse.engine.command.CommandContext;
@@ -106,7 +107,7 @@ public class DeaccessionDatasetVersionCommand extends AbstractCommand<DatasetVer
         DatasetVersion version = (DatasetVersion) r;
         Dataset dataset = version.getDataset();
 
-        ctxt.index().asyncIndexDataset(dataset, true);
+        CommandSideEffects.indexDataset(ctxt, dataset, true);
         return retVal;
     }
 
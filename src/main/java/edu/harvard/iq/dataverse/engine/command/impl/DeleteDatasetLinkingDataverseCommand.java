@@ -9,6 +9,7 @@ import edu.harvard.iq.dataverse.Dataset;
 import edu.harvard.iq.dataverse.DatasetLinkingDataverse;
 import edu.harvard.iq.dataverse.authorization.Permission;
 import edu.harvard.iq.dataverse.batch.util.LoggingUtil;
+import edu.harvard.iq.dataverse.engine.CommandSideEffects;
 import edu.harvard.iq.dataverse.engine.command.AbstractCommand;
 import edu.harvard.iq.dataverse.engine.command.CommandContext;
 import edu.harvard.iq.dataverse.engine.command.DataverseRequest;
@@ -59,7 +60,7 @@ public class DeleteDatasetLinkingDataverseCommand extends AbstractCommand<Datase
         Dataset dataset = (Dataset) r;
 
         if (index) {
-            ctxt.index().asyncIndexDataset(dataset, true);
+            CommandSideEffects.indexDataset(ctxt, dataset, true);
         }
 
         return retVal;
@@ -15,6 +15,7 @@ import edu.harvard.iq.dataverse.UserNotification;
 import edu.harvard.iq.dataverse.authorization.Permission;
 import edu.harvard.iq.dataverse.authorization.users.AuthenticatedUser;
 import edu.harvard.iq.dataverse.dataset.DatasetUtil;
+import edu.harvard.iq.dataverse.engine.CommandSideEffects;
 import edu.harvard.iq.dataverse.engine.command.CommandContext;
 import edu.harvard.iq.dataverse.engine.command.DataverseRequest;
 import edu.harvard.iq.dataverse.engine.command.RequiredPermissions;
@@ -266,9 +267,9 @@ public class FinalizeDatasetPublicationCommand extends AbstractPublishDatasetCom
             logger.warning("Failure to send dataset published messages for : " + dataset.getId() + " : " + e.getMessage());
         }
         // Metadata export:
-        ctxt.datasets().reExportDatasetAsync(dataset);
+        CommandSideEffects.exportDataset(ctxt, dataset);
         
-        ctxt.index().asyncIndexDataset(dataset, true);
+        CommandSideEffects.indexDataset(ctxt, dataset, true);
         
         //re-indexing dataverses that have additional subjects
         if (!dataversesToIndex.isEmpty()){
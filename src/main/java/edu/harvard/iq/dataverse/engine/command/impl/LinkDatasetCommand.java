@@ -10,6 +10,7 @@ import edu.harvard.iq.dataverse.DatasetLinkingDataverse;
 import edu.harvard.iq.dataverse.Dataverse;
 import edu.harvard.iq.dataverse.authorization.Permission;
 import edu.harvard.iq.dataverse.batch.util.LoggingUtil;
+import edu.harvard.iq.dataverse.engine.CommandSideEffects;
 import edu.harvard.iq.dataverse.engine.command.AbstractCommand;
 import edu.harvard.iq.dataverse.engine.command.CommandContext;
 import edu.harvard.iq.dataverse.engine.command.DataverseRequest;
@@ -69,7 +70,7 @@ public class LinkDatasetCommand extends AbstractCommand<DatasetLinkingDataverse>
         boolean retVal = true;
         DatasetLinkingDataverse dld = (DatasetLinkingDataverse) r;
 
-        ctxt.index().asyncIndexDataset(dld.getDataset(), true);
+        CommandSideEffects.indexDataset(ctxt, dld.getDataset(), true);
 
         return retVal;
     }
@@ -101,6 +101,8 @@ public class MergeInAccountCommand extends AbstractVoidCommand {
         int resultCount = ctxt.em().createNamedQuery("RoleAssignment.deleteAllByAssigneeIdentifier", RoleAssignment.class).
                         setParameter("assigneeIdentifier", consumedAU.getIdentifier())
                         .executeUpdate();
+        ctxt.permissions().permissionsChangedFor(consumedAU);
+        ctxt.permissions().permissionsChangedFor(ongoingAU);
         
         // DatasetVersionUser
         for (DatasetVersionUser user : ctxt.datasetVersion().getDatasetVersionUsersByAuthenticatedUser(consumedAU)) {
@@ -177,6 +179,7 @@ public class MergeInAccountCommand extends AbstractVoidCommand {
         
         ctxt.em().createNativeQuery("DELETE FROM explicitgroup_authenticateduser consumed USING explicitgroup_authenticateduser ongoing WHERE consumed.containedauthenticatedusers_id="+ongoingAU.getId()+" AND ongoing.containedauthenticatedusers_id="+consumedAU.getId()).executeUpdate();
         ctxt.em().createNativeQuery("UPDATE explicitgroup_authenticateduser SET containedauthenticatedusers_id="+ongoingAU.getId()+" WHERE containedauthenticatedusers_id="+consumedAU.getId()).executeUpdate();
+        ctxt.explicitGroups().membershipsChanged();
         
         ctxt.actionLog().changeUserIdentifierInHistory(consumedAU.getIdentifier(), ongoingAU.getIdentifier());
         
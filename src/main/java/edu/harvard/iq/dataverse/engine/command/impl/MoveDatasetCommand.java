@@ -149,6 +149,7 @@ public class MoveDatasetCommand extends AbstractVoidCommand {
         // OK, move
         moved.setOwner(destination);
         ctxt.em().merge(moved);
+        ctxt.permissions().permissionsChangedOn(moved);
 
         boolean doNormalSolrDocCleanUp = true;
         ctxt.index().asyncIndexDataset(moved, doNormalSolrDocCleanUp);
@@ -7,6 +7,7 @@ import edu.harvard.iq.dataverse.UserNotification;
 import edu.harvard.iq.dataverse.authorization.Permission;
 import edu.harvard.iq.dataverse.authorization.users.AuthenticatedUser;
 import edu.harvard.iq.dataverse.batch.util.LoggingUtil;
+import edu.harvard.iq.dataverse.engine.CommandSideEffects;
 import edu.harvard.iq.dataverse.engine.command.AbstractCommand;
 import edu.harvard.iq.dataverse.engine.command.CommandContext;
 import edu.harvard.iq.dataverse.engine.command.DataverseRequest;
@@ -101,7 +102,7 @@ public class SetCurationStatusCommand extends AbstractDatasetCommand<Dataset> {
         boolean retVal = true;
         Dataset dataset = (Dataset) r;
 
-        ctxt.index().asyncIndexDataset(dataset, true);
+        CommandSideEffects.indexDataset(ctxt, dataset, true);
         return retVal;
     }
 
@@ -5,6 +5,7 @@ import edu.harvard.iq.dataverse.DatasetFieldType;
 import edu.harvard.iq.dataverse.DatasetFieldType.FieldType;
 import edu.harvard.iq.dataverse.authorization.Permission;
 import edu.harvard.iq.dataverse.batch.util.LoggingUtil;
+import edu.harvard.iq.dataverse.engine.CommandSideEffects;
 import edu.harvard.iq.dataverse.engine.command.AbstractCommand;
 import edu.harvard.iq.dataverse.engine.command.CommandContext;
 import edu.harvard.iq.dataverse.engine.command.DataverseRequest;
@@ -49,7 +50,7 @@ public class SetDatasetCitationDateCommand extends AbstractCommand<Dataset>{
         boolean retVal = true;
         Dataset dataset = (Dataset) r;
 
-        ctxt.index().asyncIndexDataset(dataset, false);
+        CommandSideEffects.indexDataset(ctxt, dataset, false);
 
         return retVal;
     }	
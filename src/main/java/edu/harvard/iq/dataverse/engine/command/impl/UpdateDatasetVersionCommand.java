@@ -3,6 +3,7 @@ package edu.harvard.iq.dataverse.engine.command.impl;
 import edu.harvard.iq.dataverse.*;
 import edu.harvard.iq.dataverse.authorization.Permission;
 import edu.harvard.iq.dataverse.authorization.users.AuthenticatedUser;
+import edu.harvard.iq.dataverse.engine.CommandSideEffects;
 import edu.harvard.iq.dataverse.engine.command.CommandContext;
 import edu.harvard.iq.dataverse.engine.command.DataverseRequest;
 import edu.harvard.iq.dataverse.engine.command.RequiredPermissions;
@@ -288,7 +289,8 @@ public class UpdateDatasetVersionCommand extends AbstractDatasetCommand<Dataset>
         // Indexing will be started immediately, unless an index is already busy for the given data
         // (it will be scheduled then for later indexing of the newest version).
         // See the documentation of asyncIndexDataset method for more details.
-        ctxt.index().asyncIndexDataset((Dataset) r, true);
+        // It is requested once per dataset, after the command sequence (see CommandSideEffects).
+        CommandSideEffects.indexDataset(ctxt, (Dataset) r, true);
         return true;
     }
 
@@ -0,0 +1,216 @@
+package edu.harvard.iq.dataverse.export;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HexFormat;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * A cached export of a dataset, as it is stored: gzip-compressed (or, if it
+ * was cached before the exports were compressed, as is), along with what
+ * was recorded about it when it was cached - its size, its compressed size,
+ * and the digest of its content, which is its ETag. (The exports cached
+ * before that have no ETag.)
+ *
+ * The export can be read as it is stored, to be sent as is to the clients
+ * that accept its content encoding, or decompressed.
+ */
+public class CachedExport implements Closeable {
+
+    public static final String GZIP = "gzip";
+
+    // (the properties of the info aux object, cached with the export)
+    private static final String ENCODING = "encoding";
+    private static final String SIZE = "size";
+    private static final String COMPRESSED_SIZE = "compressedSize";
+    private static final String DIGEST = "sha256";
+
+    private final BufferedInputStream storedInputStream;
+    private final String contentEncoding;
+    private final long size;
+    private final long compressedSize;
+    private final String digest;
+
+    /**
+     * @param storedInputStream the export, as stored
+     * @param infoInputStream what was recorded about it, or null if nothing
+     * was
+     */
+    CachedExport(InputStream storedInputStream, InputStream infoInputStream) throws IOException {
+        this.storedInputStream = new BufferedInputStream(storedInputStream);
+        // (whatever the info says, this is what the export is stored as)
+        this.contentEncoding = isGzipped(this.storedInputStream) ? GZIP : null;
+
+        Properties info = new Properties();
+        if (infoInputStream != null) {
+            try (infoInputStream) {
+                info.load(infoInputStream);
+            }
+        }
+        if (info.getProperty(DIGEST) != null && Objects.equals(info.getProperty(ENCODING), contentEncoding == null ? "" : contentEncoding)) {
+            this.size = Long.parseLong(info.getProperty(SIZE, "-1"));
+            this.compressedSize = Long.parseLong(info.getProperty(COMPRESSED_SIZE, "-1"));
+            this.digest = info.getProperty(DIGEST);
+        } else {
+            this.size = -1;
+            this.compressedSize = -1;
+            this.digest = null;
+        }
+    }
+
+    private static boolean isGzipped(BufferedInputStream inputStream) throws IOException {
+        inputStream.mark(2);
+        int b0 = inputStream.read();
+        int b1 = inputStream.read();
+        inputStream.reset();
+        return b0 == (GZIPInputStream.GZIP_MAGIC & 0xff) && b1 == (GZIPInputStream.GZIP_MAGIC >> 8);
+    }
+
+    /**
+     * @return the content encoding of the export as stored (gzip), or null
+     * if it is stored uncompressed
+     */
+    public String getContentEncoding() {
+        return contentEncoding;
+    }
+
+    /**
+     * @return the export, as stored
+     */
+    public InputStream getStoredInputStream() {
+        return storedInputStream;
+    }
+
+    /**
+     * @return the export, decompressed
+     */
+    public InputStream getInputStream() throws IOException {
+        return GZIP.equals(contentEncoding) ? new GZIPInputStream(storedInputStream, 8192) : storedInputStream;
+    }
+
+    /**
+     * @return the size of the export, decompressed, or -1 if unknown
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return the size of the export as stored, or -1 if unknown
+     */
+    public long getCompressedSize() {
+        return compressedSize;
+    }
+
+    /**
+     * @return the (weak) ETag of the export, or null if it has none; the
+     * export is the same whether it is compressed or not
+     */
+    public String getETag() {
+        return digest == null ? null : "W/\"" + digest + "\"";
+    }
+
+    /**
+     * @param ifNoneMatch the If-None-Match header of a request
+     * @return true if the export has one of the ETags of the header (or any
+     * ETag, for "*")
+     */
+    public boolean matchesETag(String ifNoneMatch) {
+        String eTag = getETag();
+        if (eTag == null || ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.equals("*")) {
+                return true;
+            }
+            // (compared the weak way: W/"x" matches "x")
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if (eTag.substring(2).equals(candidate)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param acceptEncoding the Accept-Encoding header of a request
+     * @return true if the export is compressed, and the content encoding it
+     * is compressed with is acceptable according to the header
+     */
+    public boolean isAcceptedAsStored(String acceptEncoding) {
+        if (contentEncoding == null || acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            String name = parts[0].trim();
+            if (!name.equalsIgnoreCase(contentEncoding) && !name.equals("*")) {
+                continue;
+            }
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim();
+                if (parameter.startsWith("q=")) {
+                    try {
+                        // (q=0 says it is not acceptable)
+                        return Double.parseDouble(parameter.substring(2)) > 0;
+                    } catch (NumberFormatException nfe) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        storedInputStream.close();
+    }
+
+    /**
+     * @return what is to be recorded about an export, as the info aux object
+     * cached with it
+     */
+    static byte[] encodeInfo(String contentEncoding, long size, long compressedSize, byte[] digest) {
+        Properties info = new Properties();
+        info.setProperty(ENCODING, contentEncoding == null ? "" : contentEncoding);
+        info.setProperty(SIZE, Long.toString(size));
+        info.setProperty(COMPRESSED_SIZE, Long.toString(compressedSize));
+        info.setProperty(DIGEST, HexFormat.of().formatHex(digest));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            info.store(bytes, null);
+        } catch (IOException ioex) {
+            // (not with a byte array)
+            throw new IllegalStateException(ioex);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @return true if the info recorded says the export has the content
+     * encoding, the size and the digest specified
+     */
+    static boolean isInfoOf(InputStream infoInputStream, String contentEncoding, long size, byte[] digest) throws IOException {
+        if (infoInputStream == null) {
+            return false;
+        }
+        Properties info = new Properties();
+        try (infoInputStream) {
+            info.load(infoInputStream);
+        }
+        return (contentEncoding == null ? "" : contentEncoding).equals(info.getProperty(ENCODING))
+                && Long.toString(size).equals(info.getProperty(SIZE))
+                && HexFormat.of().formatHex(digest).equals(info.getProperty(DIGEST));
+    }
+}
@@ -3,6 +3,7 @@ package edu.harvard.iq.dataverse.export;
 
 import com.google.auto.service.AutoService;
 import edu.harvard.iq.dataverse.export.ddi.DdiExportUtil;
+import edu.harvard.iq.dataverse.export.ddi.DdiVariableSource;
 import io.gdcc.spi.export.ExportDataProvider;
 import io.gdcc.spi.export.ExportException;
 import io.gdcc.spi.export.Exporter;
@@ -47,8 +48,16 @@ public class DDIExporter implements XMLExporter {
             XMLStreamWriter xmlw = XMLOutputFactory.newInstance().createXMLStreamWriter(outputStream);
             xmlw.writeStartDocument();
             xmlw.flush();
-            DdiExportUtil.datasetJson2ddi(dataProvider.getDatasetJson(), dataProvider.getDatasetFileDetails(),
-                    outputStream);
+            DdiVariableSource variables = dataProvider instanceof InternalExportDataProvider
+                    ? ((InternalExportDataProvider) dataProvider).getDdiVariableSource() : null;
+            if (variables != null) {
+                // (writing the variables as they are read, a page at a time)
+                DdiExportUtil.datasetJson2ddi(dataProvider.getDatasetJson(),
+                        ((InternalExportDataProvider) dataProvider).getDatasetFileSummaries(), variables, outputStream);
+            } else {
+                DdiExportUtil.datasetJson2ddi(dataProvider.getDatasetJson(), dataProvider.getDatasetFileDetails(),
+                        outputStream);
+            }
         } catch (XMLStreamException xse) {
             throw new ExportException("Caught XMLStreamException performing DDI export", xse);
         }
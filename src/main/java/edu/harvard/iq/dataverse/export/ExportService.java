@@ -2,12 +2,10 @@ package edu.harvard.iq.dataverse.export;
 
 import edu.harvard.iq.dataverse.Dataset;
 import edu.harvard.iq.dataverse.DatasetVersion;
-import edu.harvard.iq.dataverse.Embargo;
-import edu.harvard.iq.dataverse.FileMetadata;
 
 import edu.harvard.iq.dataverse.dataaccess.DataAccess;
-import static edu.harvard.iq.dataverse.dataaccess.DataAccess.getStorageIO;
 import edu.harvard.iq.dataverse.dataaccess.DataAccessOption;
+import static edu.harvard.iq.dataverse.dataaccess.DataAccess.getStorageIO;
 import edu.harvard.iq.dataverse.dataaccess.StorageIO;
 import io.gdcc.spi.export.ExportException;
 import io.gdcc.spi.export.Exporter;
@@ -15,7 +13,9 @@ import io.gdcc.spi.export.XMLExporter;
 import edu.harvard.iq.dataverse.settings.JvmSettings;
 import edu.harvard.iq.dataverse.util.BundleUtil;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -24,31 +24,48 @@ import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.net.URL;
 import java.net.URLClassLoader;
-import java.nio.channels.Channel;
-import java.nio.channels.Channels;
-import java.nio.channels.WritableByteChannel;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.sql.Timestamp;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.ServiceConfigurationError;
 import java.util.ServiceLoader;
-import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
+import jakarta.enterprise.inject.spi.CDI;
 import jakarta.ws.rs.core.MediaType;
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.CountingOutputStream;
+import org.eclipse.microprofile.metrics.Metadata;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.MetricUnits;
+import org.eclipse.microprofile.metrics.Tag;
 
 /**
  *
@@ -59,6 +76,11 @@ public class ExportService {
     private static ExportService service;
     private ServiceLoader<Exporter> loader;
     private Map<String, Exporter> exporterMap = new HashMap<>();
+    private ExporterGraph exporterGraph;
+
+    private static final String EXPORT_DIGEST_ALGORITHM = "SHA-256";
+    // (the aux object with the size and the digest of a cached export)
+    private static final String CACHED_EXPORT_INFO_SUFFIX = ".info";
 
     private static final Logger logger = Logger.getLogger(ExportService.class.getCanonicalName());
 
@@ -128,77 +150,47 @@ public class ExportService {
     }
 
     public InputStream getExport(Dataset dataset, String formatName) throws ExportException, IOException {
+        return getExportAsCached(dataset, formatName).getInputStream();
+    }
+
+    /**
+     * Like {@link #getExport(Dataset, String)}, but returns the export as it
+     * is cached - compressed, with its ETag - so that it can be sent to the
+     * clients that accept its content encoding without decompressing it.
+     */
+    public CachedExport getExportAsCached(Dataset dataset, String formatName) throws ExportException, IOException {
         // first we will try to locate an already existing, cached export
         // for this format:
 
-        InputStream exportInputStream = getCachedExportFormat(dataset, formatName);
+        CachedExport cachedExport = getCachedExportFormat(dataset, formatName);
 
         // The DDI export is limited for restricted and actively embargoed files (no
         // data/file description sections).and when an embargo ends, we need to refresh
         // this export.
-        boolean clearCachedExport = false;
-        if (formatName.equals(DDIExporter.PROVIDER_NAME) && (exportInputStream != null)) {
-            // We want ddi and there was a cached version
-            LocalDate exportLocalDate = null;
-            Date lastExportDate = dataset.getLastExportTime();
-            // if lastExportDate == null, assume it's not set because were exporting for the
-            // first time now (e.g. during publish) and therefore no changes are needed
-            if (lastExportDate != null) {
-                exportLocalDate = lastExportDate.toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
-                logger.fine("Last export date: " + exportLocalDate.toString());
-                // Track which embargoes we've already checked
-                Set<Long> embargoIds = new HashSet<Long>();
-                // Check for all files in the latest released version
-                for (FileMetadata fm : dataset.getLatestVersionForCopy().getFileMetadatas()) {
-                    // ToDo? This loop is necessary because we have not stored the date when the
-                    // next embargo in this datasetversion will end. If we knew that (another
-                    // dataset/datasetversion column), we could make
-                    // one check that nextembargoEnd exists and is after the last export and before
-                    // now versus scanning through files until we potentially find such an embargo.
-                    Embargo e = fm.getDataFile().getEmbargo();
-                    if (e != null) {
-                        logger.fine("Datafile:  " + fm.getDataFile().getId());
-                        logger.fine("Embargo end date: " + e.getFormattedDateAvailable());
-                    }
-                    if (e != null && !embargoIds.contains(e.getId()) && e.getDateAvailable().isAfter(exportLocalDate)
-                            && e.getDateAvailable().isBefore(LocalDate.now())) {
-                        logger.fine("Request that the ddi export be cleared.");
-                        // The file has been embargoed and the embargo ended after the last export and
-                        // before the current date, so we need to remove the cached DDI export and make
-                        // it refresh
-                        clearCachedExport = true;
-                        break;
-                    } else if (e != null) {
-                        logger.fine("adding embargo to checked list: " + e.getId());
-                        embargoIds.add(e.getId());
-                    }
-                }
-            }
-            if (clearCachedExport) {
-                try {
-                    exportInputStream.close();
-                    clearCachedExport(dataset, formatName);
-                } catch (Exception ex) {
-                    logger.warning("Failure deleting DDI export format for dataset id: " + dataset.getId()
-                            + " after embargo expiration: " + ex.getLocalizedMessage());
-                } finally {
-                    exportInputStream = null;
-                }
+        if (cachedExport != null && !isCachedExportCurrent(dataset, formatName)) {
+            try {
+                cachedExport.close();
+                clearCachedExport(dataset, formatName);
+            } catch (Exception ex) {
+                logger.warning("Failure deleting DDI export format for dataset id: " + dataset.getId()
+                        + " after embargo expiration: " + ex.getLocalizedMessage());
+            } finally {
+                cachedExport = null;
             }
         }
 
-        if (exportInputStream != null) {
-            return exportInputStream;
+        if (cachedExport != null) {
+            return cachedExport;
         }
 
         // if it doesn't exist, we'll try to run the export:
         exportFormat(dataset, formatName);
 
         // and then try again:
-        exportInputStream = getCachedExportFormat(dataset, formatName);
+        cachedExport = getCachedExportFormat(dataset, formatName);
 
-        if (exportInputStream != null) {
-            return exportInputStream;
+        if (cachedExport != null) {
+            return cachedExport;
         }
 
         // if there is no cached export still - we have to give up and throw
@@ -207,6 +199,93 @@ public class ExportService {
 
     }
 
+    /**
+     * Opens the storage of the cached exports of a dataset, for
+     * {@link #getCachedExport(StorageIO, String)}. The location of the
+     * exports is worked out from the dataset here, on the thread that looked
+     * it up, so that they can then be opened on another one, without the
+     * dataset.
+     */
+    public StorageIO<Dataset> getCachedExportStorage(Dataset dataset) throws IOException {
+        StorageIO<Dataset> storageIO = getStorageIO(dataset);
+        storageIO.open(DataAccessOption.READ_ACCESS);
+        // (the location also depends on the alternative ids of the dataset,
+        // which are loaded lazily)
+        dataset.getAuthorityForFileStorage();
+        dataset.getIdentifierForFileStorage();
+        return storageIO;
+    }
+
+    /**
+     * Opens the cached export in the format specified, if there is one,
+     * without checking if it is current, and without running the export
+     * otherwise. It only reads the storage (see
+     * {@link #getCachedExportStorage(Dataset)}), so, unlike
+     * {@link #getExport(Dataset, String)}, it can be called outside of the
+     * thread that looked up the dataset.
+     *
+     * @return the cached export (decompressed), or null if there is none
+     */
+    public InputStream getCachedExport(StorageIO<Dataset> storageIO, String formatName) throws IOException {
+        CachedExport cachedExport = openCachedExport(storageIO, "export_" + formatName + ".cached");
+        return cachedExport == null ? null : cachedExport.getInputStream();
+    }
+
+    /**
+     * @return false if the cached export in the format specified must be
+     * refreshed; which is the case of the DDI exports made before the end of
+     * an embargo of a file of the dataset.
+     */
+    public boolean isCachedExportCurrent(Dataset dataset, String formatName) {
+        if (!formatName.equals(DDIExporter.PROVIDER_NAME)) {
+            return true;
+        }
+        // We want ddi and there was a cached version
+        Date lastExportDate = dataset.getLastExportTime();
+        DatasetVersion releasedVersion = dataset.getReleasedVersion();
+        // if lastExportDate == null, assume it's not set because were exporting for the
+        // first time now (e.g. during publish) and therefore no changes are needed
+        if (lastExportDate != null && releasedVersion != null) {
+            LocalDate exportLocalDate = lastExportDate.toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+            // The end of the first embargo after the last export is stored
+            // with the version (see updateNextEmbargoEnd()), so this doesn't
+            // need to go through the files:
+            LocalDate nextEmbargoEnd = releasedVersion.getNextEmbargoEnd();
+            logger.fine("Last export date: " + exportLocalDate + "; next embargo end: " + nextEmbargoEnd);
+            if (nextEmbargoEnd != null && nextEmbargoEnd.isAfter(exportLocalDate)
+                    && !nextEmbargoEnd.isAfter(LocalDate.now())) {
+                logger.fine("Request that the ddi export be cleared.");
+                // An embargo ended after the last export, so we need to
+                // remove the cached DDI export and make it refresh
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stores the end of the first embargo of the files of the released
+     * version after the last export of the dataset - when the exports are
+     * to be refreshed - with the version. It is only stored with the
+     * released version; the other versions of the dataset are cleared.
+     */
+    public void updateNextEmbargoEnd(Dataset dataset) {
+        DatasetVersion releasedVersion = dataset.getReleasedVersion();
+        Date lastExportDate = dataset.getLastExportTime();
+        LocalDate nextEmbargoEnd = null;
+        if (releasedVersion != null && lastExportDate != null) {
+            nextEmbargoEnd = releasedVersion.findNextEmbargoEnd(
+                    lastExportDate.toInstant().atZone(ZoneId.systemDefault()).toLocalDate());
+        }
+        for (DatasetVersion version : dataset.getVersions()) {
+            LocalDate versionNextEmbargoEnd = version.equals(releasedVersion) ? nextEmbargoEnd : null;
+            // (only updated when it changes, as a version is versioned)
+            if (!Objects.equals(version.getNextEmbargoEnd(), versionNextEmbargoEnd)) {
+                version.setNextEmbargoEnd(versionNextEmbargoEnd);
+            }
+        }
+    }
+
     public String getExportAsString(Dataset dataset, String formatName) {
         InputStream inputStream = null;
         InputStreamReader inp = null;
@@ -240,38 +319,56 @@ public class ExportService {
     // This method goes through all the Exporters and calls
     // the "chacheExport()" method that will save the produced output
     // in a file in the dataset directory, on each Exporter available.
+    //
+    // The exporters run in the stages of the exporter graph: the formats
+    // that are the prerequisites of others are exported first, and the
+    // exporters of a stage run in parallel. They all share the same data
+    // provider, so the representations of the dataset version (the json,
+    // the ORE map, etc.) are only computed once - up front, on this
+    // thread, since computing them reads the database. A cached export that
+    // turns out to be unchanged is not written again.
     public void exportAllFormats(Dataset dataset) throws ExportException {
-        try {
-            clearAllCachedFormats(dataset);
-        } catch (IOException ex) {
-            Logger.getLogger(ExportService.class.getName()).log(Level.SEVERE, null, ex);
-        }
-
         try {
             DatasetVersion releasedVersion = dataset.getReleasedVersion();
             if (releasedVersion == null) {
+                try {
+                    clearAllCachedFormats(dataset);
+                } catch (IOException ex) {
+                    logger.log(Level.SEVERE, null, ex);
+                }
                 throw new ExportException("No released version for dataset " + dataset.getGlobalId().toString());
             }
             InternalExportDataProvider dataProvider = new InternalExportDataProvider(releasedVersion);
+            dataProvider.prepare();
 
-            for (Exporter e : exporterMap.values()) {
-                String formatName = e.getFormatName();
-                if(e.getPrerequisiteFormatName().isPresent()) {
+            try {
+                for (List<String> stage : getExporterGraph().getStages()) {
+                    runExportStage(dataset, dataProvider, stage);
+                }
+                // (the formats whose prerequisites can't be resolved are exported
+                // the way they would be if they were exported alone)
+                for (String formatName : getExporterGraph().getUnresolved()) {
+                    Exporter e = exporterMap.get(formatName);
                     String prereqFormatName = e.getPrerequisiteFormatName().get();
                     try (InputStream preReqStream = getExport(dataset, prereqFormatName)) {
-                        dataProvider.setPrerequisiteInputStream(preReqStream);
-                        cacheExport(dataset, dataProvider, formatName, e);
-                        dataProvider.setPrerequisiteInputStream(null);
+                        cacheExport(dataset, getStorageIO(dataset), dataProvider.withPrerequisiteInputStream(preReqStream), formatName, e);
                     } catch (IOException ioe) {
-                        throw new ExportException ("Could not get prerequisite " + e.getPrerequisiteFormatName() + " to create " + formatName + "export for dataset " + dataset.getId(), ioe);
+                        throw new ExportException ("Could not get prerequisite " + prereqFormatName + " to create " + formatName + "export for dataset " + dataset.getId(), ioe);
                     }
-                } else {
-                    cacheExport(dataset, dataProvider, formatName, e);
                 }
+            } catch (ExportException | RuntimeException ex) {
+                // The formats not exported yet are out of date:
+                try {
+                    clearAllCachedFormats(dataset);
+                } catch (IOException ioex) {
+                    logger.log(Level.SEVERE, null, ioex);
+                }
+                throw ex;
             }
             // Finally, if we have been able to successfully export in all available
             // formats, we'll increment the "last exported" time stamp:
             dataset.setLastExportTime(new Timestamp(new Date().getTime()));
+            updateNextEmbargoEnd(dataset);
 
         } catch (ServiceConfigurationError serviceError) {
             throw new ExportException("Service configuration error during export. " + serviceError.getMessage());
@@ -283,6 +380,121 @@ public class ExportService {
 
     }
 
+    /**
+     * Runs the exporters of the formats specified - which don't depend on
+     * one another - in parallel, and waits for all of them to finish.
+     *
+     * @throws ExportException the first failure that is not the failure of
+     * an exporter itself (which is only logged, as it doesn't affect the
+     * other exporters)
+     */
+    private void runExportStage(Dataset dataset, InternalExportDataProvider dataProvider, List<String> formatNames) throws ExportException {
+        List<Callable<Void>> exports = new ArrayList<>();
+        for (String formatName : formatNames) {
+            Exporter e = exporterMap.get(formatName);
+            StorageIO<Dataset> storageIO;
+            try {
+                // (looked up on this thread, as it reads the dataset)
+                storageIO = getStorageIO(dataset);
+            } catch (IOException ioex) {
+                throw new ExportException("IO Exception thrown before exporting as " + "export_" + formatName + ".cached");
+            }
+            exports.add(() -> {
+                if (e.getPrerequisiteFormatName().isPresent()) {
+                    // (exported in a previous stage)
+                    String prereqFormatName = e.getPrerequisiteFormatName().get();
+                    try (CachedExport preReqExport = openCachedExport(storageIO, "export_" + prereqFormatName + ".cached")) {
+                        if (preReqExport == null) {
+                            throw new IOException("No cached export as " + prereqFormatName);
+                        }
+                        cacheExport(dataset, storageIO, dataProvider.withPrerequisiteInputStream(preReqExport.getInputStream()), formatName, e);
+                    } catch (IOException ioe) {
+                        throw new ExportException ("Could not get prerequisite " + prereqFormatName + " to create " + formatName + "export for dataset " + dataset.getId(), ioe);
+                    }
+                } else {
+                    cacheExport(dataset, storageIO, dataProvider, formatName, e);
+                }
+                return null;
+            });
+        }
+
+        ExecutorService executor = getExportExecutor();
+        List<Future<Void>> results = new ArrayList<>();
+        int parallelism = JvmSettings.EXPORTERS_PARALLELISM.lookupOptional(Integer.class).orElse(4);
+        Semaphore permits = new Semaphore(Math.max(1, parallelism));
+        for (Callable<Void> export : exports) {
+            if (executor == null) {
+                results.add(runNow(export));
+                continue;
+            }
+            permits.acquireUninterruptibly();
+            try {
+                results.add(executor.submit(() -> {
+                    try {
+                        return export.call();
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            } catch (RejectedExecutionException ree) {
+                permits.release();
+                results.add(runNow(export));
+            }
+        }
+
+        ExportException failure = null;
+        for (Future<Void> result : results) {
+            try {
+                result.get();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                failure = failure != null ? failure : new ExportException("Interrupted while exporting dataset " + dataset.getId());
+            } catch (ExecutionException ee) {
+                Throwable cause = ee.getCause();
+                if (failure == null) {
+                    if (cause instanceof ExportException) {
+                        failure = (ExportException) cause;
+                    } else if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    } else {
+                        failure = new ExportException("Failure exporting dataset " + dataset.getId(), cause);
+                    }
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private static Future<Void> runNow(Callable<Void> export) {
+        FutureTask<Void> task = new FutureTask<>(export);
+        task.run();
+        return task;
+    }
+
+    /**
+     * @return the managed executor of the application server, or null if
+     * there is none (the exporters then run one after the other)
+     */
+    private static ExecutorService getExportExecutor() {
+        try {
+            return (ExecutorService) new InitialContext().lookup("java:comp/DefaultManagedExecutorService");
+        } catch (NamingException | RuntimeException ex) {
+            logger.fine("No managed executor for the exporters: " + ex.getMessage());
+            return null;
+        }
+    }
+
+    private synchronized ExporterGraph getExporterGraph() {
+        if (exporterGraph == null) {
+            Map<String, Optional<String>> prerequisites = new HashMap<>();
+            exporterMap.forEach((formatName, e) -> prerequisites.put(formatName, e.getPrerequisiteFormatName()));
+            exporterGraph = new ExporterGraph(prerequisites);
+        }
+        return exporterGraph;
+    }
+
     public void clearAllCachedFormats(Dataset dataset) throws IOException {
         try {
 
@@ -315,16 +527,21 @@ public class ExportService {
                     String prereqFormatName = e.getPrerequisiteFormatName().get();
                     try (InputStream preReqStream = getExport(dataset, prereqFormatName)) {
                         InternalExportDataProvider dataProvider = new InternalExportDataProvider(releasedVersion, preReqStream);
-                        cacheExport(dataset, dataProvider, formatName, e);
+                        cacheExport(dataset, getStorageIO(dataset), dataProvider, formatName, e);
                     } catch (IOException ioe) {
                         throw new ExportException ("Could not get prerequisite " + e.getPrerequisiteFormatName() + " to create " + formatName + "export for dataset " + dataset.getId(), ioe);
                     }
                 } else {
                     InternalExportDataProvider dataProvider = new InternalExportDataProvider(releasedVersion);
-                    cacheExport(dataset, dataProvider, formatName, e);
+                    try {
+                        cacheExport(dataset, getStorageIO(dataset), dataProvider, formatName, e);
+                    } catch (IOException ioex) {
+                        throw new ExportException("IO Exception thrown before exporting as " + "export_" + formatName + ".cached");
+                    }
                 }
                 // As with exportAll, we should update the lastexporttime for the dataset
                 dataset.setLastExportTime(new Timestamp(new Date().getTime()));
+                updateNextEmbargoEnd(dataset);
             } else {
                 throw new ExportException("Exporter not found");
             }
@@ -352,48 +569,35 @@ public class ExportService {
     }
 
     // This method runs the selected metadata exporter, caching the output
-    // in a file in the dataset directory / container based on its DOI:
-    private void cacheExport(Dataset dataset, InternalExportDataProvider dataProvider, String format, Exporter exporter)
+    // in a file in the dataset directory / container based on its DOI.
+    // The output is written to a temp file first - gzip-compressed, unless
+    // dataverse.spi.exporters.compression says otherwise - and only saved if
+    // it differs from the export already cached (if any) - so that the
+    // formats that are not affected by a change (of the file metadata, for
+    // example) are not rewritten. It is saved along with its info: its
+    // size, its compressed size and its digest, which is its ETag.
+    // It may run on another thread than the one that looked up the dataset,
+    // so it only reads the storage and the data provider.
+    private void cacheExport(Dataset dataset, StorageIO<Dataset> storageIO, InternalExportDataProvider dataProvider, String format, Exporter exporter)
             throws ExportException {
-        
-        OutputStream outputStream = null;
+
+        String auxTag = "export_" + format + ".cached";
+        File tempFile = null;
         try {
-            boolean tempFileUsed = false;
-            File tempFile = null;
-            StorageIO<Dataset> storageIO = null;
-
-            // With some storage drivers, we can open a WritableChannel, or OutputStream
-            // to directly write the generated metadata export that we want to cache;
-            // Some drivers (like Swift) do not support that, and will give us an
-            // "operation not supported" exception. If that's the case, we'll have
-            // to save the output into a temp file, and then copy it over to the
-            // permanent storage using the IO "save" command:
-            try {
-                storageIO = DataAccess.getStorageIO(dataset);
-                Channel outputChannel = storageIO.openAuxChannel("export_" + format + ".cached",
-                        DataAccessOption.WRITE_ACCESS);
-                outputStream = Channels.newOutputStream((WritableByteChannel) outputChannel);
-            } catch (IOException ioex) {
-                // A common case = an IOException in openAuxChannel which is not supported by S3
-                // stores for WRITE_ACCESS
-                tempFileUsed = true;
-                tempFile = File.createTempFile("tempFileToExport", ".tmp");
-                outputStream = new FileOutputStream(tempFile);
+            tempFile = File.createTempFile("tempFileToExport", ".tmp");
+            MessageDigest digest = MessageDigest.getInstance(EXPORT_DIGEST_ALGORITHM);
+            String contentEncoding = getCachedExportEncoding();
+            long start = System.nanoTime();
+            // (the digest and the size are those of the export itself, not
+            // of the compressed one)
+            OutputStream fileStream = new BufferedOutputStream(new FileOutputStream(tempFile));
+            if (CachedExport.GZIP.equals(contentEncoding)) {
+                fileStream = new GZIPOutputStream(fileStream, 8192);
             }
-
-            try {
-                // Write the metadata export file to the outputStream, which may be the final
-                // location or a temp file
+            CountingOutputStream countingStream = new CountingOutputStream(fileStream);
+            try (OutputStream outputStream = new DigestOutputStream(countingStream, digest)) {
+                // Write the metadata export file to the temp file
                 exporter.exportDataset(dataProvider, outputStream);
-                outputStream.flush();
-                outputStream.close();
-                if (tempFileUsed) {
-                    logger.fine("Saving export_" + format + ".cached aux file from temp file: "
-                            + Paths.get(tempFile.getAbsolutePath()));
-                    storageIO.savePathAsAux(Paths.get(tempFile.getAbsolutePath()), "export_" + format + ".cached");
-                    boolean tempFileDeleted = tempFile.delete();
-                    logger.fine("tempFileDeleted: " + tempFileDeleted);
-                }
             } catch (ExportException exex) {
                 /*
                  * This exception is from the particular exporter and may not affect other
@@ -403,23 +607,103 @@ public class ExportService {
                  * exception subtype and send it upward, but the callers currently just log and
                  * ignore beyond terminating any loop over exporters.
                  */
-                logger.warning("Exception thrown while creating export_" + format + ".cached : " + exex.getMessage());
-            } catch (IOException ioex) {
-                throw new ExportException("IO Exception thrown exporting as " + "export_" + format + ".cached");
+                logger.warning("Exception thrown while creating " + auxTag + " : " + exex.getMessage());
+                // (the export cached before, if any, is out of date)
+                deleteCachedExportInfo(storageIO, auxTag);
+                try {
+                    storageIO.deleteAuxObject(auxTag);
+                } catch (IOException ioex) {
+                    logger.fine("Failed to delete " + auxTag + " for dataset " + dataset.getId() + ": " + ioex.getMessage());
+                }
+                return;
+            } finally {
+                recordExportTime(format, System.nanoTime() - start);
             }
 
+            long size = countingStream.getByteCount();
+            byte[] exportDigest = digest.digest();
+            if (isCachedExportUnchanged(storageIO, auxTag, contentEncoding, size, exportDigest)) {
+                logger.fine(auxTag + " of dataset " + dataset.getId() + " is unchanged");
+                return;
+            }
+            logger.fine("Saving " + auxTag + " aux file from temp file: " + Paths.get(tempFile.getAbsolutePath()));
+            // (the info goes first, and comes back last, so that it is never
+            // the info of another export)
+            deleteCachedExportInfo(storageIO, auxTag);
+            storageIO.savePathAsAux(Paths.get(tempFile.getAbsolutePath()), auxTag);
+            byte[] info = CachedExport.encodeInfo(contentEncoding, size, tempFile.length(), exportDigest);
+            storageIO.saveInputStreamAsAux(new ByteArrayInputStream(info), auxTag + CACHED_EXPORT_INFO_SUFFIX, (long) info.length);
+        } catch (NoSuchAlgorithmException nsae) {
+            throw new ExportException("No " + EXPORT_DIGEST_ALGORITHM + " digest for exporting as " + auxTag);
         } catch (IOException ioex) {
-            // This catches any problem creating a local temp file in the catch clause above
-            throw new ExportException("IO Exception thrown before exporting as " + "export_" + format + ".cached");
+            throw new ExportException("IO Exception thrown exporting as " + auxTag);
         } finally {
-            IOUtils.closeQuietly(outputStream);
+            if (tempFile != null) {
+                boolean tempFileDeleted = tempFile.delete();
+                logger.fine("tempFileDeleted: " + tempFileDeleted);
+            }
         }
 
     }
 
+    /**
+     * @return true if the export cached has the content encoding, the size
+     * and the digest specified, according to the info cached with it (an
+     * export cached without the info is saved again, with it)
+     */
+    private static boolean isCachedExportUnchanged(StorageIO<Dataset> storageIO, String auxTag, String contentEncoding, long size, byte[] digest) {
+        try {
+            if (!storageIO.isAuxObjectCached(auxTag)) {
+                return false;
+            }
+            return CachedExport.isInfoOf(openCachedExportInfo(storageIO, auxTag), contentEncoding, size, digest);
+        } catch (IOException ex) {
+            // (it will just be saved again)
+            logger.fine("Failed to compare with the cached " + auxTag + ": " + ex.getMessage());
+            return false;
+        }
+    }
+
+    private static void deleteCachedExportInfo(StorageIO<Dataset> storageIO, String auxTag) {
+        try {
+            if (storageIO.isAuxObjectCached(auxTag + CACHED_EXPORT_INFO_SUFFIX)) {
+                storageIO.deleteAuxObject(auxTag + CACHED_EXPORT_INFO_SUFFIX);
+            }
+        } catch (IOException ioex) {
+            logger.fine("Failed to delete the info of " + auxTag + ": " + ioex.getMessage());
+        }
+    }
+
+    /**
+     * @return the content encoding the exports are cached with (gzip, by
+     * default), or null if they are cached uncompressed
+     */
+    private static String getCachedExportEncoding() {
+        String compression = JvmSettings.EXPORTERS_COMPRESSION.lookupOptional(String.class).orElse(CachedExport.GZIP);
+        return CachedExport.GZIP.equalsIgnoreCase(compression) ? CachedExport.GZIP : null;
+    }
+
+    /**
+     * Records the time an exporter took, in the "export_time" timer of the
+     * format (when the metrics are available).
+     */
+    private static void recordExportTime(String format, long nanos) {
+        logger.fine("Exporting as " + format + " took " + TimeUnit.NANOSECONDS.toMillis(nanos) + " ms");
+        try {
+            MetricRegistry registry = CDI.current().select(MetricRegistry.class).get();
+            registry.timer(Metadata.builder().withName("export_time").withUnit(MetricUnits.NANOSECONDS)
+                    .withDescription("Displays how long does it take to export a dataset in a format").build(),
+                    new Tag("format", format)).update(Duration.ofNanos(nanos));
+        } catch (RuntimeException ex) {
+            // (no metrics, outside of the application server)
+            logger.log(Level.FINEST, "No metrics for the exporters", ex);
+        }
+    }
+
     private void clearCachedExport(Dataset dataset, String format) throws IOException {
         try {
             StorageIO<Dataset> storageIO = getStorageIO(dataset);
+            deleteCachedExportInfo(storageIO, "export_" + format + ".cached");
             storageIO.deleteAuxObject("export_" + format + ".cached");
 
         } catch (IOException ex) {
@@ -430,8 +714,8 @@ public class ExportService {
 
     // This method checks if the metadata has already been exported in this
     // format and cached on disk. If it has, it'll open the file and retun
-    // the file input stream. If not, it'll return null.
-    private InputStream getCachedExportFormat(Dataset dataset, String formatName) throws ExportException, IOException {
+    // the cached export. If not, it'll return null.
+    private CachedExport getCachedExportFormat(Dataset dataset, String formatName) throws ExportException, IOException {
 
         StorageIO<Dataset> dataAccess = null;
 
@@ -441,17 +725,42 @@ public class ExportService {
             throw new IOException("IO Exception thrown exporting as " + "export_" + formatName + ".cached", ioex);
         }
 
-        InputStream cachedExportInputStream = null;
-
         try {
-            cachedExportInputStream = dataAccess.getAuxFileAsInputStream("export_" + formatName + ".cached");
-            return cachedExportInputStream;
+            return openCachedExport(dataAccess, "export_" + formatName + ".cached");
         } catch (IOException ioex) {
             throw new IOException("IO Exception thrown exporting as " + "export_" + formatName + ".cached", ioex);
         }
 
     }
 
+    /**
+     * @return the export cached with the aux tag specified, along with its
+     * info, or null if there is none
+     */
+    private static CachedExport openCachedExport(StorageIO<Dataset> storageIO, String auxTag) throws IOException {
+        InputStream cachedExportInputStream = storageIO.getAuxFileAsInputStream(auxTag);
+        if (cachedExportInputStream == null) {
+            return null;
+        }
+        try {
+            return new CachedExport(cachedExportInputStream, openCachedExportInfo(storageIO, auxTag));
+        } catch (IOException | RuntimeException ex) {
+            cachedExportInputStream.close();
+            throw ex;
+        }
+    }
+
+    private static InputStream openCachedExportInfo(StorageIO<Dataset> storageIO, String auxTag) {
+        try {
+            return storageIO.getAuxFileAsInputStream(auxTag + CACHED_EXPORT_INFO_SUFFIX);
+        } catch (IOException ioex) {
+            // (an export cached before the info was, or with a storage
+            // that doesn't say it's not there)
+            logger.fine("No info for " + auxTag + ": " + ioex.getMessage());
+            return null;
+        }
+    }
+
     /*
      * The below method, getCachedExportSize(), is not currently used. An exercise
      * for the reader could be to refactor it if it's needed to be compatible with
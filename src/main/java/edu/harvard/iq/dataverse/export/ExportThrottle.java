@@ -0,0 +1,44 @@
+package edu.harvard.iq.dataverse.export;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spaces out the exports of a bulk re-export - and so, the writes of the
+ * exported metadata to the storage - so that there are no more than a
+ * given number per second, however many workers there are. Each call to
+ * acquire() takes the next free slot, waiting for it if it is ahead.
+ */
+class ExportThrottle {
+
+    private final long interval;
+    private long nextSlot;
+
+    /**
+     * @param maxPerSecond the number of exports allowed per second; 0 (or
+     * less) for no limit
+     */
+    ExportThrottle(int maxPerSecond) {
+        this.interval = maxPerSecond > 0 ? TimeUnit.SECONDS.toNanos(1) / maxPerSecond : 0;
+        this.nextSlot = System.nanoTime();
+    }
+
+    /**
+     * Waits for the next slot.
+     */
+    void acquire() throws InterruptedException {
+        if (interval == 0) {
+            return;
+        }
+        long slot;
+        synchronized (this) {
+            long now = System.nanoTime();
+            // (a slot that went unused is not made up for later)
+            slot = Math.max(nextSlot, now);
+            nextSlot = slot + interval;
+        }
+        long wait = slot - System.nanoTime();
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package edu.harvard.iq.dataverse.export;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The export formats, arranged in the order they can be exported in: each
+ * format that is the prerequisite of others (whose exporters read its
+ * export) is exported before them. The formats are grouped in stages; the
+ * formats of a stage don't depend on one another, so they can be exported
+ * at the same time, once the formats of the previous stages are.
+ *
+ * A format whose prerequisite is not available, or that is part of a cycle
+ * of prerequisites, is not part of any stage; see getUnresolved().
+ */
+class ExporterGraph {
+
+    private final List<List<String>> stages = new ArrayList<>();
+    private final List<String> unresolved;
+
+    /**
+     * @param prerequisites the prerequisite format of each format, if any
+     */
+    ExporterGraph(Map<String, Optional<String>> prerequisites) {
+        Map<String, Integer> depths = new HashMap<>();
+        Set<String> unresolvedFormats = new TreeSet<>();
+        for (String format : prerequisites.keySet()) {
+            depth(format, prerequisites, depths, new LinkedHashSet<>(), unresolvedFormats);
+        }
+        unresolved = new ArrayList<>(unresolvedFormats);
+
+        int maxDepth = -1;
+        for (Integer depth : depths.values()) {
+            maxDepth = Math.max(maxDepth, depth);
+        }
+        for (int i = 0; i <= maxDepth; i++) {
+            stages.add(new ArrayList<>());
+        }
+        // (in the order of the names, so that the order is stable)
+        for (String format : new TreeSet<>(depths.keySet())) {
+            stages.get(depths.get(format)).add(format);
+        }
+    }
+
+    /**
+     * @return the depth of the format in the graph - 0 if it has no
+     * prerequisite - or -1 if its prerequisites can't be resolved
+     */
+    private static int depth(String format, Map<String, Optional<String>> prerequisites, Map<String, Integer> depths, Set<String> path, Set<String> unresolved) {
+        if (depths.containsKey(format)) {
+            return depths.get(format);
+        }
+        if (unresolved.contains(format)) {
+            return -1;
+        }
+        Optional<String> prerequisite = prerequisites.get(format);
+        if (prerequisite == null) {
+            // (not an available format)
+            return -1;
+        }
+        if (!path.add(format)) {
+            // (a cycle)
+            unresolved.add(format);
+            return -1;
+        }
+        int depth = 0;
+        if (prerequisite.isPresent()) {
+            int prerequisiteDepth = depth(prerequisite.get(), prerequisites, depths, path, unresolved);
+            depth = prerequisiteDepth < 0 ? -1 : prerequisiteDepth + 1;
+        }
+        path.remove(format);
+        if (depth < 0 || unresolved.contains(format)) {
+            unresolved.add(format);
+            return -1;
+        }
+        depths.put(format, depth);
+        return depth;
+    }
+
+    /**
+     * @return the formats, stage by stage
+     */
+    List<List<String>> getStages() {
+        return stages;
+    }
+
+    /**
+     * @return the formats whose prerequisites can't be exported before them;
+     * these are to be exported after all the stages, with their prerequisite
+     * exported on demand, as it would be if the format was exported alone
+     */
+    List<String> getUnresolved() {
+        return unresolved;
+    }
+}
@@ -1,17 +1,25 @@
 package edu.harvard.iq.dataverse.export;
 
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.logging.Logger;
 
 import jakarta.json.Json;
 import jakarta.json.JsonArray;
 import jakarta.json.JsonArrayBuilder;
 import jakarta.json.JsonObject;
 import jakarta.json.JsonObjectBuilder;
+import jakarta.json.JsonValue;
+import jakarta.enterprise.inject.spi.CDI;
+import javax.xml.stream.XMLStreamException;
 import edu.harvard.iq.dataverse.DataCitation;
 import edu.harvard.iq.dataverse.DataFile;
 import edu.harvard.iq.dataverse.DatasetVersion;
 import edu.harvard.iq.dataverse.FileMetadata;
+import edu.harvard.iq.dataverse.datavariable.VariableServiceBean;
+import edu.harvard.iq.dataverse.export.ddi.DdiVariableSource;
 import edu.harvard.iq.dataverse.pidproviders.doi.datacite.DOIDataCiteRegisterService;
 import io.gdcc.spi.export.ExportDataProvider;
 import edu.harvard.iq.dataverse.util.bagit.OREMap;
@@ -21,64 +29,194 @@ import edu.harvard.iq.dataverse.util.json.JsonUtil;
 /**
  * Provides all data necessary to create an export
  * 
+ * The representations of the dataset version are computed once, on first
+ * use, and shared by all the exporters that use the same provider, or a
+ * provider created with {@link #withPrerequisiteInputStream(InputStream)};
+ * they can be computed up front, with {@link #prepare()}, for the exporters
+ * to run on other threads.
  */
 public class InternalExportDataProvider implements ExportDataProvider {
 
+    private static final Logger logger = Logger.getLogger(InternalExportDataProvider.class.getCanonicalName());
+
     private DatasetVersion dv;
-    private JsonObject jsonRepresentation = null;
-    private JsonObject schemaDotOrgRepresentation = null;
-    private JsonObject oreRepresentation = null;
+    private final Representations representations;
     private InputStream is = null;
 
+    /**
+     * The representations of a dataset version, as computed.
+     */
+    private static class Representations {
+        private JsonObject jsonRepresentation = null;
+        private JsonObject schemaDotOrgRepresentation = null;
+        private JsonObject oreRepresentation = null;
+        private String dataCiteXml = null;
+        private JsonArray fileDetails = null;
+        private JsonArray fileSummaries = null;
+    }
+
     InternalExportDataProvider(DatasetVersion dv) {
         this.dv = dv;
+        this.representations = new Representations();
     }
     
     InternalExportDataProvider(DatasetVersion dv, InputStream is) {
-        this.dv = dv;
+        this(dv);
         this.is=is;
     }
 
+    private InternalExportDataProvider(InternalExportDataProvider other, InputStream is) {
+        this.dv = other.dv;
+        this.representations = other.representations;
+        this.is = is;
+    }
+
+    /**
+     * @return a provider of the same dataset version, sharing the
+     * representations of this one, with the prerequisite export specified
+     */
+    InternalExportDataProvider withPrerequisiteInputStream(InputStream prereqStream) {
+        return new InternalExportDataProvider(this, prereqStream);
+    }
+
+    /**
+     * Computes all the representations of the dataset version, on the
+     * calling thread; a representation that fails is left to be computed
+     * (and to fail) when an exporter asks for it.
+     */
+    void prepare() {
+        List<Runnable> representationGetters = new ArrayList<>(List.of(this::getDatasetJson, this::getDatasetSchemaDotOrg,
+                this::getDatasetORE, this::getDataCiteXml, this::getDatasetFileSummaries));
+        if (getDdiVariableSource() == null) {
+            // (the variables can only be read from the entities)
+            representationGetters.add(this::getDatasetFileDetails);
+        }
+        for (Runnable getter : representationGetters) {
+            try {
+                getter.run();
+            } catch (RuntimeException e) {
+                logger.fine("Failed to prepare the export data of dataset version " + dv.getId() + ": " + e.getMessage());
+            }
+        }
+    }
+
     @Override
     public JsonObject getDatasetJson() {
-        if (jsonRepresentation == null) {
-            final JsonObjectBuilder datasetAsJsonBuilder = JsonPrinter.jsonAsDatasetDto(dv);
-            jsonRepresentation = datasetAsJsonBuilder.build();
+        synchronized (representations) {
+            if (representations.jsonRepresentation == null) {
+                final JsonObjectBuilder datasetAsJsonBuilder = JsonPrinter.jsonAsDatasetDto(dv);
+                representations.jsonRepresentation = datasetAsJsonBuilder.build();
+            }
+            return representations.jsonRepresentation;
         }
-        return jsonRepresentation;
     }
 
     @Override
     public JsonObject getDatasetSchemaDotOrg() {
-        if (schemaDotOrgRepresentation == null) {
-            String jsonLdAsString = dv.getJsonLd();
-            schemaDotOrgRepresentation = JsonUtil.getJsonObject(jsonLdAsString);
+        synchronized (representations) {
+            if (representations.schemaDotOrgRepresentation == null) {
+                String jsonLdAsString = dv.getJsonLd();
+                representations.schemaDotOrgRepresentation = JsonUtil.getJsonObject(jsonLdAsString);
+            }
+            return representations.schemaDotOrgRepresentation;
         }
-        return schemaDotOrgRepresentation;
     }
 
     @Override
     public JsonObject getDatasetORE() {
-        if (oreRepresentation == null) {
-            oreRepresentation = new OREMap(dv).getOREMap();
+        synchronized (representations) {
+            if (representations.oreRepresentation == null) {
+                representations.oreRepresentation = new OREMap(dv).getOREMap();
+            }
+            return representations.oreRepresentation;
         }
-        return oreRepresentation;
     }
 
     @Override
     public String getDataCiteXml() {
-        return DOIDataCiteRegisterService.getMetadataFromDvObject(
-                dv.getDataset().getGlobalId().asString(), new DataCitation(dv).getDataCiteMetadata(), dv.getDataset());
+        synchronized (representations) {
+            if (representations.dataCiteXml == null) {
+                representations.dataCiteXml = DOIDataCiteRegisterService.getMetadataFromDvObject(
+                        dv.getDataset().getGlobalId().asString(), new DataCitation(dv).getDataCiteMetadata(), dv.getDataset());
+            }
+            return representations.dataCiteXml;
+        }
     }
     
     @Override
     public JsonArray getDatasetFileDetails() {
-        JsonArrayBuilder jab = Json.createArrayBuilder();
-        for (FileMetadata fileMetadata : dv.getFileMetadatas()) {
-            DataFile dataFile = fileMetadata.getDataFile();
-            jab.add(JsonPrinter.json(dataFile, fileMetadata, true));
+        synchronized (representations) {
+            if (representations.fileDetails == null) {
+                DdiVariableSource variables = getDdiVariableSource();
+                JsonArrayBuilder jab = Json.createArrayBuilder();
+                if (variables != null) {
+                    // (reading the variables a page at a time, which can
+                    // be done on any thread)
+                    for (JsonValue fileSummary : getDatasetFileSummaries()) {
+                        jab.add(withVariables((JsonObject) fileSummary, variables));
+                    }
+                } else {
+                    for (FileMetadata fileMetadata : dv.getFileMetadatas()) {
+                        DataFile dataFile = fileMetadata.getDataFile();
+                        jab.add(JsonPrinter.json(dataFile, fileMetadata, true));
+                    }
+                }
+                representations.fileDetails = jab.build();
+            }
+            return representations.fileDetails;
+        }
+    }
+
+    /**
+     * @return the file details, as in getDatasetFileDetails(), without the
+     * variables of the data tables; to be read from getDdiVariableSource()
+     */
+    JsonArray getDatasetFileSummaries() {
+        synchronized (representations) {
+            if (representations.fileSummaries == null) {
+                JsonArrayBuilder jab = Json.createArrayBuilder();
+                for (FileMetadata fileMetadata : dv.getFileMetadatas()) {
+                    DataFile dataFile = fileMetadata.getDataFile();
+                    jab.add(JsonPrinter.json(dataFile, fileMetadata, true, false, false));
+                }
+                representations.fileSummaries = jab.build();
+            }
+            return representations.fileSummaries;
+        }
+    }
+
+    /**
+     * @return the variables of the files, read from the database a page at a
+     * time; or null if the database is not available (outside of the
+     * application server)
+     */
+    DdiVariableSource getDdiVariableSource() {
+        try {
+            return new PagedDdiVariableSource(CDI.current().select(VariableServiceBean.class).get());
+        } catch (RuntimeException e) {
+            logger.fine("No variable service for the export: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static JsonObject withVariables(JsonObject fileSummary, DdiVariableSource variables) {
+        if (!fileSummary.containsKey("dataTables")) {
+            return fileSummary;
+        }
+        JsonArrayBuilder dataVariables = Json.createArrayBuilder();
+        try {
+            variables.forEachVariable(fileSummary.getJsonNumber("id").longValue(), dataVariables::add);
+        } catch (XMLStreamException e) {
+            // (not thrown by the handler above)
+            throw new IllegalStateException(e);
+        }
+        JsonArray dataTables = fileSummary.getJsonArray("dataTables");
+        JsonArrayBuilder dataTablesWithVariables = Json.createArrayBuilder()
+                .add(Json.createObjectBuilder(dataTables.getJsonObject(0)).add("dataVariables", dataVariables));
+        for (int i = 1; i < dataTables.size(); i++) {
+            dataTablesWithVariables.add(dataTables.get(i));
         }
-        return jab.build();
+        return Json.createObjectBuilder(fileSummary).add("dataTables", dataTablesWithVariables).build();
     }
     
     @Override
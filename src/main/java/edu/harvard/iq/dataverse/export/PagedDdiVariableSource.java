@@ -0,0 +1,40 @@
+package edu.harvard.iq.dataverse.export;
+
+import edu.harvard.iq.dataverse.datavariable.VariableServiceBean;
+import edu.harvard.iq.dataverse.export.ddi.DdiVariableSource;
+import java.util.List;
+import jakarta.json.JsonObject;
+import javax.xml.stream.XMLStreamException;
+
+/**
+ * Reads the variables of a data file from the database a page at a time;
+ * only one page is held in memory at once.
+ */
+class PagedDdiVariableSource implements DdiVariableSource {
+
+    static final int PAGE_SIZE = 1000;
+
+    private final VariableServiceBean variableService;
+
+    PagedDdiVariableSource(VariableServiceBean variableService) {
+        this.variableService = variableService;
+    }
+
+    @Override
+    public void forEachVariable(long dataFileId, VariableHandler handler) throws XMLStreamException {
+        int afterFileOrder = -1;
+        Long afterId = null;
+        List<JsonObject> page;
+        do {
+            page = variableService.findPageAsJsonByDataFileId(dataFileId, afterFileOrder, afterId, PAGE_SIZE);
+            for (JsonObject variable : page) {
+                handler.handle(variable);
+            }
+            if (!page.isEmpty()) {
+                JsonObject last = page.get(page.size() - 1);
+                afterFileOrder = last.getInt("fileOrder");
+                afterId = last.getJsonNumber("id").longValue();
+            }
+        } while (page.size() == PAGE_SIZE);
+    }
+}
@@ -0,0 +1,255 @@
+package edu.harvard.iq.dataverse.export;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.NamedQueries;
+import jakarta.persistence.NamedQuery;
+import jakarta.persistence.Table;
+import jakarta.persistence.Temporal;
+import jakarta.persistence.TemporalType;
+
+/**
+ * A bulk re-export of the published, local datasets, and its progress: the
+ * datasets are re-exported in the order of their ids, and the id of the
+ * last one done is recorded as the job goes, so that a job that was stopped
+ * (or interrupted by a restart) can be resumed from there.
+ */
+@NamedQueries({
+    @NamedQuery(name = "ReExportJob.findAll",
+            query = "SELECT j FROM ReExportJob j ORDER BY j.id DESC"),
+    @NamedQuery(name = "ReExportJob.findByStatus",
+            query = "SELECT j FROM ReExportJob j WHERE j.status = :status ORDER BY j.id DESC")
+})
+@Entity
+@Table(indexes = {@Index(columnList = "status")})
+public class ReExportJob implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The number of the ids of the datasets that failed to export that are
+     * recorded; the failures beyond that are only counted.
+     */
+    public static final int MAX_FAILED_DATASET_IDS = 1000;
+
+    public enum Status { INPROGRESS, STOPPED, COMPLETED, FAILED };
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private boolean forceReExport;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Status status;
+
+    private boolean stopRequested;
+
+    @Temporal(value = TemporalType.TIMESTAMP)
+    private Date startTime;
+
+    @Temporal(value = TemporalType.TIMESTAMP)
+    private Date lastUpdateTime;
+
+    @Temporal(value = TemporalType.TIMESTAMP)
+    private Date finishTime;
+
+    /**
+     * The time the job has spent running, in milliseconds, not counting
+     * the time it was stopped.
+     */
+    private long runningTime;
+
+    private Long lastDatasetId;
+
+    private long exportedCount;
+
+    private long skippedCount;
+
+    private long failedCount;
+
+    @Column(columnDefinition = "TEXT")
+    private String failedDatasetIds;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public boolean isForceReExport() {
+        return forceReExport;
+    }
+
+    public void setForceReExport(boolean forceReExport) {
+        this.forceReExport = forceReExport;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public boolean isInProgress() {
+        return Status.INPROGRESS == status;
+    }
+
+    public boolean isCompleted() {
+        return Status.COMPLETED == status;
+    }
+
+    public boolean isStopRequested() {
+        return stopRequested;
+    }
+
+    public void setStopRequested(boolean stopRequested) {
+        this.stopRequested = stopRequested;
+    }
+
+    public Date getStartTime() {
+        return startTime;
+    }
+
+    public void setStartTime(Date startTime) {
+        this.startTime = startTime;
+    }
+
+    public Date getLastUpdateTime() {
+        return lastUpdateTime;
+    }
+
+    public void setLastUpdateTime(Date lastUpdateTime) {
+        this.lastUpdateTime = lastUpdateTime;
+    }
+
+    public Date getFinishTime() {
+        return finishTime;
+    }
+
+    public void setFinishTime(Date finishTime) {
+        this.finishTime = finishTime;
+    }
+
+    public long getRunningTime() {
+        return runningTime;
+    }
+
+    public void setRunningTime(long runningTime) {
+        this.runningTime = runningTime;
+    }
+
+    public Long getLastDatasetId() {
+        return lastDatasetId;
+    }
+
+    public void setLastDatasetId(Long lastDatasetId) {
+        this.lastDatasetId = lastDatasetId;
+    }
+
+    public long getExportedCount() {
+        return exportedCount;
+    }
+
+    public void setExportedCount(long exportedCount) {
+        this.exportedCount = exportedCount;
+    }
+
+    public long getSkippedCount() {
+        return skippedCount;
+    }
+
+    public void setSkippedCount(long skippedCount) {
+        this.skippedCount = skippedCount;
+    }
+
+    public long getFailedCount() {
+        return failedCount;
+    }
+
+    public void setFailedCount(long failedCount) {
+        this.failedCount = failedCount;
+    }
+
+    /**
+     * @return the number of datasets exported, skipped, or failed so far
+     */
+    public long getProcessedCount() {
+        return exportedCount + skippedCount + failedCount;
+    }
+
+    /**
+     * @return the number of datasets processed per second of running time
+     */
+    public double getThroughput() {
+        return runningTime > 0 ? getProcessedCount() * 1000.0 / runningTime : 0.0;
+    }
+
+    public List<Long> getFailedDatasetIds() {
+        List<Long> ids = new ArrayList<>();
+        if (failedDatasetIds != null && !failedDatasetIds.isEmpty()) {
+            for (String id : failedDatasetIds.split(",")) {
+                ids.add(Long.valueOf(id));
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Records the ids of more datasets that failed to export, up to
+     * MAX_FAILED_DATASET_IDS in all.
+     */
+    public void addFailedDatasetIds(List<Long> datasetIds) {
+        List<Long> ids = getFailedDatasetIds();
+        for (Long datasetId : datasetIds) {
+            if (ids.size() >= MAX_FAILED_DATASET_IDS) {
+                break;
+            }
+            ids.add(datasetId);
+        }
+        StringBuilder sb = new StringBuilder();
+        for (Long datasetId : ids) {
+            if (sb.length() > 0) {
+                sb.append(',');
+            }
+            sb.append(datasetId);
+        }
+        failedDatasetIds = sb.length() > 0 ? sb.toString() : null;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 0;
+        hash += (id != null ? id.hashCode() : 0);
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object object) {
+        if (!(object instanceof ReExportJob)) {
+            return false;
+        }
+        ReExportJob other = (ReExportJob) object;
+        return !((this.id == null && other.id != null) || (this.id != null && !this.id.equals(other.id)));
+    }
+
+    @Override
+    public String toString() {
+        return "edu.harvard.iq.dataverse.export.ReExportJob[ id=" + id + " ]";
+    }
+}
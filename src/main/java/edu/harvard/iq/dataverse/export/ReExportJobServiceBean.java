@@ -0,0 +1,182 @@
+package edu.harvard.iq.dataverse.export;
+
+import edu.harvard.iq.dataverse.Dataset;
+import java.util.Date;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jakarta.ejb.Stateless;
+import jakarta.ejb.TransactionAttribute;
+import jakarta.ejb.TransactionAttributeType;
+import jakarta.inject.Named;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+/**
+ * Keeps the record of the bulk re-export jobs, and re-exports the datasets
+ * for them, each in a transaction of its own. The jobs are run by
+ * ReExportServiceBean.
+ */
+@Stateless
+@Named
+public class ReExportJobServiceBean {
+
+    private static final Logger logger = Logger.getLogger(ReExportJobServiceBean.class.getCanonicalName());
+
+    /**
+     * The outcome of the re-export of a dataset.
+     */
+    public enum Outcome { EXPORTED, SKIPPED, FAILED };
+
+    @PersistenceContext(unitName = "VDCNet-ejbPU")
+    private EntityManager em;
+
+    public ReExportJob find(Long id) {
+        return em.find(ReExportJob.class, id);
+    }
+
+    public List<ReExportJob> findAll() {
+        return em.createNamedQuery("ReExportJob.findAll", ReExportJob.class).getResultList();
+    }
+
+    /**
+     * @return the latest job, or null if there was none
+     */
+    public ReExportJob findLatest() {
+        List<ReExportJob> jobs = em.createNamedQuery("ReExportJob.findAll", ReExportJob.class)
+                .setMaxResults(1)
+                .getResultList();
+        return jobs.isEmpty() ? null : jobs.get(0);
+    }
+
+    public List<ReExportJob> findInProgress() {
+        return em.createNamedQuery("ReExportJob.findByStatus", ReExportJob.class)
+                .setParameter("status", ReExportJob.Status.INPROGRESS)
+                .getResultList();
+    }
+
+    /**
+     * @return the ids of the next published, local datasets after the one
+     * specified (the first ones, if it is null), in order
+     */
+    public List<Long> findPublishedLocalDatasetIds(Long afterId, int maxResults) {
+        // (a dataset with a publication date may have been deaccessioned
+        // since; that is checked when it is re-exported)
+        return em.createQuery("SELECT o.id FROM Dataset o WHERE o.harvestedFrom IS NULL AND o.publicationDate IS NOT NULL AND o.id > :afterId ORDER BY o.id", Long.class)
+                .setParameter("afterId", afterId == null ? 0L : afterId)
+                .setMaxResults(maxResults)
+                .getResultList();
+    }
+
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public ReExportJob createJob(boolean forceReExport) {
+        ReExportJob job = new ReExportJob();
+        job.setForceReExport(forceReExport);
+        job.setStatus(ReExportJob.Status.INPROGRESS);
+        job.setStartTime(new Date());
+        job.setLastUpdateTime(job.getStartTime());
+        em.persist(job);
+        em.flush();
+        return job;
+    }
+
+    /**
+     * Marks a job that was stopped, or that failed, as in progress again.
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public void setInProgress(Long jobId) {
+        ReExportJob job = em.find(ReExportJob.class, jobId);
+        if (job == null) {
+            return;
+        }
+        em.refresh(job);
+        job.setStatus(ReExportJob.Status.INPROGRESS);
+        job.setStopRequested(false);
+        job.setFinishTime(null);
+        job.setLastUpdateTime(new Date());
+    }
+
+    /**
+     * Asks a running job to stop; it does once it is done with the datasets
+     * it is re-exporting.
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public void requestStop(Long jobId) {
+        ReExportJob job = em.find(ReExportJob.class, jobId);
+        if (job == null) {
+            return;
+        }
+        em.refresh(job);
+        job.setStopRequested(true);
+    }
+
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public boolean isStopRequested(Long jobId) {
+        ReExportJob job = em.find(ReExportJob.class, jobId);
+        if (job == null) {
+            return true;
+        }
+        em.refresh(job);
+        return job.isStopRequested();
+    }
+
+    /**
+     * Records the progress of a job, past the dataset specified.
+     *
+     * @param runningTime the time spent since the previous record, in
+     * milliseconds
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public void saveProgress(Long jobId, Long lastDatasetId, long exported, long skipped, List<Long> failedDatasetIds, long runningTime) {
+        ReExportJob job = em.find(ReExportJob.class, jobId);
+        if (job == null) {
+            return;
+        }
+        em.refresh(job);
+        job.setLastDatasetId(lastDatasetId);
+        job.setExportedCount(job.getExportedCount() + exported);
+        job.setSkippedCount(job.getSkippedCount() + skipped);
+        job.setFailedCount(job.getFailedCount() + failedDatasetIds.size());
+        job.addFailedDatasetIds(failedDatasetIds);
+        job.setRunningTime(job.getRunningTime() + runningTime);
+        job.setLastUpdateTime(new Date());
+    }
+
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public void setFinished(Long jobId, ReExportJob.Status status) {
+        ReExportJob job = em.find(ReExportJob.class, jobId);
+        if (job == null) {
+            return;
+        }
+        em.refresh(job);
+        job.setStatus(status);
+        job.setStopRequested(false);
+        job.setFinishTime(new Date());
+        job.setLastUpdateTime(job.getFinishTime());
+    }
+
+    /**
+     * Re-exports a dataset in all the formats, if it is published (and, if
+     * the re-export is not forced, if it hasn't been exported since its
+     * last publication).
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public Outcome reExportDataset(Long datasetId, boolean forceReExport) {
+        Dataset dataset = em.find(Dataset.class, datasetId);
+        if (dataset == null || !dataset.isReleased() || dataset.getReleasedVersion() == null || dataset.isDeaccessioned()) {
+            return Outcome.SKIPPED;
+        }
+        Date publicationDate = dataset.getReleasedVersion().getReleaseTime();
+        if (!forceReExport && (publicationDate == null
+                || (dataset.getLastExportTime() != null && !dataset.getLastExportTime().before(publicationDate)))) {
+            return Outcome.SKIPPED;
+        }
+        try {
+            ExportService.getInstance().exportAllFormats(dataset);
+            return Outcome.EXPORTED;
+        } catch (Exception ex) {
+            logger.log(Level.INFO, "Error re-exporting dataset " + datasetId + "; " + ex.getMessage(), ex);
+            return Outcome.FAILED;
+        }
+    }
+}
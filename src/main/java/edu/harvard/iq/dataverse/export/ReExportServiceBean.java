@@ -0,0 +1,200 @@
+package edu.harvard.iq.dataverse.export;
+
+import edu.harvard.iq.dataverse.settings.JvmSettings;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jakarta.annotation.Resource;
+import jakarta.ejb.Asynchronous;
+import jakarta.ejb.EJB;
+import jakarta.ejb.Stateless;
+import jakarta.ejb.TransactionAttribute;
+import jakarta.ejb.TransactionAttributeType;
+import jakarta.enterprise.concurrent.ManagedThreadFactory;
+import jakarta.inject.Named;
+
+/**
+ * Runs the bulk re-export jobs: goes through the published, local datasets
+ * a page at a time, in the order of their ids, and re-exports the datasets
+ * of a page on a pool of workers, throttled so that there are no more than
+ * so many exports per second. The workers are threads of the job, rather than
+ * of the managed executor: each export runs its exporters on the managed
+ * executor, and waits for them, which would deadlock if the workers took up
+ * all of its threads. The progress of the job is recorded after
+ * each page, so that a job that was stopped (or interrupted by a restart)
+ * can be resumed with the next one.
+ */
+@Stateless
+@Named
+public class ReExportServiceBean {
+
+    private static final Logger logger = Logger.getLogger(ReExportServiceBean.class.getCanonicalName());
+
+    private static final int PAGE_SIZE = 100;
+
+    // (the jobs running on this server)
+    private static final Set<Long> runningJobs = ConcurrentHashMap.newKeySet();
+
+    @EJB
+    ReExportJobServiceBean reExportJobService;
+
+    @Resource
+    ManagedThreadFactory threadFactory;
+
+    /**
+     * @return true if the job is running on this server
+     */
+    public boolean isRunning(Long jobId) {
+        return runningJobs.contains(jobId);
+    }
+
+    /**
+     * @return true if any job is running on this server
+     */
+    public boolean isAnyRunning() {
+        return !runningJobs.isEmpty();
+    }
+
+    /**
+     * Runs a job (that is in progress) from where it is at, until all the
+     * datasets are done or until it is asked to stop. (Not in a transaction:
+     * the progress, and each dataset, are saved in transactions of their own.)
+     */
+    @Asynchronous
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void runJob(Long jobId) {
+        synchronized (runningJobs) {
+            if (!runningJobs.isEmpty()) {
+                // (one job at a time; this one can be resumed later)
+                logger.warning("Another re-export job is running; stopping the re-export job " + jobId);
+                if (!runningJobs.contains(jobId)) {
+                    reExportJobService.setFinished(jobId, ReExportJob.Status.STOPPED);
+                }
+                return;
+            }
+            runningJobs.add(jobId);
+        }
+        ExecutorService workerPool = null;
+        try {
+            ReExportJob job = reExportJobService.find(jobId);
+            if (job == null) {
+                return;
+            }
+            boolean forceReExport = job.isForceReExport();
+            Long lastDatasetId = job.getLastDatasetId();
+            int workers = Math.max(1, JvmSettings.REEXPORT_WORKERS.lookupOptional(Integer.class).orElse(2));
+            ExportThrottle throttle = new ExportThrottle(JvmSettings.REEXPORT_MAX_PER_SECOND.lookupOptional(Integer.class).orElse(0));
+            logger.info("Running the re-export job " + jobId + " after dataset " + lastDatasetId + ", with " + workers + " workers");
+            workerPool = Executors.newFixedThreadPool(workers, threadFactory);
+
+            while (true) {
+                if (reExportJobService.isStopRequested(jobId)) {
+                    reExportJobService.setFinished(jobId, ReExportJob.Status.STOPPED);
+                    logger.info("Stopped the re-export job " + jobId + " after dataset " + lastDatasetId);
+                    return;
+                }
+                List<Long> datasetIds = reExportJobService.findPublishedLocalDatasetIds(lastDatasetId, PAGE_SIZE);
+                if (datasetIds.isEmpty()) {
+                    break;
+                }
+                long pageStart = System.currentTimeMillis();
+                PageResults results = reExportPage(workerPool, datasetIds, forceReExport, workers, throttle);
+                lastDatasetId = datasetIds.get(datasetIds.size() - 1);
+                reExportJobService.saveProgress(jobId, lastDatasetId, results.exported.get(), results.skipped.get(),
+                        results.getFailedDatasetIds(), System.currentTimeMillis() - pageStart);
+            }
+            reExportJobService.setFinished(jobId, ReExportJob.Status.COMPLETED);
+            logger.info("Completed the re-export job " + jobId);
+        } catch (Exception ex) {
+            logger.log(Level.SEVERE, "The re-export job " + jobId + " failed", ex);
+            reExportJobService.setFinished(jobId, ReExportJob.Status.FAILED);
+        } finally {
+            if (workerPool != null) {
+                workerPool.shutdown();
+            }
+            runningJobs.remove(jobId);
+        }
+    }
+
+    /**
+     * Re-exports the datasets of a page, and waits until they are done.
+     */
+    private PageResults reExportPage(ExecutorService workerPool, List<Long> datasetIds, boolean forceReExport, int workers, ExportThrottle throttle) throws InterruptedException {
+        PageResults results = new PageResults();
+        Semaphore slots = new Semaphore(workers);
+        try {
+            for (Long datasetId : datasetIds) {
+                slots.acquire();
+                try {
+                    throttle.acquire();
+                    workerPool.execute(() -> {
+                        try {
+                            reExportDataset(datasetId, forceReExport, results);
+                        } finally {
+                            slots.release();
+                        }
+                    });
+                } catch (RejectedExecutionException ree) {
+                    // (runs on this thread, then)
+                    try {
+                        reExportDataset(datasetId, forceReExport, results);
+                    } finally {
+                        slots.release();
+                    }
+                } catch (InterruptedException ie) {
+                    slots.release();
+                    throw ie;
+                }
+            }
+        } finally {
+            // Wait for the workers to be done:
+            slots.acquireUninterruptibly(workers);
+        }
+        return results;
+    }
+
+    private void reExportDataset(Long datasetId, boolean forceReExport, PageResults results) {
+        ReExportJobServiceBean.Outcome outcome;
+        try {
+            outcome = reExportJobService.reExportDataset(datasetId, forceReExport);
+        } catch (Exception ex) {
+            logger.log(Level.INFO, "Error re-exporting dataset " + datasetId + "; " + ex.getMessage(), ex);
+            outcome = ReExportJobServiceBean.Outcome.FAILED;
+        }
+        switch (outcome) {
+            case EXPORTED:
+                results.exported.incrementAndGet();
+                break;
+            case SKIPPED:
+                results.skipped.incrementAndGet();
+                break;
+            default:
+                results.addFailed(datasetId);
+        }
+    }
+
+    private static class PageResults {
+        private final AtomicLong exported = new AtomicLong();
+        private final AtomicLong skipped = new AtomicLong();
+        private final List<Long> failedDatasetIds = Collections.synchronizedList(new ArrayList<>());
+
+        void addFailed(Long datasetId) {
+            failedDatasetIds.add(datasetId);
+        }
+
+        List<Long> getFailedDatasetIds() {
+            List<Long> ids = new ArrayList<>(failedDatasetIds);
+            Collections.sort(ids);
+            return ids;
+        }
+    }
+}
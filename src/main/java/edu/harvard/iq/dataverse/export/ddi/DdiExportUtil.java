@@ -126,7 +126,18 @@ public class DdiExportUtil {
     
     // "full" ddi, with the the "<fileDscr>"  and "<dataDscr>/<var>" sections: 
     public static void datasetJson2ddi(JsonObject datasetDtoAsJson, JsonArray fileDetails, OutputStream outputStream) throws XMLStreamException {
-        logger.fine(JsonUtil.prettyPrint(datasetDtoAsJson.toString()));
+        datasetJson2ddi(datasetDtoAsJson, fileDetails, null, outputStream);
+    }
+
+    /**
+     * The "full" ddi, as above, for the file details that leave the
+     * variables out of the data tables: the variables are then read from the
+     * source specified, and written as they are read.
+     */
+    public static void datasetJson2ddi(JsonObject datasetDtoAsJson, JsonArray fileDetails, DdiVariableSource variables, OutputStream outputStream) throws XMLStreamException {
+        if (logger.isLoggable(Level.FINE)) {
+            logger.fine(JsonUtil.prettyPrint(datasetDtoAsJson.toString()));
+        }
         Gson gson = new Gson();
         DatasetDTO datasetDto = gson.fromJson(datasetDtoAsJson.toString(), DatasetDTO.class);
         
@@ -141,7 +152,7 @@ public class DdiExportUtil {
         }
         createStdyDscr(xmlw, datasetDto);
         createFileDscr(xmlw, fileDetails);
-        createDataDscr(xmlw, fileDetails);
+        createDataDscr(xmlw, fileDetails, variables);
         createOtherMatsFromFileMetadatas(xmlw, fileDetails);
         xmlw.writeEndElement(); // codeBook
         xmlw.flush();
@@ -1540,6 +1551,14 @@ public class DdiExportUtil {
     // so we probably should not invest any time into it right now). -- L.A. 4.5
     
     public static void createDataDscr(XMLStreamWriter xmlw, JsonArray fileDetails) throws XMLStreamException {
+        createDataDscr(xmlw, fileDetails, null);
+    }
+
+    /**
+     * @param variables where to read the variables of the data tables that
+     * don't include them, if any
+     */
+    public static void createDataDscr(XMLStreamWriter xmlw, JsonArray fileDetails, DdiVariableSource variables) throws XMLStreamException {
 
         if (fileDetails.isEmpty()) {
             return;
@@ -1584,11 +1603,15 @@ public class DdiExportUtil {
                 }
                 JsonObject dataTable = fileJson.getJsonArray("dataTables").getJsonObject(0);
                 JsonArray vars = dataTable.getJsonArray("dataVariables");
+                String fileId = fileJson.getJsonNumber("id").toString();
+                String fileMetadataId = fileJson.getJsonNumber("fileMetadataId").toString();
                 if (vars != null) {
                     for (int j = 0; j < vars.size(); j++) {
-                        createVarDDI(xmlw, vars.getJsonObject(j), fileJson.getJsonNumber("id").toString(),
-                                fileJson.getJsonNumber("fileMetadataId").toString());
+                        createVarDDI(xmlw, vars.getJsonObject(j), fileId, fileMetadataId);
                     }
+                } else if (variables != null) {
+                    variables.forEachVariable(fileJson.getJsonNumber("id").longValue(),
+                            dvar -> createVarDDI(xmlw, dvar, fileId, fileMetadataId));
                 }
             }
         }
@@ -0,0 +1,24 @@
+package edu.harvard.iq.dataverse.export.ddi;
+
+import jakarta.json.JsonObject;
+import javax.xml.stream.XMLStreamException;
+
+/**
+ * The variables of the tabular files of a dataset version, read a page at a
+ * time, for the "dataDscr" section of the DDI to be written as they are
+ * read; so that exporting a dataset with hundreds of thousands of variables
+ * doesn't hold all of them in memory.
+ */
+public interface DdiVariableSource {
+
+    interface VariableHandler {
+        void handle(JsonObject variable) throws XMLStreamException;
+    }
+
+    /**
+     * Calls the handler with each variable of the data table of the file, in
+     * file order; the variables are in the json of
+     * JsonPrinter.json(DataVariable).
+     */
+    void forEachVariable(long dataFileId, VariableHandler handler) throws XMLStreamException;
+}
@@ -0,0 +1,523 @@
+package edu.harvard.iq.dataverse.harvest.client;
+
+import edu.harvard.iq.dataverse.harvest.client.HarvestPipeline.FetchedRecord;
+import edu.harvard.iq.dataverse.harvest.client.oai.OaiHandler;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import static java.net.HttpURLConnection.HTTP_OK;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.Date;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Harvests the records of a remote OAI server with ListRecords, rather than
+ * with ListIdentifiers followed by a GetRecord call for every identifier.
+ * Each page of the ListRecords response is stream-parsed, and the metadata
+ * of each record is copied into a temp file, like FastGetRecord does, for
+ * the import. The pages are requested as the records are consumed, following
+ * the resumption tokens.
+ *
+ * The records that fail to parse are returned with an error message (and
+ * without a metadata file), so that the harvester can retrieve them with
+ * GetRecord instead. A page that can't be parsed at all, or an error
+ * response of the server, ends the iteration; see getErrorMessage().
+ */
+class FastListRecords implements Iterator<FetchedRecord> {
+    private static final Logger logger = Logger.getLogger(FastListRecords.class.getCanonicalName());
+
+    private static final String XSI_NAMESPACE = "http://www.w3.org/2001/XMLSchema-instance";
+
+    private final OaiHandler oaiHandler;
+    private final HttpClient httpClient;
+    private final XMLInputFactory xmlInputFactory;
+    private final XMLOutputFactory xmlOutputFactory;
+
+    private final Deque<FetchedRecord> records = new ArrayDeque<>();
+    private boolean firstPage = true;
+    private boolean done = false;
+    private String resumptionToken = null;
+    private String errorMessage = null;
+
+    FastListRecords(OaiHandler oaiHandler, HttpClient httpClient) {
+        this.oaiHandler = oaiHandler;
+        this.httpClient = httpClient;
+        this.xmlInputFactory = XMLInputFactory.newInstance();
+        this.xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        this.xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        this.xmlOutputFactory = XMLOutputFactory.newInstance();
+    }
+
+    /**
+     * @return the reason the iteration ended before the end of the list, or
+     * null if it didn't
+     */
+    String getErrorMessage() {
+        return errorMessage;
+    }
+
+    /**
+     * @return the resumption token of the next page, if there is one
+     */
+    String getResumptionToken() {
+        return resumptionToken;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (records.isEmpty() && !done) {
+            fetchNextPage();
+        }
+        return !records.isEmpty();
+    }
+
+    @Override
+    public FetchedRecord next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return records.poll();
+    }
+
+    private void fetchNextPage() {
+        String requestURL = getRequestURL();
+        firstPage = false;
+        // (unless the page sets a new one)
+        resumptionToken = null;
+        logger.fine("calling " + requestURL);
+
+        HttpRequest.Builder requestBuilder = HttpRequest.newBuilder()
+                .uri(URI.create(requestURL))
+                .GET()
+                .header("User-Agent", "XOAI Service Provider v5 (Dataverse)")
+                .header("Accept-Encoding", "gzip, deflate");
+
+        if (oaiHandler.getCustomHeaders() != null) {
+            for (String headerName : oaiHandler.getCustomHeaders().keySet()) {
+                requestBuilder.header(headerName, oaiHandler.getCustomHeaders().get(headerName));
+            }
+        }
+
+        try {
+            HttpResponse<InputStream> response = httpClient.send(requestBuilder.build(), HttpResponse.BodyHandlers.ofInputStream());
+            if (response.statusCode() != HTTP_OK) {
+                response.body().close();
+                fail("ListRecords request failed. HTTP error code " + response.statusCode());
+                return;
+            }
+            try (InputStream in = decode(response.body(), response.headers().firstValue("Content-Encoding"))) {
+                parsePage(in);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            fail("Interrupted while calling ListRecords");
+        } catch (IOException ex) {
+            fail("Failed to call ListRecords: " + ex.getMessage());
+        }
+
+        if (StringUtils.isEmpty(resumptionToken)) {
+            done = true;
+        }
+    }
+
+    private String getRequestURL() {
+        StringBuilder requestURL = new StringBuilder(oaiHandler.getBaseOaiUrl());
+        requestURL.append("?verb=ListRecords");
+        if (firstPage) {
+            requestURL.append("&metadataPrefix=").append(encode(oaiHandler.getMetadataPrefix()));
+            if (!StringUtils.isEmpty(oaiHandler.getSetName())) {
+                requestURL.append("&set=").append(encode(oaiHandler.getSetName()));
+            }
+            if (oaiHandler.getFromDate() != null) {
+                // (the "day" granularity is the one all the servers support;
+                // the records of that day harvested already are just updated)
+                requestURL.append("&from=").append(oaiHandler.getFromDate().toInstant().atZone(ZoneOffset.UTC).toLocalDate());
+            }
+        } else {
+            requestURL.append("&resumptionToken=").append(encode(resumptionToken));
+        }
+        return requestURL.toString();
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    private static InputStream decode(InputStream inputStream, Optional<String> contentEncoding) throws IOException {
+        if (contentEncoding.isPresent()) {
+            if (contentEncoding.get().equals("gzip")) {
+                return new GZIPInputStream(inputStream);
+            } else if (contentEncoding.get().equals("deflate")) {
+                return new InflaterInputStream(inputStream);
+            }
+        }
+        return inputStream;
+    }
+
+    private void fail(String message) {
+        errorMessage = message;
+        done = true;
+    }
+
+    /**
+     * Parses a page of a ListRecords response, adding its records to the
+     * queue, and setting the resumption token of the next page.
+     */
+    void parsePage(InputStream in) {
+        XMLStreamReader xmlr = null;
+        PageState page = new PageState();
+        try {
+            xmlr = xmlInputFactory.createXMLStreamReader(in);
+            xmlr.nextTag();
+            xmlr.require(XMLStreamConstants.START_ELEMENT, null, "OAI-PMH");
+            Map<String, String> namespaces = declaredNamespaces(xmlr, new LinkedHashMap<>());
+            processOAIPMH(xmlr, namespaces, page);
+        } catch (XMLStreamException ex) {
+            // The reader can't go on past a malformed part of the response;
+            // the record it was reading, if it got as far as its identifier,
+            // will be retrieved with GetRecord. But whatever follows it on
+            // this page, including the resumption token, is lost.
+            if (page.identifier != null) {
+                FetchedRecord record = new FetchedRecord(page.identifier, page.dateStamp != null ? page.dateStamp : new Date());
+                record.setErrorMessage("Failed to parse the record in the ListRecords response: " + ex.getMessage());
+                records.add(record);
+            }
+            if (errorMessage == null) {
+                fail("Malformed ListRecords response: " + ex.getMessage());
+            }
+        } finally {
+            deleteQuietly(page.metadataFile);
+            try {
+                if (xmlr != null) {
+                    xmlr.close();
+                }
+            } catch (XMLStreamException ex) {
+                // seems OK to ignore;
+            }
+        }
+    }
+
+    /**
+     * The record being parsed; so that it can still be retrieved with
+     * GetRecord if the parsing of the page fails.
+     */
+    private static class PageState {
+        String identifier;
+        Date dateStamp;
+        File metadataFile;
+    }
+
+    private void processOAIPMH(XMLStreamReader xmlr, Map<String, String> namespaces, PageState page) throws XMLStreamException {
+        for (int event = xmlr.next(); event != XMLStreamConstants.END_DOCUMENT; event = xmlr.next()) {
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                if (xmlr.getLocalName().equals("error")) {
+                    String errorCode = xmlr.getAttributeValue(null, "code");
+                    String errorMessageText = xmlr.getElementText();
+                    if ("noRecordsMatch".equals(errorCode)) {
+                        // (nothing new to harvest - not an error)
+                        done = true;
+                        return;
+                    }
+                    fail("ListRecords error code: " + errorCode + "; ListRecords error message: " + errorMessageText);
+                    return;
+                } else if (xmlr.getLocalName().equals("ListRecords")) {
+                    processListRecordsSection(xmlr, declaredNamespaces(xmlr, namespaces), page);
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                if (xmlr.getLocalName().equals("OAI-PMH")) return;
+            }
+        }
+    }
+
+    private void processListRecordsSection(XMLStreamReader xmlr, Map<String, String> namespaces, PageState page) throws XMLStreamException {
+        for (int event = xmlr.next(); event != XMLStreamConstants.END_DOCUMENT; event = xmlr.next()) {
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                if (xmlr.getLocalName().equals("record")) {
+                    processRecord(xmlr, declaredNamespaces(xmlr, namespaces), page);
+                } else if (xmlr.getLocalName().equals("resumptionToken")) {
+                    resumptionToken = xmlr.getElementText().trim();
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                if (xmlr.getLocalName().equals("ListRecords")) return;
+            }
+        }
+    }
+
+    private void processRecord(XMLStreamReader xmlr, Map<String, String> namespaces, PageState page) throws XMLStreamException {
+        page.identifier = null;
+        page.dateStamp = null;
+        page.metadataFile = null;
+        boolean deleted = false;
+        String recordError = null;
+
+        for (int event = xmlr.next(); event != XMLStreamConstants.END_DOCUMENT; event = xmlr.next()) {
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                if (xmlr.getLocalName().equals("header")) {
+                    deleted = "deleted".equals(xmlr.getAttributeValue(null, "status"));
+                    recordError = processHeader(xmlr, page);
+                } else if (xmlr.getLocalName().equals("metadata")) {
+                    String metadataError = processMetadata(xmlr, declaredNamespaces(xmlr, namespaces), page);
+                    if (recordError == null) {
+                        recordError = metadataError;
+                    }
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                if (xmlr.getLocalName().equals("record")) break;
+            }
+        }
+
+        if (page.identifier == null) {
+            // (there's nothing we can do with a record without an identifier)
+            logger.warning("Skipping a record without an identifier in the ListRecords response");
+            deleteQuietly(page.metadataFile);
+            page.metadataFile = null;
+            return;
+        }
+
+        FetchedRecord record = new FetchedRecord(page.identifier, page.dateStamp != null ? page.dateStamp : new Date());
+        if (deleted) {
+            record.setDeleted(true);
+            deleteQuietly(page.metadataFile);
+        } else if (recordError == null && page.metadataFile == null) {
+            record.setErrorMessage("No metadata for the record in the ListRecords response");
+        } else if (recordError != null) {
+            record.setErrorMessage(recordError);
+            deleteQuietly(page.metadataFile);
+        } else {
+            record.setMetadataFile(page.metadataFile);
+        }
+        records.add(record);
+        page.identifier = null;
+        page.metadataFile = null;
+    }
+
+    private String processHeader(XMLStreamReader xmlr, PageState page) throws XMLStreamException {
+        String headerError = null;
+        for (int event = xmlr.next(); event != XMLStreamConstants.END_DOCUMENT; event = xmlr.next()) {
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                if (xmlr.getLocalName().equals("identifier")) {
+                    page.identifier = xmlr.getElementText().trim();
+                } else if (xmlr.getLocalName().equals("datestamp")) {
+                    String dateStamp = xmlr.getElementText().trim();
+                    page.dateStamp = parseDateStamp(dateStamp);
+                    if (page.dateStamp == null) {
+                        headerError = "Invalid datestamp in the ListRecords response: " + dateStamp;
+                    }
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                if (xmlr.getLocalName().equals("header")) break;
+            }
+        }
+        return headerError;
+    }
+
+    static Date parseDateStamp(String dateStamp) {
+        try {
+            return Date.from(Instant.parse(dateStamp));
+        } catch (DateTimeParseException ex) {
+            // (the "day" granularity)
+            try {
+                return Date.from(LocalDate.parse(dateStamp).atStartOfDay(ZoneOffset.UTC).toInstant());
+            } catch (DateTimeParseException ex2) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Copies the metadata record - the element enclosed in the metadata
+     * section - into a temp file.
+     *
+     * @return an error message, if the record could not be saved
+     */
+    private String processMetadata(XMLStreamReader xmlr, Map<String, String> namespaces, PageState page) throws XMLStreamException {
+        String metadataError = null;
+        for (int event = xmlr.next(); event != XMLStreamConstants.END_DOCUMENT; event = xmlr.next()) {
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                if (page.metadataFile == null && metadataError == null) {
+                    metadataError = copyMetadataRecord(xmlr, namespaces, page);
+                } else {
+                    // (only one record is expected in the section)
+                    skipElement(xmlr);
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                if (xmlr.getLocalName().equals("metadata")) break;
+            }
+        }
+        return metadataError;
+    }
+
+    /**
+     * Copies the element the reader is on, and its content; the namespaces
+     * declared on the enclosing elements of the response are declared on
+     * the copy, so that it can be parsed on its own. The reader is left on
+     * the end of the element.
+     */
+    private String copyMetadataRecord(XMLStreamReader xmlr, Map<String, String> namespaces, PageState page) throws XMLStreamException {
+        File metadataFile;
+        OutputStream out;
+        XMLStreamWriter writer;
+        try {
+            metadataFile = File.createTempFile("meta", ".tmp");
+            out = new FileOutputStream(metadataFile);
+            writer = xmlOutputFactory.createXMLStreamWriter(out, "UTF-8");
+        } catch (IOException | XMLStreamException ex) {
+            skipElement(xmlr);
+            return "Failed to save the metadata: " + ex.getMessage();
+        }
+        page.metadataFile = metadataFile;
+
+        String writeError = null;
+        int depth = 0;
+        int event = XMLStreamConstants.START_ELEMENT;
+        do {
+            if (writeError == null) {
+                try {
+                    writeEvent(xmlr, writer, depth == 0 ? namespaces : null);
+                } catch (XMLStreamException ex) {
+                    // (the writer failed; the rest of the record is skipped)
+                    writeError = "Failed to save the metadata: " + ex.getMessage();
+                }
+            }
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+            if (depth > 0) {
+                event = xmlr.next();
+            }
+        } while (depth > 0);
+
+        try {
+            writer.flush();
+            writer.close();
+            out.close();
+        } catch (XMLStreamException | IOException ex) {
+            if (writeError == null) {
+                writeError = "Failed to save the metadata: " + ex.getMessage();
+            }
+        }
+        return writeError;
+    }
+
+    private void writeEvent(XMLStreamReader xmlr, XMLStreamWriter writer, Map<String, String> inheritedNamespaces) throws XMLStreamException {
+        switch (xmlr.getEventType()) {
+            case XMLStreamConstants.START_ELEMENT:
+                String prefix = xmlr.getPrefix() == null ? "" : xmlr.getPrefix();
+                String namespaceURI = xmlr.getNamespaceURI() == null ? "" : xmlr.getNamespaceURI();
+                writer.writeStartElement(prefix, xmlr.getLocalName(), namespaceURI);
+
+                Map<String, String> declarations = new LinkedHashMap<>();
+                if (inheritedNamespaces != null) {
+                    // The top element of the record: it gets the declarations
+                    // in scope, and the generic xmlns:xsi one, as the
+                    // transform stylesheets may need it (see FastGetRecord)
+                    declarations.putAll(inheritedNamespaces);
+                    declarations.putIfAbsent("xsi", XSI_NAMESPACE);
+                }
+                for (int i = 0; i < xmlr.getNamespaceCount(); i++) {
+                    String declaredPrefix = xmlr.getNamespacePrefix(i) == null ? "" : xmlr.getNamespacePrefix(i);
+                    declarations.put(declaredPrefix, xmlr.getNamespaceURI(i));
+                }
+                for (Map.Entry<String, String> declaration : declarations.entrySet()) {
+                    if (declaration.getValue() == null) {
+                        continue;
+                    }
+                    if (declaration.getKey().isEmpty()) {
+                        writer.writeDefaultNamespace(declaration.getValue());
+                    } else {
+                        writer.writeNamespace(declaration.getKey(), declaration.getValue());
+                    }
+                }
+
+                for (int i = 0; i < xmlr.getAttributeCount(); i++) {
+                    String attributePrefix = xmlr.getAttributePrefix(i);
+                    if (attributePrefix == null || attributePrefix.isEmpty()) {
+                        writer.writeAttribute(xmlr.getAttributeLocalName(i), xmlr.getAttributeValue(i));
+                    } else {
+                        writer.writeAttribute(attributePrefix, xmlr.getAttributeNamespace(i), xmlr.getAttributeLocalName(i), xmlr.getAttributeValue(i));
+                    }
+                }
+                break;
+            case XMLStreamConstants.END_ELEMENT:
+                writer.writeEndElement();
+                break;
+            case XMLStreamConstants.CHARACTERS:
+            case XMLStreamConstants.SPACE:
+                writer.writeCharacters(xmlr.getText());
+                break;
+            case XMLStreamConstants.CDATA:
+                writer.writeCData(xmlr.getText());
+                break;
+            case XMLStreamConstants.COMMENT:
+                writer.writeComment(xmlr.getText());
+                break;
+            default:
+                // (processing instructions, entity references, etc. are dropped)
+                break;
+        }
+    }
+
+    private static void skipElement(XMLStreamReader xmlr) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = xmlr.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    /**
+     * @return the namespaces in scope on the element the reader is on: the
+     * ones of the enclosing elements, and the ones it declares
+     */
+    private static Map<String, String> declaredNamespaces(XMLStreamReader xmlr, Map<String, String> enclosing) {
+        Map<String, String> namespaces = new LinkedHashMap<>(enclosing);
+        for (int i = 0; i < xmlr.getNamespaceCount(); i++) {
+            String prefix = xmlr.getNamespacePrefix(i);
+            namespaces.put(prefix == null ? "" : prefix, xmlr.getNamespaceURI(i));
+        }
+        return namespaces;
+    }
+
+    private static void deleteQuietly(File file) {
+        if (file != null) {
+            try {
+                file.delete();
+            } catch (SecurityException se) {
+                // (it's a temp file)
+            }
+        }
+    }
+}
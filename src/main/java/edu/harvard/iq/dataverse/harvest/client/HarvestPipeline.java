@@ -0,0 +1,281 @@
+package edu.harvard.iq.dataverse.harvest.client;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Logger;
+
+/**
+ * Runs the two stages of the harvest of the records listed by the remote
+ * server - fetching the metadata of a record (with GetRecord, or from the
+ * remote Dataverse API), and importing it - concurrently, on two bounded
+ * pools: a pool of fetchers, on threads of the factory specified (a managed
+ * one, within the container), and a number of importers running on the
+ * executor specified (a managed one, so that each import runs in its own
+ * container transaction). The fetched records can be imported in groups,
+ * a group per import.
+ *
+ * The stages apply backpressure: a fetched record that completes a group
+ * waits, keeping its fetcher busy, until an importer is available; and
+ * submit() blocks when all the fetchers are busy, so that the caller stops
+ * paging through the list of identifiers until the importers catch up. So
+ * the number of fetched records waiting for an import never exceeds the
+ * number of fetchers, plus the records of the group being filled.
+ */
+class HarvestPipeline {
+    private static final Logger logger = Logger.getLogger(HarvestPipeline.class.getCanonicalName());
+
+    /**
+     * A harvested record, ready for the import; or, the reason it can't be
+     * imported.
+     */
+    static class FetchedRecord {
+        private final String identifier;
+        private final Date dateStamp;
+        private File metadataFile;
+        private String errorMessage;
+        private boolean deleted;
+
+        FetchedRecord(String identifier, Date dateStamp) {
+            this.identifier = identifier;
+            this.dateStamp = dateStamp;
+        }
+
+        String getIdentifier() {
+            return identifier;
+        }
+
+        Date getDateStamp() {
+            return dateStamp;
+        }
+
+        File getMetadataFile() {
+            return metadataFile;
+        }
+
+        void setMetadataFile(File metadataFile) {
+            this.metadataFile = metadataFile;
+        }
+
+        String getErrorMessage() {
+            return errorMessage;
+        }
+
+        void setErrorMessage(String errorMessage) {
+            this.errorMessage = errorMessage;
+        }
+
+        boolean isDeleted() {
+            return deleted;
+        }
+
+        void setDeleted(boolean deleted) {
+            this.deleted = deleted;
+        }
+    }
+
+    interface RecordFetcher {
+        /**
+         * Must not throw; the failures are reported in the record returned.
+         */
+        FetchedRecord fetch(String identifier, Date dateStamp);
+    }
+
+    interface RecordImporter {
+        /**
+         * Must not throw; it does its own accounting of the failures, which
+         * include the records with an error message, that are not to be
+         * imported.
+         */
+        void importRecord(FetchedRecord record);
+    }
+
+    interface RecordGroupImporter {
+        /**
+         * Imports a group of records, in the order they were fetched. Must
+         * not throw, as above.
+         */
+        void importRecords(List<FetchedRecord> records);
+    }
+
+    private final RecordFetcher fetcher;
+    private final RecordGroupImporter importer;
+    private final ExecutorService fetchExecutor;
+    private final Executor importExecutor;
+    private final int fetchers;
+    private final Semaphore fetchSlots;
+    private final Semaphore importSlots;
+    private final int groupSize;
+    // (the records fetched, waiting for the group to fill up)
+    private final List<FetchedRecord> pendingGroup = new ArrayList<>();
+    // (counts the records submitted and not yet imported)
+    private final Phaser inFlight = new Phaser(1);
+
+    HarvestPipeline(RecordFetcher fetcher, int fetchers, ThreadFactory fetchThreadFactory, RecordImporter importer, int importers, Executor importExecutor) {
+        this(fetcher, fetchers, fetchThreadFactory, records -> records.forEach(importer::importRecord), 1, importers, importExecutor);
+    }
+
+    /**
+     * @param fetchThreadFactory the factory of the threads of the fetchers
+     * @param groupSize the number of records handed to the importer at once
+     */
+    HarvestPipeline(RecordFetcher fetcher, int fetchers, ThreadFactory fetchThreadFactory, RecordGroupImporter importer, int groupSize, int importers, Executor importExecutor) {
+        this.fetcher = fetcher;
+        this.importer = importer;
+        this.fetchers = Math.max(1, fetchers);
+        this.fetchExecutor = Executors.newFixedThreadPool(this.fetchers, fetchThreadFactory);
+        this.importExecutor = importExecutor;
+        this.fetchSlots = new Semaphore(this.fetchers);
+        this.importSlots = new Semaphore(Math.max(1, importers));
+        this.groupSize = Math.max(1, groupSize);
+    }
+
+    /**
+     * Submits a record for fetching and importing; blocks while all the
+     * fetchers are busy.
+     */
+    void submit(String identifier, Date dateStamp) throws InterruptedException {
+        fetchSlots.acquire();
+        inFlight.register();
+        try {
+            fetchExecutor.execute(() -> fetchAndHandOff(identifier, dateStamp, null));
+        } catch (RejectedExecutionException ree) {
+            fetchSlots.release();
+            inFlight.arriveAndDeregister();
+            throw ree;
+        }
+    }
+
+    /**
+     * Submits a record that has already been fetched (from a ListRecords
+     * response) for importing; it goes through the same bounded stages as
+     * the records fetched here, so this blocks the same way.
+     */
+    void submit(FetchedRecord fetchedRecord) throws InterruptedException {
+        fetchSlots.acquire();
+        inFlight.register();
+        try {
+            fetchExecutor.execute(() -> fetchAndHandOff(fetchedRecord.getIdentifier(), fetchedRecord.getDateStamp(), fetchedRecord));
+        } catch (RejectedExecutionException ree) {
+            fetchSlots.release();
+            inFlight.arriveAndDeregister();
+            throw ree;
+        }
+    }
+
+    private void fetchAndHandOff(String identifier, Date dateStamp, FetchedRecord fetchedRecord) {
+        boolean grouped = false;
+        try {
+            FetchedRecord record = fetchedRecord != null ? fetchedRecord : fetcher.fetch(identifier, dateStamp);
+            List<FetchedRecord> group = addToGroup(record);
+            grouped = true;
+            if (group != null) {
+                // Wait for an importer (this fetcher stays busy meanwhile):
+                handOff(group);
+            }
+        } finally {
+            fetchSlots.release();
+            if (!grouped) {
+                inFlight.arriveAndDeregister();
+            }
+        }
+    }
+
+    /**
+     * @return the group the record completes, if it does
+     */
+    private List<FetchedRecord> addToGroup(FetchedRecord record) {
+        synchronized (pendingGroup) {
+            pendingGroup.add(record);
+            return pendingGroup.size() < groupSize ? null : takePendingGroup();
+        }
+    }
+
+    private List<FetchedRecord> takePendingGroup() {
+        synchronized (pendingGroup) {
+            List<FetchedRecord> group = new ArrayList<>(pendingGroup);
+            pendingGroup.clear();
+            return group;
+        }
+    }
+
+    /**
+     * Hands a group of records to an importer, once one is available. The
+     * records are accounted for (in inFlight) once they are imported, or
+     * once they have failed.
+     */
+    private void handOff(List<FetchedRecord> group) {
+        try {
+            importSlots.acquire();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            logger.warning("Interrupted before the import of " + group.size() + " records");
+            fail(group, "Interrupted before the import of ");
+            return;
+        }
+        try {
+            importExecutor.execute(() -> {
+                try {
+                    importer.importRecords(group);
+                } finally {
+                    importSlots.release();
+                    arrive(group.size());
+                }
+            });
+        } catch (RejectedExecutionException ree) {
+            importSlots.release();
+            logger.warning("Failed to schedule the import of " + group.size() + " records: " + ree.getMessage());
+            fail(group, "Failed to schedule the import of ");
+        }
+    }
+
+    /**
+     * Hands a group of records that can't be imported to the importer, as
+     * failed records, so that they are accounted for as such. (A failed
+     * record is only accounted for, so this is safe to run right here.)
+     */
+    private void fail(List<FetchedRecord> group, String errorMessage) {
+        for (FetchedRecord record : group) {
+            record.setErrorMessage(errorMessage + record.getIdentifier());
+        }
+        try {
+            importer.importRecords(group);
+        } finally {
+            arrive(group.size());
+        }
+    }
+
+    private void arrive(int records) {
+        for (int i = 0; i < records; i++) {
+            inFlight.arriveAndDeregister();
+        }
+    }
+
+    /**
+     * Waits until all the records submitted have been imported (or have
+     * failed), and shuts down the fetchers. The pipeline can't be used
+     * afterwards.
+     */
+    void finish() {
+        try {
+            // Wait for the fetchers to be done, and import the last,
+            // incomplete group:
+            fetchSlots.acquireUninterruptibly(fetchers);
+            List<FetchedRecord> group = takePendingGroup();
+            if (!group.isEmpty()) {
+                handOff(group);
+            }
+            inFlight.arriveAndAwaitAdvance();
+        } finally {
+            fetchExecutor.shutdown();
+        }
+    }
+}
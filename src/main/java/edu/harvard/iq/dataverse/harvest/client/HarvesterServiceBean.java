@@ -15,6 +15,7 @@ import java.io.File;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
@@ -24,22 +25,26 @@ import java.util.logging.Logger;
 import jakarta.annotation.Resource;
 import jakarta.ejb.Asynchronous;
 import jakarta.ejb.EJB;
-import jakarta.ejb.EJBException;
 import jakarta.ejb.Stateless;
 import jakarta.ejb.Timer;
+import jakarta.enterprise.concurrent.ManagedExecutorService;
+import jakarta.enterprise.concurrent.ManagedThreadFactory;
 import jakarta.inject.Named;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.TransformerException;
-import org.apache.commons.lang3.mutable.MutableBoolean;
 import org.xml.sax.SAXException;
 
 import io.gdcc.xoai.model.oaipmh.results.record.Header;
 import edu.harvard.iq.dataverse.EjbDataverseEngine;
 import edu.harvard.iq.dataverse.api.imports.ImportServiceBean;
 import edu.harvard.iq.dataverse.engine.command.DataverseRequest;
+import edu.harvard.iq.dataverse.harvest.client.HarvestPipeline.FetchedRecord;
 import edu.harvard.iq.dataverse.harvest.client.oai.OaiHandler;
 import edu.harvard.iq.dataverse.harvest.client.oai.OaiHandlerException;
+import edu.harvard.iq.dataverse.api.imports.ImportServiceBean.HarvestedRecord;
+import edu.harvard.iq.dataverse.search.IndexBatchServiceBean;
 import edu.harvard.iq.dataverse.search.IndexServiceBean;
+import edu.harvard.iq.dataverse.settings.JvmSettings;
 import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.InputStream;
@@ -80,6 +85,12 @@ public class HarvesterServiceBean {
     EjbDataverseEngine engineService;
     @EJB
     IndexServiceBean indexService;
+    @EJB
+    IndexBatchServiceBean indexBatchService;
+    @Resource
+    ManagedExecutorService managedExecutorService;
+    @Resource
+    ManagedThreadFactory managedThreadFactory;
     
     private static final Logger logger = Logger.getLogger("edu.harvard.iq.dataverse.harvest.client.HarvesterServiceBean");
     private static final SimpleDateFormat logFormatter = new SimpleDateFormat("yyyy-MM-dd'T'HH-mm-ss");
@@ -155,9 +166,10 @@ public class HarvesterServiceBean {
         PrintWriter importCleanupLog = new PrintWriter(new FileWriter(System.getProperty("com.sun.aas.instanceRoot") + File.separator + "logs/harvest_cleanup_" + harvestingClientConfig.getName() + "_" + logTimestamp + ".txt"));
         
         
-        List<Long> harvestedDatasetIds = new ArrayList<>();
-        List<String> failedIdentifiers = new ArrayList<>();
-        List<String> deletedIdentifiers = new ArrayList<>();
+        // (the records are fetched and imported concurrently)
+        List<Long> harvestedDatasetIds = Collections.synchronizedList(new ArrayList<>());
+        List<String> failedIdentifiers = Collections.synchronizedList(new ArrayList<>());
+        List<String> deletedIdentifiers = Collections.synchronizedList(new ArrayList<>());
         
         Date harvestStartTime = new Date();
         
@@ -214,7 +226,6 @@ public class HarvesterServiceBean {
         logBeginOaiHarvest(hdLogger, harvestingClient);
         
         OaiHandler oaiHandler;
-        HttpClient httpClient = null; 
 
         try {
             oaiHandler = new OaiHandler(harvestingClient);
@@ -228,94 +239,224 @@ public class HarvesterServiceBean {
         }
 
         // We will use this jdk http client to make direct calls to the remote 
-        // OAI (or remote Dataverse API) to obtain the metadata records 
-        httpClient = HttpClient.newBuilder().followRedirects(HttpClient.Redirect.ALWAYS).build();
+        // OAI (or remote Dataverse API) to obtain the metadata records; it
+        // is shared by all the fetchers 
+        HttpClient httpClient = HttpClient.newBuilder().followRedirects(HttpClient.Redirect.ALWAYS).build();
+        
+        int fetchers = JvmSettings.HARVEST_FETCH_PARALLELISM.lookupOptional(Integer.class).orElse(4);
+        int importers = JvmSettings.HARVEST_IMPORT_PARALLELISM.lookupOptional(Integer.class).orElse(2);
+        int groupSize = JvmSettings.HARVEST_IMPORT_GROUP_SIZE.lookupOptional(Integer.class).orElse(10);
+        
+        // Each record is retrieved with a separate GetRecord call (unless it 
+        // comes with a ListRecords page), and then imported, with a group of
+        // records, in a transaction:
+        HarvestPipeline pipeline = new HarvestPipeline(
+                (identifier, dateStamp) -> fetchRecord(hdLogger, oaiHandler, identifier, dateStamp, httpClient),
+                fetchers,
+                managedThreadFactory,
+                records -> importRecords(dataverseRequest, hdLogger, importCleanupLog, oaiHandler, records, failedIdentifiers, deletedIdentifiers, harvestedDatasetIds),
+                groupSize,
+                importers,
+                managedExecutorService);
         
         try {
-            for (Iterator<Header> idIter = oaiHandler.runListIdentifiers(); idIter.hasNext();) {
-                // Before each iteration, check if this harvesting job needs to be aborted:
-                if (checkIfStoppingJob(harvestingClient)) {
-                    throw new StopHarvestException("Harvesting stopped by external request");
-                }
+            if (harvestingClient.getUseListRecords() && !DATAVERSE_PROPRIETARY_METADATA_FORMAT.equals(oaiHandler.getMetadataPrefix())) {
+                // The records come with their metadata, a page at a time;
+                // GetRecord is only called for the ones that failed to parse:
+                harvestListRecords(dataverseRequest, harvestingClient, hdLogger, oaiHandler, httpClient, pipeline, deletedIdentifiers);
+                
+            } else {
+                for (Iterator<Header> idIter = oaiHandler.runListIdentifiers(); idIter.hasNext();) {
+                    // Before each iteration, check if this harvesting job needs to be aborted:
+                    if (checkIfStoppingJob(harvestingClient)) {
+                        throw new StopHarvestException("Harvesting stopped by external request");
+                    }
 
-                Header h = idIter.next();
-                String identifier = h.getIdentifier();
-                Date dateStamp = Date.from(h.getDatestamp());
+                    Header h = idIter.next();
+                    String identifier = h.getIdentifier();
+                    Date dateStamp = Date.from(h.getDatestamp());
                 
-                hdLogger.info("processing identifier: " + identifier + ", date: " + dateStamp);
+                    hdLogger.info("processing identifier: " + identifier + ", date: " + dateStamp);
                 
-                if (h.isDeleted()) {
-                    hdLogger.info("Deleting harvesting dataset for " + identifier + ", per ListIdentifiers.");
+                    if (h.isDeleted()) {
+                        hdLogger.info("Deleting harvesting dataset for " + identifier + ", per ListIdentifiers.");
 
-                    deleteHarvestedDatasetIfExists(identifier, oaiHandler.getHarvestingClient().getDataverse(), dataverseRequest, deletedIdentifiers, hdLogger);
-                    continue;
-                }
+                        deleteHarvestedDatasetIfExists(identifier, oaiHandler.getHarvestingClient().getDataverse(), dataverseRequest, deletedIdentifiers, hdLogger);
+                        continue;
+                    }
 
-                MutableBoolean getRecordErrorOccurred = new MutableBoolean(false);
-
-                // Retrieve and process this record with a separate GetRecord call:
-                
-                Long datasetId = processRecord(dataverseRequest, hdLogger, importCleanupLog, oaiHandler, identifier, getRecordErrorOccurred, deletedIdentifiers, dateStamp, httpClient);
-                
-                if (datasetId != null) {
-                    harvestedDatasetIds.add(datasetId);
-                }
-                
-                if (getRecordErrorOccurred.booleanValue() == true) {
-                    failedIdentifiers.add(identifier);
-                    //can be uncommented out for testing failure handling:
-                    //throw new IOException("Exception occured, stopping harvest");
+                    // (blocks while the fetchers and importers are all busy)
+                    pipeline.submit(identifier, dateStamp);
                 }
             }
         } catch (OaiHandlerException e) {
             throw new IOException("Failed to run ListIdentifiers: " + e.getMessage());
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while running the harvest");
+        } finally {
+            // Whether the harvest is completed, stopped, or failed, the records
+            // already fetched are imported, so that they are accounted for:
+            pipeline.finish();
         }
 
         logCompletedOaiHarvest(hdLogger, harvestingClient);
 
     }    
     
-    private Long processRecord(DataverseRequest dataverseRequest, Logger hdLogger, PrintWriter importCleanupLog, OaiHandler oaiHandler, String identifier, MutableBoolean recordErrorOccurred, List<String> deletedIdentifiers, Date dateStamp, HttpClient httpClient) {
-        String errMessage = null;
-        Dataset harvestedDataset = null;
+    /**
+     * Harvests the records with ListRecords calls: the records are parsed
+     * from the pages of the ListRecords response as they come, and handed to
+     * the importers directly, saving a GetRecord call per record. 
+     */
+    private void harvestListRecords(DataverseRequest dataverseRequest, HarvestingClient harvestingClient, Logger hdLogger, OaiHandler oaiHandler, HttpClient httpClient, HarvestPipeline pipeline, List<String> deletedIdentifiers) 
+            throws IOException, InterruptedException, StopHarvestException {
+        hdLogger.info("Harvesting with ListRecords");
+        FastListRecords listRecords = new FastListRecords(oaiHandler, httpClient);
+        
+        while (listRecords.hasNext()) {
+            // Before each iteration, check if this harvesting job needs to be aborted:
+            if (checkIfStoppingJob(harvestingClient)) {
+                throw new StopHarvestException("Harvesting stopped by external request");
+            }
+            
+            FetchedRecord fetchedRecord = listRecords.next();
+            String identifier = fetchedRecord.getIdentifier();
+            
+            hdLogger.info("processing identifier: " + identifier + ", date: " + fetchedRecord.getDateStamp());
+            
+            if (fetchedRecord.isDeleted()) {
+                hdLogger.info("Deleting harvesting dataset for " + identifier + ", per ListRecords.");
+                
+                deleteHarvestedDatasetIfExists(identifier, oaiHandler.getHarvestingClient().getDataverse(), dataverseRequest, deletedIdentifiers, hdLogger);
+            } else if (fetchedRecord.getErrorMessage() != null) {
+                hdLogger.warning(fetchedRecord.getErrorMessage() + "; retrying " + identifier + " with GetRecord");
+                pipeline.submit(identifier, fetchedRecord.getDateStamp());
+            } else {
+                pipeline.submit(fetchedRecord);
+            }
+        }
+        
+        if (listRecords.getErrorMessage() != null) {
+            throw new IOException("Failed to run ListRecords: " + listRecords.getErrorMessage());
+        }
+    }
+    
+    /**
+     * Retrieves the metadata of a record into a temp file; the first stage
+     * of processing a record. Runs on a fetcher thread, so it makes no 
+     * database calls.
+     */
+    private FetchedRecord fetchRecord(Logger hdLogger, OaiHandler oaiHandler, String identifier, Date dateStamp, HttpClient httpClient) {
+        FetchedRecord fetchedRecord = new FetchedRecord(identifier, dateStamp);
         logGetRecord(hdLogger, oaiHandler, identifier);
-        File tempFile = null;
         
         try {
-            boolean deleted = false;
-            
             if (DATAVERSE_PROPRIETARY_METADATA_FORMAT.equals(oaiHandler.getMetadataPrefix())) {
                 // Make direct call to obtain the proprietary Dataverse metadata
                 // in JSON from the remote Dataverse server:
                 String metadataApiUrl = oaiHandler.getProprietaryDataverseMetadataURL(identifier);
                 logger.fine("calling "+metadataApiUrl);
-                tempFile = retrieveProprietaryDataverseMetadata(httpClient, metadataApiUrl);
+                fetchedRecord.setMetadataFile(retrieveProprietaryDataverseMetadata(httpClient, metadataApiUrl));
                 
             } else {
                 FastGetRecord record = oaiHandler.runGetRecord(identifier, httpClient);
-                errMessage = record.getErrorMessage();
-                deleted = record.isDeleted();
-                tempFile = record.getMetadataFile();
+                fetchedRecord.setErrorMessage(record.getErrorMessage());
+                fetchedRecord.setDeleted(record.isDeleted());
+                fetchedRecord.setMetadataFile(record.getMetadataFile());
             }
-
+            
+            if (fetchedRecord.getErrorMessage() != null) {
+                hdLogger.log(Level.SEVERE, "Error calling GetRecord - " + fetchedRecord.getErrorMessage());
+            } 
+        } catch (Throwable e) {
+            logGetRecordException(hdLogger, oaiHandler, identifier, e);
+            fetchedRecord.setErrorMessage("Caught exception while executing GetRecord on "+identifier);
+        }
+        return fetchedRecord;
+    }
+    
+    /**
+     * Imports a group of records retrieved by fetchRecord(), in a single
+     * transaction; the second stage of processing the records. Runs on a 
+     * managed thread. If the group can't be imported as a whole, its records
+     * are imported one at a time, so that only the ones that fail are 
+     * counted as failed. 
+     */
+    private void importRecords(DataverseRequest dataverseRequest, Logger hdLogger, PrintWriter importCleanupLog, OaiHandler oaiHandler, List<FetchedRecord> fetchedRecords, List<String> failedIdentifiers, List<String> deletedIdentifiers, List<Long> harvestedDatasetIds) {
+        List<FetchedRecord> group = new ArrayList<>();
+        for (FetchedRecord fetchedRecord : fetchedRecords) {
+            if (fetchedRecord.getErrorMessage() != null || fetchedRecord.isDeleted()) {
+                // (nothing to import)
+                importRecord(dataverseRequest, hdLogger, importCleanupLog, oaiHandler, fetchedRecord, failedIdentifiers, deletedIdentifiers, harvestedDatasetIds);
+            } else {
+                group.add(fetchedRecord);
+            }
+        }
+        
+        if (group.size() > 1) {
+            List<HarvestedRecord> harvestedRecords = new ArrayList<>();
+            for (FetchedRecord fetchedRecord : group) {
+                harvestedRecords.add(new HarvestedRecord(fetchedRecord.getIdentifier(), fetchedRecord.getMetadataFile(), fetchedRecord.getDateStamp()));
+            }
+            try {
+                List<Dataset> harvestedDatasets = importService.doImportHarvestedDatasets(dataverseRequest, 
+                        oaiHandler.getHarvestingClient(),
+                        oaiHandler.getMetadataPrefix(), 
+                        harvestedRecords,
+                        importCleanupLog);
+                
+                List<Long> datasetIds = new ArrayList<>();
+                for (int i = 0; i < group.size(); i++) {
+                    hdLogger.fine("Harvest Successful for identifier " + group.get(i).getIdentifier());
+                    datasetIds.add(harvestedDatasets.get(i).getId());
+                    try{group.get(i).getMetadataFile().delete();}catch(Throwable t){};
+                }
+                harvestedDatasetIds.addAll(datasetIds);
+                // (the group is committed)
+                indexHarvestedDatasets(datasetIds, hdLogger);
+                return;
+            } catch (Throwable e) {
+                hdLogger.info("Failed to import a group of " + group.size() + " records (" + e.getMessage() + "); importing them one at a time.");
+            }
+        }
+        
+        for (FetchedRecord fetchedRecord : group) {
+            importRecord(dataverseRequest, hdLogger, importCleanupLog, oaiHandler, fetchedRecord, failedIdentifiers, deletedIdentifiers, harvestedDatasetIds);
+        }
+    }
+    
+    /**
+     * Imports (or deletes) the dataset of a record retrieved by 
+     * fetchRecord(), in its own transaction. 
+     */
+    private void importRecord(DataverseRequest dataverseRequest, Logger hdLogger, PrintWriter importCleanupLog, OaiHandler oaiHandler, FetchedRecord fetchedRecord, List<String> failedIdentifiers, List<String> deletedIdentifiers, List<Long> harvestedDatasetIds) {
+        String identifier = fetchedRecord.getIdentifier();
+        String errMessage = fetchedRecord.getErrorMessage();
+        File tempFile = fetchedRecord.getMetadataFile();
+        Dataset harvestedDataset = null;
+        boolean importAttempted = false;
+        
+        try {
             if (errMessage != null) {
-                hdLogger.log(Level.SEVERE, "Error calling GetRecord - " + errMessage);
+                // (already logged)
                 
-            } else if (deleted) {
+            } else if (fetchedRecord.isDeleted()) {
                 hdLogger.info("Deleting harvesting dataset for "+identifier+", per GetRecord.");
                 
                 deleteHarvestedDatasetIfExists(identifier, oaiHandler.getHarvestingClient().getDataverse(), dataverseRequest, deletedIdentifiers, hdLogger); 
             } else {
                 hdLogger.info("Successfully retrieved GetRecord response.");
 
-                PrintWriter cleanupLog;
+                importAttempted = true;
                 harvestedDataset = importService.doImportHarvestedDataset(dataverseRequest, 
                         oaiHandler.getHarvestingClient(),
                         identifier,
                         oaiHandler.getMetadataPrefix(), 
                         tempFile,
-                        dateStamp,
-                        importCleanupLog);
+                        fetchedRecord.getDateStamp(),
+                        importCleanupLog,
+                        true);
                 
                 hdLogger.fine("Harvest Successful for identifier " + identifier);
                 hdLogger.fine("Size of this record: " + tempFile.length());
@@ -333,19 +474,49 @@ public class HarvesterServiceBean {
             }
         }
 
-        // If we got an Error from the OAI server or an exception happened during import, then
-        // set recordErrorOccurred to true (if recordErrorOccurred is being used)
-        // otherwise throw an exception (if recordErrorOccurred is not used, i.e null)
-        
+        // If we got an Error from the OAI server or an exception happened during import, 
+        // count the identifier as failed:
         if (errMessage != null) {
-            if (recordErrorOccurred != null) {
-                recordErrorOccurred.setValue(true);
-            } else {
-                throw new EJBException(errMessage);
+            failedIdentifiers.add(identifier);
+            //can be uncommented out for testing failure handling:
+            //throw new IOException("Exception occured, stopping harvest");
+            if (importAttempted) {
+                // The search documents of the dataset this record was to 
+                // replace may have been deleted by the failed import, which
+                // was rolled back; the dataset is indexed again:
+                reindexExistingDataset(identifier, oaiHandler.getHarvestingClient().getDataverse(), hdLogger);
             }
+        } else if (harvestedDataset != null) {
+            harvestedDatasetIds.add(harvestedDataset.getId());
+            indexHarvestedDatasets(List.of(harvestedDataset.getId()), hdLogger);
+        }
+    }
+    
+    /**
+     * Starts the indexing of the datasets harvested, which are imported
+     * without being indexed; to be called once their import is committed,
+     * so that they are in the search index again (the documents of the 
+     * datasets they replace are deleted by the import) without waiting for
+     * the end of the harvest. 
+     */
+    private void indexHarvestedDatasets(List<Long> datasetIds, Logger hdLogger) {
+        try {
+            hdLogger.fine("Indexing the " + datasetIds.size() + " datasets imported");
+            indexBatchService.indexDatasets(datasetIds);
+        } catch (Throwable e) {
+            hdLogger.log(Level.SEVERE, "Failed to start indexing the datasets harvested " + datasetIds + ": " + e.getMessage());
+        }
+    }
+    
+    private void reindexExistingDataset(String harvestIdentifier, Dataverse harvestingDataverse, Logger hdLogger) {
+        try {
+            Dataset existingDataset = datasetService.getDatasetByHarvestInfo(harvestingDataverse, harvestIdentifier);
+            if (existingDataset != null) {
+                indexHarvestedDatasets(List.of(existingDataset.getId()), hdLogger);
+            }
+        } catch (Throwable e) {
+            hdLogger.log(Level.SEVERE, "Failed to look up the existing dataset of " + harvestIdentifier + " for reindexing: " + e.getMessage());
         }
-
-        return harvestedDataset != null ? harvestedDataset.getId() : null;
     }
     
     File retrieveProprietaryDataverseMetadata (HttpClient client, String remoteApiUrl) throws IOException {
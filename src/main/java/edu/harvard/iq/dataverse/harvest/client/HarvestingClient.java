@@ -251,6 +251,15 @@ public class HarvestingClient implements Serializable {
     public void setAllowHarvestingMissingCVV(boolean allowHarvestingMissingCVV) {
         this.allowHarvestingMissingCVV = allowHarvestingMissingCVV;
     }
+
+    // Harvest with ListRecords, rather than ListIdentifiers + GetRecord:
+    private boolean useListRecords;
+    public boolean getUseListRecords() {
+        return useListRecords;
+    }
+    public void setUseListRecords(boolean useListRecords) {
+        this.useListRecords = useListRecords;
+    }
     
     // TODO: do we need "orphanRemoval=true"? -- L.A. 4.4
     // TODO: should it be @OrderBy("startTime")? -- L.A. 4.4
@@ -13,6 +13,7 @@ import io.gdcc.spi.export.ExportException;
 import edu.harvard.iq.dataverse.search.IndexServiceBean;
 import edu.harvard.iq.dataverse.settings.SettingsServiceBean;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
@@ -321,22 +322,132 @@ public class OAIRecordServiceBean implements java.io.Serializable {
         }
         
         String queryString = "SELECT object(h) from OAIRecord h where h.id is not null";
-        if (excludeSet) {
-            queryString += " and h.setName is not null and h.setName != '' and h.setName != :setName";
-        } else {
-            queryString += " and h.setName = :setName";
-        }
-        
-        queryString += from != null ? " and h.lastUpdateTime >= :from" : "";
-        queryString += until != null ? " and h.lastUpdateTime<=:until" : "";
+        queryString += setNameAndTimeClause(excludeSet, from, until);
         queryString += " order by h.globalId";
 
         logger.fine("Query: "+queryString);
         
         TypedQuery<OAIRecord> query = em.createQuery(queryString, OAIRecord.class);
-        if (setName != null) { 
-            query.setParameter("setName",setName); 
+        setNameAndTimeParameters(query, setName, from, until);
+                
+        try {
+            return query.getResultList();      
+        } catch (Exception ex) {
+            logger.fine("Caught exception; returning null.");
+            return null;
+        }
+    }
+    
+    /**
+     * One page of the records of an OAI set, in the order of the global ids
+     * (and of the database ids, for the records with the same global id).
+     * When the last record of the previous page is known, the page starts
+     * right after it ("keyset" pagination), so that the database can seek
+     * the page in the index, no matter how deep into the set it is; otherwise
+     * it is the page at the offset specified.
+     *
+     * @param setName       name of the OAI set
+     * @param from          optional lower bound of the update times
+     * @param until         optional upper bound of the update times
+     * @param afterGlobalId global id of the last record of the previous page, or null
+     * @param afterId       database id of the last record of the previous page, or null
+     * @param offset        position of the page in the set; used only when
+     *                      the last record of the previous page is not known
+     * @param limit         maximum number of records to return
+     * @return the records, or null if the lookup failed
+     */
+    public List<OAIRecord> findOaiRecordsPageBySetName(String setName, Instant from, Instant until, String afterGlobalId, Long afterId, int offset, int limit) {
+        if (setName == null) {
+            setName = "";
+        }
+        boolean keyset = afterGlobalId != null && afterId != null;
+
+        String queryString = "SELECT object(h) from OAIRecord h where h.id is not null";
+        queryString += setNameAndTimeClause(false, from, until);
+        if (keyset) {
+            queryString += " and (h.globalId > :afterGlobalId or (h.globalId = :afterGlobalId and h.id > :afterId))";
+        }
+        queryString += " order by h.globalId, h.id";
+
+        logger.fine("Query: " + queryString);
+
+        TypedQuery<OAIRecord> query = em.createQuery(queryString, OAIRecord.class);
+        setNameAndTimeParameters(query, setName, from, until);
+        if (keyset) {
+            query.setParameter("afterGlobalId", afterGlobalId);
+            query.setParameter("afterId", afterId);
+        } else {
+            query.setFirstResult(offset);
+        }
+        query.setMaxResults(limit);
+
+        try {
+            return query.getResultList();
+        } catch (Exception ex) {
+            logger.fine("Caught exception; returning null.");
+            return null;
+        }
+    }
+
+    /**
+     * @return the number of the records of the OAI set (between the update
+     * times specified, if any)
+     */
+    public long countOaiRecordsBySetName(String setName, Instant from, Instant until) {
+        if (setName == null) {
+            setName = "";
+        }
+        String queryString = "SELECT count(h) from OAIRecord h where h.id is not null";
+        queryString += setNameAndTimeClause(false, from, until);
+
+        TypedQuery<Long> query = em.createQuery(queryString, Long.class);
+        setNameAndTimeParameters(query, setName, from, until);
+        return query.getSingleResult();
+    }
+
+    /**
+     * The records, with the global ids specified, that are in OAI sets other
+     * than this one; that is, the other sets of the records on a page of this
+     * set.
+     */
+    public List<OAIRecord> findOaiRecordsInOtherSets(String setName, Instant from, Instant until, Collection<String> globalIds) {
+        if (globalIds == null || globalIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        if (setName == null) {
+            setName = "";
+        }
+        String queryString = "SELECT object(h) from OAIRecord h where h.globalId in :globalIds";
+        queryString += setNameAndTimeClause(true, from, until);
+        queryString += " order by h.globalId, h.id";
+
+        TypedQuery<OAIRecord> query = em.createQuery(queryString, OAIRecord.class);
+        setNameAndTimeParameters(query, setName, from, until);
+        query.setParameter("globalIds", globalIds);
+
+        try {
+            return query.getResultList();
+        } catch (Exception ex) {
+            logger.fine("Caught exception; returning null.");
+            return null;
         }
+    }
+
+    private String setNameAndTimeClause(boolean excludeSet, Instant from, Instant until) {
+        String clause;
+        if (excludeSet) {
+            clause = " and h.setName is not null and h.setName != '' and h.setName != :setName";
+        } else {
+            clause = " and h.setName = :setName";
+        }
+        
+        clause += from != null ? " and h.lastUpdateTime >= :from" : "";
+        clause += until != null ? " and h.lastUpdateTime<=:until" : "";
+        return clause;
+    }
+
+    private void setNameAndTimeParameters(TypedQuery<?> query, String setName, Instant from, Instant until) {
+        query.setParameter("setName",setName); 
         // TODO: review and phase out the use of java.util.Date throughout this service.
         
         if (from != null) { 
@@ -347,13 +458,6 @@ public class OAIRecordServiceBean implements java.io.Serializable {
             Date untilDate = Date.from(until);
             query.setParameter("until",untilDate,TemporalType.TIMESTAMP); 
         }
-                
-        try {
-            return query.getResultList();      
-        } catch (Exception ex) {
-            logger.fine("Caught exception; returning null.");
-            return null;
-        }
     }
     
     // This method is to only get the records NOT marked as "deleted":
@@ -13,7 +13,6 @@ import io.gdcc.xoai.dataprovider.model.Context;
 import io.gdcc.xoai.dataprovider.model.MetadataFormat;
 import io.gdcc.xoai.dataprovider.request.RequestBuilder;
 import io.gdcc.xoai.dataprovider.request.RequestBuilder.RawRequest;
-import io.gdcc.xoai.dataprovider.repository.ItemRepository;
 import io.gdcc.xoai.dataprovider.repository.SetRepository;
 import io.gdcc.xoai.model.oaipmh.DeletedRecord;
 import io.gdcc.xoai.model.oaipmh.OAIPMH;
@@ -29,6 +28,7 @@ import edu.harvard.iq.dataverse.harvest.server.OAIRecordServiceBean;
 import edu.harvard.iq.dataverse.harvest.server.OAISetServiceBean;
 import edu.harvard.iq.dataverse.harvest.server.xoai.DataverseXoaiItemRepository;
 import edu.harvard.iq.dataverse.harvest.server.xoai.DataverseXoaiSetRepository;
+import edu.harvard.iq.dataverse.harvest.server.xoai.KeysetResumptionTokenFormat;
 import edu.harvard.iq.dataverse.settings.SettingsServiceBean;
 import edu.harvard.iq.dataverse.util.MailUtil;
 import edu.harvard.iq.dataverse.util.SystemConfig;
@@ -42,7 +42,9 @@ import org.apache.commons.lang3.StringUtils;
 import java.io.IOException;
 import java.util.Optional;
 import java.util.logging.Logger;
+import jakarta.annotation.Resource;
 import jakarta.ejb.EJB;
+import jakarta.enterprise.concurrent.ManagedExecutorService;
 import jakarta.inject.Inject;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 import jakarta.mail.internet.InternetAddress;
@@ -77,6 +79,10 @@ public class OAIServlet extends HttpServlet {
     SystemConfig systemConfig;
     @EJB
     MailServiceBean mailServiceBean;
+    
+    // (opens the cached exports of the records on a ListRecords page)
+    @Resource
+    ManagedExecutorService exportExecutor;
 
     @Inject
     @ConfigProperty(name = "dataverse.oai.server.maxidentifiers", defaultValue="100")
@@ -90,6 +96,10 @@ public class OAIServlet extends HttpServlet {
     @ConfigProperty(name = "dataverse.oai.server.maxrecords", defaultValue="10")
     private Integer maxListRecords;
     
+    @Inject
+    @ConfigProperty(name = "dataverse.oai.server.export-parallelism", defaultValue="4")
+    private Integer exportParallelism;
+    
     private static final Logger logger = Logger.getLogger("edu.harvard.iq.dataverse.harvest.server.web.servlet.OAIServlet");
     // If we are going to stick with this solution - of providing a minimalist 
     // xml record containing a link to the proprietary json metadata API for 
@@ -115,9 +125,10 @@ public class OAIServlet extends HttpServlet {
     
     private Context xoaiContext;
     private SetRepository setRepository;
-    private ItemRepository itemRepository;
+    private DataverseXoaiItemRepository itemRepository;
     private RepositoryConfiguration repositoryConfiguration;
     private Repository xoaiRepository;
+    private KeysetResumptionTokenFormat resumptionTokenFormat;
     private DataProvider dataProvider;
 
     public void init(ServletConfig config) throws ServletException {
@@ -129,8 +140,13 @@ public class OAIServlet extends HttpServlet {
             xoaiContext = addDataverseJsonMetadataFormat(xoaiContext);
         }
         
+        // (shared by the item repository, which puts the last record of each
+        // page into the resumption tokens, for the next page to start from;
+        // cleared at the end of each request)
+        resumptionTokenFormat = new KeysetResumptionTokenFormat(new SimpleResumptionTokenFormat().withGranularity(Granularity.Second));
+        
         setRepository = new DataverseXoaiSetRepository(setService);
-        itemRepository = new DataverseXoaiItemRepository(recordService, datasetService, SystemConfig.getDataverseSiteUrlStatic());
+        itemRepository = new DataverseXoaiItemRepository(recordService, datasetService, SystemConfig.getDataverseSiteUrlStatic(), resumptionTokenFormat, exportExecutor, exportParallelism);
 
         repositoryConfiguration = createRepositoryConfiguration(); 
                                 
@@ -209,7 +225,7 @@ public class OAIServlet extends HttpServlet {
                 .withCompression("gzip")
                 .withCompression("deflate")
                 .withGranularity(Granularity.Lenient)
-                .withResumptionTokenFormat(new SimpleResumptionTokenFormat().withGranularity(Granularity.Second))
+                .withResumptionTokenFormat(resumptionTokenFormat)
                 .withRepositoryName(repositoryName)
                 .withBaseUrl(systemConfig.getDataverseSiteUrl()+"/oai")
                 .withEarliestDate(recordService.getEarliestDate())
@@ -277,11 +293,16 @@ public class OAIServlet extends HttpServlet {
             response.setContentType("text/xml;charset=UTF-8");
 
             try (XmlWriter xmlWriter = new XmlWriter(response.getOutputStream(), repositoryConfiguration);) {
+                // (the metadata of the records are streamed from their 
+                // cached exports, as they are written)
                 xmlWriter.write(handle);
             }
                        
         } catch (XMLStreamException | OAIException e) {
             throw new ServletException (e);
+        } finally {
+            itemRepository.closeExportStreams();
+            resumptionTokenFormat.clear();
         }
         
     }
@@ -9,10 +9,12 @@ import io.gdcc.xoai.dataprovider.model.MetadataFormat;
 import io.gdcc.xoai.dataprovider.repository.ItemRepository;
 import edu.harvard.iq.dataverse.Dataset;
 import edu.harvard.iq.dataverse.DatasetServiceBean;
+import edu.harvard.iq.dataverse.dataaccess.StorageIO;
 import edu.harvard.iq.dataverse.export.ExportService;
 import io.gdcc.spi.export.ExportException;
 import edu.harvard.iq.dataverse.harvest.server.OAIRecord;
 import edu.harvard.iq.dataverse.harvest.server.OAIRecordServiceBean;
+import edu.harvard.iq.dataverse.harvest.server.xoai.KeysetResumptionTokenFormat.PageBoundary;
 import edu.harvard.iq.dataverse.util.StringUtil;
 import io.gdcc.xoai.dataprovider.exceptions.handler.HandlerException;
 import io.gdcc.xoai.dataprovider.exceptions.handler.NoMetadataFormatsException;
@@ -24,7 +26,15 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.time.Instant;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 
 /**
@@ -41,11 +51,22 @@ public class DataverseXoaiItemRepository implements ItemRepository {
     private final OAIRecordServiceBean recordService;
     private final DatasetServiceBean datasetService;
     private final String serverUrl; 
+    private final KeysetResumptionTokenFormat tokenFormat;
+    private final ExecutorService exportExecutor;
+    private final int exportParallelism;
+    
+    // The cached exports opened for the page being served on this thread; 
+    // the records close them as they are written into the response, and 
+    // the servlet closes whatever is left (see closeExportStreams()). 
+    private final ThreadLocal<List<ExportStreamElement>> openExports = ThreadLocal.withInitial(ArrayList::new);
 
-    public DataverseXoaiItemRepository (OAIRecordServiceBean recordService, DatasetServiceBean datasetService, String serverUrl) {
+    public DataverseXoaiItemRepository (OAIRecordServiceBean recordService, DatasetServiceBean datasetService, String serverUrl, KeysetResumptionTokenFormat tokenFormat, ExecutorService exportExecutor, int exportParallelism) {
         this.recordService = recordService;
         this.datasetService = datasetService;
         this.serverUrl = serverUrl; 
+        this.tokenFormat = tokenFormat;
+        this.exportExecutor = exportExecutor;
+        this.exportParallelism = Math.max(1, exportParallelism);
     }
     
     @Override
@@ -83,7 +104,7 @@ public class DataverseXoaiItemRepository implements ItemRepository {
             for (OAIRecord oaiRecord : oaiRecords) {
                 if (xoaiItem == null) {
                     xoaiItem = new DataverseXoaiItem(oaiRecord); 
-                    xoaiItem = addMetadata(xoaiItem, metadataFormat);
+                    addMetadata(List.of(xoaiItem), metadataFormat);
                 } else {
                     // Adding extra set specs to the XOAI Item, if this oaiRecord
                     // is part of multiple sets:
@@ -133,113 +154,195 @@ public class DataverseXoaiItemRepository implements ItemRepository {
                 + ", from=" + from
                 + ", until=" + until);
 
-        List<OAIRecord> oaiRecords = recordService.findOaiRecordsBySetName(setSpec, from, until);
+        // The last record of the previous page, if the resumption token
+        // carries it, lets us seek this page by its key, rather than by its
+        // offset; it also carries the size of the list, counted when the
+        // first page was served:
+        PageBoundary boundary = offset > 0 ? tokenFormat.getBoundary(resumptionToken) : null;
+        long total = boundary != null ? boundary.getTotal() : recordService.countOaiRecordsBySetName(setSpec, from, until);
+        
+        // (one extra record, to find out if there are more pages)
+        List<OAIRecord> oaiRecords = recordService.findOaiRecordsPageBySetName(setSpec, from, until, 
+                boundary != null ? boundary.getLastGlobalId() : null, 
+                boundary != null ? boundary.getLastId() : null, 
+                offset, maxResponseLength + 1);
         
         List<DataverseXoaiItem> xoaiItems = new ArrayList<>();
 
         if (oaiRecords != null && !oaiRecords.isEmpty()) {
-            logger.fine("total " + oaiRecords.size() + " records returned");
+            logger.fine("total " + total + " records in the list");
             
-            for (int i = offset; i < offset + maxResponseLength && i < oaiRecords.size(); i++) {
-                OAIRecord record = oaiRecords.get(i);
-                DataverseXoaiItem xoaiItem = new DataverseXoaiItem(record);
-                
-                if (fullItems) {
-                    // If we are cooking "full" Items (for the ListRecords verb),
-                    // add the metadata to the item object (if not a deleted
-                    // record, if available, etc.):
-                    xoaiItem = addMetadata(xoaiItem, metadataFormat);
-                }
-                
-                xoaiItems.add(xoaiItem);
+            hasMore = oaiRecords.size() > maxResponseLength;
+            if (hasMore) {
+                oaiRecords = oaiRecords.subList(0, maxResponseLength);
             }
             
-            // Run a second pass, looking for records in this set that occur
+            for (OAIRecord record : oaiRecords) {
+                xoaiItems.add(new DataverseXoaiItem(record));
+            }
+            
+            if (fullItems) {
+                // If we are cooking "full" Items (for the ListRecords verb),
+                // add the metadata to the item objects (if not deleted
+                // records, if available, etc.):
+                addMetadata(xoaiItems, metadataFormat);
+            }
+            
+            // Run a second pass, looking for records on this page that occur
             // in *other* sets. Then we'll add these multiple sets to the 
             // formatted output in the header:
             addExtraSets(xoaiItems, setSpec, from, until);
             
-            hasMore = offset + maxResponseLength < oaiRecords.size();
+            if (hasMore) {
+                // The next page starts right after the last record of this one
+                // (XOAI makes its token from this one, and the number of items):
+                OAIRecord lastRecord = oaiRecords.get(oaiRecords.size() - 1);
+                tokenFormat.setNextBoundary(resumptionToken.next(xoaiItems.size()), 
+                        new PageBoundary(lastRecord.getGlobalId(), lastRecord.getId(), total));
+            }
             
-            ResultsPage<DataverseXoaiItem> result = new ResultsPage(resumptionToken, hasMore, xoaiItems, oaiRecords.size());
+            ResultsPage<DataverseXoaiItem> result = new ResultsPage(resumptionToken, hasMore, xoaiItems, total);
             logger.fine("returning result with " + xoaiItems.size() + " items.");
             return result;
         }
 
-        return new ResultsPage(resumptionToken, false, xoaiItems, 0);
+        return new ResultsPage(resumptionToken, false, xoaiItems, total);
     }
     
-    private void addExtraSets(Object xoaiItemsList, String setSpec, Instant from, Instant until) {
+    private void addExtraSets(List<DataverseXoaiItem> xoaiItems, String setSpec, Instant from, Instant until) {
         
-        List<DataverseXoaiItem> xoaiItems = (List<DataverseXoaiItem>)xoaiItemsList;
+        Map<String, DataverseXoaiItem> itemsByGlobalId = new HashMap<>();
+        for (DataverseXoaiItem xoaiItem : xoaiItems) {
+            itemsByGlobalId.put(xoaiItem.getIdentifier(), xoaiItem);
+        }
         
-        List<OAIRecord> oaiRecords = recordService.findOaiRecordsNotInThisSet(setSpec, from, until);
+        // Only the records with the identifiers on this page:
+        List<OAIRecord> oaiRecords = recordService.findOaiRecordsInOtherSets(setSpec, from, until, itemsByGlobalId.keySet());
         
         if (oaiRecords == null || oaiRecords.isEmpty()) {
             return;
         }
-                
-        // Make a second pass through the list of xoaiItems already found for this set, 
-        // and add any other sets in which this item occurs:
         
-        int j = 0;
-        for (int i = 0; i < xoaiItems.size(); i++) {
-            // fast-forward the second list, until we find a oaiRecord with this identifier, 
-            // or until we are past this oaiRecord (both lists are sorted alphabetically by
-            // the identifier:
-            DataverseXoaiItem xitem = xoaiItems.get(i);
-            
-            while (j < oaiRecords.size() && xitem.getIdentifier().compareTo(oaiRecords.get(j).getGlobalId()) > 0) {
-                j++;
-            }
-            
-            while (j < oaiRecords.size() && xitem.getIdentifier().equals(oaiRecords.get(j).getGlobalId())) {
-                xoaiItems.get(i).getSets().add(new Set(oaiRecords.get(j).getSetName()));
-                j++;
+        // Add any other sets in which the items found for this set occur:
+        for (OAIRecord oaiRecord : oaiRecords) {
+            DataverseXoaiItem xoaiItem = itemsByGlobalId.get(oaiRecord.getGlobalId());
+            if (xoaiItem != null) {
+                xoaiItem.getSets().add(new Set(oaiRecord.getSetName()));
             }
         }
     }
     
-    private DataverseXoaiItem addMetadata(DataverseXoaiItem xoaiItem, MetadataFormat metadataFormat) {
-        // This may be a "deleted" record - i.e., a oaiRecord kept in 
-        // the OAI set for a dataset that's no longer in this Dataverse. 
-        // (it serves to tell the remote client to delete it from their 
+    private void addMetadata(List<DataverseXoaiItem> xoaiItems, MetadataFormat metadataFormat) {
+        // Some of these may be "deleted" records - i.e., oaiRecords kept in 
+        // the OAI set for datasets that are no longer in this Dataverse. 
+        // (they serve to tell the remote client to delete them from their 
         // holdings too). 
-        // If this is the case here, there's nothing we need to do for this item.
-        // If not, if it's a live record, let's try to look up the dataset and 
-        // open the pre-generated metadata stream.
-
-        if (!xoaiItem.isDeleted()) {
-            Dataset dataset = datasetService.findByGlobalId(xoaiItem.getIdentifier());
-            if (dataset != null) {
-                try {
-                    Metadata metadata = getDatasetMetadata(dataset, metadataFormat.getPrefix());
-                    xoaiItem.withDataset(dataset).withMetadata(metadata);
-                } catch (IOException ex) {
-                    // This is not supposed to happen in normal operations; 
-                    // since by design only the datasets for which the metadata
-                    // records have been pre-generated ("exported") should be 
-                    // served as "OAI Record". But, things happen. If for one
-                    // reason or another that cached metadata file is no longer there, 
-                    // we are not going to serve any metadata for this oaiRecord, 
-                    // BUT we are going to include it marked as "deleted"
-                    // (because skipping it could potentially mess up the
+        // There's nothing we need to do for these items. For the live 
+        // records, let's look up the datasets (all of them at once), and 
+        // open the pre-generated metadata streams.
+        List<DataverseXoaiItem> liveItems = new ArrayList<>();
+        for (DataverseXoaiItem xoaiItem : xoaiItems) {
+            if (!xoaiItem.isDeleted()) {
+                liveItems.add(xoaiItem);
+            }
+        }
+        if (liveItems.isEmpty()) {
+            return;
+        }
+        
+        String metadataPrefix = metadataFormat.getPrefix();
+        Map<String, Dataset> datasets = findDatasets(liveItems);
+        
+        // The cached exports are opened concurrently, up to exportParallelism
+        // at a time, ahead of the records they are for; opening one can take 
+        // a while on remote storage, such as S3. The storage of the exports 
+        // is resolved here, so the tasks are not handed the datasets. (The 
+        // exports that may have to be refreshed are looked up on this 
+        // thread, below.)
+        Map<DataverseXoaiItem, CachedExportTask> cachedExports = new LinkedHashMap<>();
+        if (!"dataverse_json".equals(metadataPrefix)) {
+            for (DataverseXoaiItem xoaiItem : liveItems) {
+                Dataset dataset = datasets.get(xoaiItem.getIdentifier());
+                if (dataset != null && ExportService.getInstance().isCachedExportCurrent(dataset, metadataPrefix)) {
+                    try {
+                        cachedExports.put(xoaiItem, new CachedExportTask(dataset.getId(), 
+                                ExportService.getInstance().getCachedExportStorage(dataset), metadataPrefix));
+                    } catch (IOException ex) {
+                        logger.fine("Failed to open the storage of the cached exports of dataset " + dataset.getId() + ": " + ex);
+                    }
+                }
+            }
+        }
+        
+        Iterator<CachedExportTask> toSubmit = cachedExports.values().iterator();
+        int opening = 0;
+        try {
+            for (DataverseXoaiItem xoaiItem : liveItems) {
+                while (toSubmit.hasNext() && opening < exportParallelism) {
+                    toSubmit.next().submit(exportExecutor);
+                    opening++;
+                }
+                CachedExportTask cachedExport = cachedExports.get(xoaiItem);
+                if (cachedExport != null) {
+                    opening--;
+                }
+                
+                Dataset dataset = datasets.get(xoaiItem.getIdentifier());
+                if (dataset != null) {
+                    try {
+                        Metadata metadata = getDatasetMetadata(dataset, metadataPrefix, cachedExport);
+                        xoaiItem.withDataset(dataset).withMetadata(metadata);
+                    } catch (IOException ex) {
+                        // This is not supposed to happen in normal operations; 
+                        // since by design only the datasets for which the metadata
+                        // records have been pre-generated ("exported") should be 
+                        // served as "OAI Record". But, things happen. If for one
+                        // reason or another that cached metadata file is no longer there, 
+                        // we are not going to serve any metadata for this oaiRecord, 
+                        // BUT we are going to include it marked as "deleted"
+                        // (because skipping it could potentially mess up the
+                        // counts and offsets, in a resumption token scenario.
+                        xoaiItem.getOaiRecord().setRemoved(true);
+                    }
+                } else {
+                    // If dataset (somehow) no longer exists (again, this is 
+                    // not supposed to happen), we will serve the oaiRecord, 
+                    // marked as "deleted" and without any metadata. 
+                    // We can't just skip it, because that could mess up the
                     // counts and offsets, in a resumption token scenario.
                     xoaiItem.getOaiRecord().setRemoved(true);
                 }
-            } else {
-                // If dataset (somehow) no longer exists (again, this is 
-                // not supposed to happen), we will serve the oaiRecord, 
-                // marked as "deleted" and without any metadata. 
-                // We can't just skip it, because that could mess up the
-                // counts and offsets, in a resumption token scenario.
-                xoaiItem.getOaiRecord().setRemoved(true);
+            }
+        } finally {
+            // (the exports opened, or being opened, that were not handed to
+            // their records, if this failed half way)
+            for (CachedExportTask cachedExport : cachedExports.values()) {
+                cachedExport.abandon();
             }
         }
-        return xoaiItem;
     }
     
-    private Metadata getDatasetMetadata(Dataset dataset, String metadataPrefix) throws ExportException, IOException {
+    private Map<String, Dataset> findDatasets(List<DataverseXoaiItem> xoaiItems) {
+        List<String> globalIds = new ArrayList<>();
+        for (DataverseXoaiItem xoaiItem : xoaiItems) {
+            globalIds.add(xoaiItem.getIdentifier());
+        }
+        Map<String, Dataset> datasets = datasetService.findByGlobalIds(globalIds);
+        
+        // The datasets not found by their (primary) global ids may still be
+        // found by their alternative ones:
+        for (String globalId : globalIds) {
+            if (!datasets.containsKey(globalId)) {
+                Dataset dataset = datasetService.findByGlobalId(globalId);
+                if (dataset != null) {
+                    datasets.put(globalId, dataset);
+                }
+            }
+        }
+        return datasets;
+    }
+    
+    private Metadata getDatasetMetadata(Dataset dataset, String metadataPrefix, CachedExportTask cachedExport) throws ExportException, IOException {
         Metadata metadata;
 
         if ("dataverse_json".equals(metadataPrefix)) {
@@ -252,14 +355,124 @@ public class DataverseXoaiItemRepository implements ItemRepository {
                     .withAttribute("directApiCall", customDataverseJsonApiUri(dataset.getGlobalId().asString()));
             
         } else {
-            InputStream pregeneratedMetadataStream;
-            pregeneratedMetadataStream = ExportService.getInstance().getExport(dataset, metadataPrefix);
+            InputStream pregeneratedMetadataStream = null;
+            if (cachedExport != null) {
+                try {
+                    pregeneratedMetadataStream = cachedExport.take();
+                } catch (ExecutionException ex) {
+                    logger.fine("Failed to open the cached " + metadataPrefix + " export of " 
+                            + dataset.getGlobalId().asString() + ": " + ex.getCause());
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(ex);
+                }
+            }
+            if (pregeneratedMetadataStream == null) {
+                // (the cached export is missing, or must be refreshed; the 
+                // export service will try to run the export)
+                pregeneratedMetadataStream = ExportService.getInstance().getExport(dataset, metadataPrefix);
+            }
 
-            metadata = Metadata.copyFromStream(pregeneratedMetadataStream);
+            // The metadata are streamed into the response as it is written:
+            ExportStreamElement exportElement = new ExportStreamElement(pregeneratedMetadataStream);
+            openExports.get().add(exportElement);
+            metadata = new Metadata(exportElement);
         }
         return metadata;
     }
     
+    /**
+     * Closes the cached exports opened for the page served on this thread,
+     * that have not been written into the response (because writing it
+     * failed, for example). To be called once the response is written.
+     */
+    public void closeExportStreams() {
+        List<ExportStreamElement> exports = openExports.get();
+        for (ExportStreamElement exportElement : exports) {
+            exportElement.close();
+        }
+        exports.clear();
+    }
+    
+    /**
+     * Opens the cached export of a dataset, from its storage, on an executor
+     * thread; the export is either taken by the record it is for, or closed.
+     */
+    private static final class CachedExportTask implements Callable<InputStream> {
+        private final Long datasetId;
+        private final StorageIO<Dataset> storageIO;
+        private final String metadataPrefix;
+        private Future<InputStream> future;
+        // (guarded by this)
+        private InputStream opened;
+        private boolean abandoned;
+
+        CachedExportTask(Long datasetId, StorageIO<Dataset> storageIO, String metadataPrefix) {
+            this.datasetId = datasetId;
+            this.storageIO = storageIO;
+            this.metadataPrefix = metadataPrefix;
+        }
+
+        void submit(ExecutorService executor) {
+            future = executor.submit(this);
+        }
+
+        @Override
+        public InputStream call() throws IOException {
+            InputStream stream = ExportService.getInstance().getCachedExport(storageIO, metadataPrefix);
+            synchronized (this) {
+                if (!abandoned) {
+                    opened = stream;
+                    return stream;
+                }
+            }
+            logger.fine("Closing the cached " + metadataPrefix + " export of dataset " + datasetId + ", no longer needed");
+            if (stream != null) {
+                stream.close();
+            }
+            return null;
+        }
+
+        /**
+         * @return the export, which the caller has to close, or null if
+         * there is none
+         */
+        InputStream take() throws ExecutionException, InterruptedException {
+            InputStream stream = future.get();
+            synchronized (this) {
+                opened = null;
+                abandoned = true;
+            }
+            return stream;
+        }
+
+        /**
+         * Cancels the task, and closes the export if it was opened and not
+         * taken (or makes the task close it, if it is opening it).
+         */
+        void abandon() {
+            InputStream stream;
+            synchronized (this) {
+                if (abandoned) {
+                    return;
+                }
+                abandoned = true;
+                stream = opened;
+                opened = null;
+            }
+            if (future != null) {
+                future.cancel(true);
+            }
+            if (stream != null) {
+                try {
+                    stream.close();
+                } catch (IOException ex) {
+                    logger.fine("Failed to close the cached " + metadataPrefix + " export of dataset " + datasetId + ": " + ex);
+                }
+            }
+        }
+    }
+    
     private String customDataverseJsonApiUri(String identifier) {
         String ret = serverUrl  
                 + "/api/datasets/export?exporter=dataverse_json&amp;persistentId="
@@ -0,0 +1,119 @@
+package edu.harvard.iq.dataverse.harvest.server.xoai;
+
+import io.gdcc.xoai.xml.EchoElement;
+import io.gdcc.xoai.xml.XmlWriter;
+import io.gdcc.xoai.xmlio.exceptions.XmlWriteException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.logging.Logger;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.Characters;
+import javax.xml.stream.events.Namespace;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+
+/**
+ * The metadata of an OAI record, streamed from its cached export straight
+ * into the OAI response, as the response is written; unlike the
+ * EchoElement created by Metadata.copyFromStream(), it never holds the
+ * whole record in memory. The export stream is closed once the record is
+ * written.
+ */
+public class ExportStreamElement extends EchoElement {
+    private static final Logger logger = Logger.getLogger(ExportStreamElement.class.getCanonicalName());
+
+    private static final XMLInputFactory inputFactory = createInputFactory();
+
+    private final InputStream exportStream;
+
+    public ExportStreamElement(InputStream exportStream) {
+        super("");
+        this.exportStream = exportStream;
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    @Override
+    public void write(XmlWriter writer) throws XmlWriteException {
+        XMLEventReader reader = null;
+        try {
+            reader = inputFactory.createXMLEventReader(exportStream);
+            while (reader.hasNext()) {
+                XMLEvent event = reader.nextEvent();
+                if (event.isStartElement()) {
+                    writeStartElement(writer, event.asStartElement());
+                } else if (event.isEndElement()) {
+                    writer.writeEndElement();
+                } else if (event.isCharacters()) {
+                    Characters characters = event.asCharacters();
+                    if (characters.isCData()) {
+                        writer.writeCData(characters.getData());
+                    } else {
+                        writer.writeCharacters(characters.getData());
+                    }
+                }
+                // (the start and the end of the document, the comments
+                // and the processing instructions of the export are dropped)
+            }
+        } catch (XMLStreamException ex) {
+            throw new XmlWriteException(ex);
+        } finally {
+            close(reader);
+        }
+    }
+
+    private void writeStartElement(XmlWriter writer, StartElement element) throws XMLStreamException {
+        writer.writeStartElement(element.getName().getPrefix(), element.getName().getLocalPart(), element.getName().getNamespaceURI());
+
+        for (Iterator<Namespace> namespaces = element.getNamespaces(); namespaces.hasNext();) {
+            Namespace namespace = namespaces.next();
+            if (namespace.isDefaultNamespaceDeclaration()) {
+                writer.writeDefaultNamespace(namespace.getNamespaceURI());
+            } else {
+                writer.writeNamespace(namespace.getPrefix(), namespace.getNamespaceURI());
+            }
+        }
+
+        for (Iterator<Attribute> attributes = element.getAttributes(); attributes.hasNext();) {
+            Attribute attribute = attributes.next();
+            String prefix = attribute.getName().getPrefix();
+            if (prefix == null || prefix.isEmpty()) {
+                writer.writeAttribute(attribute.getName().getLocalPart(), attribute.getValue());
+            } else {
+                writer.writeAttribute(prefix, attribute.getName().getNamespaceURI(), attribute.getName().getLocalPart(), attribute.getValue());
+            }
+        }
+    }
+
+    /**
+     * Closes the export stream; for the records that end up not being
+     * written, as well.
+     */
+    public void close() {
+        close(null);
+    }
+
+    private void close(XMLEventReader reader) {
+        try {
+            if (reader != null) {
+                reader.close();
+            }
+        } catch (XMLStreamException ex) {
+            logger.fine("Failed to close the XML reader: " + ex.getMessage());
+        }
+        try {
+            exportStream.close();
+        } catch (IOException ex) {
+            logger.fine("Failed to close the export stream: " + ex.getMessage());
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package edu.harvard.iq.dataverse.harvest.server.xoai;
+
+import io.gdcc.xoai.exceptions.BadResumptionTokenException;
+import io.gdcc.xoai.model.oaipmh.Granularity;
+import io.gdcc.xoai.model.oaipmh.ResumptionToken;
+import io.gdcc.xoai.services.api.ResumptionTokenFormat;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.logging.Logger;
+
+/**
+ * A resumption token format that, in addition to the offset, the set and
+ * the time range of the simple XOAI tokens, carries the last record of the
+ * page the token follows (its global id and database id), and the size of
+ * the whole list. The item repository uses these to look up the next page
+ * with a keyset query, seeking the record in the index, instead of counting
+ * and skipping all the records before the offset; and without counting the
+ * records of the set on every page.
+ *
+ * XOAI only passes the offsets, the set and the time range of the tokens
+ * around, so the boundary decoded from the token of a request, and the
+ * boundary to encode into the token of its response, are kept with the
+ * request, on the thread serving it (XOAI parses the token, calls the
+ * repository and formats the next token on that thread), until
+ * {@link #clear()} is called at its end. The offset is still part of the
+ * token, so a page can always be looked up by its offset, if its boundary is
+ * missing or corrupt.
+ */
+public class KeysetResumptionTokenFormat implements ResumptionTokenFormat {
+    private static final Logger logger = Logger.getLogger(KeysetResumptionTokenFormat.class.getCanonicalName());
+
+    // (the simple XOAI tokens are Base64 encoded, so they never start with it)
+    private static final String SEPARATOR = "~";
+
+    private ResumptionTokenFormat simpleFormat;
+
+    private final ThreadLocal<Boundaries> boundaries = ThreadLocal.withInitial(Boundaries::new);
+
+    public KeysetResumptionTokenFormat(ResumptionTokenFormat simpleFormat) {
+        this.simpleFormat = simpleFormat;
+    }
+
+    /**
+     * The last record of a page, and the size of the list the page belongs to.
+     */
+    public static final class PageBoundary {
+        private final String lastGlobalId;
+        private final long lastId;
+        private final long total;
+
+        public PageBoundary(String lastGlobalId, long lastId, long total) {
+            this.lastGlobalId = lastGlobalId;
+            this.lastId = lastId;
+            this.total = total;
+        }
+
+        public String getLastGlobalId() {
+            return lastGlobalId;
+        }
+
+        public long getLastId() {
+            return lastId;
+        }
+
+        public long getTotal() {
+            return total;
+        }
+    }
+
+    // The boundaries of the request served by a thread: those of the page
+    // requested and of the next page, with the tokens they belong to.
+    private static final class Boundaries {
+        private ResumptionToken.Value requested;
+        private PageBoundary requestedBoundary;
+        private ResumptionToken.Value next;
+        private PageBoundary nextBoundary;
+    }
+
+    @Override
+    public ResumptionTokenFormat withGranularity(Granularity granularity) {
+        simpleFormat = simpleFormat.withGranularity(granularity);
+        return this;
+    }
+
+    @Override
+    public ResumptionToken.Value parse(String resumptionToken) throws BadResumptionTokenException {
+        Boundaries current = boundaries.get();
+        current.requested = null;
+        current.requestedBoundary = null;
+        if (resumptionToken == null || !resumptionToken.startsWith(SEPARATOR)) {
+            return simpleFormat.parse(resumptionToken);
+        }
+
+        String[] parts = resumptionToken.substring(SEPARATOR.length()).split(SEPARATOR, 4);
+        if (parts.length != 4) {
+            throw new BadResumptionTokenException("Invalid resumption token");
+        }
+        ResumptionToken.Value value = simpleFormat.parse(parts[3]);
+        try {
+            current.requestedBoundary = decode(parts);
+            current.requested = value;
+        } catch (IllegalArgumentException ex) {
+            // (a token with a corrupt boundary is still good for the offset)
+            logger.fine("Ignoring the page boundary of resumption token " + resumptionToken);
+        }
+        return value;
+    }
+
+    @Override
+    public String format(ResumptionToken.Value resumptionToken) {
+        String token = simpleFormat.format(resumptionToken);
+        if (token == null || token.isEmpty()) {
+            return token;
+        }
+        Boundaries current = boundaries.get();
+        if (current.nextBoundary == null || !resumptionToken.equals(current.next)) {
+            return token;
+        }
+        return encode(current.nextBoundary) + token;
+    }
+
+    /**
+     * @return the last record of the page that precedes the page requested
+     * with the token specified, as decoded from that token by this thread, or
+     * null if it is not known
+     */
+    public PageBoundary getBoundary(ResumptionToken.Value resumptionToken) {
+        Boundaries current = boundaries.get();
+        return resumptionToken.equals(current.requested) ? current.requestedBoundary : null;
+    }
+
+    /**
+     * Sets the last record of the page served by this thread, to be encoded
+     * into the token of the next page.
+     * @param next the token of the next page
+     */
+    public void setNextBoundary(ResumptionToken.Value next, PageBoundary boundary) {
+        Boundaries current = boundaries.get();
+        current.next = next;
+        current.nextBoundary = boundary;
+    }
+
+    /**
+     * Forgets the boundaries of the request served by this thread; to be
+     * called when the response has been written.
+     */
+    public void clear() {
+        boundaries.remove();
+    }
+
+    private static String encode(PageBoundary boundary) {
+        return SEPARATOR + boundary.getTotal()
+                + SEPARATOR + boundary.getLastId()
+                + SEPARATOR + Base64.getUrlEncoder().withoutPadding().encodeToString(boundary.getLastGlobalId().getBytes(StandardCharsets.UTF_8))
+                + SEPARATOR;
+    }
+
+    private static PageBoundary decode(String[] parts) {
+        long total = Long.parseLong(parts[0]);
+        long lastId = Long.parseLong(parts[1]);
+        String lastGlobalId = new String(Base64.getUrlDecoder().decode(parts[2]), StandardCharsets.UTF_8);
+        return new PageBoundary(lastGlobalId, lastId, total);
+    }
+}
@@ -0,0 +1,269 @@
+package edu.harvard.iq.dataverse.ingest;
+
+import edu.harvard.iq.dataverse.DataTable;
+import edu.harvard.iq.dataverse.dataaccess.TabularSubsetGenerator;
+import edu.harvard.iq.dataverse.datavariable.DataVariable;
+import edu.harvard.iq.dataverse.datavariable.VariableCategory;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Counts the frequencies of the categories of the categorical variables of a
+ * tabular file, in a single streaming pass over the tab-delimited file.
+ *
+ * Only the values that match the categories of a variable are counted - that
+ * is all the frequencies are used for - so the memory used is proportional to
+ * the number of the categories, regardless of the number of the rows or of
+ * the distinct values in the columns; no column is ever held in memory. For
+ * the numeric variables, the counts are looked up in an open-addressing
+ * table keyed by the primitive (float) values of the categories.
+ *
+ * The values are matched to the categories the same way as before: the
+ * numeric values as Floats (so "1", "1.0" and "1.00" are the same category),
+ * the strings after decoding them with
+ * {@link TabularSubsetGenerator#decodeStringValue(String)}.
+ */
+public class CategoryFrequencyCounter {
+
+    private static final Logger logger = Logger.getLogger(CategoryFrequencyCounter.class.getCanonicalName());
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The counts for the categories of one variable.
+     */
+    private static final class VariableCounter {
+
+        private final boolean numeric;
+        private final List<VariableCategory> categories = new ArrayList<>();
+        // Index of the count of each category (several categories may share
+        // the same value); -1 for a category with a value that can never match:
+        private final List<Integer> categorySlots = new ArrayList<>();
+        private long[] counts = new long[0];
+
+        // numeric variables: float bits -> slot
+        private int[] keys;
+        private int[] slots;
+        private int mask;
+
+        // character variables: value -> slot
+        private final Map<String, Integer> stringSlots = new HashMap<>();
+
+        private VariableCounter(DataVariable variable) {
+            this.numeric = variable.isTypeNumeric();
+
+            List<Integer> numericKeys = new ArrayList<>();
+            for (VariableCategory cat : variable.getCategories()) {
+                int slot = -1;
+                if (numeric) {
+                    Float catValue = null;
+                    try {
+                        catValue = Float.valueOf(cat.getValue());
+                    } catch (NumberFormatException | NullPointerException ex) {
+                        logger.fine("Non-numeric category value " + cat.getValue() + " of the numeric variable " + variable.getName());
+                    }
+                    if (catValue != null) {
+                        int key = Float.floatToIntBits(catValue);
+                        slot = numericKeys.indexOf(key);
+                        if (slot < 0) {
+                            slot = numericKeys.size();
+                            numericKeys.add(key);
+                        }
+                    }
+                } else if (cat.getValue() != null) {
+                    slot = stringSlots.computeIfAbsent(cat.getValue(), value -> stringSlots.size());
+                }
+                categories.add(cat);
+                categorySlots.add(slot);
+            }
+
+            if (numeric) {
+                int capacity = Integer.highestOneBit(Math.max(2, numericKeys.size() * 2 - 1)) << 1;
+                keys = new int[capacity];
+                slots = new int[capacity];
+                Arrays.fill(slots, -1);
+                mask = capacity - 1;
+                for (int slot = 0; slot < numericKeys.size(); slot++) {
+                    int index = indexOf(numericKeys.get(slot));
+                    keys[index] = numericKeys.get(slot);
+                    slots[index] = slot;
+                }
+                counts = new long[numericKeys.size()];
+            } else {
+                counts = new long[stringSlots.size()];
+            }
+        }
+
+        /*
+         * The position of the key in the table; or of the empty entry where
+         * it would be inserted.
+         */
+        private int indexOf(int key) {
+            int index = mix(key) & mask;
+            while (slots[index] >= 0 && keys[index] != key) {
+                index = (index + 1) & mask;
+            }
+            return index;
+        }
+
+        private static int mix(int key) {
+            int h = key * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+
+        private void count(String token) {
+            if (numeric) {
+                Float value = TabularSubsetGenerator.parseFloatValue(token);
+                if (value != null) {
+                    int slot = slots[indexOf(Float.floatToIntBits(value))];
+                    if (slot >= 0) {
+                        counts[slot]++;
+                    }
+                }
+            } else {
+                String value = TabularSubsetGenerator.decodeStringValue(token);
+                if (value != null) {
+                    Integer slot = stringSlots.get(value);
+                    if (slot != null) {
+                        counts[slot]++;
+                    }
+                }
+            }
+        }
+
+        private void setFrequencies() {
+            for (int i = 0; i < categories.size(); i++) {
+                int slot = categorySlots.get(i);
+                categories.get(i).setFrequency(slot >= 0 ? (double) counts[slot] : 0D);
+            }
+        }
+    }
+
+    private CategoryFrequencyCounter() {
+    }
+
+    /**
+     * Counts the frequencies of the categories of the variables, and stores
+     * them in the VariableCategory objects.
+     *
+     * @param tabFile the tab-delimited file
+     * @param vars the variables of the file, in the order of the columns
+     * @throws IOException if the tab file cannot be read, or its number of
+     * rows is not the number of the cases.
+     */
+    public static void countFrequencies(File tabFile, List<DataVariable> vars) throws IOException {
+        VariableCounter[] counters = new VariableCounter[vars.size()];
+        boolean categorical = false;
+
+        for (int i = 0; i < vars.size(); i++) {
+            if (vars.get(i).getCategories() != null && vars.get(i).getCategories().size() > 0) {
+                counters[i] = new VariableCounter(vars.get(i));
+                categorical = true;
+            }
+        }
+
+        if (!categorical) {
+            return;
+        }
+
+        DataTable dataTable = vars.get(0).getDataTable();
+        long caseQuantity = dataTable.getCaseQuantity();
+        boolean skipVariableHeaderLine = dataTable.isStoredWithVariableHeader();
+
+        try (Reader reader = new InputStreamReader(new FileInputStream(tabFile), StandardCharsets.UTF_8)) {
+            LineReader lines = new LineReader(reader);
+
+            if (skipVariableHeaderLine && lines.next() == null) {
+                throw new IOException("Failed to read the variable name header line from the tab-delimited file!");
+            }
+
+            for (long caseIndex = 0; caseIndex < caseQuantity; caseIndex++) {
+                String line = lines.next();
+                if (line == null) {
+                    throw new IOException("Tab file has fewer rows than the stored number of cases!");
+                }
+                countLine(line, counters);
+            }
+
+            String line;
+            while ((line = lines.next()) != null) {
+                if (!line.isEmpty()) {
+                    throw new IOException("Tab file has more nonempty rows than the stored number of cases (" + caseQuantity + ")!");
+                }
+            }
+        }
+
+        for (VariableCounter counter : counters) {
+            if (counter != null) {
+                counter.setFrequencies();
+            }
+        }
+    }
+
+    private static void countLine(String line, VariableCounter[] counters) {
+        int column = 0;
+        int start = 0;
+        while (column < counters.length && start <= line.length()) {
+            int end = line.indexOf('\t', start);
+            if (end < 0) {
+                end = line.length();
+            }
+            if (counters[column] != null) {
+                counters[column].count(line.substring(start, end));
+            }
+            column++;
+            start = end + 1;
+        }
+    }
+
+    /*
+     * Splits the tab file into lines on the newline character only (a
+     * carriage return may be part of a value).
+     */
+    private static final class LineReader {
+
+        private final Reader reader;
+        private final char[] buffer = new char[READ_BUFFER_SIZE];
+        private int position = 0;
+        private int limit = 0;
+        private final StringBuilder line = new StringBuilder();
+
+        private LineReader(Reader reader) {
+            this.reader = reader;
+        }
+
+        private String next() throws IOException {
+            line.setLength(0);
+            while (true) {
+                if (position == limit) {
+                    limit = reader.read(buffer);
+                    position = 0;
+                    if (limit < 0) {
+                        limit = 0;
+                        return line.length() > 0 ? line.toString() : null;
+                    }
+                }
+                int start = position;
+                while (position < limit && buffer[position] != '\n') {
+                    position++;
+                }
+                line.append(buffer, start, position - start);
+                if (position < limit) {
+                    // the newline
+                    position++;
+                    return line.toString();
+                }
+            }
+        }
+    }
+}
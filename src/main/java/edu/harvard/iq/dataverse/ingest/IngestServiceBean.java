@@ -23,7 +23,6 @@ package edu.harvard.iq.dataverse.ingest;
 import edu.harvard.iq.dataverse.AuxiliaryFile;
 import edu.harvard.iq.dataverse.AuxiliaryFileServiceBean;
 import edu.harvard.iq.dataverse.ControlledVocabularyValue;
-import edu.harvard.iq.dataverse.datavariable.VariableCategory;
 import edu.harvard.iq.dataverse.datavariable.VariableServiceBean;
 import edu.harvard.iq.dataverse.DatasetServiceBean;
 import edu.harvard.iq.dataverse.Dataset;
@@ -71,6 +70,7 @@ import edu.harvard.iq.dataverse.ingest.tabulardata.impl.plugins.sav.SAVFileReade
 import edu.harvard.iq.dataverse.ingest.tabulardata.impl.plugins.sav.SAVFileReaderSpi;
 import edu.harvard.iq.dataverse.ingest.tabulardata.impl.plugins.por.PORFileReader;
 import edu.harvard.iq.dataverse.ingest.tabulardata.impl.plugins.por.PORFileReaderSpi;
+import edu.harvard.iq.dataverse.settings.FeatureFlags;
 import edu.harvard.iq.dataverse.settings.JvmSettings;
 import edu.harvard.iq.dataverse.storageuse.StorageUseServiceBean;
 import edu.harvard.iq.dataverse.storageuse.UploadSessionQuotaLimit;
@@ -110,7 +110,6 @@ import java.util.Arrays;
 import java.util.Comparator;
 import java.util.ListIterator;
 import java.util.logging.Logger;
-import java.util.Hashtable;
 import java.util.Optional;
 import jakarta.ejb.EJB;
 import jakarta.ejb.Stateless;
@@ -119,6 +118,7 @@ import jakarta.jms.Queue;
 import jakarta.jms.QueueConnectionFactory;
 import jakarta.annotation.Resource;
 import jakarta.ejb.Asynchronous;
+import jakarta.enterprise.concurrent.ManagedThreadFactory;
 import jakarta.jms.JMSException;
 import jakarta.jms.QueueConnection;
 import jakarta.jms.QueueSender;
@@ -160,6 +160,8 @@ public class IngestServiceBean {
     Queue queue;
     @Resource(lookup = "java:app/jms/factory/ingest")
     QueueConnectionFactory factory;
+    @Resource
+    ManagedThreadFactory threadFactory;
     
 
     private static String timeFormat_hmsS = "HH:mm:ss.SSS";
@@ -835,69 +837,13 @@ public class IngestServiceBean {
         produceFrequencies(generatedTabularFile, vars);
     }
 
+    /**
+     * Counts the frequencies of the categories of the categorical variables,
+     * in a single pass over the tab-delimited file (see
+     * {@link CategoryFrequencyCounter}).
+     */
     public static void produceFrequencies(File generatedTabularFile, List<DataVariable> vars) throws IOException {
-
-        for (int i = 0; i < vars.size(); i++) {
-
-            Collection<VariableCategory> cats = vars.get(i).getCategories();
-            int caseQuantity = vars.get(i).getDataTable().getCaseQuantity().intValue();
-            boolean isNumeric = vars.get(i).isTypeNumeric();
-            boolean skipVariableHeaderLine = vars.get(i).getDataTable().isStoredWithVariableHeader();
-            Object[] variableVector = null;
-            if (cats.size() > 0) {
-                if (isNumeric) {
-                    variableVector = TabularSubsetGenerator.subsetFloatVector(
-                            new FileInputStream(generatedTabularFile), 
-                            i, 
-                            caseQuantity,
-                            skipVariableHeaderLine);
-                }
-                else {
-                    variableVector = TabularSubsetGenerator.subsetStringVector(
-                            new FileInputStream(generatedTabularFile), 
-                            i, 
-                            caseQuantity,
-                            skipVariableHeaderLine);
-                }
-                if (variableVector != null) {
-                    Hashtable<Object, Double> freq = calculateFrequency(variableVector);
-                    for (VariableCategory cat : cats) {
-                        Object catValue;
-                        if (isNumeric) {
-                            catValue = new Float(cat.getValue());
-                        } else {
-                            catValue = cat.getValue();
-                        }
-                        Double numberFreq = freq.get(catValue);
-                        if (numberFreq != null) {
-                            cat.setFrequency(numberFreq);
-                        } else {
-                            cat.setFrequency(0D);
-                        }
-                    }
-                } else {
-                    logger.fine("variableVector is null for variable " + vars.get(i).getName());
-                }
-            }
-        }
-    }
-
-    public static Hashtable<Object, Double> calculateFrequency( Object[] variableVector) {
-        Hashtable<Object, Double> freq = new Hashtable<Object, Double>();
-
-        for (int j = 0; j < variableVector.length; j++) {
-            if (variableVector[j] != null) {
-                Double freqNum = freq.get(variableVector[j]);
-                if (freqNum != null) {
-                    freq.put(variableVector[j], freqNum + 1);
-                } else {
-                    freq.put(variableVector[j], 1D);
-                }
-            }
-        }
-
-        return freq;
-
+        CategoryFrequencyCounter.countFrequencies(generatedTabularFile, vars);
     }
     
     public void recalculateDataFileUNF(DataFile dataFile) {
@@ -1008,14 +954,18 @@ public class IngestServiceBean {
             return false; 
         }
         
+        // (whether the ingest was requested with some extra options)
+        boolean ingestedWithOptions = false;
         if (ingestRequest != null) {
             if (ingestRequest.getTextEncoding() != null 
                     && !ingestRequest.getTextEncoding().equals("") ) {
                 logger.fine("Setting language encoding to "+ingestRequest.getTextEncoding());
                 ingestPlugin.setDataLanguageEncoding(ingestRequest.getTextEncoding());
+                ingestedWithOptions = true;
             }
             if (ingestRequest.getLabelsFile() != null) {
                 additionalData = new File(ingestRequest.getLabelsFile());
+                ingestedWithOptions = true;
             }
         }
         
@@ -1040,8 +990,23 @@ public class IngestServiceBean {
         }
         
         TabularDataIngest tabDataIngest = null; 
+        boolean ingestReused = false;
         try {
-            tabDataIngest = ingestPlugin.read(inputStream, storingWithVariableHeader, additionalData);
+            // The results of an earlier ingest of a byte-identical file can be 
+            // reused, unless this ingest was requested with some extra options
+            // (and only those of an ingest without options are - see 
+            // DataTable#isIngestedWithOptions()):
+            if (!ingestedWithOptions) {
+                tabDataIngest = reuseIngestedDuplicate(dataFile, ingestPlugin, storingWithVariableHeader);
+                ingestReused = tabDataIngest != null;
+            }
+            if (!ingestReused) {
+                if (ingestPlugin instanceof CSVFileReader) {
+                    // (the chunks of a CSV file are processed on threads of the container)
+                    ((CSVFileReader) ingestPlugin).setThreadFactory(threadFactory);
+                }
+                tabDataIngest = ingestPlugin.read(inputStream, storingWithVariableHeader, additionalData);
+            }
         } catch (IOException ingestEx) {
             dataFile.SetIngestProblem();
             FileUtil.createIngestFailureReport(dataFile, ingestEx.getMessage());
@@ -1095,10 +1060,19 @@ public class IngestServiceBean {
                 tabDataIngest.getDataTable().setDataFile(dataFile);
                 tabDataIngest.getDataTable().setOriginalFileName(originalFileName);
                 dataFile.getDataTable().setStoredWithVariableHeader(storingWithVariableHeader);
+                dataFile.getDataTable().setIngestPluginVersion(IngestUtil.getIngestPluginVersion(ingestPlugin));
+                dataFile.getDataTable().setIngestedWithOptions(ingestedWithOptions);
                 
                 try {
-                    produceSummaryStatistics(dataFile, tabFile);
-                    produceFrequencyStatistics(dataFile, tabFile);
+                    if (ingestReused) {
+                        // The summary statistics, frequencies and the UNFs 
+                        // have been copied along with the DataTable; only the 
+                        // UNF of the version needs to be recalculated: 
+                        recalculateDatasetVersionUNF(dataFile.getFileMetadata().getDatasetVersion());
+                    } else {
+                        produceSummaryStatistics(dataFile, tabFile);
+                        produceFrequencyStatistics(dataFile, tabFile);
+                    }
                     postIngestTasksSuccessful = true;
                 } catch (IOException postIngestEx) {
 
@@ -1222,6 +1196,72 @@ public class IngestServiceBean {
         return ingestSuccessful;
     }
 
+    /**
+     * Looks for an earlier ingest of a byte-identical file (same checksum of 
+     * the original), produced by the same version of the ingest plugin; if 
+     * one is found, the tabular metadata it produced (the DataTable, with the
+     * DataVariables, summary statistics and UNFs) is copied, and so is the
+     * stored tab-delimited file, instead of running the ingest again. 
+     * 
+     * @param dataFile the file to be ingested
+     * @param ingestPlugin the plugin that would be used to ingest it
+     * @param storingWithVariableHeader whether the tab file is stored with the variable header
+     * @return the results of the earlier ingest, as a TabularDataIngest; or 
+     * null, if there is no earlier ingest that can be reused (or if the 
+     * feature is disabled). 
+     */
+    private TabularDataIngest reuseIngestedDuplicate(DataFile dataFile, TabularDataFileReader ingestPlugin, boolean storingWithVariableHeader) {
+        if (!FeatureFlags.REUSE_INGESTED_DUPLICATES.enabled()) {
+            return null;
+        }
+        
+        DataTable ingestedTable = fileService.findIngestedDuplicate(dataFile, 
+                dataFile.getContentType(), 
+                IngestUtil.getIngestPluginVersion(ingestPlugin), 
+                storingWithVariableHeader);
+        
+        if (ingestedTable == null) {
+            return null;
+        }
+        
+        DataFile ingestedFile = ingestedTable.getDataFile();
+        File tabFile = null;
+        
+        try {
+            StorageIO<DataFile> ingestedStorageIO = ingestedFile.getStorageIO();
+            ingestedStorageIO.open();
+            
+            tabFile = File.createTempFile("data-", ".tab");
+            try (ReadableByteChannel tabFileChannel = ingestedStorageIO.getReadChannel();
+                    FileChannel tempTabFileChannel = new FileOutputStream(tabFile).getChannel();) {
+
+                tempTabFileChannel.transferFrom(tabFileChannel, 0, ingestedStorageIO.getSize());
+            }
+            
+            if (tabFile.length() != ingestedFile.getFilesize()) {
+                throw new IOException("size of the stored tab-delimited file does not match that of the datafile ("
+                        + tabFile.length() + " vs. " + ingestedFile.getFilesize() + ")");
+            }
+        } catch (IOException ioex) {
+            // Not a problem - the file will simply be ingested again.
+            logger.warning("Failed to reuse the ingest of the datafile id=" + ingestedFile.getId() 
+                    + " for the datafile id=" + dataFile.getId() + ": " + ioex.getMessage());
+            if (tabFile != null) {
+                tabFile.delete();
+            }
+            return null;
+        }
+        
+        logger.info("Reusing the ingest of the byte-identical datafile id=" + ingestedFile.getId() 
+                + " for the datafile id=" + dataFile.getId());
+        
+        TabularDataIngest tabDataIngest = new TabularDataIngest();
+        tabDataIngest.setDataTable(IngestUtil.copyDataTable(ingestedTable));
+        tabDataIngest.setTabDelimitedFile(tabFile);
+        
+        return tabDataIngest;
+    }
+
     private BufferedInputStream openFile(DataFile dataFile) throws IOException {
         BufferedInputStream inputStream;
         StorageIO<DataFile> storageIO = dataFile.getStorageIO();
@@ -20,8 +20,15 @@
 package edu.harvard.iq.dataverse.ingest;
 
 import edu.harvard.iq.dataverse.DataFile;
+import edu.harvard.iq.dataverse.DataTable;
 import edu.harvard.iq.dataverse.DatasetVersion;
 import edu.harvard.iq.dataverse.FileMetadata;
+import edu.harvard.iq.dataverse.datavariable.DataVariable;
+import edu.harvard.iq.dataverse.datavariable.SummaryStatistic;
+import edu.harvard.iq.dataverse.datavariable.VariableCategory;
+import edu.harvard.iq.dataverse.datavariable.VariableRange;
+import edu.harvard.iq.dataverse.datavariable.VariableRangeItem;
+import edu.harvard.iq.dataverse.ingest.tabulardata.TabularDataFileReader;
 import edu.harvard.iq.dataverse.util.FileUtil;
 
 import java.io.File;
@@ -355,4 +362,117 @@ public class IngestUtil {
         }
 
     }
+
+    /**
+     * @param ingestPlugin the ingest plugin
+     * @return a string identifying the plugin and its version, to be stored
+     * with the DataTable the plugin produces (see
+     * {@link DataTable#getIngestPluginVersion()}).
+     */
+    public static String getIngestPluginVersion(TabularDataFileReader ingestPlugin) {
+        if (ingestPlugin == null) {
+            return null;
+        }
+        return ingestPlugin.getClass().getSimpleName() + "/" + ingestPlugin.getReaderVersion();
+    }
+
+    /**
+     * Makes a new, not yet persisted, copy of the tabular metadata produced by
+     * an earlier ingest - the DataTable, with all its DataVariables, their
+     * summary statistics, categories and invalid ranges - so that it can be
+     * attached to another DataFile with the same content.
+     *
+     * The file-level attributes (the original file name, format and size)
+     * and the per-version variable metadata are NOT copied.
+     *
+     * @param source the DataTable to copy
+     * @return the new DataTable
+     */
+    public static DataTable copyDataTable(DataTable source) {
+        DataTable copy = new DataTable();
+
+        copy.setUnf(source.getUnf());
+        copy.setCaseQuantity(source.getCaseQuantity());
+        copy.setVarQuantity(source.getVarQuantity());
+        copy.setRecordsPerCase(source.getRecordsPerCase());
+        copy.setOriginalFormatVersion(source.getOriginalFormatVersion());
+        copy.setStoredWithVariableHeader(source.isStoredWithVariableHeader());
+        copy.setIngestPluginVersion(source.getIngestPluginVersion());
+        copy.setIngestedWithOptions(source.isIngestedWithOptions());
+
+        List<DataVariable> variables = new ArrayList<>();
+
+        if (source.getDataVariables() != null) {
+            for (DataVariable sourceVar : source.getDataVariables()) {
+                DataVariable var = new DataVariable(sourceVar.getFileOrder(), copy);
+
+                var.setName(sourceVar.getName());
+                var.setLabel(sourceVar.getLabel());
+                var.setWeighted(sourceVar.isWeighted());
+                var.setFileStartPosition(sourceVar.getFileStartPosition());
+                var.setFileEndPosition(sourceVar.getFileEndPosition());
+                var.setInterval(sourceVar.getInterval());
+                var.setType(sourceVar.getType());
+                var.setFormat(sourceVar.getFormat());
+                var.setFormatCategory(sourceVar.getFormatCategory());
+                var.setRecordSegmentNumber(sourceVar.getRecordSegmentNumber());
+                var.setUnf(sourceVar.getUnf());
+                var.setOrderedCategorical(sourceVar.isOrderedCategorical());
+                var.setFactor(sourceVar.isFactor());
+                var.setNumberOfDecimalPoints(sourceVar.getNumberOfDecimalPoints());
+
+                if (sourceVar.getSummaryStatistics() != null) {
+                    for (SummaryStatistic sourceStat : sourceVar.getSummaryStatistics()) {
+                        SummaryStatistic stat = new SummaryStatistic();
+                        stat.setType(sourceStat.getType());
+                        stat.setValue(sourceStat.getValue());
+                        stat.setDataVariable(var);
+                        var.getSummaryStatistics().add(stat);
+                    }
+                }
+
+                if (sourceVar.getCategories() != null) {
+                    for (VariableCategory sourceCat : sourceVar.getCategories()) {
+                        VariableCategory cat = new VariableCategory();
+                        cat.setValue(sourceCat.getValue());
+                        cat.setLabel(sourceCat.getLabel());
+                        cat.setMissing(sourceCat.isMissing());
+                        cat.setOrder(sourceCat.getOrder());
+                        cat.setFrequency(sourceCat.getFrequency());
+                        cat.setDataVariable(var);
+                        var.getCategories().add(cat);
+                    }
+                }
+
+                if (sourceVar.getInvalidRanges() != null) {
+                    for (VariableRange sourceRange : sourceVar.getInvalidRanges()) {
+                        VariableRange range = new VariableRange();
+                        range.setBeginValue(sourceRange.getBeginValue());
+                        range.setBeginValueType(sourceRange.getBeginValueType());
+                        range.setEndValue(sourceRange.getEndValue());
+                        range.setEndValueType(sourceRange.getEndValueType());
+                        range.setDataVariable(var);
+                        var.getInvalidRanges().add(range);
+                    }
+                }
+
+                if (sourceVar.getInvalidRangeItems() != null) {
+                    List<VariableRangeItem> rangeItems = new ArrayList<>();
+                    for (VariableRangeItem sourceItem : sourceVar.getInvalidRangeItems()) {
+                        VariableRangeItem item = new VariableRangeItem();
+                        item.setValue(sourceItem.getValue());
+                        item.setDataVariable(var);
+                        rangeItems.add(item);
+                    }
+                    var.setInvalidRangeItems(rangeItems);
+                }
+
+                variables.add(var);
+            }
+        }
+
+        copy.setDataVariables(variables);
+
+        return copy;
+    }
 }
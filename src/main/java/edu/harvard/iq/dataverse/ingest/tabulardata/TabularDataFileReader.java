@@ -55,6 +55,15 @@ public abstract class TabularDataFileReader {
     public TabularDataFileReader(){
     }
 
+    /**
+     * @return the version of the output of the reader: it is stored with the
+     * DataTables the reader produces, and has to be increased whenever the tab
+     * file or the metadata produced from the same file change, so that the
+     * results of earlier ingests of an identical file are not reused (see
+     * {@link edu.harvard.iq.dataverse.ingest.IngestUtil#getIngestPluginVersion(TabularDataFileReader)})
+     */
+    public abstract String getReaderVersion();
+
     public TabularDataFileReaderSpi getOriginatingProvider() {
         return originatingProvider;
     }
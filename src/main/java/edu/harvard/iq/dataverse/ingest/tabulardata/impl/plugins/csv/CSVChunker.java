@@ -0,0 +1,327 @@
+package edu.harvard.iq.dataverse.ingest.tabulardata.impl.plugins.csv;
+
+import java.io.BufferedWriter;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Logger;
+import org.apache.commons.csv.CSVFormat;
+
+/**
+ * Spools an incoming CSV stream into a temp file, and splits its contents
+ * into chunks that start and end on record boundaries, so that the chunks
+ * can be parsed independently of each other (and in parallel).
+ *
+ * The split is quote-aware: a line break inside a quoted value never ends a
+ * chunk. The small state machine below follows the rules of the Apache CSV
+ * lexer - a quote only opens an encapsulated value when it is the first
+ * character of the value (or the first non-blank one, for the formats that
+ * ignore the surrounding spaces); a doubled quote inside the value is an
+ * escaped quote.
+ *
+ * The spooled copy is always written in UTF-8, in which none of the
+ * delimiter, quote and line break characters can appear inside a multi-byte
+ * sequence, so the chunk offsets are simple byte offsets into the file.
+ */
+class CSVChunker {
+
+    private static final Logger logger = Logger.getLogger(CSVChunker.class.getCanonicalName());
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // lexer states:
+    private static final int FIELD_START = 0;
+    private static final int UNQUOTED = 1;
+    private static final int QUOTED = 2;
+    private static final int QUOTE_IN_QUOTED = 3;
+
+    /**
+     * A byte range of the spooled file that consists of complete records.
+     */
+    static final class Chunk {
+
+        private final int index;
+        private final long start;
+        private final long end;
+        private final long linesBefore;
+
+        Chunk(int index, long start, long end, long linesBefore) {
+            this.index = index;
+            this.start = start;
+            this.end = end;
+            this.linesBefore = linesBefore;
+        }
+
+        int getIndex() {
+            return index;
+        }
+
+        long getStart() {
+            return start;
+        }
+
+        long getEnd() {
+            return end;
+        }
+
+        /**
+         * @return the size of the chunk, in bytes
+         */
+        long getLength() {
+            return end - start;
+        }
+
+        /**
+         * @return the number of line breaks in the file before this chunk
+         * (including the ones in the header), for reporting the line numbers
+         * the same way the CSV parser does on the whole file.
+         */
+        long getLinesBefore() {
+            return linesBefore;
+        }
+    }
+
+    private final char delimiter;
+    private final Character quote;
+    private final boolean ignoreSurroundingSpaces;
+    private final long chunkSize;
+
+    private File spoolFile;
+    private long headerEnd = -1L;
+    private long chunkStart = -1L;
+    private long chunkLinesBefore;
+    private final List<Chunk> chunks = new ArrayList<>();
+
+    CSVChunker(CSVFormat format, long chunkSize) {
+        this.delimiter = format.getDelimiter();
+        this.quote = format.getQuoteCharacter();
+        this.ignoreSurroundingSpaces = format.getIgnoreSurroundingSpaces();
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Copies the stream into the spool file, locating the end of the header
+     * record and the chunk boundaries on the way.
+     *
+     * @param in the CSV contents
+     * @throws IOException if the stream cannot be read or spooled.
+     */
+    void spool(Reader in) throws IOException {
+        spoolFile = File.createTempFile("firstpass-", ".csv");
+
+        int state = FIELD_START;
+        boolean recordHasContent = false;
+        boolean pendingCR = false;
+        boolean pendingCREndsRecord = false;
+        boolean pendingHighSurrogate = false;
+        long offset = 0L;
+        long lines = 0L;
+
+        char[] buffer = new char[BUFFER_SIZE];
+
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(spoolFile), StandardCharsets.UTF_8))) {
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+
+                for (int i = 0; i < n; i++) {
+                    char c = buffer[i];
+
+                    if (pendingCR) {
+                        pendingCR = false;
+                        if (c != '\n') {
+                            // A lone carriage return is a line break of its own:
+                            lines++;
+                            if (pendingCREndsRecord && isRecordEnd(recordHasContent)) {
+                                recordEnd(offset, lines);
+                                recordHasContent = false;
+                            }
+                        }
+                    }
+
+                    // Keep track of the byte offset in the spooled file; a
+                    // surrogate pair takes 4 bytes, an unpaired surrogate is
+                    // replaced with a '?' by the encoder:
+                    boolean pairedSurrogate = false;
+                    if (pendingHighSurrogate) {
+                        pendingHighSurrogate = false;
+                        pairedSurrogate = Character.isLowSurrogate(c);
+                        offset += pairedSurrogate ? 4 : 1;
+                    }
+                    if (Character.isHighSurrogate(c)) {
+                        pendingHighSurrogate = true;
+                    } else if (Character.isLowSurrogate(c)) {
+                        offset += pairedSurrogate ? 0 : 1;
+                    } else {
+                        offset += utf8Length(c);
+                    }
+
+                    if (c == '\n') {
+                        lines++;
+                    }
+
+                    if (state == QUOTED) {
+                        if (isQuote(c)) {
+                            state = QUOTE_IN_QUOTED;
+                        } else if (c == '\r') {
+                            pendingCR = true;
+                            pendingCREndsRecord = false;
+                        }
+                        recordHasContent = true;
+                        continue;
+                    }
+
+                    if (state == QUOTE_IN_QUOTED && isQuote(c)) {
+                        // an escaped quote; still inside the encapsulated value
+                        state = QUOTED;
+                        continue;
+                    }
+
+                    if (c == '\n') {
+                        if (isRecordEnd(recordHasContent)) {
+                            recordEnd(offset, lines);
+                        }
+                        recordHasContent = false;
+                        state = FIELD_START;
+                    } else if (c == '\r') {
+                        pendingCR = true;
+                        pendingCREndsRecord = true;
+                        state = FIELD_START;
+                    } else {
+                        recordHasContent = true;
+                        if (c == delimiter) {
+                            state = FIELD_START;
+                        } else if (state == FIELD_START && isQuote(c)) {
+                            state = QUOTED;
+                        } else if (state == FIELD_START && ignoreSurroundingSpaces && Character.isWhitespace(c)) {
+                            // leading blanks are skipped by the lexer
+                        } else {
+                            state = UNQUOTED;
+                        }
+                    }
+                }
+            }
+        }
+
+        if (pendingHighSurrogate) {
+            offset++;
+        }
+
+        if (spoolFile.length() != offset) {
+            throw new IOException("Unexpected size of the spooled CSV file: " + spoolFile.length() + " bytes, " + offset + " expected.");
+        }
+
+        if (headerEnd < 0) {
+            // the header is the only record in the file
+            headerEnd = offset;
+            chunkStart = offset;
+        }
+
+        if (offset > chunkStart) {
+            chunks.add(new Chunk(chunks.size(), chunkStart, offset, chunkLinesBefore));
+        }
+
+        logger.fine("Spooled " + offset + " bytes of CSV data into " + spoolFile.getAbsolutePath() + "; " + chunks.size() + " chunk(s)");
+    }
+
+    /**
+     * @return the text of the header record (including any blank lines
+     * preceding it).
+     * @throws IOException if the spool file cannot be read.
+     */
+    String readHeader() throws IOException {
+        return readRegion(0L, headerEnd);
+    }
+
+    /**
+     * @param chunk one of the chunks of this file
+     * @return the text of all the records in the chunk.
+     * @throws IOException if the spool file cannot be read.
+     */
+    String readChunk(Chunk chunk) throws IOException {
+        return readRegion(chunk.getStart(), chunk.getEnd());
+    }
+
+    List<Chunk> getChunks() {
+        return Collections.unmodifiableList(chunks);
+    }
+
+    /**
+     * Deletes the spooled copy of the file, to prevent tmp from filling up.
+     */
+    void delete() {
+        if (spoolFile != null && spoolFile.exists()) {
+            logger.fine("Tmp File: " + spoolFile);
+            spoolFile.delete();
+        }
+    }
+
+    private void recordEnd(long offset, long lines) {
+        if (headerEnd < 0) {
+            headerEnd = offset;
+            chunkStart = offset;
+            chunkLinesBefore = lines;
+        } else if (offset - chunkStart >= chunkSize) {
+            chunks.add(new Chunk(chunks.size(), chunkStart, offset, chunkLinesBefore));
+            chunkStart = offset;
+            chunkLinesBefore = lines;
+        }
+    }
+
+    /*
+     * Blank lines ahead of the header may be skipped by the parser, so they
+     * cannot end the header record; in the data section an empty line is a
+     * record of its own (or skipped, depending on the format) - either way it
+     * is a safe place to split.
+     */
+    private boolean isRecordEnd(boolean recordHasContent) {
+        return recordHasContent || headerEnd >= 0;
+    }
+
+    private boolean isQuote(char c) {
+        return quote != null && c == quote;
+    }
+
+    private String readRegion(long start, long end) throws IOException {
+        long length = end - start;
+        if (length > Integer.MAX_VALUE - 8) {
+            throw new IOException("CSV record too large to be processed: " + length + " bytes");
+        }
+        byte[] bytes = new byte[(int) length];
+        ByteBuffer byteBuffer = ByteBuffer.wrap(bytes);
+        try (FileChannel channel = FileChannel.open(spoolFile.toPath(), StandardOpenOption.READ)) {
+            long position = start;
+            while (byteBuffer.hasRemaining()) {
+                int read = channel.read(byteBuffer, position);
+                if (read < 0) {
+                    throw new EOFException("Unexpected end of the spooled CSV file at " + position);
+                }
+                position += read;
+            }
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /*
+     * Number of bytes a (non-surrogate) character takes in UTF-8.
+     */
+    private static int utf8Length(char c) {
+        if (c < 0x80) {
+            return 1;
+        } else if (c < 0x800) {
+            return 2;
+        }
+        return 3;
+    }
+}
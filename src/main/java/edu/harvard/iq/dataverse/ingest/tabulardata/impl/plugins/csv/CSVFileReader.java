@@ -19,7 +19,6 @@
  */
 package edu.harvard.iq.dataverse.ingest.tabulardata.impl.plugins.csv;
 
-import java.io.FileReader;
 import java.io.InputStreamReader;
 
 import edu.harvard.iq.dataverse.DataTable;
@@ -28,31 +27,32 @@ import edu.harvard.iq.dataverse.datavariable.DataVariable;
 import edu.harvard.iq.dataverse.ingest.tabulardata.TabularDataFileReader;
 import edu.harvard.iq.dataverse.ingest.tabulardata.spi.TabularDataFileReaderSpi;
 import edu.harvard.iq.dataverse.ingest.tabulardata.TabularDataIngest;
+import edu.harvard.iq.dataverse.settings.JvmSettings;
 import edu.harvard.iq.dataverse.util.BundleUtil;
 import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.math.BigDecimal;
+import java.io.StringReader;
 import java.math.MathContext;
 import java.math.RoundingMode;
-import java.text.ParseException;
-import java.text.ParsePosition;
 import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Date;
-import java.util.HashSet;
+import java.util.Deque;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.logging.Logger;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.csv.CSVParser;
-import org.apache.commons.csv.CSVPrinter;
 import org.apache.commons.csv.CSVRecord;
 
 /**
@@ -62,15 +62,29 @@ import org.apache.commons.csv.CSVRecord;
  *
  * @author Oscar Smith
  *
- * This implementation uses the Apache CSV Parser
+ * This implementation uses the Apache CSV Parser. The file is split into
+ * chunks of complete records (see {@link CSVChunker}); the column types are
+ * inferred for the chunks in parallel, and the chunks are then converted in
+ * parallel and written out in order. The chunks being processed, or waiting to
+ * be merged or written out, add up to a limited number of bytes.
  */
 public class CSVFileReader extends TabularDataFileReader {
 
+    // 4.1: the file is split into chunks, typed and converted in parallel
+    public static final String READER_VERSION = "4.1";
+
     private static final Logger logger = Logger.getLogger(CSVFileReader.class.getPackage().getName());
     private static final int DIGITS_OF_PRECISION_DOUBLE = 15;
     private static final String FORMAT_IEEE754 = "%+#." + DIGITS_OF_PRECISION_DOUBLE + "e";
+    private static final long DEFAULT_CHUNK_SIZE = 16L * 1024 * 1024;
+    private static final int DEFAULT_PARALLELISM = 2;
+    private static final long DEFAULT_MAX_BYTES_IN_FLIGHT = 64L * 1024 * 1024;
     private MathContext doubleMathContext;
     private CSVFormat inFormat;
+    private int parallelism;
+    private long chunkSize;
+    private long maxBytesInFlight;
+    private ThreadFactory threadFactory;
     //private final Set<Character> firstNumCharSet = new HashSet<>();
 
     // DATE FORMATS
@@ -95,6 +109,20 @@ public class CSVFileReader extends TabularDataFileReader {
         } else if (delim == '\t'){
             inFormat = CSVFormat.TDF;
         }
+        parallelism = JvmSettings.INGEST_CSV_PARALLELISM.lookupOptional(Integer.class).orElse(DEFAULT_PARALLELISM);
+        chunkSize = JvmSettings.INGEST_CSV_CHUNK_SIZE.lookupOptional(Long.class).orElse(DEFAULT_CHUNK_SIZE);
+        maxBytesInFlight = JvmSettings.INGEST_CSV_MAX_BYTES_IN_FLIGHT.lookupOptional(Long.class)
+                .orElse(DEFAULT_MAX_BYTES_IN_FLIGHT);
+    }
+
+    /**
+     * @param threadFactory the factory of the threads the chunks are processed
+     * on; within the application server, the managed thread factory of the
+     * container (see IngestServiceBean). Without one, the default thread
+     * factory is used (in the tests and the benchmarks).
+     */
+    public void setThreadFactory(ThreadFactory threadFactory) {
+        this.threadFactory = threadFactory;
     }
 
     private void init() throws IOException {
@@ -138,238 +166,191 @@ public class CSVFileReader extends TabularDataFileReader {
 
     public int readFile(BufferedReader csvReader, DataTable dataTable, boolean saveWithVariableHeader, PrintWriter finalOut) throws IOException {
 
-        List<DataVariable> variableList = new ArrayList<>();
-        CSVParser parser = new CSVParser(csvReader, inFormat.withHeader());
-        Map<String, Integer> headers = parser.getHeaderMap();
-
-        int i = 0;
-        String variableNameHeader = null;
-        
-        for (String varName : headers.keySet()) {
-            // @todo: is .keySet() guaranteed to return the names in the right order?
-            if (varName == null || varName.isEmpty()) {
-                // TODO:
-                // Add a sensible variable name validation algorithm.
-                // -- L.A. 4.0 alpha 1
-                throw new IOException(BundleUtil.getStringFromBundle("ingest.csv.invalidHeader"));
-            }
-
-            DataVariable dv = new DataVariable(i, dataTable);
-            dv.setName(varName);
-            dv.setLabel(varName);
-            variableList.add(dv);
-
-            dv.setTypeCharacter();
-            dv.setIntervalDiscrete();
-            
-            if (saveWithVariableHeader) {
-                    variableNameHeader = variableNameHeader == null
-                            ? varName 
-                            : variableNameHeader.concat("\t" + varName);
+        // The incoming stream is saved in a temp file, split into chunks of
+        // complete records on the way, so that the "learning" and the final
+        // passes can both process the chunks in parallel:
+        CSVChunker chunker = new CSVChunker(inFormat, chunkSize);
+
+        try {
+            chunker.spool(csvReader);
+            csvReader.close();
+
+            List<DataVariable> variableList = new ArrayList<>();
+            CSVParser parser = new CSVParser(new StringReader(chunker.readHeader()), inFormat.withHeader());
+            Map<String, Integer> headers = parser.getHeaderMap();
+            parser.close();
+
+            int i = 0;
+            String variableNameHeader = null;
+
+            for (String varName : headers.keySet()) {
+                // @todo: is .keySet() guaranteed to return the names in the right order?
+                if (varName == null || varName.isEmpty()) {
+                    // TODO:
+                    // Add a sensible variable name validation algorithm.
+                    // -- L.A. 4.0 alpha 1
+                    throw new IOException(BundleUtil.getStringFromBundle("ingest.csv.invalidHeader"));
                 }
-            
-            i++;
-        }
 
-        dataTable.setVarQuantity((long) variableList.size());
-        dataTable.setDataVariables(variableList);
-
-        boolean[] isNumericVariable = new boolean[headers.size()];
-        boolean[] isIntegerVariable = new boolean[headers.size()];
-        boolean[] isTimeVariable = new boolean[headers.size()];
-        boolean[] isDateVariable = new boolean[headers.size()];
-
-        for (i = 0; i < headers.size(); i++) {
-            // OK, let's assume that every variable is numeric;
-            // but we'll go through the file and examine every value; the
-            // moment we find a value that's not a legit numeric one, we'll
-            // assume that it is in fact a String.
-            isNumericVariable[i] = true;
-            isIntegerVariable[i] = true;
-            isDateVariable[i] = true;
-            isTimeVariable[i] = true;
-        }
+                DataVariable dv = new DataVariable(i, dataTable);
+                dv.setName(varName);
+                dv.setLabel(varName);
+                variableList.add(dv);
 
-        // First, "learning" pass.
-        // (we'll save the incoming stream in another temp file:)
-        SimpleDateFormat[] selectedDateTimeFormat = new SimpleDateFormat[headers.size()];
-        SimpleDateFormat[] selectedDateFormat = new SimpleDateFormat[headers.size()];
-
-        File firstPassTempFile = File.createTempFile("firstpass-", ".csv");
-
-        try (CSVPrinter csvFilePrinter = new CSVPrinter(
-                // TODO allow other parsers of tabular data to use this parser by changin inFormat
-                new FileWriter(firstPassTempFile.getAbsolutePath()), inFormat)) {
-            //Write  headers
-            csvFilePrinter.printRecord(headers.keySet());
-            for (CSVRecord record : parser.getRecords()) {
-                // Checks if #records = #columns in header
-                if (!record.isConsistent()) {
-                    List<String> args = Arrays.asList(new String[]{"" + (parser.getCurrentLineNumber() - 1),
-                                                                   "" + headers.size(),
-                                                                   "" + record.size()});
-                    throw new IOException(BundleUtil.getStringFromBundle("ingest.csv.recordMismatch", args));
-                }
+                dv.setTypeCharacter();
+                dv.setIntervalDiscrete();
 
-                for (i = 0; i < headers.size(); i++) {
-                    String varString = record.get(i);
-                    isIntegerVariable[i] = isIntegerVariable[i]
-                                           && varString != null
-                                           && (varString.isEmpty()
-                                               || varString.equals("null")
-                                               || (StringUtils.isNumeric(varString)
-                                                    || (varString.substring(0,1).matches("[+-]") 
-                                                        && StringUtils.isNumeric(varString.substring(1)))));
-                    if (isNumericVariable[i]) {
-                        // If variable might be "numeric" test to see if this value is a parsable number:
-                        if (varString != null && !varString.isEmpty()) {
-
-                            boolean isNumeric = false;
-                            boolean isInteger = false;
-
-                            if (varString.equalsIgnoreCase("NaN")
-                                || varString.equalsIgnoreCase("NA")
-                                || varString.equalsIgnoreCase("Inf")
-                                || varString.equalsIgnoreCase("+Inf")
-                                || varString.equalsIgnoreCase("-Inf")
-                                || varString.equalsIgnoreCase("null")) {
-                                continue;
-                            } else {
-                                try {
-                                    Double testDoubleValue = new Double(varString);
-                                    continue;
-                                } catch (NumberFormatException ex) {
-                                    // the token failed to parse as a double
-                                    // so the column is a string variable.
-                                }
-                            }
-                            isNumericVariable[i] = false;
-                        }
+                if (saveWithVariableHeader) {
+                        variableNameHeader = variableNameHeader == null
+                                ? varName
+                                : variableNameHeader.concat("\t" + varName);
                     }
 
-                    // If this is not a numeric column, see if it is a date collumn
-                    // by parsing the cell as a date or date-time value:
-                    if (!isNumericVariable[i]) {
+                i++;
+            }
 
-                        Date dateResult = null;
+            dataTable.setVarQuantity((long) variableList.size());
+            dataTable.setDataVariables(variableList);
 
-                        if (isTimeVariable[i]) {
-                            if (varString != null && !varString.isEmpty()) {
-                                boolean isTime = false;
+            final int columns = headers.size();
+            final List<CSVChunker.Chunk> chunks = chunker.getChunks();
 
-                                if (selectedDateTimeFormat[i] != null) {
-                                    ParsePosition pos = new ParsePosition(0);
-                                    dateResult = selectedDateTimeFormat[i].parse(varString, pos);
+            ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, chunks.size())),
+                    threadFactory != null ? threadFactory : Executors.defaultThreadFactory());
 
-                                    if (dateResult != null && pos.getIndex() == varString.length()) {
-                                        // OK, successfully parsed a value!
-                                        isTime = true;
-                                    }
-                                } else {
-                                    for (SimpleDateFormat format : TIME_FORMATS) {
-                                        ParsePosition pos = new ParsePosition(0);
-                                        dateResult = format.parse(varString, pos);
-                                        if (dateResult != null && pos.getIndex() == varString.length()) {
-                                            // OK, successfully parsed a value!
-                                            isTime = true;
-                                            selectedDateTimeFormat[i] = format;
-                                            break;
-                                        }
-                                    }
-                                }
-                                if (!isTime) {
-                                    isTimeVariable[i] = false;
-                                    // if the token didn't parse as a time value,
-                                    // we will still try to parse it as a date, below.
-                                    // unless this column is NOT a date.
-                                } else {
-                                    // And if it is a time value, we are going to assume it's
-                                    // NOT a date.
-                                    isDateVariable[i] = false;
-                                }
-                            }
-                        }
+            try {
+                // First, "learning" pass: the column types are inferred for
+                // every chunk in parallel, then merged in the order of the chunks.
+                CSVTypeInference types = new CSVTypeInference(columns, TIME_FORMATS, DATE_FORMATS);
+                forEachChunk(executor, chunks, chunk -> inferTypes(chunker, chunk, columns), types::append);
+                dataTable.setCaseQuantity(types.getRecordCount());
 
-                        if (isDateVariable[i]) {
-                            if (varString != null && !varString.isEmpty()) {
-                                boolean isDate = false;
-
-                                // TODO:
-                                // Strictly speaking, we should be doing the same thing
-                                // here as with the time formats above; select the
-                                // first one that works, then insist that all the
-                                // other values in this column match it... but we
-                                // only have one, as of now, so it should be ok.
-                                // -- L.A. 4.0 beta
-                                for (SimpleDateFormat format : DATE_FORMATS) {
-                                    // Strict parsing - it will throw an
-                                    // exception if it doesn't parse!
-                                    format.setLenient(false);
-                                    try {
-                                        format.parse(varString);
-                                        isDate = true;
-                                        selectedDateFormat[i] = format;
-                                        break;
-                                    } catch (ParseException ex) {
-                                        //Do nothing
-                                    }
-                                }
-                                isDateVariable[i] = isDate;
-                            }
+                // Re-type the variables that we've determined are numerics:
+                for (i = 0; i < columns; i++) {
+                    if (types.isNumericVariable(i)) {
+                        dataTable.getDataVariables().get(i).setTypeNumeric();
+
+                        if (types.isIntegerVariable(i)) {
+                            dataTable.getDataVariables().get(i).setIntervalDiscrete();
+                        } else {
+                            dataTable.getDataVariables().get(i).setIntervalContinuous();
                         }
+                    } else if (types.getDateFormat(i) != null) {
+                        // Dates are still Strings, i.e., they are "character" and "discrete";
+                        // But we add special format values for them:
+                        dataTable.getDataVariables().get(i).setFormat(DATE_FORMATS[0].toPattern());
+                        dataTable.getDataVariables().get(i).setFormatCategory("date");
+                    } else if (types.getTimeFormat(i) != null) {
+                        // Same for time values:
+                        dataTable.getDataVariables().get(i).setFormat(types.getTimeFormat(i).toPattern());
+                        dataTable.getDataVariables().get(i).setFormatCategory("time");
                     }
                 }
 
-                csvFilePrinter.printRecord(record);
+                // Second, final pass.
+                // Save the variable name header, if requested
+                if (saveWithVariableHeader) {
+                    if (variableNameHeader == null) {
+                        throw new IOException("failed to generate the Variable Names header");
+                    }
+                    finalOut.println(variableNameHeader);
+                }
+
+                // The chunks are converted in parallel, and written out in
+                // order.
+                long[] linecount = {0};
+                forEachChunk(executor, chunks, chunk -> convertChunk(chunker, chunk, columns, types), converted -> {
+                    finalOut.write(converted.tabData);
+                    linecount[0] += converted.caseQuantity;
+                });
+
+                finalOut.close();
+
+                if (dataTable.getCaseQuantity().intValue() != linecount[0]) {
+                    List<String> args = Arrays.asList(new String[]{"" + dataTable.getCaseQuantity().intValue(),
+                                                                   "" + linecount[0]});
+                    throw new IOException(BundleUtil.getStringFromBundle("ingest.csv.line_mismatch", args));
+                }
+                return (int) linecount[0];
+            } finally {
+                executor.shutdownNow();
             }
+        } finally {
+            // Firstpass file is deleted to prevent tmp from filling up.
+            chunker.delete();
         }
-        dataTable.setCaseQuantity(parser.getRecordNumber());
-        parser.close();
-        csvReader.close();
-
-        // Re-type the variables that we've determined are numerics:
-        for (i = 0; i < headers.size(); i++) {
-            if (isNumericVariable[i]) {
-                dataTable.getDataVariables().get(i).setTypeNumeric();
-
-                if (isIntegerVariable[i]) {
-                    dataTable.getDataVariables().get(i).setIntervalDiscrete();
-                } else {
-                    dataTable.getDataVariables().get(i).setIntervalContinuous();
-                }
-            } else if (isDateVariable[i] && selectedDateFormat[i] != null) {
-                // Dates are still Strings, i.e., they are "character" and "discrete";
-                // But we add special format values for them:
-                dataTable.getDataVariables().get(i).setFormat(DATE_FORMATS[0].toPattern());
-                dataTable.getDataVariables().get(i).setFormatCategory("date");
-            } else if (isTimeVariable[i] && selectedDateTimeFormat[i] != null) {
-                // Same for time values:
-                dataTable.getDataVariables().get(i).setFormat(selectedDateTimeFormat[i].toPattern());
-                dataTable.getDataVariables().get(i).setFormatCategory("time");
+    }
+
+    /*
+     * Processes the chunks in parallel, and hands the results over in the
+     * order of the chunks. A chunk is only submitted if the chunks submitted,
+     * whose results were not handed over yet, and this one add up to no more
+     * than maxBytesInFlight (unless it is the only one) - each of them takes
+     * a few times its size in memory, as text, parsed and converted.
+     */
+    private <T> void forEachChunk(ExecutorService executor, List<CSVChunker.Chunk> chunks,
+            ChunkTask<T> task, ChunkResult<T> result) throws IOException {
+        Deque<PendingChunk<T>> pending = new ArrayDeque<>();
+        long bytesInFlight = 0;
+        int next = 0;
+
+        while (next < chunks.size() || !pending.isEmpty()) {
+            while (next < chunks.size()
+                    && (pending.isEmpty() || bytesInFlight + chunks.get(next).getLength() <= maxBytesInFlight)) {
+                CSVChunker.Chunk chunk = chunks.get(next++);
+                bytesInFlight += chunk.getLength();
+                pending.add(new PendingChunk<>(chunk.getLength(), executor.submit(() -> task.run(chunk))));
             }
+            PendingChunk<T> done = pending.poll();
+            result.accept(await(done.result()));
+            bytesInFlight -= done.bytes();
         }
-        // Second, final pass.
-        try (BufferedReader secondPassReader = new BufferedReader(new FileReader(firstPassTempFile))) {
-            parser = new CSVParser(secondPassReader, inFormat.withHeader());
-            String[] caseRow = new String[headers.size()];
-            
-            // Save the variable name header, if requested
-            if (saveWithVariableHeader) {
-                if (variableNameHeader == null) {
-                    throw new IOException("failed to generate the Variable Names header");
+    }
+
+    /*
+     * "Learning" pass over one chunk.
+     */
+    private CSVTypeInference inferTypes(CSVChunker chunker, CSVChunker.Chunk chunk, int columns) throws IOException {
+        CSVTypeInference types = new CSVTypeInference(columns, TIME_FORMATS, DATE_FORMATS);
+
+        try (CSVParser parser = new CSVParser(new StringReader(chunker.readChunk(chunk)), inFormat)) {
+            for (CSVRecord record : parser) {
+                checkRecord(record, parser, chunk, columns);
+
+                for (int i = 0; i < columns; i++) {
+                    types.observe(i, record.get(i));
                 }
-                finalOut.println(variableNameHeader);
+                types.countRecord();
             }
+        }
+        return types;
+    }
+
+    /*
+     * Final pass over one chunk; produces the tab-delimited lines for all
+     * the records in it.
+     */
+    private ConvertedChunk convertChunk(CSVChunker chunker, CSVChunker.Chunk chunk, int columns, CSVTypeInference types) throws IOException {
+        boolean[] isNumericVariable = new boolean[columns];
+        boolean[] isIntegerVariable = new boolean[columns];
+        boolean[] isDateTimeVariable = new boolean[columns];
+
+        for (int i = 0; i < columns; i++) {
+            isNumericVariable[i] = types.isNumericVariable(i);
+            isIntegerVariable[i] = types.isIntegerVariable(i);
+            isDateTimeVariable[i] = types.getTimeFormat(i) != null || types.getDateFormat(i) != null;
+        }
 
+        String lineSeparator = System.lineSeparator();
+        StringBuilder tabData = new StringBuilder((int) Math.min(Integer.MAX_VALUE - 8, chunk.getLength()));
+        String[] caseRow = new String[columns];
+        long caseQuantity = 0;
+
+        try (CSVParser parser = new CSVParser(new StringReader(chunker.readChunk(chunk)), inFormat)) {
             for (CSVRecord record : parser) {
-                if (!record.isConsistent()) {
-                    List<String> args = Arrays.asList(new String[]{"" + (parser.getCurrentLineNumber() - 1),
-                                                                   "" + headers.size(),
-                                                                   "" + record.size()});
-                    throw new IOException(BundleUtil.getStringFromBundle("ingest.csv.recordMismatch", args));
-                }
+                checkRecord(record, parser, chunk, columns);
 
-                for (i = 0; i < headers.size(); i++) {
+                for (int i = 0; i < columns; i++) {
                     String varString = record.get(i);
                     if (isNumericVariable[i]) {
                         if (varString == null || varString.isEmpty() || varString.equalsIgnoreCase("NA")) {
@@ -433,7 +414,7 @@ public class CSVFileReader extends TabularDataFileReader {
                             }
                              */
                         }
-                    } else if (isTimeVariable[i] || isDateVariable[i]) {
+                    } else if (isDateTimeVariable[i]) {
                         // Time and Dates are stored NOT quoted (don't ask).
                         if (varString != null) {
                             // Dealing with quotes:
@@ -466,21 +447,86 @@ public class CSVFileReader extends TabularDataFileReader {
                         }
                     }
                 }
-                finalOut.println(StringUtils.join(caseRow, "\t"));
+                tabData.append(StringUtils.join(caseRow, "\t")).append(lineSeparator);
+                caseQuantity++;
             }
         }
-        long linecount = parser.getRecordNumber();
-        finalOut.close();
-        parser.close();
-        logger.fine("Tmp File: " + firstPassTempFile);
-        // Firstpass file is deleted to prevent tmp from filling up.
-        firstPassTempFile.delete();
-        if (dataTable.getCaseQuantity().intValue() != linecount) {
-            List<String> args = Arrays.asList(new String[]{"" + dataTable.getCaseQuantity().intValue(),
-                                                           "" + linecount});
-            throw new IOException(BundleUtil.getStringFromBundle("ingest.csv.line_mismatch", args));
+        return new ConvertedChunk(tabData.toString(), caseQuantity);
+    }
+
+    /*
+     * Checks if #records = #columns in header; the line number reported is
+     * that of the whole file, as if it was parsed in one go.
+     */
+    private void checkRecord(CSVRecord record, CSVParser parser, CSVChunker.Chunk chunk, int columns) throws IOException {
+        if (record.size() != columns) {
+            List<String> args = Arrays.asList(new String[]{"" + (chunk.getLinesBefore() + parser.getCurrentLineNumber() - 1),
+                                                           "" + columns,
+                                                           "" + record.size()});
+            throw new IOException(BundleUtil.getStringFromBundle("ingest.csv.recordMismatch", args));
+        }
+    }
+
+    private static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while processing the CSV file", ex);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            // (the parser iterator reports the lexer errors wrapped in an
+            // IllegalStateException)
+            if (cause instanceof IllegalStateException && cause.getCause() instanceof IOException) {
+                cause = cause.getCause();
+            }
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
         }
-        return (int) linecount;
     }
 
+    /*
+     * Package-private, for the tests - so that even the small test files can
+     * be split into multiple chunks.
+     */
+    void setChunkSize(long chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    void setMaxBytesInFlight(long maxBytesInFlight) {
+        this.maxBytesInFlight = maxBytesInFlight;
+    }
+
+    private interface ChunkTask<T> {
+        T run(CSVChunker.Chunk chunk) throws IOException;
+    }
+
+    private interface ChunkResult<T> {
+        void accept(T result) throws IOException;
+    }
+
+    private record PendingChunk<T>(long bytes, Future<T> result) {
+    }
+
+    private static final class ConvertedChunk {
+
+        private final String tabData;
+        private final long caseQuantity;
+
+        ConvertedChunk(String tabData, long caseQuantity) {
+            this.tabData = tabData;
+            this.caseQuantity = caseQuantity;
+        }
+    }
+
+    @Override
+    public String getReaderVersion() {
+        return READER_VERSION;
+    }
 }
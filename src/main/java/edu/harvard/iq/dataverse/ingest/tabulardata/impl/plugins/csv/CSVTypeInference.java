@@ -0,0 +1,247 @@
+package edu.harvard.iq.dataverse.ingest.tabulardata.impl.plugins.csv;
+
+import java.text.ParseException;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Column type inference for a chunk of CSV records.
+ *
+ * The single-pass CSV reader decided the type of each column by examining the
+ * values in order: every column starts as a numeric one; the moment a value is
+ * found that is not a legit numeric one, the column is a String, and, starting
+ * with that value, the rest of the column is tested for being a time or date
+ * column.
+ *
+ * That outcome only depends on a few properties of each chunk that can be
+ * computed independently of the other chunks, and then merged in the order of
+ * the chunks with {@link #append(CSVTypeInference)}: whether all the values
+ * are numeric/integer; whether there are non-empty values before the first
+ * non-numeric one; and, for the values that follow it, whether they all parse
+ * with each of the time formats and as dates.
+ *
+ * Instances are not thread-safe; each chunk gets its own (the date formats
+ * are cloned, since SimpleDateFormat is not thread-safe either).
+ */
+class CSVTypeInference {
+
+    private final SimpleDateFormat[] timeFormats;
+    private final SimpleDateFormat[] dateFormats;
+    private final int columns;
+
+    private long recordCount = 0L;
+
+    private final boolean[] isNumeric;
+    private final boolean[] isInteger;
+    // Non-empty (numeric) values were found before the first non-numeric one:
+    private final boolean[] hasLeadingValues;
+    // A non-numeric value was found; the "tail" of the column, from that value
+    // on, is what decides whether it is a time or date column:
+    private final boolean[] tailStarted;
+    // Index of the first time format that the first value of the tail parses with:
+    private final int[] tailTimeFormat;
+    private final boolean[][] tailAllTime;
+    private final boolean[] tailAllDate;
+
+    CSVTypeInference(int columns, SimpleDateFormat[] timeFormats, SimpleDateFormat[] dateFormats) {
+        this.columns = columns;
+        this.timeFormats = new SimpleDateFormat[timeFormats.length];
+        for (int k = 0; k < timeFormats.length; k++) {
+            this.timeFormats[k] = (SimpleDateFormat) timeFormats[k].clone();
+        }
+        this.dateFormats = new SimpleDateFormat[dateFormats.length];
+        for (int k = 0; k < dateFormats.length; k++) {
+            // Strict parsing - it will throw an exception if it doesn't parse!
+            this.dateFormats[k] = (SimpleDateFormat) dateFormats[k].clone();
+            this.dateFormats[k].setLenient(false);
+        }
+
+        isNumeric = new boolean[columns];
+        isInteger = new boolean[columns];
+        hasLeadingValues = new boolean[columns];
+        tailStarted = new boolean[columns];
+        tailTimeFormat = new int[columns];
+        tailAllTime = new boolean[columns][timeFormats.length];
+        tailAllDate = new boolean[columns];
+
+        // OK, let's assume that every variable is numeric;
+        // but we'll go through the chunk and examine every value; the
+        // moment we find a value that's not a legit numeric one, we'll
+        // assume that it is in fact a String.
+        Arrays.fill(isNumeric, true);
+        Arrays.fill(isInteger, true);
+        Arrays.fill(tailTimeFormat, -1);
+        Arrays.fill(tailAllDate, true);
+        for (boolean[] allTime : tailAllTime) {
+            Arrays.fill(allTime, true);
+        }
+    }
+
+    /**
+     * Examines the next value of the column, in the order of the chunk.
+     *
+     * @param i the column index
+     * @param varString the value
+     */
+    void observe(int i, String varString) {
+        isInteger[i] = isInteger[i]
+                       && varString != null
+                       && (varString.isEmpty()
+                           || varString.equals("null")
+                           || (StringUtils.isNumeric(varString)
+                                || (varString.substring(0,1).matches("[+-]")
+                                    && StringUtils.isNumeric(varString.substring(1)))));
+
+        if (varString == null || varString.isEmpty()) {
+            return;
+        }
+
+        boolean isNumericValue = isNumericValue(varString);
+
+        if (!tailStarted[i]) {
+            if (isNumericValue) {
+                hasLeadingValues[i] = true;
+                return;
+            }
+            tailStarted[i] = true;
+            for (int k = 0; k < timeFormats.length; k++) {
+                if (isTime(timeFormats[k], varString)) {
+                    tailTimeFormat[i] = k;
+                    break;
+                }
+            }
+        }
+
+        if (!isNumericValue) {
+            isNumeric[i] = false;
+        }
+
+        for (int k = 0; k < timeFormats.length; k++) {
+            if (tailAllTime[i][k]) {
+                tailAllTime[i][k] = isTime(timeFormats[k], varString);
+            }
+        }
+        if (tailAllDate[i]) {
+            tailAllDate[i] = isDate(varString);
+        }
+    }
+
+    void countRecord() {
+        recordCount++;
+    }
+
+    long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Merges the inference for the chunk that immediately follows the ones
+     * already merged into this one.
+     *
+     * @param next the inference for the next chunk
+     */
+    void append(CSVTypeInference next) {
+        recordCount += next.recordCount;
+
+        for (int i = 0; i < columns; i++) {
+            isNumeric[i] = isNumeric[i] && next.isNumeric[i];
+            isInteger[i] = isInteger[i] && next.isInteger[i];
+
+            if (!tailStarted[i]) {
+                hasLeadingValues[i] = hasLeadingValues[i] || next.hasLeadingValues[i];
+                if (next.tailStarted[i]) {
+                    tailStarted[i] = true;
+                    tailTimeFormat[i] = next.tailTimeFormat[i];
+                    tailAllTime[i] = Arrays.copyOf(next.tailAllTime[i], next.tailAllTime[i].length);
+                    tailAllDate[i] = next.tailAllDate[i];
+                }
+            } else {
+                if (next.hasLeadingValues[i]) {
+                    // numeric values don't parse as times or dates:
+                    Arrays.fill(tailAllTime[i], false);
+                    tailAllDate[i] = false;
+                }
+                if (next.tailStarted[i]) {
+                    for (int k = 0; k < tailAllTime[i].length; k++) {
+                        tailAllTime[i][k] = tailAllTime[i][k] && next.tailAllTime[i][k];
+                    }
+                    tailAllDate[i] = tailAllDate[i] && next.tailAllDate[i];
+                }
+            }
+        }
+    }
+
+    boolean isNumericVariable(int i) {
+        return isNumeric[i];
+    }
+
+    boolean isIntegerVariable(int i) {
+        return isInteger[i];
+    }
+
+    /**
+     * @param i the column index
+     * @return the time format that all the values of a String column parse
+     * with; or null if it is not a time column.
+     */
+    SimpleDateFormat getTimeFormat(int i) {
+        if (isNumeric[i] || !tailStarted[i] || tailTimeFormat[i] < 0 || !tailAllTime[i][tailTimeFormat[i]]) {
+            return null;
+        }
+        return timeFormats[tailTimeFormat[i]];
+    }
+
+    /**
+     * @param i the column index
+     * @return the date format of a String column where all the values are
+     * dates; or null if it is not a date column.
+     */
+    SimpleDateFormat getDateFormat(int i) {
+        // (if the first value is a time, the column is not a date column,
+        // even if it isn't a time column either)
+        if (isNumeric[i] || !tailStarted[i] || tailTimeFormat[i] >= 0 || !tailAllDate[i]) {
+            return null;
+        }
+        return dateFormats[0];
+    }
+
+    private static boolean isNumericValue(String varString) {
+        if (varString.equalsIgnoreCase("NaN")
+            || varString.equalsIgnoreCase("NA")
+            || varString.equalsIgnoreCase("Inf")
+            || varString.equalsIgnoreCase("+Inf")
+            || varString.equalsIgnoreCase("-Inf")
+            || varString.equalsIgnoreCase("null")) {
+            return true;
+        }
+        try {
+            Double.parseDouble(varString);
+            return true;
+        } catch (NumberFormatException ex) {
+            // the token failed to parse as a double
+            // so the column is a string variable.
+        }
+        return false;
+    }
+
+    private static boolean isTime(SimpleDateFormat format, String varString) {
+        ParsePosition pos = new ParsePosition(0);
+        Date dateResult = format.parse(varString, pos);
+        return dateResult != null && pos.getIndex() == varString.length();
+    }
+
+    private boolean isDate(String varString) {
+        for (SimpleDateFormat format : dateFormats) {
+            try {
+                format.parse(varString);
+                return true;
+            } catch (ParseException ex) {
+                //Do nothing
+            }
+        }
+        return false;
+    }
+}
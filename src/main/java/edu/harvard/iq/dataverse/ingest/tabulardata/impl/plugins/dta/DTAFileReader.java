@@ -77,6 +77,8 @@ import org.apache.commons.lang3.StringUtils;
 
 public class DTAFileReader extends TabularDataFileReader{
 
+    public static final String READER_VERSION = "4.0";
+
     private static final Logger logger = Logger.getLogger(DTAFileReader.class.getCanonicalName());
 
     //@Inject
@@ -2192,5 +2194,9 @@ public class DTAFileReader extends TabularDataFileReader{
         return retValue;
     }
 
+    @Override
+    public String getReaderVersion() {
+        return READER_VERSION;
+    }
 }
 
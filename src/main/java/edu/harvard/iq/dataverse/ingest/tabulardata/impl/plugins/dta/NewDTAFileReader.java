@@ -47,6 +47,8 @@ import org.apache.commons.lang3.StringUtils;
  *
  */
 public class NewDTAFileReader extends TabularDataFileReader {
+
+    public static final String READER_VERSION = "4.0";
     //@Inject
     //VariableServiceBean varService;
     // static fields, STATA-specific constants, etc. 
@@ -1648,4 +1650,9 @@ public class NewDTAFileReader extends TabularDataFileReader {
             this.dta_offset_eof = dta_offset_eof;
         }
     }
+
+    @Override
+    public String getReaderVersion() {
+        return READER_VERSION;
+    }
 }
@@ -83,6 +83,8 @@ import edu.harvard.iq.dataverse.ingest.tabulardata.impl.plugins.sav.SPSSConstant
  */
 
 public class PORFileReader  extends TabularDataFileReader{
+
+    public static final String READER_VERSION = "4.0";
     // static fields ---------------------------------------------------------//
     private static final String MissingValueForTextDataFile = "";
 
@@ -1744,5 +1746,9 @@ public class PORFileReader  extends TabularDataFileReader{
     }
 
     
+    @Override
+    public String getReaderVersion() {
+        return READER_VERSION;
+    }
 }
 
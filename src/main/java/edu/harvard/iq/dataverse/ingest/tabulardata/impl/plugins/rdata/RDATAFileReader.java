@@ -23,6 +23,8 @@ package edu.harvard.iq.dataverse.ingest.tabulardata.impl.plugins.rdata;
 import java.io.*;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.text.*;
 import java.util.logging.*;
 import java.util.*;
@@ -38,7 +40,6 @@ import org.rosuda.REngine.Rserve.*;
 
 import edu.harvard.iq.dataverse.DataTable;
 import edu.harvard.iq.dataverse.datavariable.DataVariable;
-import edu.harvard.iq.dataverse.datavariable.VariableCategory;
 
 import edu.harvard.iq.dataverse.ingest.tabulardata.TabularDataFileReader;
 import edu.harvard.iq.dataverse.ingest.tabulardata.spi.TabularDataFileReaderSpi;
@@ -65,6 +66,12 @@ import org.apache.commons.lang3.RandomStringUtils;
  * This implementation uses external R-Scripts to do the bulk of the processing.
  */
 public class RDATAFileReader extends TabularDataFileReader {
+
+    // 4.1: the data frames are read without Rserve, and the numeric values
+    // written at full precision
+    public static final String READER_VERSION = "4.1";
+    // (the files that can only be read on Rserve are processed as before)
+    public static final String RSERVE_READER_VERSION = "4.0";
     
 // Date-time things
   public static final String[] FORMATS = { "other", "date", "date-time", "date-time-timezone" };
@@ -109,6 +116,10 @@ public class RDATAFileReader extends TabularDataFileReader {
   // Logger
   private static final Logger LOG = Logger.getLogger(RDATAFileReader.class.getPackage().getName());
 
+  // The version of the output of the path the file was read with (or is to
+  // be read with first, before it is read)
+  private String readerVersion;
+
  
   TabularDataIngest ingesteddata = new TabularDataIngest();
   private DataTable dataTable = new DataTable();
@@ -466,6 +477,12 @@ public class RDATAFileReader extends TabularDataFileReader {
   
   /**
    * Read the Given RData File
+   * 
+   * The data frame is read directly, with <code>RDataFrameReader</code>; 
+   * the files it does not support (data frames with columns of other 
+   * classes, compression methods, etc.) are processed by the R scripts on 
+   * Rserve, as before. 
+   * 
    * @param stream a <code>BufferedInputStream</code>.
    * @param ignored
    * @return an <code>TabularDataIngest</code> object
@@ -473,6 +490,39 @@ public class RDATAFileReader extends TabularDataFileReader {
    */
     @Override
     public TabularDataIngest read(BufferedInputStream stream, boolean saveWithVariableHeader, File dataFile) throws IOException {
+        if (!isJavaReaderEnabled()) {
+            readerVersion = RSERVE_READER_VERSION;
+            return readWithRserve(stream, saveWithVariableHeader);
+        }
+
+        // The file is saved locally, so that it can still be sent to Rserve 
+        // if it cannot be read without R:
+        File rDataFile = File.createTempFile("rdata-", ".RData");
+        try {
+            Files.copy(stream, rDataFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+            try {
+                TabularDataIngest ingest = RDataFrameReader.read(rDataFile, saveWithVariableHeader);
+                LOG.fine("RDATAFileReader: read the data frame without R");
+                readerVersion = READER_VERSION;
+                return ingest;
+            } catch (Exception ex) {
+                LOG.info("RDATAFileReader: the file cannot be read without R (" + ex.getMessage() + "); using Rserve");
+            }
+
+            try (BufferedInputStream rDataStream = new BufferedInputStream(new FileInputStream(rDataFile))) {
+                readerVersion = RSERVE_READER_VERSION;
+                return readWithRserve(rDataStream, saveWithVariableHeader);
+            }
+        } finally {
+            rDataFile.delete();
+        }
+    }
+
+    /**
+     * Reads the file by running the R scripts on Rserve.
+     */
+    private TabularDataIngest readWithRserve(BufferedInputStream stream, boolean saveWithVariableHeader) throws IOException {
 
         init();
 
@@ -738,97 +788,7 @@ public class RDATAFileReader extends TabularDataFileReader {
 
                 //dataTable.getDataVariables().get(k).setFormatSchema("RDATA");
 
-                if (variableTypeName == null || variableTypeName.equals("character") || variableTypeName.equals("other")) {
-                    // This is a String: 
-                    dataTable.getDataVariables().get(k).setTypeCharacter();
-                    dataTable.getDataVariables().get(k).setIntervalDiscrete();
-                    
-                } else if (variableTypeName.equals("integer")) {
-                    dataTable.getDataVariables().get(k).setTypeNumeric();
-                    dataTable.getDataVariables().get(k).setIntervalDiscrete();
-                    
-                } else if (variableTypeName.equals("numeric") || variableTypeName.equals("double")) {
-                    dataTable.getDataVariables().get(k).setTypeNumeric();
-                    dataTable.getDataVariables().get(k).setIntervalContinuous();
-                    
-                } else if (variableTypeName.startsWith("Date")) {
-                    dataTable.getDataVariables().get(k).setTypeCharacter();
-                    dataTable.getDataVariables().get(k).setIntervalDiscrete();
-                    dataTable.getDataVariables().get(k).setFormat(variableFormat);
-                    
-                    // instead:
-                    if (variableTypeName.equals("Date")) {
-                        dataTable.getDataVariables().get(k).setFormatCategory("date");
-                    } else if (variableTypeName.equals("DateTime")) {
-                        dataTable.getDataVariables().get(k).setFormatCategory("time");
-                    }
-                    
-                } else if (variableTypeName.equals("factor")) {
-                    
-                    // All R factors are *string* factors!
-                    dataTable.getDataVariables().get(k).setTypeCharacter();
-                    dataTable.getDataVariables().get(k).setIntervalDiscrete();
-                    if (variableLevels != null && variableLevels.length > 0) {
-                        // yes, this is a factor, with levels defined.
-                        LOG.fine("this is a factor.");
-                        dataTable.getDataVariables().get(k).setFactor(true);
-                        boolean ordered = false; 
-                        
-                        if (variableFormat != null && variableFormat.equals("ordered")) {
-                            LOG.fine("an ordered factor, too");
-                            ordered = true;
-                        }
-                        
-                        for (int i = 0; i < variableLevels.length; i++) {
-                            VariableCategory cat = new VariableCategory();
-                            cat.setValue(variableLevels[i]);
-                            // Sadly, R factors don't have descriptive labels;
-                            cat.setLabel(variableLevels[i]);
-                            
-                            if (ordered) {
-                                cat.setOrder(i+1);
-                            }
-
-                            /* cross-link the variable and category to each other: */
-                            cat.setDataVariable(dataTable.getDataVariables().get(k));
-                            dataTable.getDataVariables().get(k).getCategories().add(cat);
-                        }
-                        
-                        dataTable.getDataVariables().get(k).setOrderedCategorical(ordered);
-
-                    }
-
-                } // And finally, a special case for logical variables: 
-                // For all practical purposes, they are handled as numeric factors
-                // with 0 and 1 for the values and "FALSE" and "TRUE" for the labels.
-                // (so this can also be used as an example of ingesting a *numeric* 
-                // categorical variable - as opposed to *string* categoricals, that
-                // we turn R factors into - above.
-                else if ("logical".equals(variableTypeName)) {
-                    dataTable.getDataVariables().get(k).setFormatCategory("Boolean");
-                    
-                    dataTable.getDataVariables().get(k).setTypeNumeric();
-                    dataTable.getDataVariables().get(k).setIntervalDiscrete();
-
-                    String booleanFactorLabels[] = new String[2];
-                    booleanFactorLabels[0] = "FALSE";
-                    booleanFactorLabels[1] = "TRUE";
-
-                    String booleanFactorValues[] = new String[2];
-                    booleanFactorValues[0] = "0";
-                    booleanFactorValues[1] = "1";
-
-                    for (int i = 0; i < 2; i++) {
-                        VariableCategory cat = new VariableCategory();
-                        cat.setValue(booleanFactorValues[i]);
-                        // Sadly, R factors don't have descriptive labels;
-                        cat.setLabel(booleanFactorLabels[i]);
-
-                        /* cross-link the variable and category to each other: */
-                        cat.setDataVariable(dataTable.getDataVariables().get(k));
-                        dataTable.getDataVariables().get(k).getCategories().add(cat);
-                    }
-                }
+                RDataFrameReader.configureVariable(dataTable.getDataVariables().get(k), variableTypeName, variableFormat, variableLevels);
 
                 // Store the meta-data in a hashmap (to return later)
             } catch (REXPMismatchException ex) {
@@ -839,4 +799,22 @@ public class RDATAFileReader extends TabularDataFileReader {
             }
         }
     }
+
+    private static boolean isJavaReaderEnabled() {
+        return JvmSettings.INGEST_RDATA_JAVA_READER.lookupOptional(Boolean.class).orElse(true);
+    }
+
+    /**
+     * The output of the two paths differs (the numeric values are written at
+     * full precision without Rserve), so the results of one are not reused
+     * for the other: once the file is read, this is the version of the path
+     * it was read with; before, that of the path it will be read with first.
+     */
+    @Override
+    public String getReaderVersion() {
+        if (readerVersion != null) {
+            return readerVersion;
+        }
+        return isJavaReaderEnabled() ? READER_VERSION : RSERVE_READER_VERSION;
+    }
 }
@@ -0,0 +1,583 @@
+package edu.harvard.iq.dataverse.ingest.tabulardata.impl.plugins.rdata;
+
+import edu.harvard.iq.dataverse.DataTable;
+import edu.harvard.iq.dataverse.datavariable.DataVariable;
+import edu.harvard.iq.dataverse.datavariable.VariableCategory;
+import edu.harvard.iq.dataverse.ingest.tabulardata.TabularDataIngest;
+import static edu.harvard.iq.dataverse.ingest.tabulardata.impl.plugins.rdata.RSerializationReader.*;
+import edu.harvard.iq.dataverse.ingest.tabulardata.impl.plugins.rdata.RSerializationReader.RObject;
+import edu.harvard.iq.dataverse.ingest.tabulardata.impl.plugins.rdata.RSerializationReader.VectorCursor;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.text.Collator;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Ingests the data frame stored in an RData (or RDS) file without R: the file
+ * is read with {@link RSerializationReader}, and the columns of the data
+ * frame are streamed straight into the tab-delimited file, one row at a time.
+ *
+ * The data frame is picked, and the variables and the values in the tab file
+ * are produced, the same way the R scripts used by {@link RDATAFileReader} do.
+ * Data frames with columns of the atomic types, factors, Dates and POSIXct
+ * date-times are supported; anything else results in an IOException, and
+ * should be handed over to R.
+ */
+class RDataFrameReader {
+
+    private static final Logger logger = Logger.getLogger(RDataFrameReader.class.getCanonicalName());
+
+    // Memory for the read buffers of the column cursors, and the limits for
+    // the buffer of any single column:
+    private static final int CURSOR_BUFFERS_SIZE = 16 * 1024 * 1024;
+    private static final int MIN_CURSOR_BUFFER_SIZE = 1024;
+    private static final int MAX_CURSOR_BUFFER_SIZE = 64 * 1024;
+
+    private static final String DATE_FORMAT = "yyyy-MM-dd";
+    private static final String DATE_TIME_FORMAT = "yyyy-MM-dd HH:mm:ss.SSS z";
+    private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("uuuu-MM-dd HH:mm:ss");
+
+    private static final String[] BOOLEAN_LABELS = {"FALSE", "TRUE"};
+    private static final String[] BOOLEAN_VALUES = {"0", "1"};
+
+    private enum ColumnType {
+        CHARACTER, INTEGER, NUMERIC, LOGICAL, FACTOR, DATE, DATE_TIME
+    }
+
+    private static final class Column {
+
+        private final String name;
+        private final RObject vector;
+        private ColumnType type;
+        private boolean ordered;
+        private String[] levels;
+        private ZoneId zone;
+        private String zoneLabel;
+        private int secondsDigits;
+
+        private Column(String name, RObject vector) {
+            this.name = name;
+            this.vector = vector;
+        }
+    }
+
+    private final RSerializationReader reader;
+
+    RDataFrameReader(RSerializationReader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Reads an RData or RDS file.
+     *
+     * @param rDataFile the file
+     * @param saveWithVariableHeader whether to add the variable names header
+     * to the tab file
+     * @return the ingested data frame
+     * @throws IOException if the file is not supported, or cannot be read.
+     */
+    static TabularDataIngest read(File rDataFile, boolean saveWithVariableHeader) throws IOException {
+        try (RSerializationReader reader = new RSerializationReader(rDataFile)) {
+            reader.parse();
+            return new RDataFrameReader(reader).read(saveWithVariableHeader);
+        }
+    }
+
+    TabularDataIngest read(boolean saveWithVariableHeader) throws IOException {
+        RObject dataFrame = findDataFrame();
+        List<Column> columns = getColumns(dataFrame);
+
+        if (columns.isEmpty()) {
+            throw new IOException("the data frame has no columns");
+        }
+
+        long caseQuantity = columns.get(0).vector.getLength();
+        for (Column column : columns) {
+            if (column.vector.getLength() != caseQuantity) {
+                throw new IOException("the columns of the data frame differ in length");
+            }
+        }
+
+        DataTable dataTable = new DataTable();
+        List<DataVariable> variables = new ArrayList<>();
+        for (int i = 0; i < columns.size(); i++) {
+            variables.add(createVariable(dataTable, i, columns.get(i)));
+        }
+        dataTable.setVarQuantity((long) variables.size());
+        dataTable.setCaseQuantity(caseQuantity);
+        dataTable.setDataVariables(variables);
+
+        File tabFile = File.createTempFile("data-", ".tab");
+        try {
+            writeTabFile(columns, caseQuantity, saveWithVariableHeader, tabFile);
+        } catch (IOException ioex) {
+            tabFile.delete();
+            throw ioex;
+        }
+
+        logger.fine("Read " + caseQuantity + " rows of " + columns.size() + " columns of an R data frame");
+
+        dataTable.setUnf("UNF:pending");
+
+        TabularDataIngest ingest = new TabularDataIngest();
+        ingest.setDataTable(dataTable);
+        ingest.setTabDelimitedFile(tabFile);
+        return ingest;
+    }
+
+    /**
+     * Sets the type, format and categories of a variable, the way it is done
+     * for the R types reported by the variable metadata script
+     * (dataset.info.script.R).
+     *
+     * @param variable the variable
+     * @param typeName the "type.string" of the R vector ("character",
+     * "integer", "numeric", "Date", "DateTime", "factor", "logical")
+     * @param format the "format" of the vector ("ordered" for an ordered
+     * factor; the date format for the date and time vectors)
+     * @param levels the levels of a factor
+     */
+    static void configureVariable(DataVariable variable, String typeName, String format, String[] levels) {
+        if (typeName == null || typeName.equals("character") || typeName.equals("other")) {
+            // This is a String:
+            variable.setTypeCharacter();
+            variable.setIntervalDiscrete();
+
+        } else if (typeName.equals("integer")) {
+            variable.setTypeNumeric();
+            variable.setIntervalDiscrete();
+
+        } else if (typeName.equals("numeric") || typeName.equals("double")) {
+            variable.setTypeNumeric();
+            variable.setIntervalContinuous();
+
+        } else if (typeName.startsWith("Date")) {
+            variable.setTypeCharacter();
+            variable.setIntervalDiscrete();
+            variable.setFormat(format);
+
+            if (typeName.equals("Date")) {
+                variable.setFormatCategory("date");
+            } else if (typeName.equals("DateTime")) {
+                variable.setFormatCategory("time");
+            }
+
+        } else if (typeName.equals("factor")) {
+            // All R factors are *string* factors!
+            variable.setTypeCharacter();
+            variable.setIntervalDiscrete();
+            if (levels != null && levels.length > 0) {
+                variable.setFactor(true);
+                boolean ordered = "ordered".equals(format);
+
+                for (int i = 0; i < levels.length; i++) {
+                    VariableCategory cat = new VariableCategory();
+                    cat.setValue(levels[i]);
+                    // Sadly, R factors don't have descriptive labels;
+                    cat.setLabel(levels[i]);
+
+                    if (ordered) {
+                        cat.setOrder(i + 1);
+                    }
+
+                    /* cross-link the variable and category to each other: */
+                    cat.setDataVariable(variable);
+                    variable.getCategories().add(cat);
+                }
+
+                variable.setOrderedCategorical(ordered);
+            }
+
+        } else if ("logical".equals(typeName)) {
+            // Logical variables are handled as numeric factors, with 0 and 1
+            // for the values and "FALSE" and "TRUE" for the labels.
+            variable.setFormatCategory("Boolean");
+            variable.setTypeNumeric();
+            variable.setIntervalDiscrete();
+
+            for (int i = 0; i < 2; i++) {
+                VariableCategory cat = new VariableCategory();
+                cat.setValue(BOOLEAN_VALUES[i]);
+                cat.setLabel(BOOLEAN_LABELS[i]);
+
+                /* cross-link the variable and category to each other: */
+                cat.setDataVariable(variable);
+                variable.getCategories().add(cat);
+            }
+        }
+    }
+
+    /*
+     * Same as get.dataset.R: the first data frame in the workspace, in the
+     * alphabetical order of the names (and, as ls() does, skipping the names
+     * that start with a dot).
+     */
+    private RObject findDataFrame() throws IOException {
+        if (!reader.isRData()) {
+            RObject object = reader.getObject();
+            if (!isDataFrame(object)) {
+                throw new IOException("the RDS file does not contain a data frame");
+            }
+            return object;
+        }
+
+        Collator collator = Collator.getInstance(Locale.ENGLISH);
+        String selected = null;
+        RObject dataFrame = null;
+
+        for (Map.Entry<String, RObject> entry : reader.getObjects().entrySet()) {
+            String name = entry.getKey();
+            if (name.startsWith(".") || !isDataFrame(entry.getValue())) {
+                continue;
+            }
+            if (selected == null || collator.compare(name, selected) < 0) {
+                selected = name;
+                dataFrame = entry.getValue();
+            }
+        }
+
+        if (dataFrame == null) {
+            throw new IOException("no data frames found in the RData file");
+        }
+        logger.fine("Ingesting the data frame " + selected);
+        return dataFrame;
+    }
+
+    private boolean isDataFrame(RObject object) throws IOException {
+        return object.getType() == VECSXP && getClasses(object).contains("data.frame");
+    }
+
+    private List<String> getClasses(RObject object) throws IOException {
+        RObject classes = object.getAttribute("class");
+        if (classes == null || classes.getType() != STRSXP) {
+            return List.of();
+        }
+        return Arrays.asList(reader.readStrings(classes));
+    }
+
+    private List<Column> getColumns(RObject dataFrame) throws IOException {
+        RObject names = dataFrame.getAttribute("names");
+        String[] columnNames = names != null && names.getType() == STRSXP ? reader.readStrings(names) : new String[0];
+
+        List<RObject> vectors = dataFrame.getElements();
+        if (columnNames.length != vectors.size()) {
+            throw new IOException("the names of the data frame columns do not match the columns");
+        }
+
+        List<Column> columns = new ArrayList<>();
+        for (int i = 0; i < vectors.size(); i++) {
+            Column column = new Column(columnNames[i], vectors.get(i));
+            resolveColumnType(column);
+            columns.add(column);
+        }
+        return columns;
+    }
+
+    private void resolveColumnType(Column column) throws IOException {
+        RObject vector = column.vector;
+        String unsupported = "column " + column.name + ": unsupported ";
+
+        if (vector.getUnsupportedClass() != null) {
+            throw new IOException(unsupported + "ALTREP class " + vector.getUnsupportedClass());
+        }
+        if (vector.getAttribute("dim") != null) {
+            throw new IOException(unsupported + "matrix or array column");
+        }
+
+        List<String> classes = getClasses(vector);
+        int type = vector.getType();
+
+        if (classes.isEmpty()) {
+            switch (type) {
+                case STRSXP:
+                    column.type = ColumnType.CHARACTER;
+                    return;
+                case INTSXP:
+                    column.type = ColumnType.INTEGER;
+                    return;
+                case REALSXP:
+                    column.type = ColumnType.NUMERIC;
+                    return;
+                case LGLSXP:
+                    column.type = ColumnType.LOGICAL;
+                    return;
+                default:
+                    throw new IOException(unsupported + "vector type " + type);
+            }
+        }
+
+        if (classes.contains("factor") && type == INTSXP) {
+            column.type = ColumnType.FACTOR;
+            column.ordered = classes.contains("ordered");
+            RObject levels = vector.getAttribute("levels");
+            column.levels = levels != null && levels.getType() == STRSXP ? reader.readStrings(levels) : new String[0];
+            return;
+        }
+
+        if (classes.contains("Date") && (type == REALSXP || type == INTSXP)) {
+            column.type = ColumnType.DATE;
+            return;
+        }
+
+        if (classes.contains("POSIXct") && (type == REALSXP || type == INTSXP)) {
+            column.type = ColumnType.DATE_TIME;
+            RObject tzone = vector.getAttribute("tzone");
+            String zone = tzone != null && tzone.getType() == STRSXP && tzone.getLength() > 0 ? reader.readStrings(tzone)[0] : null;
+            if (zone == null || zone.isEmpty()) {
+                // If no time zone is defined, the UTC time value is stored:
+                column.zone = ZoneOffset.UTC;
+                column.zoneLabel = "UTC";
+            } else {
+                try {
+                    column.zone = ZoneId.of(zone);
+                } catch (DateTimeException dte) {
+                    throw new IOException(unsupported + "time zone " + zone);
+                }
+                column.zoneLabel = zone;
+            }
+            column.secondsDigits = getSecondsDigits(vector);
+            return;
+        }
+
+        throw new IOException(unsupported + "class " + classes);
+    }
+
+    private DataVariable createVariable(DataTable dataTable, int order, Column column) {
+        DataVariable variable = new DataVariable(order, dataTable);
+        variable.setName(column.name);
+        variable.setLabel(column.name);
+
+        switch (column.type) {
+            case CHARACTER:
+                configureVariable(variable, "character", null, null);
+                break;
+            case INTEGER:
+                configureVariable(variable, "integer", null, null);
+                break;
+            case NUMERIC:
+                configureVariable(variable, "numeric", null, null);
+                break;
+            case LOGICAL:
+                configureVariable(variable, "logical", null, null);
+                break;
+            case FACTOR:
+                configureVariable(variable, "factor", column.ordered ? "ordered" : null, column.levels);
+                break;
+            case DATE:
+                configureVariable(variable, "Date", DATE_FORMAT, null);
+                break;
+            case DATE_TIME:
+                configureVariable(variable, "DateTime", DATE_TIME_FORMAT, null);
+                break;
+        }
+        return variable;
+    }
+
+    private void writeTabFile(List<Column> columns, long caseQuantity, boolean saveWithVariableHeader, File tabFile) throws IOException {
+        int bufferSize = Math.max(MIN_CURSOR_BUFFER_SIZE, Math.min(MAX_CURSOR_BUFFER_SIZE, CURSOR_BUFFERS_SIZE / columns.size()));
+        VectorCursor[] cursors = new VectorCursor[columns.size()];
+        for (int i = 0; i < cursors.length; i++) {
+            cursors[i] = reader.openCursor(columns.get(i).vector, bufferSize);
+        }
+
+        try (PrintWriter tabFileWriter = new PrintWriter(tabFile.getAbsolutePath(), StandardCharsets.UTF_8)) {
+            StringBuilder line = new StringBuilder();
+
+            if (saveWithVariableHeader) {
+                for (int i = 0; i < columns.size(); i++) {
+                    if (i > 0) {
+                        line.append('\t');
+                    }
+                    line.append(columns.get(i).name);
+                }
+                tabFileWriter.println(line);
+            }
+
+            for (long row = 0; row < caseQuantity; row++) {
+                line.setLength(0);
+                for (int i = 0; i < cursors.length; i++) {
+                    if (i > 0) {
+                        line.append('\t');
+                    }
+                    appendValue(line, columns.get(i), cursors[i]);
+                }
+                tabFileWriter.println(line);
+            }
+
+            if (tabFileWriter.checkError()) {
+                throw new IOException("failed to write the tab-delimited file");
+            }
+        }
+    }
+
+    /*
+     * The values are written the same way as the tab file produced by
+     * write.table.R is post-processed by RTabFileParser: missing values are
+     * empty; strings and factor labels are quoted, with the quotes, newlines
+     * and tabs escaped; the dates and times are not quoted.
+     */
+    private void appendValue(StringBuilder line, Column column, VectorCursor cursor) throws IOException {
+        switch (column.type) {
+            case CHARACTER: {
+                String value = cursor.nextString();
+                if (value != null) {
+                    appendQuoted(line, value);
+                }
+                break;
+            }
+            case FACTOR: {
+                int code = cursor.nextInt();
+                if (code != NA_INTEGER) {
+                    if (code < 1 || code > column.levels.length) {
+                        throw new IOException("column " + column.name + ": invalid factor code " + code);
+                    }
+                    appendQuoted(line, column.levels[code - 1]);
+                }
+                break;
+            }
+            case INTEGER: {
+                int value = cursor.nextInt();
+                if (value != NA_INTEGER) {
+                    line.append(value);
+                }
+                break;
+            }
+            case LOGICAL: {
+                int value = cursor.nextInt();
+                if (value != NA_INTEGER) {
+                    line.append(value != 0 ? '1' : '0');
+                }
+                break;
+            }
+            case NUMERIC: {
+                double value = nextDouble(column, cursor);
+                if (isNA(value)) {
+                    // missing value
+                } else if (Double.isNaN(value)) {
+                    line.append("NaN");
+                } else if (value == Double.POSITIVE_INFINITY) {
+                    line.append("Inf");
+                } else if (value == Double.NEGATIVE_INFINITY) {
+                    line.append("-Inf");
+                } else if (value == 0.0) {
+                    // (no negative zeros)
+                    line.append("0.0");
+                } else {
+                    line.append(value);
+                }
+                break;
+            }
+            case DATE: {
+                double value = nextDouble(column, cursor);
+                if (!Double.isNaN(value) && !Double.isInfinite(value)) {
+                    line.append(LocalDate.ofEpochDay((long) Math.floor(value)));
+                }
+                break;
+            }
+            case DATE_TIME: {
+                double value = nextDouble(column, cursor);
+                if (!Double.isNaN(value) && !Double.isInfinite(value)) {
+                    appendDateTime(line, column, value);
+                }
+                break;
+            }
+        }
+    }
+
+    private static double nextDouble(Column column, VectorCursor cursor) throws IOException {
+        if (column.vector.getType() == REALSXP) {
+            return cursor.nextDouble();
+        }
+        int value = cursor.nextInt();
+        return value == NA_INTEGER ? Double.NaN : value;
+    }
+
+    private static void appendQuoted(StringBuilder line, String value) {
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    line.append("\\\"");
+                    break;
+                case '\n':
+                    line.append("\\n");
+                    break;
+                case '\t':
+                    line.append("\\t");
+                    break;
+                default:
+                    line.append(c);
+            }
+        }
+        line.append('"');
+    }
+
+    /*
+     * As in write.table.R: "%F %H:%M:%OS", followed by the time zone, with
+     * the fractional seconds (digits.secs = 3) shown with as many digits as
+     * needed for the column, and ".000" dropped.
+     */
+    private static void appendDateTime(StringBuilder line, Column column, double value) {
+        long scale = (long) Math.pow(10, column.secondsDigits);
+        long scaled = Math.round(value * scale);
+        long seconds = Math.floorDiv(scaled, scale);
+        long fraction = Math.floorMod(scaled, scale);
+
+        line.append(DATE_TIME_FORMATTER.format(Instant.ofEpochSecond(seconds).atZone(column.zone)));
+        if (column.secondsDigits > 0 && !(column.secondsDigits == 3 && fraction == 0)) {
+            String digits = Long.toString(fraction);
+            line.append('.');
+            for (int i = digits.length(); i < column.secondsDigits; i++) {
+                line.append('0');
+            }
+            line.append(digits);
+        }
+        line.append(' ').append(column.zoneLabel);
+    }
+
+    /*
+     * format.POSIXlt() uses the smallest number of digits (up to
+     * digits.secs = 3) that shows the fractional seconds of all the values
+     * of the vector.
+     */
+    private int getSecondsDigits(RObject vector) throws IOException {
+        if (vector.getType() != REALSXP) {
+            return 0;
+        }
+        boolean[] fits = {true, true, true};
+        VectorCursor cursor = reader.openCursor(vector, MAX_CURSOR_BUFFER_SIZE);
+        for (long i = 0; i < vector.getLength(); i++) {
+            double value = cursor.nextDouble();
+            if (Double.isNaN(value) || Double.isInfinite(value)) {
+                continue;
+            }
+            double fraction = value - Math.floor(value);
+            for (int digits = 0; digits < fits.length; digits++) {
+                if (fits[digits]) {
+                    double scale = Math.pow(10, digits);
+                    fits[digits] = Math.abs(fraction - Math.round(fraction * scale) / scale) < 1e-6;
+                }
+            }
+        }
+        for (int digits = 0; digits < fits.length; digits++) {
+            if (fits[digits]) {
+                return digits;
+            }
+        }
+        return 3;
+    }
+}
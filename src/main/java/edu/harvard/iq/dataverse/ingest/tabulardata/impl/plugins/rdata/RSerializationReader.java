@@ -0,0 +1,896 @@
+package edu.harvard.iq.dataverse.ingest.tabulardata.impl.plugins.rdata;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+
+/**
+ * A reader for the R serialization format - the format of the RData files
+ * written by save(), and of the RDS files written by saveRDS().
+ *
+ * Only the XDR (big-endian binary) flavor of the format, versions 2 and 3, is
+ * supported; that is what R writes by default. The file is decompressed into
+ * a temp file and parsed into a tree of {@link RObject}s; the contents of the
+ * atomic vectors are not read into memory, only their positions in the temp
+ * file are recorded. The vectors can then be read back an element at a time,
+ * with {@link VectorCursor}s, so the memory used does not depend on the size
+ * of the data.
+ *
+ * (See serialize.c in the R sources for the definition of the format.)
+ */
+class RSerializationReader implements Closeable {
+
+    private static final Logger logger = Logger.getLogger(RSerializationReader.class.getCanonicalName());
+
+    // SEXP types:
+    static final int NILSXP = 0;
+    static final int SYMSXP = 1;
+    static final int LISTSXP = 2;
+    static final int CLOSXP = 3;
+    static final int ENVSXP = 4;
+    static final int PROMSXP = 5;
+    static final int LANGSXP = 6;
+    static final int SPECIALSXP = 7;
+    static final int BUILTINSXP = 8;
+    static final int CHARSXP = 9;
+    static final int LGLSXP = 10;
+    static final int INTSXP = 13;
+    static final int REALSXP = 14;
+    static final int CPLXSXP = 15;
+    static final int STRSXP = 16;
+    static final int DOTSXP = 17;
+    static final int VECSXP = 19;
+    static final int EXPRSXP = 20;
+    static final int BCODESXP = 21;
+    static final int EXTPTRSXP = 22;
+    static final int WEAKREFSXP = 23;
+    static final int RAWSXP = 24;
+    static final int S4SXP = 25;
+
+    // Pseudo-types, only found in serialized streams:
+    private static final int REFSXP = 255;
+    private static final int NILVALUE_SXP = 254;
+    private static final int GLOBALENV_SXP = 253;
+    private static final int UNBOUNDVALUE_SXP = 252;
+    private static final int MISSINGARG_SXP = 251;
+    private static final int BASENAMESPACE_SXP = 250;
+    private static final int NAMESPACESXP = 249;
+    private static final int PACKAGESXP = 248;
+    private static final int PERSISTSXP = 247;
+    private static final int CLASSREFSXP = 246;
+    private static final int GENERICREFSXP = 245;
+    private static final int BCREPDEF = 244;
+    private static final int BCREPREF = 243;
+    private static final int EMPTYENV_SXP = 242;
+    private static final int BASEENV_SXP = 241;
+    private static final int ATTRLANGSXP = 240;
+    private static final int ATTRLISTSXP = 239;
+    private static final int ALTREP_SXP = 238;
+
+    // Flags:
+    private static final int HAS_ATTR_BIT_MASK = 1 << 9;
+    private static final int HAS_TAG_BIT_MASK = 1 << 10;
+
+    // Encoding of the CHARSXPs (in the "levels" part of the flags):
+    private static final int BYTES_MASK = 1 << 1;
+    private static final int LATIN1_MASK = 1 << 2;
+    private static final int UTF8_MASK = 1 << 3;
+    private static final int ASCII_MASK = 1 << 6;
+
+    // R's NA_integer_ (and NA for logicals):
+    static final int NA_INTEGER = Integer.MIN_VALUE;
+    // R's NA_real_ is a NaN with this value in the low word:
+    private static final int NA_REAL_LOW_WORD = 1954;
+
+    private static final int PARSER_BUFFER_SIZE = 64 * 1024;
+
+    private static final byte[] RDATA_XDR_V2 = "RDX2\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] RDATA_XDR_V3 = "RDX3\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] XDR_FORMAT = "X\n".getBytes(StandardCharsets.US_ASCII);
+
+    private static final RObject NULL = new RObject(NILSXP);
+
+    /**
+     * A node of the parsed object tree. Only what is needed to locate the
+     * data frames, and to read them, is retained: the attributes of all the
+     * objects, the elements of the lists and pairlists, the names of the
+     * symbols, and the positions of the atomic vectors in the file.
+     */
+    static final class RObject {
+
+        private final int type;
+        private Map<String, RObject> attributes = Collections.emptyMap();
+
+        // SYMSXP, CHARSXP:
+        private String value;
+        // LISTSXP (and the other pairlist types), VECSXP, EXPRSXP:
+        private List<RObject> elements;
+        private List<String> tags;
+        // Atomic vectors:
+        private long length;
+        private long offset = -1L;
+        // Compact sequences (ALTREP "compact_intseq" and "compact_realseq"):
+        private boolean compactSequence;
+        private double sequenceStart;
+        private double sequenceIncrement;
+        // Any other ALTREP class:
+        private String unsupportedClass;
+
+        RObject(int type) {
+            this.type = type;
+        }
+
+        int getType() {
+            return type;
+        }
+
+        boolean isNull() {
+            return type == NILSXP;
+        }
+
+        Map<String, RObject> getAttributes() {
+            return attributes;
+        }
+
+        RObject getAttribute(String name) {
+            return attributes.get(name);
+        }
+
+        String getValue() {
+            return value;
+        }
+
+        List<RObject> getElements() {
+            return elements == null ? Collections.emptyList() : elements;
+        }
+
+        List<String> getTags() {
+            return tags == null ? Collections.emptyList() : tags;
+        }
+
+        long getLength() {
+            return length;
+        }
+
+        /**
+         * @return the name of the ALTREP class of this vector, if it is one
+         * that is not supported; null otherwise.
+         */
+        String getUnsupportedClass() {
+            return unsupportedClass;
+        }
+
+        boolean isAtomicVector() {
+            return type == LGLSXP || type == INTSXP || type == REALSXP || type == CPLXSXP || type == STRSXP || type == RAWSXP;
+        }
+
+        private void add(String tag, RObject element) {
+            if (elements == null) {
+                elements = new ArrayList<>();
+                tags = new ArrayList<>();
+            }
+            elements.add(element);
+            tags.add(tag);
+        }
+    }
+
+    private final File spoolFile;
+    private final boolean deleteSpoolFile;
+    private final FileChannel channel;
+    private final ByteCursor in;
+    private final List<RObject> references = new ArrayList<>();
+
+    private boolean rdata;
+    private Charset nativeCharset = StandardCharsets.UTF_8;
+    private RObject root;
+
+    /**
+     * Opens an RData or RDS file; gzip- and bzip2-compressed files are
+     * decompressed into a temp file first.
+     *
+     * @param file the RData or RDS file
+     * @throws IOException if the file cannot be read or decompressed.
+     */
+    RSerializationReader(File file) throws IOException {
+        byte[] magic = new byte[6];
+        int magicLength;
+        try (InputStream probe = new FileInputStream(file)) {
+            magicLength = probe.readNBytes(magic, 0, magic.length);
+        }
+
+        InputStream decompressed = null;
+        try (InputStream raw = new BufferedInputStream(new FileInputStream(file))) {
+            if (magicLength >= 2 && (magic[0] & 0xFF) == 0x1f && (magic[1] & 0xFF) == 0x8b) {
+                decompressed = new GZIPInputStream(raw);
+            } else if (magicLength >= 3 && magic[0] == 'B' && magic[1] == 'Z' && magic[2] == 'h') {
+                decompressed = new BZip2CompressorInputStream(raw, true);
+            } else if (magicLength >= 6 && (magic[0] & 0xFF) == 0xFD && magic[1] == '7' && magic[2] == 'z'
+                    && magic[3] == 'X' && magic[4] == 'Z' && magic[5] == 0) {
+                throw new IOException("xz-compressed R files are not supported");
+            }
+
+            if (decompressed != null) {
+                spoolFile = File.createTempFile("rdata-", ".bin");
+                deleteSpoolFile = true;
+                try {
+                    Files.copy(decompressed, spoolFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                } catch (IOException ioex) {
+                    spoolFile.delete();
+                    throw ioex;
+                }
+            } else {
+                spoolFile = file;
+                deleteSpoolFile = false;
+            }
+        }
+
+        channel = FileChannel.open(spoolFile.toPath(), StandardOpenOption.READ);
+        in = new ByteCursor(channel, 0L, PARSER_BUFFER_SIZE);
+    }
+
+    /**
+     * Parses the contents of the file.
+     *
+     * @throws IOException if the file is not in a supported flavor of the
+     * format, or is corrupted.
+     */
+    void parse() throws IOException {
+        byte[] header = in.readBytes(2);
+        if (Arrays.equals(header, XDR_FORMAT)) {
+            // an RDS file - a single serialized object
+            rdata = false;
+        } else {
+            byte[] rest = in.readBytes(3);
+            byte[] signature = Arrays.copyOf(header, 5);
+            System.arraycopy(rest, 0, signature, 2, 3);
+            if (!Arrays.equals(signature, RDATA_XDR_V2) && !Arrays.equals(signature, RDATA_XDR_V3)) {
+                throw new IOException("not an RData file in the XDR format: " + new String(signature, StandardCharsets.ISO_8859_1).trim());
+            }
+            if (!Arrays.equals(in.readBytes(2), XDR_FORMAT)) {
+                throw new IOException("unsupported serialization format in the RData file");
+            }
+            rdata = true;
+        }
+
+        int version = in.readInt();
+        int writerVersion = in.readInt();
+        in.readInt(); // minimal R version required to read the file
+
+        if (version == 3) {
+            int nativeEncodingLength = in.readInt();
+            String nativeEncoding = new String(in.readBytes(nativeEncodingLength), StandardCharsets.US_ASCII);
+            try {
+                nativeCharset = Charset.forName(nativeEncoding);
+            } catch (IllegalArgumentException iae) {
+                logger.fine("Unknown native encoding " + nativeEncoding + " in the R file, assuming UTF-8");
+            }
+        } else if (version != 2) {
+            throw new IOException("unsupported version of the R serialization format: " + version);
+        }
+
+        logger.fine("R serialization format version " + version + ", written by R "
+                + (writerVersion >> 16) + "." + ((writerVersion >> 8) & 0xFF) + "." + (writerVersion & 0xFF));
+
+        root = readItem(in.readInt());
+    }
+
+    /**
+     * @return true for an RData file (a set of named objects); false for an
+     * RDS file (a single object).
+     */
+    boolean isRData() {
+        return rdata;
+    }
+
+    /**
+     * @return the objects saved in an RData file, in the order they were
+     * saved in.
+     */
+    Map<String, RObject> getObjects() {
+        Map<String, RObject> objects = new LinkedHashMap<>();
+        List<RObject> elements = root.getElements();
+        for (int i = 0; i < elements.size(); i++) {
+            String name = root.getTags().get(i);
+            if (name != null) {
+                objects.put(name, elements.get(i));
+            }
+        }
+        return objects;
+    }
+
+    /**
+     * @return the object saved in an RDS file.
+     */
+    RObject getObject() {
+        return root;
+    }
+
+    /**
+     * Reads all the elements of a (small) character vector into memory.
+     *
+     * @param vector a STRSXP
+     * @return the values, with nulls for NAs.
+     * @throws IOException if the vector cannot be read.
+     */
+    String[] readStrings(RObject vector) throws IOException {
+        if (vector.getType() != STRSXP || vector.getLength() > Integer.MAX_VALUE) {
+            throw new IOException("not a character vector");
+        }
+        String[] values = new String[(int) vector.getLength()];
+        VectorCursor cursor = openCursor(vector, PARSER_BUFFER_SIZE);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = cursor.nextString();
+        }
+        return values;
+    }
+
+    /**
+     * Reads all the elements of a (small) integer, logical or numeric vector
+     * into memory.
+     *
+     * @param vector an INTSXP, LGLSXP or REALSXP
+     * @return the values (R's NA_integer_ is returned as a NaN).
+     * @throws IOException if the vector cannot be read.
+     */
+    double[] readDoubles(RObject vector) throws IOException {
+        if (vector.getLength() > Integer.MAX_VALUE) {
+            throw new IOException("vector too long");
+        }
+        double[] values = new double[(int) vector.getLength()];
+        VectorCursor cursor = openCursor(vector, PARSER_BUFFER_SIZE);
+        for (int i = 0; i < values.length; i++) {
+            if (vector.getType() == REALSXP) {
+                values[i] = cursor.nextDouble();
+            } else {
+                int value = cursor.nextInt();
+                values[i] = value == NA_INTEGER ? Double.NaN : value;
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Opens a cursor over the elements of an atomic vector.
+     *
+     * @param vector an LGLSXP, INTSXP, REALSXP or STRSXP
+     * @param bufferSize the size of the read buffer of the cursor
+     * @return a new cursor, positioned at the first element.
+     * @throws IOException if the vector cannot be read this way.
+     */
+    VectorCursor openCursor(RObject vector, int bufferSize) throws IOException {
+        if (vector.getUnsupportedClass() != null) {
+            throw new IOException("unsupported ALTREP class " + vector.getUnsupportedClass());
+        }
+        switch (vector.getType()) {
+            case LGLSXP:
+            case INTSXP:
+            case REALSXP:
+            case STRSXP:
+                break;
+            default:
+                throw new IOException("unsupported vector type " + vector.getType());
+        }
+        return new VectorCursor(vector, vector.compactSequence ? null : new ByteCursor(channel, vector.offset, bufferSize));
+    }
+
+    /**
+     * @param value a double read from an R vector
+     * @return true if this is R's NA_real_ (as opposed to any other NaN).
+     */
+    static boolean isNA(double value) {
+        return Double.isNaN(value) && (int) Double.doubleToRawLongBits(value) == NA_REAL_LOW_WORD;
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException ioex) {
+            logger.fine("Failed to close " + spoolFile + ": " + ioex.getMessage());
+        }
+        if (deleteSpoolFile) {
+            spoolFile.delete();
+        }
+    }
+
+    /*
+     * ReadItem() from serialize.c; the flags have already been read.
+     */
+    private RObject readItem(int flags) throws IOException {
+        int type = flags & 0xFF;
+        int levels = flags >> 12;
+        boolean hasAttributes = (flags & HAS_ATTR_BIT_MASK) != 0;
+        boolean hasTag = (flags & HAS_TAG_BIT_MASK) != 0;
+
+        RObject object;
+
+        switch (type) {
+            case NILVALUE_SXP:
+                return NULL;
+            case EMPTYENV_SXP:
+            case BASEENV_SXP:
+            case GLOBALENV_SXP:
+            case UNBOUNDVALUE_SXP:
+            case MISSINGARG_SXP:
+            case BASENAMESPACE_SXP:
+                return new RObject(ENVSXP);
+            case REFSXP: {
+                int index = flags >> 8;
+                if (index == 0) {
+                    index = in.readInt();
+                }
+                if (index < 1 || index > references.size()) {
+                    throw new IOException("invalid reference " + index + " in the R file");
+                }
+                return references.get(index - 1);
+            }
+            case PERSISTSXP:
+                throw new IOException("persistent references are not supported");
+            case CLASSREFSXP:
+            case GENERICREFSXP:
+                throw new IOException("class references are not supported");
+            case SYMSXP: {
+                object = new RObject(SYMSXP);
+                object.value = readItem(in.readInt()).getValue();
+                references.add(object);
+                return object;
+            }
+            case PACKAGESXP:
+            case NAMESPACESXP: {
+                readStringVector();
+                object = new RObject(ENVSXP);
+                references.add(object);
+                return object;
+            }
+            case ENVSXP: {
+                in.readInt(); // locked
+                object = new RObject(ENVSXP);
+                references.add(object);
+                readItem(in.readInt()); // enclosure
+                readItem(in.readInt()); // frame
+                readItem(in.readInt()); // hash table
+                object.attributes = toAttributes(readItem(in.readInt()));
+                return object;
+            }
+            case LISTSXP:
+            case LANGSXP:
+            case CLOSXP:
+            case PROMSXP:
+            case DOTSXP:
+                return readPairList(flags);
+            case ALTREP_SXP: {
+                RObject info = readItem(in.readInt());
+                RObject state = readItem(in.readInt());
+                RObject attributes = readItem(in.readInt());
+                object = unwrapAltrep(info, state);
+                object.attributes = toAttributes(attributes);
+                return object;
+            }
+            case CHARSXP: {
+                object = new RObject(CHARSXP);
+                int length = in.readInt();
+                if (length >= 0) {
+                    object.value = new String(in.readBytes(length), charsetFor(levels));
+                }
+                break;
+            }
+            case SPECIALSXP:
+            case BUILTINSXP: {
+                object = new RObject(type);
+                in.skip(in.readInt());
+                break;
+            }
+            case LGLSXP:
+            case INTSXP:
+                object = skipVector(type, 4L);
+                break;
+            case REALSXP:
+                object = skipVector(type, 8L);
+                break;
+            case CPLXSXP:
+                object = skipVector(type, 16L);
+                break;
+            case RAWSXP:
+                object = skipVector(type, 1L);
+                break;
+            case STRSXP: {
+                object = new RObject(STRSXP);
+                object.length = readLength();
+                object.offset = in.position();
+                for (long i = 0; i < object.length; i++) {
+                    int elementFlags = in.readInt();
+                    if ((elementFlags & 0xFF) != CHARSXP) {
+                        throw new IOException("unexpected element of type " + (elementFlags & 0xFF) + " in a character vector");
+                    }
+                    int length = in.readInt();
+                    if (length > 0) {
+                        in.skip(length);
+                    }
+                }
+                break;
+            }
+            case VECSXP:
+            case EXPRSXP: {
+                object = new RObject(type);
+                long length = readLength();
+                object.length = length;
+                for (long i = 0; i < length; i++) {
+                    object.add(null, readItem(in.readInt()));
+                }
+                break;
+            }
+            case BCODESXP: {
+                object = new RObject(BCODESXP);
+                in.readInt(); // number of the repeated language objects
+                readByteCode();
+                break;
+            }
+            case EXTPTRSXP: {
+                object = new RObject(EXTPTRSXP);
+                references.add(object);
+                readItem(in.readInt()); // protected value
+                readItem(in.readInt()); // tag
+                break;
+            }
+            case WEAKREFSXP: {
+                object = new RObject(WEAKREFSXP);
+                references.add(object);
+                break;
+            }
+            case S4SXP:
+                object = new RObject(S4SXP);
+                break;
+            default:
+                throw new IOException("unknown type " + type + " in the R file");
+        }
+
+        if (type != CHARSXP && hasAttributes) {
+            object.attributes = toAttributes(readItem(in.readInt()));
+        }
+
+        return object;
+    }
+
+    /*
+     * The pairlist-like types are stored as chains of cells; the chains are
+     * read iteratively, rather than recursively as R does, since the
+     * pairlists may be very long (the list of the objects in an RData file is
+     * one of them).
+     */
+    private RObject readPairList(int flags) throws IOException {
+        RObject list = new RObject(flags & 0xFF);
+        boolean first = true;
+
+        while (true) {
+            int type = flags & 0xFF;
+            Map<String, RObject> attributes = Collections.emptyMap();
+            if ((flags & HAS_ATTR_BIT_MASK) != 0) {
+                attributes = toAttributes(readItem(in.readInt()));
+            }
+            if (first) {
+                list.attributes = attributes;
+                first = false;
+            }
+            String tag = null;
+            if ((flags & HAS_TAG_BIT_MASK) != 0) {
+                tag = readItem(in.readInt()).getValue();
+            }
+            list.add(tag, readItem(in.readInt()));
+
+            // the "cdr" - the rest of the list (or, for the types other than
+            // pairlists, whatever is stored there)
+            int nextFlags = in.readInt();
+            int nextType = nextFlags & 0xFF;
+            if (nextType == NILVALUE_SXP) {
+                break;
+            }
+            if (nextType != LISTSXP || (type != LISTSXP && type != LANGSXP && type != DOTSXP)) {
+                readItem(nextFlags);
+                break;
+            }
+            flags = nextFlags;
+        }
+
+        return list;
+    }
+
+    /*
+     * ReadBC1() from serialize.c; the byte code is skipped.
+     */
+    private void readByteCode() throws IOException {
+        readItem(in.readInt()); // code
+        int constants = in.readInt();
+        for (int i = 0; i < constants; i++) {
+            int type = in.readInt();
+            switch (type) {
+                case BCODESXP:
+                    readByteCode();
+                    break;
+                case LANGSXP:
+                case LISTSXP:
+                case BCREPDEF:
+                case BCREPREF:
+                case ATTRLANGSXP:
+                case ATTRLISTSXP:
+                    readByteCodeLanguage(type);
+                    break;
+                default:
+                    readItem(in.readInt());
+            }
+        }
+    }
+
+    /*
+     * ReadBCLang() from serialize.c.
+     */
+    private void readByteCodeLanguage(int type) throws IOException {
+        switch (type) {
+            case BCREPREF:
+                in.readInt();
+                return;
+            case BCREPDEF:
+            case LANGSXP:
+            case LISTSXP:
+            case ATTRLANGSXP:
+            case ATTRLISTSXP:
+                if (type == BCREPDEF) {
+                    in.readInt(); // position
+                    type = in.readInt();
+                }
+                if (type == ATTRLANGSXP || type == ATTRLISTSXP) {
+                    readItem(in.readInt());
+                }
+                readItem(in.readInt()); // tag
+                readByteCodeLanguage(in.readInt()); // car
+                readByteCodeLanguage(in.readInt()); // cdr
+                return;
+            default:
+                readItem(in.readInt());
+        }
+    }
+
+    private void readStringVector() throws IOException {
+        if (in.readInt() != 0) {
+            throw new IOException("names in persistent strings are not supported");
+        }
+        int length = in.readInt();
+        for (int i = 0; i < length; i++) {
+            readItem(in.readInt());
+        }
+    }
+
+    private RObject skipVector(int type, long elementSize) throws IOException {
+        RObject vector = new RObject(type);
+        vector.length = readLength();
+        vector.offset = in.position();
+        in.skip(vector.length * elementSize);
+        return vector;
+    }
+
+    private long readLength() throws IOException {
+        int length = in.readInt();
+        if (length == -1) {
+            long upper = in.readInt() & 0xFFFFFFFFL;
+            long lower = in.readInt() & 0xFFFFFFFFL;
+            return (upper << 32) + lower;
+        }
+        if (length < 0) {
+            throw new IOException("negative vector length in the R file");
+        }
+        return length;
+    }
+
+    /*
+     * The ALTREP classes that can be found in the data frames saved by base R:
+     * the compact integer and real sequences (e.g. 1:n), and the wrappers
+     * that only add some metadata to an ordinary vector.
+     */
+    private RObject unwrapAltrep(RObject info, RObject state) throws IOException {
+        String altrepClass = info.getElements().isEmpty() ? null : info.getElements().get(0).getValue();
+        int type = info.getElements().size() > 2 ? (int) readDoubles(info.getElements().get(2))[0] : NILSXP;
+
+        if ("compact_intseq".equals(altrepClass) || "compact_realseq".equals(altrepClass)) {
+            double[] sequence = readDoubles(state);
+            if (sequence.length != 3) {
+                throw new IOException("invalid compact sequence in the R file");
+            }
+            RObject vector = new RObject("compact_intseq".equals(altrepClass) ? INTSXP : REALSXP);
+            vector.length = (long) sequence[0];
+            vector.sequenceStart = sequence[1];
+            vector.sequenceIncrement = sequence[2];
+            vector.compactSequence = true;
+            return vector;
+        }
+
+        // (the state of a wrapper is a pairlist of the wrapped vector and the metadata)
+        if (altrepClass != null && altrepClass.startsWith("wrap_") && state.getType() == LISTSXP && !state.getElements().isEmpty()) {
+            return state.getElements().get(0);
+        }
+
+        RObject vector = new RObject(type);
+        vector.unsupportedClass = String.valueOf(altrepClass);
+        return vector;
+    }
+
+    private static Map<String, RObject> toAttributes(RObject pairList) {
+        if (pairList.isNull() || pairList.getElements().isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<String, RObject> attributes = new LinkedHashMap<>();
+        for (int i = 0; i < pairList.getElements().size(); i++) {
+            String tag = pairList.getTags().get(i);
+            if (tag != null) {
+                attributes.put(tag, pairList.getElements().get(i));
+            }
+        }
+        return attributes;
+    }
+
+    private Charset charsetFor(int levels) {
+        if ((levels & LATIN1_MASK) != 0) {
+            return StandardCharsets.ISO_8859_1;
+        }
+        if ((levels & (UTF8_MASK | ASCII_MASK | BYTES_MASK)) != 0) {
+            return StandardCharsets.UTF_8;
+        }
+        return nativeCharset;
+    }
+
+    /**
+     * Reads the elements of an atomic vector, one at a time.
+     */
+    final class VectorCursor {
+
+        private final RObject vector;
+        private final ByteCursor bytes;
+        private long index = 0L;
+
+        private VectorCursor(RObject vector, ByteCursor bytes) {
+            this.vector = vector;
+            this.bytes = bytes;
+        }
+
+        /**
+         * @return the next element of an integer or logical vector; NAs are
+         * returned as {@link #NA_INTEGER}.
+         * @throws IOException if the vector cannot be read.
+         */
+        int nextInt() throws IOException {
+            long i = index++;
+            if (vector.compactSequence) {
+                return (int) (vector.sequenceStart + i * vector.sequenceIncrement);
+            }
+            return bytes.readInt();
+        }
+
+        /**
+         * @return the next element of a numeric vector.
+         * @throws IOException if the vector cannot be read.
+         */
+        double nextDouble() throws IOException {
+            long i = index++;
+            if (vector.compactSequence) {
+                return vector.sequenceStart + i * vector.sequenceIncrement;
+            }
+            return bytes.readDouble();
+        }
+
+        /**
+         * @return the next element of a character vector; or null for an NA.
+         * @throws IOException if the vector cannot be read.
+         */
+        String nextString() throws IOException {
+            index++;
+            int levels = bytes.readInt() >> 12;
+            int length = bytes.readInt();
+            if (length < 0) {
+                return null;
+            }
+            return new String(bytes.readBytes(length), charsetFor(levels));
+        }
+    }
+
+    /**
+     * Buffered, big-endian reads from a position in the file.
+     */
+    static final class ByteCursor {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        // position in the file of the start of the buffer:
+        private long bufferStart;
+
+        ByteCursor(FileChannel channel, long position, int bufferSize) {
+            this.channel = channel;
+            this.buffer = ByteBuffer.allocate(bufferSize);
+            this.bufferStart = position;
+            this.buffer.limit(0);
+        }
+
+        long position() {
+            return bufferStart + buffer.position();
+        }
+
+        int readInt() throws IOException {
+            fill(4);
+            return buffer.getInt();
+        }
+
+        double readDouble() throws IOException {
+            fill(8);
+            return buffer.getDouble();
+        }
+
+        byte[] readBytes(int length) throws IOException {
+            byte[] bytes = new byte[length];
+            if (length <= buffer.capacity()) {
+                fill(length);
+                buffer.get(bytes);
+                return bytes;
+            }
+            // longer than the buffer; read directly:
+            ByteBuffer target = ByteBuffer.wrap(bytes);
+            target.put(buffer);
+            long position = bufferStart + buffer.position();
+            while (target.hasRemaining()) {
+                int read = channel.read(target, position);
+                if (read < 0) {
+                    throw new EOFException("unexpected end of the R file");
+                }
+                position += read;
+            }
+            bufferStart = position;
+            buffer.clear();
+            buffer.limit(0);
+            return bytes;
+        }
+
+        void skip(long length) throws IOException {
+            if (length <= buffer.remaining()) {
+                buffer.position(buffer.position() + (int) length);
+                return;
+            }
+            bufferStart = position() + length;
+            buffer.clear();
+            buffer.limit(0);
+            if (bufferStart > channel.size()) {
+                throw new EOFException("unexpected end of the R file");
+            }
+        }
+
+        private void fill(int length) throws IOException {
+            if (buffer.remaining() >= length) {
+                return;
+            }
+            bufferStart += buffer.position();
+            buffer.compact();
+            while (buffer.position() < length) {
+                int read = channel.read(buffer, bufferStart + buffer.position());
+                if (read < 0) {
+                    throw new EOFException("unexpected end of the R file");
+                }
+            }
+            buffer.flip();
+        }
+    }
+}
@@ -78,6 +78,8 @@ import edu.harvard.iq.dataverse.ingest.tabulardata.InvalidData;
  */
 
 public class SAVFileReader  extends TabularDataFileReader{
+
+    public static final String READER_VERSION = "4.0";
     
     // static fields ---------------------------------------------------------//
     private static String[] FORMAT_NAMES = {"sav", "SAV"};
@@ -3646,5 +3648,9 @@ public class SAVFileReader  extends TabularDataFileReader{
     }    
         
     
+    @Override
+    public String getReaderVersion() {
+        return READER_VERSION;
+    }
 }
 
@@ -60,6 +60,8 @@ import org.xml.sax.helpers.XMLReaderFactory;
  */
 public class XLSXFileReader extends TabularDataFileReader {
 
+    public static final String READER_VERSION = "4.0";
+
     private static final Logger dbglog = Logger.getLogger(XLSXFileReader.class.getPackage().getName());
     private char delimiterChar = '\t';
 
@@ -567,4 +569,8 @@ public class XLSXFileReader extends TabularDataFileReader {
     }
     
 
+    @Override
+    public String getReaderVersion() {
+        return READER_VERSION;
+    }
 }
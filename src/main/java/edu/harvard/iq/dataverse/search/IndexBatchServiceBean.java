@@ -220,6 +220,33 @@ public class IndexBatchServiceBean {
         return new AsyncResult<>(status);
     }
         
+    /**
+     * Indexes the datasets specified, one at a time; for the datasets that
+     * were created without being indexed, like the ones imported by a harvest.
+     */
+    @Asynchronous
+    public void indexDatasets(List<Long> datasetIds) {
+        long start = System.currentTimeMillis();
+        int datasetIndexCount = 0, datasetFailureCount = 0;
+        logger.info("Starting index on " + datasetIds.size() + " datasets.");
+        for (Long id : datasetIds) {
+            try {
+                datasetIndexCount++;
+                logger.fine("indexing dataset " + datasetIndexCount + " of " + datasetIds.size() + " (id=" + id + ")");
+                indexService.indexDatasetInNewTransaction(id);
+            } catch (Exception e) {
+                // (the dataset may have been deleted since, for one)
+                datasetFailureCount++;
+                logger.info("FAILURE indexing dataset " + datasetIndexCount + " of " + datasetIds.size() + " (id=" + id + ") Exception info: " + e.getMessage());
+            }
+        }
+        long end = System.currentTimeMillis();
+        if (datasetFailureCount > 0) {
+            logger.info("There were index failures. " + datasetFailureCount + " dataset(s) failed to index. Please check the log for more information.");
+        }
+        logger.info(datasetIndexCount + " datasets indexed. Total time to index " + (end - start) + ".");
+    }
+
     @Asynchronous
     public void indexDataverseRecursively(Dataverse dataverse) {
         long start = System.currentTimeMillis();
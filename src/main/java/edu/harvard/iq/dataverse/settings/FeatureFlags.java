@@ -101,6 +101,18 @@ public enum FeatureFlags {
      * @since Dataverse 6.4
      */
     DISABLE_DATASET_THUMBNAIL_AUTOSELECT("disable-dataset-thumbnail-autoselect"),
+    /**
+     * With this flag enabled, the ingest of a tabular file reuses the results
+     * of an earlier ingest of a byte-identical file (same checksum, same
+     * format, same version of the ingest plugin) - the DataTable, variables,
+     * summary statistics, UNFs and the stored tab-delimited file are copied,
+     * instead of being produced again.
+     *
+     * @apiNote Raise flag by setting
+     * "dataverse.feature.reuse-ingested-duplicates"
+     * @since Dataverse 6.4
+     */
+    REUSE_INGESTED_DUPLICATES("reuse-ingested-duplicates"),
     ;
     
     final String flag;
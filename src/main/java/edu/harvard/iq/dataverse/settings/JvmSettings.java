@@ -192,6 +192,8 @@ public enum JvmSettings {
     SCOPE_SPI(PREFIX, "spi"),
     SCOPE_EXPORTERS(SCOPE_SPI, "exporters"),
     EXPORTERS_DIRECTORY(SCOPE_EXPORTERS, "directory"),
+    EXPORTERS_PARALLELISM(SCOPE_EXPORTERS, "parallelism"),
+    EXPORTERS_COMPRESSION(SCOPE_EXPORTERS, "compression"),
     SCOPE_PIDPROVIDERS(SCOPE_SPI, "pidproviders"),
     PIDPROVIDERS_DIRECTORY(SCOPE_PIDPROVIDERS, "directory"),
     
@@ -246,6 +248,60 @@ public enum JvmSettings {
     // STORAGE USE SETTINGS
     SCOPE_STORAGEUSE(PREFIX, "storageuse"),
     STORAGEUSE_DISABLE_UPDATES(SCOPE_STORAGEUSE, "disable-storageuse-increments"),
+
+    // INGEST SETTINGS
+    SCOPE_INGEST(PREFIX, "ingest"),
+    SCOPE_INGEST_CSV(SCOPE_INGEST, "csv"),
+    INGEST_CSV_PARALLELISM(SCOPE_INGEST_CSV, "parallelism"),
+    INGEST_CSV_CHUNK_SIZE(SCOPE_INGEST_CSV, "chunk-size"),
+    INGEST_CSV_MAX_BYTES_IN_FLIGHT(SCOPE_INGEST_CSV, "max-bytes-in-flight"),
+    SCOPE_INGEST_RDATA(SCOPE_INGEST, "rdata"),
+    INGEST_RDATA_JAVA_READER(SCOPE_INGEST_RDATA, "java-reader"),
+
+    // HARVESTING CLIENT SETTINGS
+    SCOPE_HARVEST(PREFIX, "harvest"),
+    HARVEST_FETCH_PARALLELISM(SCOPE_HARVEST, "fetch-parallelism"),
+    HARVEST_IMPORT_PARALLELISM(SCOPE_HARVEST, "import-parallelism"),
+    HARVEST_IMPORT_GROUP_SIZE(SCOPE_HARVEST, "import-group-size"),
+
+    // DATABASE SETTINGS CACHE
+    SCOPE_SETTINGS_CACHE(PREFIX, "settings-cache"),
+    SETTINGS_CACHE_MAX_AGE(SCOPE_SETTINGS_CACHE, "max-age"),
+
+    // PERMISSIONS CACHE
+    SCOPE_PERMISSIONS_CACHE(PREFIX, "permissions-cache"),
+    PERMISSIONS_CACHE_SIZE(SCOPE_PERMISSIONS_CACHE, "size"),
+    PERMISSIONS_CACHE_MAX_AGE(SCOPE_PERMISSIONS_CACHE, "max-age"),
+
+    // IP GROUPS
+    SCOPE_IP_GROUPS(PREFIX, "ip-groups"),
+    IP_GROUPS_INDEX_MAX_AGE(SCOPE_IP_GROUPS, "index-max-age"),
+
+    // EXPLICIT GROUPS
+    SCOPE_EXPLICIT_GROUPS(PREFIX, "explicit-groups"),
+    EXPLICIT_GROUPS_INDEX_MAX_AGE(SCOPE_EXPLICIT_GROUPS, "index-max-age"),
+
+    // RATE LIMITING
+    SCOPE_RATE_LIMIT(PREFIX, "rate-limit"),
+    RATE_LIMIT_SYNC_INTERVAL(SCOPE_RATE_LIMIT, "sync-interval"),
+
+    // ACTION LOG
+    SCOPE_ACTION_LOG(PREFIX, "action-log"),
+    ACTION_LOG_QUEUE_SIZE(SCOPE_ACTION_LOG, "queue-size"),
+    ACTION_LOG_BATCH_SIZE(SCOPE_ACTION_LOG, "batch-size"),
+    ACTION_LOG_OVERFLOW(SCOPE_ACTION_LOG, "overflow"),
+    ACTION_LOG_SPILL_DIRECTORY(SCOPE_ACTION_LOG, "spill-directory"),
+
+    // COMMANDS
+    SCOPE_COMMANDS(PREFIX, "commands"),
+    COMMANDS_SLOW_THRESHOLD(SCOPE_COMMANDS, "slow-threshold"),
+    COMMANDS_SLOW_LOG_SIZE(SCOPE_COMMANDS, "slow-log-size"),
+    COMMANDS_SIDE_EFFECTS_WINDOW(SCOPE_COMMANDS, "side-effects-window"),
+
+    // BULK RE-EXPORT SETTINGS
+    SCOPE_REEXPORT(PREFIX, "reexport"),
+    REEXPORT_WORKERS(SCOPE_REEXPORT, "workers"),
+    REEXPORT_MAX_PER_SECOND(SCOPE_REEXPORT, "max-per-second"),
     ;
 
     private static final String SCOPE_SEPARATOR = ".";
@@ -0,0 +1,116 @@
+package edu.harvard.iq.dataverse.settings;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * The settings of the database, in memory: a snapshot of all of them, loaded
+ * at once, that is replaced as a whole when the settings change (or when it
+ * gets older than the maximum age, in case they were changed some other way
+ * than through SettingsServiceBean).
+ *
+ * A snapshot being loaded while the settings change is not kept, as it may
+ * have been loaded before the change.
+ */
+class SettingsCache {
+
+    /**
+     * The settings, as they were at some point, along with the values parsed
+     * from them (the numbers, the json objects, etc.), so that they are
+     * parsed once per snapshot.
+     */
+    static class Snapshot {
+        private final Map<String, String> values = new HashMap<>();
+        private final Map<String, Map<String, String>> localizedValues = new HashMap<>();
+        private final Map<String, Optional<?>> parsedValues = new ConcurrentHashMap<>();
+        private final long generation;
+        private final long loadTime;
+
+        Snapshot(Collection<Setting> settings, long generation, long loadTime) {
+            for (Setting setting : settings) {
+                if (setting.getLang() == null) {
+                    values.put(setting.getName(), setting.getContent());
+                } else {
+                    localizedValues.computeIfAbsent(setting.getName(), name -> new HashMap<>()).put(setting.getLang(), setting.getContent());
+                }
+            }
+            this.generation = generation;
+            this.loadTime = loadTime;
+        }
+
+        /**
+         * @return the value of the setting, or null
+         */
+        String get(String name) {
+            return values.get(name);
+        }
+
+        /**
+         * @return the value of the setting in the language specified, or null
+         */
+        String get(String name, String lang) {
+            Map<String, String> langValues = localizedValues.get(name);
+            return langValues == null ? null : langValues.get(lang);
+        }
+
+        /**
+         * @param kind what the value is parsed as (a number, a json object,
+         * etc.) - a setting can be parsed in different ways
+         * @return the value of the setting, parsed (the parser isn't called
+         * if there is no value), or null
+         */
+        @SuppressWarnings("unchecked")
+        <T> T getParsed(String name, String kind, Function<String, T> parser) {
+            String value = values.get(name);
+            if (value == null) {
+                return null;
+            }
+            // (an exception thrown by the parser is not kept; the value will
+            // be parsed again the next time)
+            return (T) parsedValues.computeIfAbsent(name + ":" + kind, k -> Optional.ofNullable(parser.apply(value))).orElse(null);
+        }
+    }
+
+    private final AtomicLong generation = new AtomicLong();
+    private volatile Snapshot snapshot;
+
+    /**
+     * @param maxAge the maximum age of a snapshot, in milliseconds
+     * @param loader loads all the settings, when there is no snapshot (or it
+     * is too old)
+     * @return the current snapshot
+     */
+    Snapshot get(long maxAge, Supplier<Collection<Setting>> loader) {
+        Snapshot current = snapshot;
+        long now = System.currentTimeMillis();
+        if (current != null && current.generation == generation.get() && now - current.loadTime < maxAge) {
+            return current;
+        }
+        long loadGeneration = generation.get();
+        Snapshot loaded = new Snapshot(loader.get(), loadGeneration, now);
+        synchronized (this) {
+            // (not kept if the settings changed while it was being loaded;
+            // it is still the best there is for this caller)
+            if (generation.get() == loadGeneration) {
+                snapshot = loaded;
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Drops the snapshot; the next call to get() loads the settings again.
+     */
+    void invalidate() {
+        synchronized (this) {
+            generation.incrementAndGet();
+            snapshot = null;
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package edu.harvard.iq.dataverse.settings;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import jakarta.ejb.ConcurrencyManagement;
+import jakarta.ejb.ConcurrencyManagementType;
+import jakarta.ejb.Singleton;
+import jakarta.ejb.Startup;
+import jakarta.ejb.TransactionAttribute;
+import jakarta.ejb.TransactionAttributeType;
+import jakarta.inject.Inject;
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.configuration.FactoryBuilder;
+import javax.cache.configuration.MutableCacheEntryListenerConfiguration;
+import javax.cache.configuration.MutableConfiguration;
+import javax.cache.event.CacheEntryCreatedListener;
+import javax.cache.event.CacheEntryEvent;
+import javax.cache.event.CacheEntryListenerException;
+import javax.cache.event.CacheEntryUpdatedListener;
+
+/**
+ * Keeps the settings in memory, for SettingsServiceBean (see SettingsCache),
+ * and keeps them coherent across the servers of a cluster: a change of the
+ * settings on a server, once committed, is announced through a cache of the
+ * Hazelcast/JCache infrastructure (see also CacheFactoryBean), and the
+ * servers listening to it drop their snapshots.
+ */
+@Singleton
+@Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+@TransactionAttribute(TransactionAttributeType.SUPPORTS)
+public class SettingsCacheBean {
+
+    private static final Logger logger = Logger.getLogger(SettingsCacheBean.class.getCanonicalName());
+
+    public static final String SETTINGS_CHANGES_CACHE = "settingsChangesCache";
+    private static final String CHANGE_KEY = "change";
+    // (the key of the mark of the transactions that changed the settings)
+    private static final String CHANGED_IN_TRANSACTION = SettingsCacheBean.class.getName() + ".changed";
+
+    // (static, for the listeners of the cluster cache, that are not beans)
+    private static final SettingsCache settingsCache = new SettingsCache();
+
+    @Inject
+    CacheManager manager;
+
+    @Resource
+    TransactionSynchronizationRegistry transactionSynchronizationRegistry;
+
+    private long maxAge;
+    private Cache<String, String> changesCache;
+    private MutableCacheEntryListenerConfiguration<String, String> listenerConfiguration;
+
+    @PostConstruct
+    public void init() {
+        maxAge = TimeUnit.SECONDS.toMillis(JvmSettings.SETTINGS_CACHE_MAX_AGE.lookupOptional(Long.class).orElse(60L));
+        if (maxAge <= 0) {
+            logger.info("The settings are not cached");
+            return;
+        }
+        try {
+            changesCache = manager.getCache(SETTINGS_CHANGES_CACHE);
+            if (changesCache == null) {
+                changesCache = manager.createCache(SETTINGS_CHANGES_CACHE,
+                        new MutableConfiguration<String, String>().setTypes(String.class, String.class));
+            }
+            listenerConfiguration = new MutableCacheEntryListenerConfiguration<>(
+                    FactoryBuilder.factoryOf(ChangeListener.class), null, false, false);
+            changesCache.registerCacheEntryListener(listenerConfiguration);
+        } catch (RuntimeException ex) {
+            // (the settings are then only kept coherent by their maximum age)
+            logger.log(Level.WARNING, "No cache for the changes of the settings; the settings of the other servers will be reloaded after "
+                    + maxAge + " ms at most", ex);
+            changesCache = null;
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (changesCache != null && listenerConfiguration != null) {
+            try {
+                changesCache.deregisterCacheEntryListener(listenerConfiguration);
+            } catch (RuntimeException ex) {
+                logger.log(Level.FINE, "Failed to deregister the listener of the changes of the settings", ex);
+            }
+        }
+    }
+
+    /**
+     * @return the current settings, loaded with the loader specified if
+     * they need to be; or null if the settings are not to be cached, or if
+     * they were changed in the current transaction (they are then looked up
+     * in the database, as this transaction sees them, and not shared)
+     */
+    public SettingsCache.Snapshot getSnapshot(Supplier<Collection<Setting>> loader) {
+        if (maxAge <= 0 || isChangedInTransaction()) {
+            return null;
+        }
+        return settingsCache.get(maxAge, loader);
+    }
+
+    /**
+     * To be called when the settings are changed: drops the snapshot, now
+     * and once the change is committed - so that a snapshot loaded in the
+     * meantime, by another transaction, isn't kept - and announces the
+     * change to the other servers. Until then, the transaction making the
+     * change does not load a snapshot (see {@link #getSnapshot(Supplier)}),
+     * so the other threads never see the change before it is committed;
+     * the snapshot is rebuilt by the first read after the commit.
+     */
+    public void settingsChanged() {
+        settingsCache.invalidate();
+        try {
+            if (transactionSynchronizationRegistry != null && transactionSynchronizationRegistry.getTransactionStatus() == Status.STATUS_ACTIVE) {
+                if (transactionSynchronizationRegistry.getResource(CHANGED_IN_TRANSACTION) != null) {
+                    // (the change is announced once the transaction completes already)
+                    return;
+                }
+                transactionSynchronizationRegistry.putResource(CHANGED_IN_TRANSACTION, Boolean.TRUE);
+                transactionSynchronizationRegistry.registerInterposedSynchronization(new Synchronization() {
+                    @Override
+                    public void beforeCompletion() {
+                    }
+
+                    @Override
+                    public void afterCompletion(int status) {
+                        settingsCache.invalidate();
+                        if (status == Status.STATUS_COMMITTED) {
+                            announceChange();
+                        }
+                    }
+                });
+                return;
+            }
+        } catch (IllegalStateException ise) {
+            logger.log(Level.FINE, "Not in a transaction", ise);
+        }
+        announceChange();
+    }
+
+    private boolean isChangedInTransaction() {
+        try {
+            return transactionSynchronizationRegistry != null
+                    && transactionSynchronizationRegistry.getTransactionStatus() == Status.STATUS_ACTIVE
+                    && transactionSynchronizationRegistry.getResource(CHANGED_IN_TRANSACTION) != null;
+        } catch (IllegalStateException ise) {
+            return false;
+        }
+    }
+
+    private void announceChange() {
+        if (changesCache == null) {
+            return;
+        }
+        try {
+            changesCache.put(CHANGE_KEY, UUID.randomUUID().toString());
+        } catch (RuntimeException ex) {
+            logger.log(Level.WARNING, "Failed to announce a change of the settings", ex);
+        }
+    }
+
+    /**
+     * Drops the snapshot of this server when the settings are changed on
+     * any server (including this one).
+     */
+    public static class ChangeListener implements CacheEntryCreatedListener<String, String>,
+            CacheEntryUpdatedListener<String, String>, Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public void onCreated(Iterable<CacheEntryEvent<? extends String, ? extends String>> events) throws CacheEntryListenerException {
+            settingsCache.invalidate();
+        }
+
+        @Override
+        public void onUpdated(Iterable<CacheEntryEvent<? extends String, ? extends String>> events) throws CacheEntryListenerException {
+            settingsCache.invalidate();
+        }
+    }
+}
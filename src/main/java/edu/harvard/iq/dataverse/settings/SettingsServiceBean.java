@@ -26,6 +26,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -702,6 +703,41 @@ public class SettingsServiceBean {
     
     @EJB
     ActionLogServiceBean actionLogSvc;
+
+    @EJB
+    SettingsCacheBean settingsCache;
+
+    /**
+     * @return the settings, as they are in memory (see SettingsCacheBean);
+     * or null if they are not kept in memory, and are to be looked up in
+     * the database
+     */
+    private SettingsCache.Snapshot getSnapshot() {
+        if (settingsCache == null) {
+            return null;
+        }
+        return settingsCache.getSnapshot(() -> em.createNamedQuery("Setting.findAll", Setting.class).getResultList());
+    }
+
+    /**
+     * @param kind what the value is parsed as
+     * @return the value of the setting, parsed - once per snapshot of the
+     * settings, if they are in memory - or null if there is no value
+     */
+    private <T> T getParsed(String name, String kind, Function<String, T> parser) {
+        SettingsCache.Snapshot snapshot = getSnapshot();
+        if (snapshot != null) {
+            return snapshot.getParsed(name, kind, parser);
+        }
+        String val = get(name);
+        return val == null ? null : parser.apply(val);
+    }
+
+    private void settingsChanged() {
+        if (settingsCache != null) {
+            settingsCache.settingsChanged();
+        }
+    }
     
     /**
      * Basic functionality - get the name, return the setting, or {@code null}.
@@ -709,6 +745,10 @@ public class SettingsServiceBean {
      * @return the actual setting, or {@code null}.
      */
     public String get( String name ) {
+        SettingsCache.Snapshot snapshot = getSnapshot();
+        if (snapshot != null) {
+            return snapshot.get(name);
+        }
         List<Setting> tokens = em.createNamedQuery("Setting.findByName", Setting.class)
                 .setParameter("name", name )
                 .getResultList();
@@ -739,19 +779,15 @@ public class SettingsServiceBean {
      */
        public Long getValueForKeyAsLong(Key key){
         
-        String val = this.getValueForKey(key);
-
-        if (val == null){
-            return null;
-        }
-
-        try {
-            long valAsInt = Long.parseLong(val);
-            return valAsInt;
-        } catch (NumberFormatException ex) {
-            logger.log(Level.WARNING, "Incorrect setting.  Could not convert \"{0}\" from setting {1} to long.", new Object[]{val, key.toString()});
-            return null;
-        }
+        return getParsed(key.toString(), "long", val -> {
+            try {
+                long valAsInt = Long.parseLong(val);
+                return valAsInt;
+            } catch (NumberFormatException ex) {
+                logger.log(Level.WARNING, "Incorrect setting.  Could not convert \"{0}\" from setting {1} to long.", new Object[]{val, key.toString()});
+                return null;
+            }
+        });
         
     }
     
@@ -777,7 +813,7 @@ public class SettingsServiceBean {
     		   return Long.parseLong(val);
     	   } catch (NumberFormatException ex) {
     		   try {
-    			   JsonObject settings = JsonUtil.getJsonObject(val);
+    			   JsonObject settings = getParsed(key.toString(), "json", JsonUtil::getJsonObject);
     			   if(settings.containsKey(param)) {
     				   return Long.parseLong(settings.getString(param));
     			   } else if(settings.containsKey("default")) {
@@ -811,7 +847,7 @@ public class SettingsServiceBean {
         }
 
         try {
-            JsonObject settings = JsonUtil.getJsonObject(val);
+            JsonObject settings = getParsed(key.toString(), "json", JsonUtil::getJsonObject);
             if (settings.containsKey(param)) {
                 return Boolean.parseBoolean(settings.getString(param));
             } else if (settings.containsKey("default")) {
@@ -841,6 +877,11 @@ public class SettingsServiceBean {
     }
 
     public String get(String name, String lang, String defaultValue ) {
+        SettingsCache.Snapshot snapshot = getSnapshot();
+        if (snapshot != null) {
+            String val = snapshot.get(name, lang);
+            return (val!=null) ? val : defaultValue;
+        }
         List<Setting> tokens = em.createNamedQuery("Setting.findByNameAndLang", Setting.class)
                 .setParameter("name", name )
                 .setParameter("lang", lang )
@@ -878,6 +919,7 @@ public class SettingsServiceBean {
         }
         
         s = em.merge(s);
+        settingsChanged();
         actionLogSvc.log( new ActionLogRecord(ActionLogRecord.ActionType.Setting, "set")
                             .setInfo(name + ": " + content));
         return s;
@@ -902,6 +944,7 @@ public class SettingsServiceBean {
         }
         
         em.merge(s);
+        settingsChanged();
         actionLogSvc.log( new ActionLogRecord(ActionLogRecord.ActionType.Setting, "set")
                 .setInfo(name + ": " +lang + ": " + content));
         return s;
@@ -950,6 +993,7 @@ public class SettingsServiceBean {
         em.createNamedQuery("Setting.deleteByName")
                 .setParameter("name", name)
                 .executeUpdate();
+        settingsChanged();
     }
 
     public void delete( String name, String lang ) {
@@ -959,6 +1003,7 @@ public class SettingsServiceBean {
                 .setParameter("name", name)
                 .setParameter("lang", lang)
                 .executeUpdate();
+        settingsChanged();
     }
     
     public Set<Setting> listAll() {
@@ -1,9 +1,14 @@
 package edu.harvard.iq.dataverse.util.cache;
 
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
 import edu.harvard.iq.dataverse.authorization.users.User;
 import edu.harvard.iq.dataverse.engine.command.Command;
+import edu.harvard.iq.dataverse.settings.JvmSettings;
 import edu.harvard.iq.dataverse.util.SystemConfig;
 import jakarta.annotation.PostConstruct;
+import jakarta.ejb.ConcurrencyManagement;
+import jakarta.ejb.ConcurrencyManagementType;
 import jakarta.ejb.EJB;
 import jakarta.ejb.Singleton;
 import jakarta.ejb.Startup;
@@ -14,10 +19,12 @@ import javax.cache.CacheManager;
 import javax.cache.configuration.CompleteConfiguration;
 import javax.cache.configuration.MutableConfiguration;
 import javax.cache.spi.CachingProvider;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 @Singleton
 @Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
 public class CacheFactoryBean implements java.io.Serializable {
     private static final Logger logger = Logger.getLogger(CacheFactoryBean.class.getCanonicalName());
     // Retrieved from Hazelcast, implements ConcurrentMap and is threadsafe
@@ -30,8 +37,17 @@ public class CacheFactoryBean implements java.io.Serializable {
     CachingProvider provider;
     public final static String RATE_LIMIT_CACHE = "rateLimitCache";
 
+    // The buckets of this server, by cache key (see RateLimitUtil.generateCacheKey);
+    // a bucket that is not used for an hour is full again, and is dropped
+    private final transient LoadingCache<String, TokenBucket> buckets = Caffeine.newBuilder()
+            .expireAfterAccess(1, TimeUnit.HOURS)
+            .build(TokenBucket::new);
+    private long synchronizationInterval = TimeUnit.SECONDS.toMicros(1);
+
     @PostConstruct
     public void init() {
+        synchronizationInterval = TimeUnit.MILLISECONDS.toMicros(
+                JvmSettings.RATE_LIMIT_SYNC_INTERVAL.lookupOptional(Long.class).orElse(1000L));
         rateLimitCache = manager.getCache(RATE_LIMIT_CACHE);
         if (rateLimitCache == null) {
             CompleteConfiguration<String, String> config =
@@ -53,8 +69,10 @@ public class CacheFactoryBean implements java.io.Serializable {
         if (capacity == RateLimitUtil.NO_LIMIT) {
             return true;
         } else {
-            String cacheKey = RateLimitUtil.generateCacheKey(user, action);
-            return (!RateLimitUtil.rateLimited(rateLimitCache, cacheKey, capacity));
+            TokenBucket bucket = buckets.get(RateLimitUtil.generateCacheKey(user, action));
+            long now = TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+            bucket.synchronizeIfDue(rateLimitCache, synchronizationInterval, now);
+            return bucket.tryAcquire(capacity, now);
         }
     }
 }
@@ -0,0 +1,127 @@
+package edu.harvard.iq.dataverse.util.cache;
+
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.cache.Cache;
+import javax.cache.processor.EntryProcessor;
+import javax.cache.processor.MutableEntry;
+
+/**
+ * The rate limiting bucket of a user and an action, on this server. The
+ * bucket holds the calls of an hour, and is refilled continuously.
+ *
+ * Rather than a number of tokens and the time of the last refill, the bucket
+ * keeps the time at which it would be full again (the "theoretical arrival
+ * time" of the generic cell rate algorithm), in one atomic number: a call
+ * moves that time forward by the interval between two calls at the allowed
+ * rate, unless that would put it more than an hour ahead of now. Checking a
+ * call is then a compare-and-set, without any lock.
+ *
+ * The calls allowed on this server are added to the shared bucket of the
+ * cluster, in the rate limit cache, once per synchronization interval (and
+ * at the first call), by an atomic entry processor; the bucket of this
+ * server then catches up with the calls allowed on the other servers. A
+ * cluster can therefore let through, per server, up to a synchronization
+ * interval's worth of calls more than the limit.
+ */
+class TokenBucket {
+
+    private static final Logger logger = Logger.getLogger(TokenBucket.class.getCanonicalName());
+
+    // (the times are in microseconds since the epoch)
+    static final long HOUR = TimeUnit.HOURS.toMicros(1);
+
+    private final String cacheKey;
+    private final AtomicLong fullAt = new AtomicLong();
+    // (the time the calls allowed since the last synchronization moved fullAt forward)
+    private final AtomicLong unsynchronized = new AtomicLong();
+    private final AtomicLong nextSynchronization = new AtomicLong();
+
+    /**
+     * @param cacheKey the key of the bucket in the rate limit cache
+     */
+    TokenBucket(String cacheKey) {
+        this.cacheKey = cacheKey;
+    }
+
+    /**
+     * @param capacityPerHour the number of calls allowed per hour
+     * @param now the current time, in microseconds
+     * @return true if the call is allowed (and counted), false if it is rate
+     * limited
+     */
+    boolean tryAcquire(int capacityPerHour, long now) {
+        if (capacityPerHour <= 0) {
+            return false;
+        }
+        long interval = Math.max(1, HOUR / capacityPerHour);
+        while (true) {
+            long current = fullAt.get();
+            long next = Math.max(current, now) + interval;
+            if (next - now > HOUR) {
+                return false;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                unsynchronized.addAndGet(interval);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Synchronizes the bucket with the shared bucket of the cluster, if it is
+     * time to (by one of the threads calling at that time).
+     * @param cache the rate limit cache
+     * @param interval the synchronization interval, in microseconds
+     * @param now the current time, in microseconds
+     */
+    void synchronizeIfDue(Cache<String, String> cache, long interval, long now) {
+        long due = nextSynchronization.get();
+        if (now < due || !nextSynchronization.compareAndSet(due, now + interval)) {
+            return;
+        }
+        long consumed = unsynchronized.getAndSet(0);
+        try {
+            Long shared = cache.invoke(cacheKey, new Synchronization(), consumed, now);
+            if (shared != null) {
+                fullAt.accumulateAndGet(shared, Math::max);
+            }
+        } catch (RuntimeException ex) {
+            logger.log(Level.FINE, "Failed to synchronize the rate limit bucket " + cacheKey, ex);
+            unsynchronized.addAndGet(consumed);
+        }
+    }
+
+    /**
+     * Adds the calls allowed on a server to the shared bucket.
+     * Arguments: the time these calls moved the bucket of the server forward,
+     * and the current time (both in microseconds).
+     * Returns the time at which the shared bucket will be full again.
+     */
+    static class Synchronization implements EntryProcessor<String, String, Long>, Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public Long process(MutableEntry<String, String> entry, Object... arguments) {
+            long consumed = (Long) arguments[0];
+            long now = (Long) arguments[1];
+            long fullAt = now;
+            if (entry.exists()) {
+                try {
+                    fullAt = Long.parseLong(entry.getValue());
+                } catch (NumberFormatException nfe) {
+                    // (not a time; considered full)
+                }
+            }
+            long updated = Math.max(fullAt, now) + consumed;
+            if (consumed > 0 || !entry.exists()) {
+                entry.setValue(Long.toString(updated));
+            }
+            return updated;
+        }
+    }
+}
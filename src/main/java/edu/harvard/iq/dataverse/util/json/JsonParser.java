@@ -78,6 +78,14 @@ public class JsonParser {
      * if lenient, we will accept alternate spellings for controlled vocabulary values
      */
     boolean lenient = false;  
+    
+    /**
+     * if set, the lookups of the field types and of the controlled vocabulary
+     * values are cached; for a parser that parses a number of datasets in the
+     * same transaction (the cached entities are only good in it)
+     */
+    Map<String, DatasetFieldType> fieldTypeCache = null;
+    Map<String, ControlledVocabularyValue> controlledVocabularyValueCache = null;
 
     @Deprecated
     public JsonParser(DatasetFieldServiceBean datasetFieldSvc, MetadataBlockServiceBean blockService, SettingsServiceBean settingsService) {
@@ -112,6 +120,37 @@ public class JsonParser {
         this.lenient = lenient;
     }
 
+    public boolean isCachingLookups() {
+        return fieldTypeCache != null;
+    }
+
+    public void setCachingLookups(boolean cachingLookups) {
+        fieldTypeCache = cachingLookups ? new HashMap<>() : null;
+        controlledVocabularyValueCache = cachingLookups ? new HashMap<>() : null;
+    }
+
+    private DatasetFieldType findFieldType(String name) {
+        if (fieldTypeCache == null) {
+            return datasetFieldSvc.findByNameOpt(name);
+        }
+        // (the types not found are cached, too)
+        if (!fieldTypeCache.containsKey(name)) {
+            fieldTypeCache.put(name, datasetFieldSvc.findByNameOpt(name));
+        }
+        return fieldTypeCache.get(name);
+    }
+
+    private ControlledVocabularyValue findControlledVocabularyValue(DatasetFieldType cvvType, String strValue) {
+        if (controlledVocabularyValueCache == null) {
+            return datasetFieldSvc.findControlledVocabularyValueByDatasetFieldTypeAndStrValue(cvvType, strValue, lenient);
+        }
+        String key = cvvType.getName() + "|" + lenient + "|" + strValue;
+        if (!controlledVocabularyValueCache.containsKey(key)) {
+            controlledVocabularyValueCache.put(key, datasetFieldSvc.findControlledVocabularyValueByDatasetFieldTypeAndStrValue(cvvType, strValue, lenient));
+        }
+        return controlledVocabularyValueCache.get(key);
+    }
+
     public Dataverse parseDataverse(JsonObject jobj) throws JsonParseException {
         Dataverse dv = new Dataverse();
 
@@ -541,7 +580,7 @@ public class JsonParser {
                         fields.add(field);
                     }
                 } catch (CompoundVocabularyException ex) {
-                    DatasetFieldType fieldType = datasetFieldSvc.findByNameOpt(fieldJson.getString("typeName", ""));
+                    DatasetFieldType fieldType = findFieldType(fieldJson.getString("typeName", ""));
                     if (lenient && (DatasetFieldConstant.geographicCoverage).equals(fieldType.getName())) {
                         fields.add(remapGeographicCoverage( ex));                       
                     } else {
@@ -709,7 +748,7 @@ public class JsonParser {
     
     public DatasetField parseFieldForDelete(JsonObject json) throws JsonParseException{
         DatasetField ret = new DatasetField();
-        DatasetFieldType type = datasetFieldSvc.findByNameOpt(json.getString("typeName", ""));   
+        DatasetFieldType type = findFieldType(json.getString("typeName", ""));   
         if (type == null) {
             throw new JsonParseException("Can't find type '" + json.getString("typeName", "") + "'");
         }
@@ -728,7 +767,7 @@ public class JsonParser {
         }
 
         DatasetField ret = new DatasetField();
-        DatasetFieldType type = datasetFieldSvc.findByNameOpt(json.getString("typeName", ""));
+        DatasetFieldType type = findFieldType(json.getString("typeName", ""));
     
 
         if (type == null) {
@@ -936,7 +975,7 @@ public class JsonParser {
                 }
                 for (JsonString strVal : json.getJsonArray("value").getValuesAs(JsonString.class)) {
                     String strValue = strVal.getString();
-                    ControlledVocabularyValue cvv = datasetFieldSvc.findControlledVocabularyValueByDatasetFieldTypeAndStrValue(cvvType, strValue, lenient);
+                    ControlledVocabularyValue cvv = findControlledVocabularyValue(cvvType, strValue);
                     if (cvv == null) {
                         if (allowHarvestingMissingCVV) {
                             // we need to process these as primitive values
@@ -961,7 +1000,7 @@ public class JsonParser {
                     throw new JsonParseException("Invalid value submitted for " + cvvType.getName() + ". It should be a single value.");
                 }
                 String strValue = json.getString("value", "");
-                ControlledVocabularyValue cvv = datasetFieldSvc.findControlledVocabularyValueByDatasetFieldTypeAndStrValue(cvvType, strValue, lenient);
+                ControlledVocabularyValue cvv = findControlledVocabularyValue(cvvType, strValue);
                 if (cvv == null) {
                     if (allowHarvestingMissingCVV) {
                         // we need to process this as a primitive value
@@ -1011,6 +1050,7 @@ public class JsonParser {
         harvestingClient.setHarvestingSet(obj.getString("set",null));
         harvestingClient.setCustomHttpHeaders(obj.getString("customHeaders", null));
         harvestingClient.setAllowHarvestingMissingCVV(obj.getBoolean("allowHarvestingMissingCVV", false));
+        harvestingClient.setUseListRecords(obj.getBoolean("useListRecords", false));
 
         return dataverseAlias;
     }
@@ -28,6 +28,7 @@ import edu.harvard.iq.dataverse.datavariable.VariableMetadata;
 import edu.harvard.iq.dataverse.datavariable.VariableRange;
 import edu.harvard.iq.dataverse.license.License;
 import edu.harvard.iq.dataverse.globus.FileDetailsHolder;
+import edu.harvard.iq.dataverse.export.ReExportJob;
 import edu.harvard.iq.dataverse.harvest.client.HarvestingClient;
 import edu.harvard.iq.dataverse.privateurl.PrivateUrl;
 import edu.harvard.iq.dataverse.settings.SettingsServiceBean;
@@ -761,6 +762,14 @@ public class JsonPrinter {
     }
 
     public static JsonObjectBuilder json(DataFile df, FileMetadata fileMetadata, boolean forExportDataProvider, boolean returnOwners) {
+        return json(df, fileMetadata, forExportDataProvider, returnOwners, true);
+    }
+
+    /**
+     * @param includeVariables false to leave the variables out of the data
+     * tables (when exporting, for the variables to be read a page at a time)
+     */
+    public static JsonObjectBuilder json(DataFile df, FileMetadata fileMetadata, boolean forExportDataProvider, boolean returnOwners, boolean includeVariables) {
         // File names are no longer stored in the DataFile entity; 
         // (they are instead in the FileMetadata (as "labels") - this way 
         // the filename can change between versions... 
@@ -833,7 +842,7 @@ public class JsonPrinter {
         if (forExportDataProvider) {
             builder.add("restricted", df.isRestricted())
             .add("fileMetadataId", fileMetadata.getId())
-            .add("dataTables", df.getDataTables().isEmpty() ? null : JsonPrinter.jsonDT(df.getDataTables()))
+            .add("dataTables", df.getDataTables().isEmpty() ? null : JsonPrinter.jsonDT(df.getDataTables(), includeVariables))
             .add("varGroups", fileMetadata.getVarGroups().isEmpty()
                     ? JsonPrinter.jsonVarGroup(fileMetadata.getVarGroups())
                     : null);
@@ -846,20 +855,28 @@ public class JsonPrinter {
 
     //Started from https://github.com/RENCI-NRIG/dataverse/, i.e. https://github.com/RENCI-NRIG/dataverse/commit/2b5a1225b42cf1caba85e18abfeb952171c6754a
     public static JsonArrayBuilder jsonDT(List<DataTable> ldt) {
+        return jsonDT(ldt, true);
+    }
+
+    public static JsonArrayBuilder jsonDT(List<DataTable> ldt, boolean includeVariables) {
         JsonArrayBuilder ldtArr = Json.createArrayBuilder();
         for(DataTable dt: ldt){
-            ldtArr.add(JsonPrinter.json(dt));
+            ldtArr.add(JsonPrinter.json(dt, includeVariables));
         }
         return ldtArr;
     }
 
     public static JsonObjectBuilder json(DataTable dt) {
+        return json(dt, true);
+    }
+
+    public static JsonObjectBuilder json(DataTable dt, boolean includeVariables) {
         return jsonObjectBuilder()
                 .add("varQuantity", dt.getVarQuantity())
                 .add("caseQuantity", dt.getCaseQuantity())
                 .add("recordsPerCase", dt.getRecordsPerCase())
                 .add("UNF", dt.getUnf())
-                .add("dataVariables", JsonPrinter.jsonDV(dt.getDataVariables()))
+                .add("dataVariables", includeVariables ? JsonPrinter.jsonDV(dt.getDataVariables()) : null)
                 ;
     }
 
@@ -1010,6 +1027,7 @@ public class JsonPrinter {
                 add("status", harvestingClient.isHarvestingNow() ? "inProgress" : "inActive").
                 add("customHeaders", harvestingClient.getCustomHttpHeaders()).
                 add("allowHarvestingMissingCVV", harvestingClient.getAllowHarvestingMissingCVV()).
+                add("useListRecords", harvestingClient.getUseListRecords()).
                 add("lastHarvest", harvestingClient.getLastHarvestTime() == null ? null : harvestingClient.getLastHarvestTime().toString()).
                 add("lastResult", harvestingClient.getLastResult()).
                 add("lastSuccessful", harvestingClient.getLastSuccessfulHarvestTime() == null ? null : harvestingClient.getLastSuccessfulHarvestTime().toString()).
@@ -1019,6 +1037,32 @@ public class JsonPrinter {
                 add("lastDatasetsFailed", harvestingClient.getLastFailedDatasetCount()); // == null ? "N/A" : harvestingClient.getLastFailedDatasetCount().toString());
     }
 
+    public static JsonObjectBuilder json(ReExportJob job) {
+        if (job == null) {
+            return null;
+        }
+        JsonArrayBuilder failedDatasetIds = Json.createArrayBuilder();
+        for (Long datasetId : job.getFailedDatasetIds()) {
+            failedDatasetIds.add(datasetId);
+        }
+
+        return jsonObjectBuilder().add("id", job.getId()).
+                add("status", job.getStatus().toString()).
+                add("forceReExport", job.isForceReExport()).
+                add("stopRequested", job.isStopRequested()).
+                add("startTime", format(job.getStartTime())).
+                add("lastUpdateTime", format(job.getLastUpdateTime())).
+                add("finishTime", format(job.getFinishTime())).
+                add("lastDatasetId", job.getLastDatasetId()).
+                add("processed", job.getProcessedCount()).
+                add("exported", job.getExportedCount()).
+                add("skipped", job.getSkippedCount()).
+                add("failed", job.getFailedCount()).
+                add("runningTimeSeconds", job.getRunningTime() / 1000).
+                add("datasetsPerSecond", Math.round(job.getThroughput() * 100) / 100.0).
+                add("failedDatasetIds", failedDatasetIds);
+    }
+
     public static String format(Date d) {
         return (d == null) ? null : Util.getDateTimeFormat().format(d);
     }
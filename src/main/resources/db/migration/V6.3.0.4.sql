@@ -0,0 +1,3 @@
+-- Identifies the ingest plugin that produced a datatable, so that the ingest
+-- of byte-identical files can be reused:
+ALTER TABLE datatable ADD COLUMN IF NOT EXISTS ingestPluginVersion VARCHAR(255);
@@ -0,0 +1,5 @@
+-- Supports the keyset pagination of the OAI-PMH ListRecords/ListIdentifiers
+-- (records of a set, ordered by the global id), and the lookup of the other
+-- sets of the records on a page:
+CREATE INDEX IF NOT EXISTS index_oairecord_setname_globalid_id ON oairecord (setname, globalid, id);
+CREATE INDEX IF NOT EXISTS index_oairecord_globalid ON oairecord (globalid);
@@ -0,0 +1 @@
+ALTER TABLE harvestingclient ADD COLUMN IF NOT EXISTS uselistrecords BOOLEAN DEFAULT FALSE;
@@ -0,0 +1,20 @@
+ALTER TABLE datasetversion ADD COLUMN IF NOT EXISTS nextembargoend DATE;
+CREATE INDEX IF NOT EXISTS index_datasetversion_nextembargoend ON datasetversion (nextembargoend);
+
+-- The first embargo end after the last export, for the latest released
+-- version of each dataset exported:
+UPDATE datasetversion dv SET nextembargoend = (
+    SELECT MIN(e.dateavailable)
+    FROM filemetadata fm
+    JOIN datafile df ON df.id = fm.datafile_id
+    JOIN embargo e ON e.id = df.embargo_id
+    JOIN dataset ds ON ds.id = dv.dataset_id
+    WHERE fm.datasetversion_id = dv.id
+    AND e.dateavailable > CAST(ds.lastexporttime AS DATE))
+WHERE dv.versionstate = 'RELEASED'
+AND NOT EXISTS (
+    SELECT 1 FROM datasetversion later
+    WHERE later.dataset_id = dv.dataset_id
+    AND later.versionstate = 'RELEASED'
+    AND (later.versionnumber > dv.versionnumber
+        OR (later.versionnumber = dv.versionnumber AND later.minorversionnumber > dv.minorversionnumber)));
@@ -0,0 +1,3 @@
+-- Marks the datatables produced by an ingest with extra options (a text
+-- encoding, a labels file), the results of which are not reused:
+ALTER TABLE datatable ADD COLUMN IF NOT EXISTS ingestedWithOptions BOOLEAN NOT NULL DEFAULT FALSE;
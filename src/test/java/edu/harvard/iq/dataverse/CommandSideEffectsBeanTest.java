@@ -0,0 +1,110 @@
+package edu.harvard.iq.dataverse;
+
+import edu.harvard.iq.dataverse.engine.CommandSideEffects;
+import java.util.ArrayList;
+import java.util.List;
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CommandSideEffectsBeanTest {
+
+    private CommandSideEffectsBean bean;
+    private TransactionSynchronizationRegistry registry;
+    private final List<String> ran = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp() {
+        registry = mock(TransactionSynchronizationRegistry.class);
+        bean = new CommandSideEffectsBean();
+        bean.transactionSynchronizationRegistry = registry;
+        bean.init();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        while (CommandSideEffects.current() != null) {
+            CommandSideEffects.current().exit();
+        }
+    }
+
+    /**
+     * Submits a command that indexes the dataset specified, the way
+     * EjbDataverseEngine does.
+     */
+    private void submit(long datasetId, boolean fails) {
+        CommandSideEffects effects = CommandSideEffects.enter();
+        boolean failed = false;
+        try {
+            CommandSideEffects.defer(CommandSideEffects.Type.INDEX_DATASET, datasetId, datasetId,
+                    (earlier, later) -> later, id -> ran.add("index-dataset " + id));
+            if (fails) {
+                throw new IllegalStateException("command failed");
+            }
+        } catch (IllegalStateException ex) {
+            failed = true;
+        } finally {
+            if (effects.exit()) {
+                bean.completed(effects, failed);
+            }
+        }
+    }
+
+    @Test
+    public void testFailedCommand() {
+        when(registry.getTransactionStatus()).thenReturn(Status.STATUS_ACTIVE);
+        submit(1L, true);
+        assertTrue(ran.isEmpty());
+        verify(registry, never()).registerInterposedSynchronization(any());
+
+        when(registry.getTransactionStatus()).thenReturn(Status.STATUS_NO_TRANSACTION);
+        submit(2L, true);
+        assertTrue(ran.isEmpty());
+    }
+
+    @Test
+    public void testRunAfterCommit() {
+        when(registry.getTransactionStatus()).thenReturn(Status.STATUS_ACTIVE);
+        submit(1L, false);
+        assertTrue(ran.isEmpty());
+
+        ArgumentCaptor<Synchronization> synchronization = ArgumentCaptor.forClass(Synchronization.class);
+        verify(registry).registerInterposedSynchronization(synchronization.capture());
+        synchronization.getValue().afterCompletion(Status.STATUS_COMMITTED);
+        assertEquals(List.of("index-dataset 1"), ran);
+    }
+
+    @Test
+    public void testDiscardedAfterRollback() {
+        when(registry.getTransactionStatus()).thenReturn(Status.STATUS_ACTIVE);
+        submit(1L, false);
+
+        ArgumentCaptor<Synchronization> synchronization = ArgumentCaptor.forClass(Synchronization.class);
+        verify(registry).registerInterposedSynchronization(synchronization.capture());
+        synchronization.getValue().afterCompletion(Status.STATUS_ROLLEDBACK);
+        assertTrue(ran.isEmpty());
+
+        when(registry.getTransactionStatus()).thenReturn(Status.STATUS_MARKED_ROLLBACK);
+        submit(2L, false);
+        assertTrue(ran.isEmpty());
+    }
+
+    @Test
+    public void testRunWithoutTransaction() {
+        when(registry.getTransactionStatus()).thenReturn(Status.STATUS_NO_TRANSACTION);
+        submit(1L, false);
+        assertEquals(List.of("index-dataset 1"), ran);
+    }
+}
@@ -10,6 +10,8 @@ import java.net.URI;
 import java.sql.Timestamp;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
@@ -21,6 +23,7 @@ import jakarta.json.JsonObject;
 import jakarta.json.JsonReader;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.AfterAll;
@@ -200,4 +203,30 @@ public class DatasetVersionTest {
         assertEquals("LibraScholar", obj.getJsonObject("includedInDataCatalog").getString("name"));
     }
 
+    @Test
+    public void testFindNextEmbargoEnd() {
+        LocalDate exportDate = LocalDate.of(2024, 5, 1);
+        Embargo ended = new Embargo(LocalDate.of(2024, 4, 1), "ended");
+        ended.setId(1L);
+        Embargo next = new Embargo(LocalDate.of(2024, 6, 1), "next");
+        next.setId(2L);
+        Embargo later = new Embargo(LocalDate.of(2025, 1, 1), "later");
+        later.setId(3L);
+
+        DatasetVersion version = new DatasetVersion();
+        List<FileMetadata> fileMetadatas = new ArrayList<>();
+        for (Embargo embargo : Arrays.asList(later, ended, null, next, later)) {
+            DataFile dataFile = new DataFile();
+            dataFile.setEmbargo(embargo);
+            FileMetadata fileMetadata = new FileMetadata();
+            fileMetadata.setDataFile(dataFile);
+            fileMetadatas.add(fileMetadata);
+        }
+        version.setFileMetadatas(fileMetadatas);
+
+        assertEquals(LocalDate.of(2024, 6, 1), version.findNextEmbargoEnd(exportDate));
+        assertEquals(LocalDate.of(2025, 1, 1), version.findNextEmbargoEnd(LocalDate.of(2024, 6, 1)));
+        assertNull(version.findNextEmbargoEnd(LocalDate.of(2025, 1, 1)));
+    }
+
 }
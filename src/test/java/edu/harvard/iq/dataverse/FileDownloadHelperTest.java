@@ -12,9 +12,15 @@ import org.mockito.junit.jupiter.MockitoExtension;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
 
 @ExtendWith(MockitoExtension.class)
 class FileDownloadHelperTest {
@@ -339,6 +345,38 @@ class FileDownloadHelperTest {
     }
 
 
+    @Test
+    void testCheckDownloadPermissions() {
+        DatasetVersion datasetVersion = new DatasetVersion();
+        datasetVersion.setVersionState(DatasetVersion.VersionState.RELEASED);
+        List<FileMetadata> fileMetadatas = new ArrayList<>();
+        for (long id = 1; id <= 3; id++) {
+            DataFile dataFile = new DataFile();
+            dataFile.setId(10 + id);
+            FileMetadata fileMetadata = new FileMetadata();
+            fileMetadata.setId(id);
+            fileMetadata.setRestricted(id != 3);
+            fileMetadata.setDataFile(dataFile);
+            fileMetadata.setDatasetVersion(datasetVersion);
+            fileMetadatas.add(fileMetadata);
+        }
+
+        // (only the restricted files are checked, at once)
+        when(permissionServiceBean.whichHavePermissionsFor(ArgumentMatchers.any(), ArgumentMatchers.anyCollection(), ArgumentMatchers.eq(EnumSet.of(Permission.DownloadFile))))
+                .thenAnswer(invocation -> {
+                    Collection<DataFile> dataFiles = invocation.getArgument(1);
+                    assertEquals(2, dataFiles.size());
+                    return List.of(fileMetadatas.get(0).getDataFile());
+                });
+        fileDownloadHelper.checkDownloadPermissions(fileMetadatas);
+
+        assertTrue(fileDownloadHelper.canDownloadFile(fileMetadatas.get(0)));
+        assertFalse(fileDownloadHelper.canDownloadFile(fileMetadatas.get(1)));
+        assertTrue(fileDownloadHelper.canDownloadFile(fileMetadatas.get(2)));
+        verify(permissionServiceBean, never()).requestOn(ArgumentMatchers.any(), ArgumentMatchers.any());
+    }
+
+
     private void mockPermissionResponseUserOn(Permission permission, boolean response) {
         PermissionServiceBean.StaticPermissionQuery staticPermissionQuery = mock(PermissionServiceBean.StaticPermissionQuery.class);
 
@@ -0,0 +1,137 @@
+package edu.harvard.iq.dataverse;
+
+import edu.harvard.iq.dataverse.authorization.Permission;
+import edu.harvard.iq.dataverse.authorization.RoleAssignee;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class PermissionCacheBeanTest {
+
+    private PermissionCacheBean bean;
+    private Cache<String, String> changesCache;
+    private final Map<Object, Object> transactionResources = new HashMap<>();
+    private int transactionStatus = Status.STATUS_NO_TRANSACTION;
+    private Set<RoleAssignee> user;
+    private Dataset dataset;
+    private Set<Permission> granted;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        changesCache = mock(Cache.class);
+        CacheManager manager = mock(CacheManager.class);
+        when(manager.getCache(PermissionCacheBean.PERMISSIONS_CHANGES_CACHE)).thenReturn((Cache) changesCache);
+
+        TransactionSynchronizationRegistry registry = mock(TransactionSynchronizationRegistry.class);
+        when(registry.getTransactionStatus()).thenAnswer(invocation -> transactionStatus);
+        when(registry.getResource(any())).thenAnswer(invocation -> transactionResources.get(invocation.getArgument(0)));
+        doAnswer(invocation -> transactionResources.put(invocation.getArgument(0), invocation.getArgument(1)))
+                .when(registry).putResource(any(), any());
+
+        bean = new PermissionCacheBean();
+        bean.manager = manager;
+        bean.transactionSynchronizationRegistry = registry;
+        bean.init();
+        clearInvocations(changesCache);
+
+        RoleAssignee assignee = mock(RoleAssignee.class);
+        when(assignee.getIdentifier()).thenReturn("@user");
+        user = Set.of(assignee);
+        dataset = new Dataset();
+        dataset.setId(2L);
+        granted = EnumSet.noneOf(Permission.class);
+        loads = new AtomicInteger();
+    }
+
+    private Supplier<PermissionCache.Loaded> loader() {
+        return () -> {
+            loads.incrementAndGet();
+            return new PermissionCache.Loaded(EnumSet.copyOf(granted), List.of(2L, 1L));
+        };
+    }
+
+    private Set<Permission> get() {
+        return bean.getRolePermissions(user, dataset, loader());
+    }
+
+    @Test
+    public void testAssignmentNotSharedBeforeCommit() {
+        assertEquals(EnumSet.noneOf(Permission.class), get());
+
+        // A transaction assigns a role to the user:
+        transactionStatus = Status.STATUS_ACTIVE;
+        granted.add(Permission.EditDataset);
+        bean.assigneeChanged("@user");
+        bean.dvObjectChanged(dataset);
+        ArgumentCaptor<Synchronization> synchronization = ArgumentCaptor.forClass(Synchronization.class);
+        verify(bean.transactionSynchronizationRegistry, times(1)).registerInterposedSynchronization(synchronization.capture());
+
+        // (it sees the new permissions, loaded each time, and not cached)
+        assertEquals(EnumSet.of(Permission.EditDataset), get());
+        assertEquals(EnumSet.of(Permission.EditDataset), get());
+        assertEquals(3, loads.get());
+
+        // Another transaction, meanwhile, gets the permissions as committed:
+        Map<Object, Object> changingTransaction = new HashMap<>(transactionResources);
+        transactionResources.clear();
+        granted.clear();
+        assertEquals(EnumSet.noneOf(Permission.class), get());
+        assertEquals(EnumSet.noneOf(Permission.class), get());
+        assertEquals(4, loads.get());
+
+        // The assignment is rolled back: nothing is announced
+        transactionResources.putAll(changingTransaction);
+        synchronization.getValue().afterCompletion(Status.STATUS_ROLLEDBACK);
+        transactionResources.clear();
+        transactionStatus = Status.STATUS_NO_TRANSACTION;
+        verify(changesCache, never()).put(eq("change"), anyString());
+        assertEquals(EnumSet.noneOf(Permission.class), get());
+    }
+
+    @Test
+    public void testAssignmentSharedAfterCommit() {
+        assertEquals(EnumSet.noneOf(Permission.class), get());
+
+        transactionStatus = Status.STATUS_ACTIVE;
+        granted.add(Permission.EditDataset);
+        bean.assigneeChanged("@user");
+        bean.dvObjectChanged(dataset);
+        ArgumentCaptor<Synchronization> synchronization = ArgumentCaptor.forClass(Synchronization.class);
+        verify(bean.transactionSynchronizationRegistry).registerInterposedSynchronization(synchronization.capture());
+
+        synchronization.getValue().afterCompletion(Status.STATUS_COMMITTED);
+        transactionResources.clear();
+        transactionStatus = Status.STATUS_NO_TRANSACTION;
+        // (both changes are announced)
+        verify(changesCache, times(2)).put(eq("change"), anyString());
+        assertEquals(EnumSet.of(Permission.EditDataset), get());
+        assertEquals(EnumSet.of(Permission.EditDataset), get());
+        assertEquals(2, loads.get());
+    }
+}
@@ -0,0 +1,114 @@
+package edu.harvard.iq.dataverse;
+
+import edu.harvard.iq.dataverse.authorization.Permission;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PermissionCacheTest {
+
+    // (a file, 3, in a dataset, 2, in a collection, 1, that is a permission root)
+    private static final List<Long> FILE_ANCESTORS = List.of(3L, 2L, 1L);
+    private static final List<String> USER_AND_GROUPS = List.of("@user", ":authenticated-users");
+
+    private PermissionCache cache;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    public void setUp() {
+        cache = new PermissionCache(100, 60000);
+        loads = new AtomicInteger();
+    }
+
+    private Supplier<PermissionCache.Loaded> loader(Set<Permission> permissions) {
+        return () -> {
+            loads.incrementAndGet();
+            return new PermissionCache.Loaded(permissions, FILE_ANCESTORS);
+        };
+    }
+
+    private Set<Permission> get() {
+        return cache.get(USER_AND_GROUPS, 3, loader(EnumSet.of(Permission.DownloadFile)));
+    }
+
+    @Test
+    public void testLoadedOnce() {
+        assertEquals(EnumSet.of(Permission.DownloadFile), get());
+        // (whatever the order of the role assignees)
+        assertEquals(EnumSet.of(Permission.DownloadFile),
+                cache.get(List.of(":authenticated-users", "@user"), 3, loader(EnumSet.noneOf(Permission.class))));
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+
+        // (the permissions returned are a copy)
+        get().add(Permission.EditDataset);
+        assertEquals(EnumSet.of(Permission.DownloadFile), get());
+    }
+
+    @Test
+    public void testNoPermissions() {
+        assertTrue(cache.get(USER_AND_GROUPS, 3, loader(EnumSet.noneOf(Permission.class))).isEmpty());
+        assertTrue(cache.get(USER_AND_GROUPS, 3, loader(EnumSet.noneOf(Permission.class))).isEmpty());
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void testOtherAssignees() {
+        get();
+        cache.get(List.of("@user"), 3, loader(EnumSet.noneOf(Permission.class)));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testInvalidateDvObject() {
+        get();
+        cache.invalidateDvObject(4);
+        get();
+        assertEquals(1, loads.get());
+
+        // (a role assigned on the collection)
+        cache.invalidateDvObject(1);
+        get();
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testInvalidateAssignee() {
+        get();
+        cache.invalidateAssignee("@other");
+        get();
+        assertEquals(1, loads.get());
+
+        cache.invalidateAssignee(":authenticated-users");
+        get();
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testInvalidateAll() {
+        get();
+        cache.invalidateAll();
+        get();
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testNotKeptIfChangedWhileLoading() {
+        cache.get(USER_AND_GROUPS, 3, () -> {
+            cache.invalidateDvObject(42);
+            return new PermissionCache.Loaded(EnumSet.of(Permission.DownloadFile), FILE_ANCESTORS);
+        });
+        get();
+        assertEquals(1, loads.get());
+        get();
+        assertEquals(1, loads.get());
+    }
+}
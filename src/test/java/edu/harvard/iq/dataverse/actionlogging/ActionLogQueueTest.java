@@ -0,0 +1,92 @@
+package edu.harvard.iq.dataverse.actionlogging;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ActionLogQueueTest {
+
+    private static ActionLogRecord command(String command, ActionLogRecord.Result result) {
+        return new ActionLogRecord(ActionLogRecord.ActionType.Command, "edu.harvard.iq.dataverse.engine.command.impl." + command)
+                .setActionResult(result);
+    }
+
+    @Test
+    public void testTake() throws InterruptedException {
+        ActionLogQueue sut = new ActionLogQueue(10, ActionLogQueue.Overflow.BLOCK, rec -> {});
+        assertTrue(sut.take(3, 1, TimeUnit.MILLISECONDS).isEmpty());
+
+        for (int i = 0; i < 5; i++) {
+            sut.add(command("GetDatasetCommand", ActionLogRecord.Result.OK));
+        }
+        assertEquals(3, sut.take(3, 1, TimeUnit.MILLISECONDS).size());
+        assertEquals(2, sut.take(3, 1, TimeUnit.MILLISECONDS).size());
+        assertEquals(0, sut.size());
+    }
+
+    @Test
+    public void testSpill() {
+        List<ActionLogRecord> spilled = new ArrayList<>();
+        ActionLogQueue sut = new ActionLogQueue(2, ActionLogQueue.Overflow.SPILL, spilled::add);
+        ActionLogRecord third = command("UpdateDatasetVersionCommand", ActionLogRecord.Result.OK);
+        sut.add(command("GetDatasetCommand", ActionLogRecord.Result.OK));
+        sut.add(command("GetDatasetCommand", ActionLogRecord.Result.OK));
+        sut.add(third);
+
+        assertEquals(2, sut.size());
+        assertEquals(1, spilled.size());
+        assertSame(third, spilled.get(0));
+        assertEquals(1, sut.getSpilled());
+        assertEquals(2, sut.drain().size());
+        assertEquals(0, sut.size());
+    }
+
+    @Test
+    public void testDropReads() throws InterruptedException {
+        ActionLogQueue sut = new ActionLogQueue(1, ActionLogQueue.Overflow.DROP_READS, rec -> {});
+        sut.add(command("ListDataverseContentCommand", ActionLogRecord.Result.OK));
+        sut.add(command("GetDatasetCommand", ActionLogRecord.Result.OK));
+        assertEquals(1, sut.getDropped());
+
+        // (a write waits for room in the queue)
+        Thread taker = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+                sut.take(1, 1, TimeUnit.SECONDS);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        taker.start();
+        ActionLogRecord write = command("DeleteDatasetCommand", ActionLogRecord.Result.OK);
+        sut.add(write);
+        taker.join();
+        assertEquals(1, sut.getDropped());
+        assertSame(write, sut.take(1, 1, TimeUnit.SECONDS).get(0));
+    }
+
+    @Test
+    public void testIsRead() {
+        assertTrue(ActionLogQueue.isRead(command("GetDatasetCommand", ActionLogRecord.Result.OK)));
+        assertTrue(ActionLogQueue.isRead(command("ListRolesCommand", ActionLogRecord.Result.OK)));
+        assertFalse(ActionLogQueue.isRead(command("GetDatasetCommand", ActionLogRecord.Result.PermissionError)));
+        assertFalse(ActionLogQueue.isRead(command("CreateDataverseCommand", ActionLogRecord.Result.OK)));
+        assertFalse(ActionLogQueue.isRead(new ActionLogRecord(ActionLogRecord.ActionType.Admin, "getSettings")
+                .setActionResult(ActionLogRecord.Result.OK)));
+    }
+
+    @Test
+    public void testParseOverflow() {
+        assertEquals(ActionLogQueue.Overflow.BLOCK, ActionLogQueue.Overflow.parse("block"));
+        assertEquals(ActionLogQueue.Overflow.DROP_READS, ActionLogQueue.Overflow.parse(" drop-reads"));
+        assertEquals(ActionLogQueue.Overflow.SPILL, ActionLogQueue.Overflow.parse("SPILL"));
+        assertThrows(IllegalArgumentException.class, () -> ActionLogQueue.Overflow.parse("later"));
+    }
+}
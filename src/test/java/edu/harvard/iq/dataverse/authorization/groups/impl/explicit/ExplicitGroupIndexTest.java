@@ -0,0 +1,71 @@
+package edu.harvard.iq.dataverse.authorization.groups.impl.explicit;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ExplicitGroupIndexTest {
+
+    private static Set<Long> set(long[] ids) {
+        return Arrays.stream(ids).boxed().collect(Collectors.toSet());
+    }
+
+    @Test
+    public void testEmpty() {
+        ExplicitGroupIndex sut = ExplicitGroupIndex.builder().build();
+        assertEquals(Set.of(), set(sut.findGroupIdsOfUser(1L)));
+        assertEquals(Set.of(), set(sut.findGroupIdsOfUser(null)));
+        assertEquals(Set.of(), set(sut.findGroupIdsOfGroup(1L)));
+        assertEquals(Set.of(), set(sut.findGroupIdsOf(":authenticated-users")));
+    }
+
+    @Test
+    public void testClosure() {
+        // (group 1 contains group 2, that contains groups 3 and 4; group 5
+        // contains group 4 too)
+        ExplicitGroupIndex sut = ExplicitGroupIndex.builder()
+                .addGroup(1, 100L).addGroup(2, 100L).addGroup(3, 101L).addGroup(4, 101L).addGroup(5, 102L)
+                .addContainedGroup(1, 2).addContainedGroup(2, 3).addContainedGroup(2, 4).addContainedGroup(5, 4)
+                .addContainedUser(3, 7).addContainedUser(5, 7).addContainedUser(1, 8)
+                .addContainedRoleAssignee(4, ":authenticated-users")
+                .build();
+
+        assertEquals(Set.of(1L, 2L, 3L, 5L), set(sut.findGroupIdsOfUser(7L)));
+        assertEquals(Set.of(1L), set(sut.findGroupIdsOfUser(8L)));
+        assertEquals(Set.of(), set(sut.findGroupIdsOfUser(9L)));
+        assertEquals(Set.of(1L, 2L, 4L, 5L), set(sut.findGroupIdsOf(":authenticated-users")));
+        // (not including the group itself)
+        assertEquals(Set.of(1L, 2L, 5L), set(sut.findGroupIdsOfGroup(4L)));
+        assertEquals(Set.of(), set(sut.findGroupIdsOfGroup(1L)));
+    }
+
+    @Test
+    public void testCycle() {
+        ExplicitGroupIndex sut = ExplicitGroupIndex.builder()
+                .addGroup(1, 100L).addGroup(2, 100L)
+                .addContainedGroup(1, 2).addContainedGroup(2, 1)
+                .addContainedUser(1, 7)
+                .build();
+
+        assertEquals(Set.of(1L, 2L), set(sut.findGroupIdsOfUser(7L)));
+        assertEquals(Set.of(1L, 2L), set(sut.findGroupIdsOfGroup(1L)));
+    }
+
+    @Test
+    public void testFilterByOwner() {
+        ExplicitGroupIndex sut = ExplicitGroupIndex.builder()
+                .addGroup(1, 100L).addGroup(2, 101L).addGroup(3, null)
+                .addContainedGroup(1, 2)
+                .addContainedUser(2, 7).addContainedUser(3, 7)
+                .build();
+
+        long[] groupIds = sut.findGroupIdsOfUser(7L);
+        assertEquals(Set.of(1L, 2L, 3L), set(groupIds));
+        assertEquals(Set.of(1L, 2L), sut.filterByOwner(groupIds, Set.of(101L, 100L)));
+        assertEquals(Set.of(1L), sut.filterByOwner(groupIds, Set.of(100L)));
+        assertEquals(Set.of(), sut.filterByOwner(groupIds, Set.of(42L)));
+    }
+}
@@ -0,0 +1,98 @@
+package edu.harvard.iq.dataverse.authorization.groups.impl.ipaddress.ip;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class IpRangeIndexTest {
+
+    @Test
+    public void testEmpty() {
+        IpRangeIndex<String> sut = IpRangeIndex.<String>builder().build();
+        assertTrue(sut.findAllIncluding(IPv4Address.valueOf("1.2.3.4")).isEmpty());
+        assertTrue(sut.findAllIncluding(IPv6Address.valueOf("::1")).isEmpty());
+    }
+
+    @Test
+    public void testIPv4() {
+        IpRangeIndex<String> sut = IpRangeIndex.<String>builder()
+                .add(IPv4Address.valueOf("10.0.0.0"), IPv4Address.valueOf("10.0.255.255"), "a")
+                .add(IPv4Address.valueOf("10.0.1.0"), IPv4Address.valueOf("10.0.1.255"), "b")
+                .add(IPv4Address.valueOf("10.0.1.10"), IPv4Address.valueOf("10.0.1.10"), "c")
+                // (a second range of a group)
+                .add(IPv4Address.valueOf("200.0.0.1"), IPv4Address.valueOf("255.255.255.255"), "a")
+                .build();
+
+        assertEquals(Set.of(), sut.findAllIncluding(IPv4Address.valueOf("9.255.255.255")));
+        assertEquals(Set.of("a"), sut.findAllIncluding(IPv4Address.valueOf("10.0.0.0")));
+        assertEquals(Set.of("a", "b"), sut.findAllIncluding(IPv4Address.valueOf("10.0.1.0")));
+        assertEquals(Set.of("a", "b", "c"), sut.findAllIncluding(IPv4Address.valueOf("10.0.1.10")));
+        assertEquals(Set.of("a", "b"), sut.findAllIncluding(IPv4Address.valueOf("10.0.1.11")));
+        assertEquals(Set.of("a"), sut.findAllIncluding(IPv4Address.valueOf("10.0.2.0")));
+        assertEquals(Set.of("a"), sut.findAllIncluding(IPv4Address.valueOf("10.0.255.255")));
+        assertEquals(Set.of(), sut.findAllIncluding(IPv4Address.valueOf("10.1.0.0")));
+        assertEquals(Set.of("a"), sut.findAllIncluding(IPv4Address.valueOf("255.255.255.255")));
+        // (the IPv4 ranges don't include IPv6 addresses)
+        assertEquals(Set.of(), sut.findAllIncluding(IPv6Address.valueOf("::a00:10a")));
+    }
+
+    @Test
+    public void testIPv6() {
+        IpRangeIndex<String> sut = IpRangeIndex.<String>builder()
+                .add(IPv6Address.valueOf("::10"), IPv6Address.valueOf("::1:1"), "a")
+                .add(IPv6Address.valueOf("8000::"), IPv6Address.valueOf("ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff"), "b")
+                .add(IPv6Address.valueOf("ffff::"), IPv6Address.valueOf("ffff:0:0:0:ffff:ffff:ffff:ffff"), "c")
+                .build();
+
+        assertEquals(Set.of(), sut.findAllIncluding(IPv6Address.valueOf("::f")));
+        assertEquals(Set.of("a"), sut.findAllIncluding(IPv6Address.valueOf("::ff")));
+        assertEquals(Set.of("a"), sut.findAllIncluding(IPv6Address.valueOf("::1:1")));
+        assertEquals(Set.of(), sut.findAllIncluding(IPv6Address.valueOf("::1:2")));
+        assertEquals(Set.of(), sut.findAllIncluding(IPv6Address.valueOf("7fff::")));
+        assertEquals(Set.of("b"), sut.findAllIncluding(IPv6Address.valueOf("8000::")));
+        assertEquals(Set.of("b", "c"), sut.findAllIncluding(IPv6Address.valueOf("ffff::1")));
+        assertEquals(Set.of("b", "c"), sut.findAllIncluding(IPv6Address.valueOf("ffff:0:0:0:ffff:ffff:ffff:ffff")));
+        assertEquals(Set.of("b"), sut.findAllIncluding(IPv6Address.valueOf("ffff:0:0:1::")));
+        assertEquals(Set.of("b"), sut.findAllIncluding(IPv6Address.valueOf("ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff")));
+    }
+
+    @Test
+    public void testSameAsRanges() {
+        // (compared with the ranges themselves, on random overlapping ranges)
+        Random random = new Random(42);
+        IpRangeIndex.Builder<Integer> builder = IpRangeIndex.builder();
+        List<IPv4Range> ranges = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            long bottom = random.nextInt(1 << 16);
+            long top = bottom + random.nextInt(1 << 12);
+            IPv4Range range = new IPv4Range(new IPv4Address(bottom), new IPv4Address(top));
+            ranges.add(range);
+            builder.add(range, i % 50);
+        }
+        IpRangeIndex<Integer> sut = builder.build();
+
+        for (int i = 0; i < 2000; i++) {
+            IPv4Address address = new IPv4Address(random.nextInt(1 << 17));
+            Set<Integer> expected = new HashSet<>();
+            for (int r = 0; r < ranges.size(); r++) {
+                if (ranges.get(r).contains(address)) {
+                    expected.add(r % 50);
+                }
+            }
+            assertEquals(expected, sut.findAllIncluding(address), address.toString());
+        }
+    }
+
+    @Test
+    public void testMixedVersions() {
+        assertThrows(IllegalArgumentException.class, () -> IpRangeIndex.<String>builder()
+                .add(IPv4Address.valueOf("1.2.3.4"), IPv6Address.valueOf("::1"), "a"));
+    }
+}
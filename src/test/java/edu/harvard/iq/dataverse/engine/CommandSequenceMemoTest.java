@@ -0,0 +1,85 @@
+package edu.harvard.iq.dataverse.engine;
+
+import edu.harvard.iq.dataverse.Dataverse;
+import edu.harvard.iq.dataverse.authorization.Permission;
+import edu.harvard.iq.dataverse.engine.command.DataverseRequest;
+import static edu.harvard.iq.dataverse.mocks.MocksFactory.makeDataverse;
+import static edu.harvard.iq.dataverse.mocks.MocksFactory.makeRequest;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CommandSequenceMemoTest {
+
+    private final DataverseRequest req = makeRequest();
+    private final Dataverse dv = makeDataverse();
+    private final AtomicInteger loads = new AtomicInteger();
+    private final Supplier<Set<Permission>> loader = () -> {
+        loads.incrementAndGet();
+        return EnumSet.of(Permission.ViewUnpublishedDataverse);
+    };
+
+    @AfterEach
+    public void tearDown() {
+        while (CommandSequenceMemo.current() != null) {
+            CommandSequenceMemo.current().exit();
+        }
+    }
+
+    @Test
+    public void testEnterExit() {
+        assertNull(CommandSequenceMemo.current());
+        CommandSequenceMemo outer = CommandSequenceMemo.enter();
+        CommandSequenceMemo inner = CommandSequenceMemo.enter();
+        assertSame(outer, inner);
+        inner.exit();
+        assertSame(outer, CommandSequenceMemo.current());
+        outer.exit();
+        assertNull(CommandSequenceMemo.current());
+    }
+
+    @Test
+    public void testRolePermissionsFor() {
+        CommandSequenceMemo memo = CommandSequenceMemo.enter();
+        Set<Permission> first = memo.rolePermissionsFor(req, dv, loader);
+        first.add(Permission.EditDataverse);
+        assertEquals(EnumSet.of(Permission.ViewUnpublishedDataverse), memo.rolePermissionsFor(req, dv, loader));
+        assertEquals(1, loads.get());
+
+        // (another request, or another object, is looked up)
+        memo.rolePermissionsFor(makeRequest(), dv, loader);
+        memo.rolePermissionsFor(req, makeDataverse(), loader);
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    public void testInvalidate() {
+        CommandSequenceMemo memo = CommandSequenceMemo.enter();
+        memo.userChecked(1L);
+        memo.rolePermissionsFor(req, dv, loader);
+        CommandSequenceMemo.invalidate();
+
+        assertFalse(memo.isUserChecked(1L));
+        memo.rolePermissionsFor(req, dv, loader);
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testUnsavedObject() {
+        CommandSequenceMemo memo = CommandSequenceMemo.enter();
+        Dataverse unsaved = new Dataverse();
+        memo.rolePermissionsFor(req, unsaved, loader);
+        memo.rolePermissionsFor(req, unsaved, loader);
+        assertEquals(2, loads.get());
+        assertTrue(memo.groupsFor(req, unsaved, Set::of).isEmpty());
+    }
+}
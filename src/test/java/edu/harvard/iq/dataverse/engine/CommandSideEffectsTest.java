@@ -0,0 +1,99 @@
+package edu.harvard.iq.dataverse.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CommandSideEffectsTest {
+
+    private final List<String> ran = new ArrayList<>();
+
+    @AfterEach
+    public void tearDown() {
+        while (CommandSideEffects.current() != null) {
+            CommandSideEffects.current().exit();
+        }
+    }
+
+    private void defer(CommandSideEffects.Type type, Long targetId, String argument) {
+        CommandSideEffects.defer(type, targetId, argument, (earlier, later) -> earlier + "+" + later,
+                merged -> ran.add(type.getLabel() + " " + targetId + ": " + merged));
+    }
+
+    @Test
+    public void testEnterExit() {
+        CommandSideEffects outer = CommandSideEffects.enter();
+        CommandSideEffects inner = CommandSideEffects.enter();
+        assertSame(outer, inner);
+        assertFalse(inner.exit());
+        assertSame(outer, CommandSideEffects.current());
+        assertTrue(outer.exit());
+        assertNull(CommandSideEffects.current());
+    }
+
+    @Test
+    public void testOutsideOfSequence() {
+        defer(CommandSideEffects.Type.INDEX_DATASET, 1L, "a");
+        assertEquals(List.of("index-dataset 1: a"), ran);
+    }
+
+    @Test
+    public void testCoalesced() {
+        CommandSideEffects effects = CommandSideEffects.enter();
+        defer(CommandSideEffects.Type.INDEX_DATASET, 1L, "a");
+        defer(CommandSideEffects.Type.EXPORT_DATASET, 1L, "b");
+        defer(CommandSideEffects.Type.INDEX_DATASET, 2L, "c");
+        defer(CommandSideEffects.Type.INDEX_DATASET, 1L, "d");
+        // (without a target, an effect is not deferred)
+        defer(CommandSideEffects.Type.EXPORT_DATASET, null, "e");
+        assertEquals(List.of("export-dataset null: e"), ran);
+        assertTrue(effects.exit());
+
+        assertEquals(3, effects.size());
+        assertEquals(3, (int) effects.getRegistered().get(CommandSideEffects.Type.INDEX_DATASET));
+        List<CommandSideEffects.Type> done = new ArrayList<>();
+        effects.run((type, failure) -> done.add(type));
+        assertEquals(List.of("export-dataset null: e", "index-dataset 1: a+d", "export-dataset 1: b", "index-dataset 2: c"), ran);
+        assertEquals(3, done.size());
+        assertTrue(effects.isEmpty());
+        assertTrue(effects.getRegistered().isEmpty());
+    }
+
+    @Test
+    public void testFailure() {
+        CommandSideEffects effects = CommandSideEffects.enter();
+        CommandSideEffects.defer(CommandSideEffects.Type.EXPORT_DATASET, 1L, "a", (earlier, later) -> later, latest -> {
+            throw new IllegalStateException("no export");
+        });
+        defer(CommandSideEffects.Type.INDEX_DATASET, 1L, "a");
+        effects.exit();
+
+        List<RuntimeException> failures = new ArrayList<>();
+        effects.run((type, failure) -> failures.add(failure));
+        assertEquals(IllegalStateException.class, failures.get(0).getClass());
+        assertNull(failures.get(1));
+        assertEquals(List.of("index-dataset 1: a"), ran);
+    }
+
+    @Test
+    public void testAddAll() {
+        CommandSideEffects first = new CommandSideEffects();
+        first.add(CommandSideEffects.Type.INDEX_DATASET, 1L, "a", (earlier, later) -> earlier + "+" + later, merged -> ran.add("index-dataset 1: " + merged));
+        CommandSideEffects second = new CommandSideEffects();
+        second.add(CommandSideEffects.Type.INDEX_DATASET, 1L, "b", (earlier, later) -> earlier + "+" + later, merged -> ran.add("index-dataset 1: " + merged));
+
+        CommandSideEffects windowed = new CommandSideEffects();
+        windowed.addAll(first);
+        windowed.addAll(second);
+        assertTrue(windowed.getRegistered().isEmpty());
+        windowed.run((type, failure) -> { });
+        assertEquals(List.of("index-dataset 1: a+b"), ran);
+    }
+}
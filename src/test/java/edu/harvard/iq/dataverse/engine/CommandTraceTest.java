@@ -0,0 +1,98 @@
+package edu.harvard.iq.dataverse.engine;
+
+import edu.harvard.iq.dataverse.engine.command.AbstractVoidCommand;
+import edu.harvard.iq.dataverse.engine.command.CommandContext;
+import static edu.harvard.iq.dataverse.mocks.MocksFactory.makeDataverse;
+import static edu.harvard.iq.dataverse.mocks.MocksFactory.makeRequest;
+import jakarta.json.JsonObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CommandTraceTest {
+
+    private static class OuterCommand extends AbstractVoidCommand {
+        OuterCommand() {
+            super(makeRequest(), makeDataverse());
+        }
+
+        @Override
+        protected void executeImpl(CommandContext ctxt) {
+        }
+    }
+
+    private static class InnerCommand extends AbstractVoidCommand {
+        InnerCommand() {
+            super(makeRequest(), makeDataverse());
+        }
+
+        @Override
+        protected void executeImpl(CommandContext ctxt) {
+        }
+    }
+
+    @AfterEach
+    public void tearDown() {
+        while (CommandTrace.current() != null) {
+            CommandTrace.current().end("OK");
+        }
+    }
+
+    @Test
+    public void testNesting() {
+        OuterCommand outer = new OuterCommand();
+        InnerCommand inner = new InnerCommand();
+        CommandTrace outerTrace = CommandTrace.begin(outer);
+        outerTrace.phase(CommandTrace.Phase.EXECUTE);
+        CommandTrace innerTrace = CommandTrace.begin(inner);
+        assertSame(innerTrace, CommandTrace.current());
+        assertFalse(innerTrace.isTopLevel());
+        innerTrace.end("InternalError");
+
+        assertSame(outerTrace, CommandTrace.current());
+        assertSame(innerTrace, outerTrace.find(inner));
+        outerTrace.end("OK");
+
+        assertNull(CommandTrace.current());
+        assertTrue(outerTrace.isTopLevel());
+        assertEquals(1, outerTrace.getNested().size());
+        assertTrue(outerTrace.getPhaseNanos().containsKey(CommandTrace.Phase.EXECUTE));
+        assertTrue(outerTrace.getDurationNanos() >= innerTrace.getDurationNanos());
+        // (the commands are forgotten once the top-level command ends)
+        assertNull(outerTrace.find(inner));
+    }
+
+    @Test
+    public void testPhases() {
+        CommandTrace trace = CommandTrace.begin(new OuterCommand());
+        trace.phase(CommandTrace.Phase.RATE_LIMIT);
+        trace.phase(CommandTrace.Phase.PERMISSIONS);
+        trace.endPhase();
+        trace.addTime(CommandTrace.Phase.ON_SUCCESS, 2_000_000);
+        trace.addTime(CommandTrace.Phase.ON_SUCCESS, 3_000_000);
+        trace.end("OK");
+
+        assertEquals(3, trace.getPhaseNanos().size());
+        assertEquals(5_000_000L, (long) trace.getPhaseNanos().get(CommandTrace.Phase.ON_SUCCESS));
+        assertFalse(trace.getPhaseNanos().containsKey(CommandTrace.Phase.EXECUTE));
+    }
+
+    @Test
+    public void testToJson() {
+        CommandTrace trace = CommandTrace.begin(new OuterCommand());
+        CommandTrace.begin(new InnerCommand()).end("OK");
+        trace.addTime(CommandTrace.Phase.EXECUTE, 1_500_000);
+        trace.end("PermissionError");
+
+        JsonObject json = trace.toJson().build();
+        assertEquals("OuterCommand", json.getString("command"));
+        assertEquals("PermissionError", json.getString("outcome"));
+        assertEquals(1.5, json.getJsonObject("phasesMs").getJsonNumber("execute").doubleValue());
+        assertEquals("InnerCommand", json.getJsonArray("nested").getJsonObject(0).getString("command"));
+    }
+}
@@ -0,0 +1,97 @@
+package edu.harvard.iq.dataverse.export;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.zip.GZIPOutputStream;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CachedExportTest {
+
+    private static final byte[] EXPORT = "<codeBook>a DDI export</codeBook>".getBytes(StandardCharsets.UTF_8);
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzipStream = new GZIPOutputStream(compressed)) {
+            gzipStream.write(bytes);
+        }
+        return compressed.toByteArray();
+    }
+
+    private static byte[] sha256(byte[] bytes) throws Exception {
+        return MessageDigest.getInstance("SHA-256").digest(bytes);
+    }
+
+    @Test
+    public void testCompressedExport() throws Exception {
+        byte[] stored = gzip(EXPORT);
+        byte[] info = CachedExport.encodeInfo(CachedExport.GZIP, EXPORT.length, stored.length, sha256(EXPORT));
+
+        try (CachedExport cachedExport = new CachedExport(new ByteArrayInputStream(stored), new ByteArrayInputStream(info))) {
+            assertEquals(CachedExport.GZIP, cachedExport.getContentEncoding());
+            assertEquals(EXPORT.length, cachedExport.getSize());
+            assertEquals(stored.length, cachedExport.getCompressedSize());
+            assertTrue(cachedExport.getETag().startsWith("W/\""));
+            assertArrayEquals(EXPORT, cachedExport.getInputStream().readAllBytes());
+        }
+        try (CachedExport cachedExport = new CachedExport(new ByteArrayInputStream(stored), new ByteArrayInputStream(info))) {
+            assertArrayEquals(stored, cachedExport.getStoredInputStream().readAllBytes());
+        }
+        assertTrue(CachedExport.isInfoOf(new ByteArrayInputStream(info), CachedExport.GZIP, EXPORT.length, sha256(EXPORT)));
+        assertFalse(CachedExport.isInfoOf(new ByteArrayInputStream(info), null, EXPORT.length, sha256(EXPORT)));
+        assertFalse(CachedExport.isInfoOf(null, CachedExport.GZIP, EXPORT.length, sha256(EXPORT)));
+    }
+
+    @Test
+    public void testExportCachedUncompressed() throws Exception {
+        // (cached before the exports were compressed, without info)
+        try (CachedExport cachedExport = new CachedExport(new ByteArrayInputStream(EXPORT), null)) {
+            assertNull(cachedExport.getContentEncoding());
+            assertNull(cachedExport.getETag());
+            assertEquals(-1, cachedExport.getSize());
+            assertFalse(cachedExport.matchesETag("*"));
+            assertFalse(cachedExport.isAcceptedAsStored("gzip"));
+            assertArrayEquals(EXPORT, cachedExport.getInputStream().readAllBytes());
+        }
+        // (with the info of a compressed export, that doesn't apply)
+        byte[] info = CachedExport.encodeInfo(CachedExport.GZIP, EXPORT.length, 10, sha256(EXPORT));
+        try (CachedExport cachedExport = new CachedExport(new ByteArrayInputStream(EXPORT), new ByteArrayInputStream(info))) {
+            assertNull(cachedExport.getETag());
+        }
+    }
+
+    @Test
+    public void testMatchesETag() throws Exception {
+        byte[] stored = gzip(EXPORT);
+        byte[] info = CachedExport.encodeInfo(CachedExport.GZIP, EXPORT.length, stored.length, sha256(EXPORT));
+        try (CachedExport cachedExport = new CachedExport(new ByteArrayInputStream(stored), new ByteArrayInputStream(info))) {
+            String eTag = cachedExport.getETag();
+            assertTrue(cachedExport.matchesETag(eTag));
+            assertTrue(cachedExport.matchesETag(eTag.substring(2)));
+            assertTrue(cachedExport.matchesETag("\"other\", " + eTag));
+            assertTrue(cachedExport.matchesETag("*"));
+            assertFalse(cachedExport.matchesETag("\"other\""));
+            assertFalse(cachedExport.matchesETag(null));
+        }
+    }
+
+    @Test
+    public void testIsAcceptedAsStored() throws Exception {
+        try (CachedExport cachedExport = new CachedExport(new ByteArrayInputStream(gzip(EXPORT)), null)) {
+            assertTrue(cachedExport.isAcceptedAsStored("gzip"));
+            assertTrue(cachedExport.isAcceptedAsStored("deflate, GZIP;q=0.5, br"));
+            assertTrue(cachedExport.isAcceptedAsStored("*"));
+            assertFalse(cachedExport.isAcceptedAsStored("gzip;q=0"));
+            assertFalse(cachedExport.isAcceptedAsStored("identity"));
+            assertFalse(cachedExport.isAcceptedAsStored(null));
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package edu.harvard.iq.dataverse.export;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ExportThrottleTest {
+
+    @Test
+    public void testNoLimit() throws Exception {
+        ExportThrottle throttle = new ExportThrottle(0);
+        long start = System.nanoTime();
+        for (int i = 0; i < 1000; i++) {
+            throttle.acquire();
+        }
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+    }
+
+    @Test
+    public void testLimitAcrossThreads() throws Exception {
+        // 20 per second: the 13 slots taken span 600 milliseconds
+        ExportThrottle throttle = new ExportThrottle(20);
+        long start = System.nanoTime();
+        throttle.acquire();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    for (int j = 0; j < 3; j++) {
+                        throttle.acquire();
+                    }
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(500));
+    }
+}
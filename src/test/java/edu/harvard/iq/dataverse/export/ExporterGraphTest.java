@@ -0,0 +1,52 @@
+package edu.harvard.iq.dataverse.export;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ExporterGraphTest {
+
+    @Test
+    public void testIndependentFormatsShareAStage() {
+        ExporterGraph graph = new ExporterGraph(Map.of(
+                "oai_dc", Optional.empty(),
+                "dataverse_json", Optional.empty(),
+                "ddi", Optional.empty()));
+
+        assertEquals(List.of(List.of("dataverse_json", "ddi", "oai_dc")), graph.getStages());
+        assertTrue(graph.getUnresolved().isEmpty());
+    }
+
+    @Test
+    public void testPrerequisitesComeFirst() {
+        ExporterGraph graph = new ExporterGraph(Map.of(
+                "ddi", Optional.empty(),
+                "oai_ddi", Optional.of("ddi"),
+                "html", Optional.of("ddi"),
+                "croissant", Optional.of("html"),
+                "oai_dc", Optional.empty()));
+
+        assertEquals(List.of(
+                List.of("ddi", "oai_dc"),
+                List.of("html", "oai_ddi"),
+                List.of("croissant")), graph.getStages());
+        assertTrue(graph.getUnresolved().isEmpty());
+    }
+
+    @Test
+    public void testUnresolvedPrerequisites() {
+        ExporterGraph graph = new ExporterGraph(Map.of(
+                "ddi", Optional.empty(),
+                "missing", Optional.of("not_a_format"),
+                "dependsOnMissing", Optional.of("missing"),
+                "a", Optional.of("b"),
+                "b", Optional.of("a")));
+
+        assertEquals(List.of(List.of("ddi")), graph.getStages());
+        assertEquals(List.of("a", "b", "dependsOnMissing", "missing"), graph.getUnresolved());
+    }
+}
@@ -0,0 +1,38 @@
+package edu.harvard.iq.dataverse.export;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ReExportJobTest {
+
+    @Test
+    public void testFailedDatasetIdsAreCapped() {
+        ReExportJob job = new ReExportJob();
+        assertTrue(job.getFailedDatasetIds().isEmpty());
+        job.addFailedDatasetIds(List.of(3L, 5L));
+        List<Long> more = new ArrayList<>();
+        for (long id = 10; id < 10 + ReExportJob.MAX_FAILED_DATASET_IDS; id++) {
+            more.add(id);
+        }
+        job.addFailedDatasetIds(more);
+        List<Long> ids = job.getFailedDatasetIds();
+        assertEquals(ReExportJob.MAX_FAILED_DATASET_IDS, ids.size());
+        assertEquals(List.of(3L, 5L, 10L), ids.subList(0, 3));
+    }
+
+    @Test
+    public void testThroughput() {
+        ReExportJob job = new ReExportJob();
+        assertEquals(0.0, job.getThroughput());
+        job.setExportedCount(40);
+        job.setSkippedCount(5);
+        job.setFailedCount(5);
+        job.setRunningTime(10000);
+        assertEquals(50, job.getProcessedCount());
+        assertEquals(5.0, job.getThroughput());
+    }
+}
@@ -7,6 +7,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -28,7 +29,14 @@ import org.xmlunit.assertj3.XmlAssert;
 import org.xmlunit.builder.DiffBuilder;
 import org.xmlunit.diff.Diff;
 
+import jakarta.json.Json;
+import jakarta.json.JsonArray;
+import jakarta.json.JsonArrayBuilder;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonObjectBuilder;
+import javax.xml.stream.XMLOutputFactory;
 import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -110,6 +118,98 @@ public class DdiExportUtilTest {
         }
     }
 
+    private static JsonObject variable(long id) {
+        return Json.createObjectBuilder()
+                .add("id", id)
+                .add("name", "var" + id)
+                .add("label", "Variable " + id)
+                .add("isOrderedCategorical", false)
+                .add("fileOrder", (int) id - 1)
+                .add("variableFormatType", "NUMERIC")
+                .add("UNF", "UNF:6:" + id)
+                .add("variableMetadata", Json.createArrayBuilder())
+                .add("summaryStatistics", Json.createObjectBuilder().add("mean", "1.5"))
+                .build();
+    }
+
+    private static JsonArray tabularFileDetails(JsonArrayBuilder dataVariables) {
+        JsonObjectBuilder dataTable = Json.createObjectBuilder().add("varQuantity", 3);
+        if (dataVariables != null) {
+            dataTable.add("dataVariables", dataVariables);
+        }
+        return Json.createArrayBuilder().add(Json.createObjectBuilder()
+                .add("id", 42)
+                .add("fileMetadataId", 43)
+                .add("restricted", false)
+                .add("dataTables", Json.createArrayBuilder().add(dataTable)))
+                .build();
+    }
+
+    @Test
+    public void testDataDscrFromVariableSource() throws Exception {
+        JsonArrayBuilder dataVariables = Json.createArrayBuilder();
+        for (long id = 1; id <= 3; id++) {
+            dataVariables.add(variable(id));
+        }
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        XMLStreamWriter xmlw = XMLOutputFactory.newInstance().createXMLStreamWriter(expected);
+        DdiExportUtil.createDataDscr(xmlw, tabularFileDetails(dataVariables));
+        xmlw.flush();
+
+        // The same variables, read from a source:
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        xmlw = XMLOutputFactory.newInstance().createXMLStreamWriter(result);
+        DdiExportUtil.createDataDscr(xmlw, tabularFileDetails(null), (dataFileId, handler) -> {
+            assertEquals(42, dataFileId);
+            for (long id = 1; id <= 3; id++) {
+                handler.handle(variable(id));
+            }
+        });
+        xmlw.flush();
+
+        assertTrue(expected.toString(StandardCharsets.UTF_8).contains("<var ID=\"v3\""));
+        assertEquals(expected.toString(StandardCharsets.UTF_8), result.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testDataDscrIsStreamed() throws Exception {
+        // A synthetic data table of 500k variables, generated as they are
+        // read: the variables must be written as they are read, rather than
+        // held until the end.
+        int variableCount = 500_000;
+        long[] written = new long[1];
+        int[] varElements = new int[1];
+        byte[] varTag = "<var ".getBytes(StandardCharsets.UTF_8);
+        OutputStream counting = new OutputStream() {
+            private int matched = 0;
+
+            @Override
+            public void write(int b) {
+                written[0]++;
+                matched = b == varTag[matched] ? matched + 1 : (b == varTag[0] ? 1 : 0);
+                if (matched == varTag.length) {
+                    varElements[0]++;
+                    matched = 0;
+                }
+            }
+        };
+        long[] writtenAtHalf = new long[1];
+
+        XMLStreamWriter xmlw = XMLOutputFactory.newInstance().createXMLStreamWriter(counting, "UTF-8");
+        DdiExportUtil.createDataDscr(xmlw, tabularFileDetails(null), (dataFileId, handler) -> {
+            for (long id = 1; id <= variableCount; id++) {
+                if (id == variableCount / 2) {
+                    writtenAtHalf[0] = written[0];
+                }
+                handler.handle(variable(id));
+            }
+        });
+        xmlw.flush();
+
+        assertEquals(variableCount, varElements[0]);
+        assertTrue(writtenAtHalf[0] > written[0] / 3, "the variables are not written as they are read");
+    }
+
     @Test
     public void testDatasetHtmlDDI() throws IOException, XMLStreamException {
         // given
@@ -0,0 +1,133 @@
+package edu.harvard.iq.dataverse.harvest.client;
+
+import edu.harvard.iq.dataverse.harvest.client.HarvestPipeline.FetchedRecord;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import javax.xml.parsers.DocumentBuilderFactory;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FastListRecordsTest {
+
+    private static final String OAI_HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+            + "<OAI-PMH xmlns=\"http://www.openarchives.org/OAI/2.0/\" "
+            + "xmlns:oai_dc=\"http://www.openarchives.org/OAI/2.0/oai_dc/\" "
+            + "xmlns:dc=\"http://purl.org/dc/elements/1.1/\">"
+            + "<responseDate>2024-05-01T10:00:00Z</responseDate>"
+            + "<request verb=\"ListRecords\">https://example.org/oai</request>";
+
+    private static FastListRecords parse(String page) {
+        FastListRecords listRecords = new FastListRecords(null, null);
+        listRecords.parsePage(new ByteArrayInputStream(page.getBytes(StandardCharsets.UTF_8)));
+        return listRecords;
+    }
+
+    @Test
+    public void testPageOfRecords() throws Exception {
+        FastListRecords listRecords = parse(OAI_HEADER
+                + "<ListRecords>"
+                + "<record><header><identifier>doi:10.5072/FK2/AAA</identifier><datestamp>2024-04-30T12:00:00Z</datestamp></header>"
+                + "<metadata><oai_dc:dc><dc:title>First &amp; foremost</dc:title><dc:creator>Doe, J.</dc:creator></oai_dc:dc></metadata></record>"
+                + "<record><header status=\"deleted\"><identifier>doi:10.5072/FK2/BBB</identifier><datestamp>2024-04-30</datestamp></header></record>"
+                + "<record><header><identifier>doi:10.5072/FK2/CCC</identifier><datestamp>yesterday</datestamp></header>"
+                + "<metadata><oai_dc:dc><dc:title>Third</dc:title></oai_dc:dc></metadata></record>"
+                + "<record><header><identifier>doi:10.5072/FK2/DDD</identifier><datestamp>2024-04-30T12:00:00Z</datestamp></header>"
+                + "<metadata></metadata></record>"
+                + "<resumptionToken completeListSize=\"100\" cursor=\"0\">token-1</resumptionToken>"
+                + "</ListRecords></OAI-PMH>");
+
+        assertNull(listRecords.getErrorMessage());
+        assertEquals("token-1", listRecords.getResumptionToken());
+
+        FetchedRecord first = listRecords.next();
+        assertEquals("doi:10.5072/FK2/AAA", first.getIdentifier());
+        assertEquals(FastListRecords.parseDateStamp("2024-04-30T12:00:00Z"), first.getDateStamp());
+        assertNull(first.getErrorMessage());
+        assertFalse(first.isDeleted());
+        File metadataFile = first.getMetadataFile();
+        assertNotNull(metadataFile);
+        try {
+            // The copy of the record is a document of its own, with the
+            // namespaces declared on the response:
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setNamespaceAware(true);
+            Document document = factory.newDocumentBuilder().parse(metadataFile);
+            Element root = document.getDocumentElement();
+            assertEquals("dc", root.getLocalName());
+            assertEquals("http://www.openarchives.org/OAI/2.0/oai_dc/", root.getNamespaceURI());
+            assertEquals("First & foremost", document.getElementsByTagNameNS("http://purl.org/dc/elements/1.1/", "title").item(0).getTextContent());
+            assertTrue(Files.readString(metadataFile.toPath()).contains("xmlns:xsi="));
+        } finally {
+            metadataFile.delete();
+        }
+
+        FetchedRecord second = listRecords.next();
+        assertEquals("doi:10.5072/FK2/BBB", second.getIdentifier());
+        assertTrue(second.isDeleted());
+        assertNull(second.getMetadataFile());
+
+        // (to be retrieved with GetRecord)
+        FetchedRecord third = listRecords.next();
+        assertEquals("doi:10.5072/FK2/CCC", third.getIdentifier());
+        assertNotNull(third.getErrorMessage());
+        assertNull(third.getMetadataFile());
+
+        FetchedRecord fourth = listRecords.next();
+        assertEquals("doi:10.5072/FK2/DDD", fourth.getIdentifier());
+        assertNotNull(fourth.getErrorMessage());
+        assertNull(fourth.getMetadataFile());
+    }
+
+    @Test
+    public void testNoRecordsMatch() {
+        FastListRecords listRecords = parse(OAI_HEADER
+                + "<error code=\"noRecordsMatch\">No matching records</error></OAI-PMH>");
+
+        assertFalse(listRecords.hasNext());
+        assertNull(listRecords.getErrorMessage());
+    }
+
+    @Test
+    public void testErrorResponse() {
+        FastListRecords listRecords = parse(OAI_HEADER
+                + "<error code=\"badResumptionToken\">Expired</error></OAI-PMH>");
+
+        assertFalse(listRecords.hasNext());
+        assertNotNull(listRecords.getErrorMessage());
+    }
+
+    @Test
+    public void testMalformedPage() {
+        FastListRecords listRecords = parse(OAI_HEADER
+                + "<ListRecords>"
+                + "<record><header><identifier>doi:10.5072/FK2/AAA</identifier><datestamp>2024-04-30T12:00:00Z</datestamp></header>"
+                + "<metadata><oai_dc:dc><dc:title>First</dc:title></oai_dc:dc></metadata></record>"
+                + "<record><header><identifier>doi:10.5072/FK2/BBB</identifier><datestamp>2024-04-30T12:00:00Z</datestamp></header>"
+                + "<metadata><oai_dc:dc><dc:title>Broken</dc:creator></oai_dc:dc></metadata></record>"
+                + "<resumptionToken>token-1</resumptionToken>"
+                + "</ListRecords></OAI-PMH>");
+
+        // The records parsed before the error are kept, the one that failed
+        // is to be retrieved with GetRecord, and the list ends there:
+        FetchedRecord first = listRecords.next();
+        assertNull(first.getErrorMessage());
+        first.getMetadataFile().delete();
+
+        FetchedRecord second = listRecords.next();
+        assertEquals("doi:10.5072/FK2/BBB", second.getIdentifier());
+        assertNotNull(second.getErrorMessage());
+        assertNull(second.getMetadataFile());
+
+        assertFalse(listRecords.hasNext());
+        assertNotNull(listRecords.getErrorMessage());
+    }
+}
@@ -0,0 +1,203 @@
+package edu.harvard.iq.dataverse.harvest.client;
+
+import edu.harvard.iq.dataverse.harvest.client.HarvestPipeline.FetchedRecord;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HarvestPipelineTest {
+
+    private ExecutorService importExecutor;
+
+    @BeforeEach
+    public void setUp() {
+        importExecutor = Executors.newCachedThreadPool();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        importExecutor.shutdownNow();
+    }
+
+    private static void updateMax(AtomicInteger max, int value) {
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    private static void pause(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test
+    public void testConcurrencyIsBounded() throws InterruptedException {
+        AtomicInteger fetching = new AtomicInteger();
+        AtomicInteger maxFetching = new AtomicInteger();
+        AtomicInteger importing = new AtomicInteger();
+        AtomicInteger maxImporting = new AtomicInteger();
+        // submitted, but not imported yet:
+        AtomicInteger pending = new AtomicInteger();
+        AtomicInteger maxPending = new AtomicInteger();
+        Set<String> imported = Collections.synchronizedSet(new HashSet<>());
+
+        HarvestPipeline pipeline = new HarvestPipeline(
+                (identifier, dateStamp) -> {
+                    updateMax(maxFetching, fetching.incrementAndGet());
+                    pause(2);
+                    fetching.decrementAndGet();
+                    return new FetchedRecord(identifier, dateStamp);
+                }, 4, Executors.defaultThreadFactory(),
+                record -> {
+                    updateMax(maxImporting, importing.incrementAndGet());
+                    // (the imports are the bottleneck)
+                    pause(5);
+                    importing.decrementAndGet();
+                    imported.add(record.getIdentifier());
+                    pending.decrementAndGet();
+                }, 2,
+                importExecutor);
+
+        for (int i = 0; i < 100; i++) {
+            updateMax(maxPending, pending.incrementAndGet());
+            pipeline.submit("doi:10.5072/FK2/" + i, new Date());
+        }
+        pipeline.finish();
+
+        assertEquals(100, imported.size());
+        assertTrue(maxFetching.get() <= 4);
+        assertTrue(maxImporting.get() <= 2);
+        // The backpressure: no more records are waiting than there are
+        // fetchers and importers (plus the one being submitted).
+        assertTrue(maxPending.get() <= 4 + 2 + 1, "max pending: " + maxPending.get());
+    }
+
+    @Test
+    public void testFailedFetchesAreHandedToTheImporter() throws InterruptedException {
+        AtomicInteger failed = new AtomicInteger();
+        AtomicInteger succeeded = new AtomicInteger();
+
+        HarvestPipeline pipeline = new HarvestPipeline(
+                (identifier, dateStamp) -> {
+                    FetchedRecord record = new FetchedRecord(identifier, dateStamp);
+                    if (identifier.endsWith("3")) {
+                        record.setErrorMessage("GetRecord failed");
+                    }
+                    return record;
+                }, 3, Executors.defaultThreadFactory(),
+                record -> {
+                    if (record.getErrorMessage() != null) {
+                        failed.incrementAndGet();
+                    } else {
+                        succeeded.incrementAndGet();
+                    }
+                }, 3,
+                importExecutor);
+
+        for (int i = 0; i < 20; i++) {
+            pipeline.submit("id" + i, new Date());
+        }
+        pipeline.finish();
+
+        assertEquals(2, failed.get());
+        assertEquals(18, succeeded.get());
+    }
+
+    @Test
+    public void testRecordsAreImportedInGroups() throws InterruptedException {
+        List<Integer> groupSizes = Collections.synchronizedList(new ArrayList<>());
+        Set<String> imported = Collections.synchronizedSet(new HashSet<>());
+
+        HarvestPipeline pipeline = new HarvestPipeline(
+                (identifier, dateStamp) -> new FetchedRecord(identifier, dateStamp), 3, Executors.defaultThreadFactory(),
+                records -> {
+                    groupSizes.add(records.size());
+                    records.forEach(record -> imported.add(record.getIdentifier()));
+                }, 10, 2,
+                importExecutor);
+
+        for (int i = 0; i < 25; i++) {
+            pipeline.submit("id" + i, new Date());
+        }
+        // (the records fetched already don't need a fetcher)
+        pipeline.submit(new FetchedRecord("listed", new Date()));
+        pipeline.finish();
+
+        assertEquals(26, imported.size());
+        assertTrue(imported.contains("listed"));
+        // Two full groups, and the rest once the pipeline is finished:
+        Collections.sort(groupSizes);
+        assertEquals(List.of(6, 10, 10), groupSizes);
+    }
+
+    @Test
+    public void testInterruptedHandOffsAreAccountedAsFailed() throws InterruptedException {
+        List<Thread> fetcherThreads = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch importing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> failed = Collections.synchronizedList(new ArrayList<>());
+        Set<String> imported = Collections.synchronizedSet(new HashSet<>());
+
+        HarvestPipeline pipeline = new HarvestPipeline(
+                (identifier, dateStamp) -> new FetchedRecord(identifier, dateStamp), 2,
+                runnable -> {
+                    Thread thread = Executors.defaultThreadFactory().newThread(runnable);
+                    fetcherThreads.add(thread);
+                    return thread;
+                },
+                record -> {
+                    if (record.getErrorMessage() != null) {
+                        failed.add(record.getIdentifier());
+                        return;
+                    }
+                    importing.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                    }
+                    imported.add(record.getIdentifier());
+                }, 1,
+                importExecutor);
+
+        pipeline.submit("id0", new Date());
+        importing.await();
+        // The second fetcher waits for the only importer, and is interrupted:
+        pipeline.submit("id1", new Date());
+        while (fetcherThreads.size() < 2 || fetcherThreads.get(1).getState() != Thread.State.WAITING) {
+            Thread.sleep(1);
+        }
+        fetcherThreads.get(1).interrupt();
+        while (failed.isEmpty()) {
+            Thread.sleep(1);
+        }
+        release.countDown();
+        pipeline.finish();
+
+        assertEquals(Set.of("id0"), imported);
+        assertEquals(List.of("id1"), failed);
+    }
+
+    @Test
+    public void testFinishWithoutRecords() {
+        HarvestPipeline pipeline = new HarvestPipeline(
+                (identifier, dateStamp) -> new FetchedRecord(identifier, dateStamp), 2, Executors.defaultThreadFactory(),
+                record -> { }, 2,
+                importExecutor);
+        pipeline.finish();
+    }
+}
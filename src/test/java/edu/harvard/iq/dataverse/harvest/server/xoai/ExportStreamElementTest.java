@@ -0,0 +1,66 @@
+package edu.harvard.iq.dataverse.harvest.server.xoai;
+
+import io.gdcc.xoai.xml.XmlWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ExportStreamElementTest {
+
+    private static final String EXPORT = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+            + "<oai_dc:dc xmlns:oai_dc=\"http://www.openarchives.org/OAI/2.0/oai_dc/\""
+            + " xmlns:dc=\"http://purl.org/dc/elements/1.1/\""
+            + " xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\""
+            + " xsi:schemaLocation=\"http://www.openarchives.org/OAI/2.0/oai_dc/ http://www.openarchives.org/OAI/2.0/oai_dc.xsd\">"
+            + "<dc:title>Darwin's Finches &amp; Other Birds</dc:title>"
+            + "<dc:identifier>https://doi.org/10.5072/FK2/ABCDEF</dc:identifier>"
+            + "</oai_dc:dc>";
+
+    @Test
+    public void testExportIsCopiedAndClosed() throws Exception {
+        AtomicBoolean closed = new AtomicBoolean(false);
+        InputStream exportStream = new ByteArrayInputStream(EXPORT.getBytes(StandardCharsets.UTF_8)) {
+            @Override
+            public void close() {
+                closed.set(true);
+            }
+        };
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (XmlWriter writer = new XmlWriter(output)) {
+            writer.writeStartElement("metadata");
+            new ExportStreamElement(exportStream).write(writer);
+            writer.writeEndElement();
+        }
+        String xml = output.toString(StandardCharsets.UTF_8);
+
+        assertTrue(closed.get());
+        assertTrue(xml.contains("<metadata><oai_dc:dc"));
+        assertTrue(xml.contains("xmlns:dc=\"http://purl.org/dc/elements/1.1/\""));
+        assertTrue(xml.contains("xsi:schemaLocation=\"http://www.openarchives.org/OAI/2.0/oai_dc/ http://www.openarchives.org/OAI/2.0/oai_dc.xsd\""));
+        assertTrue(xml.contains("<dc:title>Darwin's Finches &amp; Other Birds</dc:title>"));
+        assertTrue(xml.contains("</oai_dc:dc></metadata>"));
+        // (the XML declaration of the export is not copied)
+        assertFalse(xml.contains("<?xml version=\"1.0\" encoding=\"UTF-8\"?><oai_dc:dc"));
+    }
+
+    @Test
+    public void testUnwrittenExportIsClosed() {
+        AtomicBoolean closed = new AtomicBoolean(false);
+        InputStream exportStream = new ByteArrayInputStream(EXPORT.getBytes(StandardCharsets.UTF_8)) {
+            @Override
+            public void close() {
+                closed.set(true);
+            }
+        };
+
+        new ExportStreamElement(exportStream).close();
+        assertTrue(closed.get());
+    }
+}
@@ -0,0 +1,104 @@
+package edu.harvard.iq.dataverse.harvest.server.xoai;
+
+import edu.harvard.iq.dataverse.harvest.server.xoai.KeysetResumptionTokenFormat.PageBoundary;
+import io.gdcc.xoai.exceptions.BadResumptionTokenException;
+import io.gdcc.xoai.model.oaipmh.Granularity;
+import io.gdcc.xoai.model.oaipmh.ResumptionToken;
+import io.gdcc.xoai.services.impl.SimpleResumptionTokenFormat;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class KeysetResumptionTokenFormatTest {
+
+    private static final Instant FROM = Instant.parse("2024-01-01T00:00:00Z");
+
+    private final KeysetResumptionTokenFormat format = new KeysetResumptionTokenFormat(new SimpleResumptionTokenFormat().withGranularity(Granularity.Second));
+
+    @AfterEach
+    public void tearDown() {
+        format.clear();
+    }
+
+    private ResumptionToken.Value tokenValue(String setSpec, long offset) {
+        return new ResumptionToken.ValueBuilder()
+                .withOffset(offset)
+                .withSetSpec(setSpec)
+                .withFrom(FROM)
+                .withMetadataPrefix("oai_dc")
+                .build();
+    }
+
+    @Test
+    public void testTokenWithoutBoundaryIsSimpleToken() throws BadResumptionTokenException {
+        String token = format.format(tokenValue("physics", 100));
+
+        assertFalse(token.startsWith("~"));
+        ResumptionToken.Value value = format.parse(token);
+        assertEquals(100, value.getOffset());
+        assertNull(format.getBoundary(value));
+    }
+
+    @Test
+    public void testBoundaryRoundTrip() throws BadResumptionTokenException {
+        ResumptionToken.Value next = tokenValue("physics", 100);
+        format.setNextBoundary(next, new PageBoundary("doi:10.5072/FK2~ABC", 4711L, 5000L));
+        String token = format.format(next);
+        assertTrue(token.startsWith("~"));
+        // (only the token of the next page carries the boundary)
+        assertFalse(format.format(tokenValue("chemistry", 100)).startsWith("~"));
+        format.clear();
+
+        // Another request (on any server) parses the token:
+        ResumptionToken.Value value = format.parse(token);
+        assertEquals(100, value.getOffset());
+        assertEquals("physics", value.getSetSpec());
+        assertEquals(FROM, value.getFrom());
+
+        PageBoundary boundary = format.getBoundary(value);
+        assertNotNull(boundary);
+        assertEquals("doi:10.5072/FK2~ABC", boundary.getLastGlobalId());
+        assertEquals(4711L, boundary.getLastId());
+        assertEquals(5000L, boundary.getTotal());
+        // (the boundary belongs to this list only)
+        assertNull(format.getBoundary(tokenValue("chemistry", 100)));
+        assertNull(format.getBoundary(tokenValue("physics", 200)));
+    }
+
+    @Test
+    public void testBoundaryBelongsToRequest() throws Exception {
+        ResumptionToken.Value next = tokenValue("physics", 100);
+        format.setNextBoundary(next, new PageBoundary("doi:10.5072/FK2/ABC", 4711L, 5000L));
+        String token = format.format(next);
+
+        // A concurrent request, for the same page of the same list, from
+        // another boundary, does not see the boundary of this one:
+        String otherToken = CompletableFuture.supplyAsync(() -> {
+            format.setNextBoundary(next, new PageBoundary("doi:10.5072/FK2/XYZ", 42L, 5000L));
+            return format.format(next);
+        }).get();
+        assertFalse(token.equals(otherToken));
+        assertEquals(token, format.format(next));
+
+        ResumptionToken.Value value = format.parse(otherToken);
+        assertEquals(42L, format.getBoundary(value).getLastId());
+        format.clear();
+        assertNull(format.getBoundary(value));
+    }
+
+    @Test
+    public void testCorruptBoundaryFallsBackToOffset() throws BadResumptionTokenException {
+        String simpleToken = format.format(tokenValue("physics", 200));
+
+        ResumptionToken.Value value = format.parse("~notanumber~1~YQ~" + simpleToken);
+        assertEquals(200, value.getOffset());
+        assertNull(format.getBoundary(value));
+    }
+}
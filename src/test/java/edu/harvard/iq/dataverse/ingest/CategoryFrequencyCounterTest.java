@@ -0,0 +1,93 @@
+package edu.harvard.iq.dataverse.ingest;
+
+import edu.harvard.iq.dataverse.DataTable;
+import edu.harvard.iq.dataverse.datavariable.DataVariable;
+import edu.harvard.iq.dataverse.datavariable.VariableCategory;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CategoryFrequencyCounterTest {
+
+    @TempDir
+    File tempDir;
+
+    @Test
+    public void testCountFrequencies() throws IOException {
+        DataTable dataTable = new DataTable();
+        dataTable.setCaseQuantity(5L);
+        dataTable.setStoredWithVariableHeader(true);
+
+        List<DataVariable> vars = new ArrayList<>();
+        DataVariable numeric = addVariable(dataTable, vars, true, "1", "2.0", "3", "x");
+        // a variable with no categories, skipped:
+        addVariable(dataTable, vars, true);
+        DataVariable character = addVariable(dataTable, vars, false, "a", "b\tc", "d");
+
+        File tabFile = new File(tempDir, "test.tab");
+        Files.writeString(tabFile.toPath(), String.join("\n",
+                "num\tother\tchr",
+                "1\t1\t\"a\"",
+                "1.0\t2\t\"b\\tc\"",
+                "2\t3\t\"a\"",
+                "\t4\t",
+                "7\t5\t\"a\"",
+                ""), StandardCharsets.UTF_8);
+
+        CategoryFrequencyCounter.countFrequencies(tabFile, vars);
+
+        assertEquals(List.of(2D, 1D, 0D, 0D), frequencies(numeric));
+        assertEquals(List.of(3D, 1D, 0D), frequencies(character));
+    }
+
+    @Test
+    public void testWrongNumberOfRows() throws IOException {
+        DataTable dataTable = new DataTable();
+        dataTable.setCaseQuantity(3L);
+
+        List<DataVariable> vars = new ArrayList<>();
+        addVariable(dataTable, vars, true, "1");
+
+        File shortFile = new File(tempDir, "short.tab");
+        Files.writeString(shortFile.toPath(), "1\n2\n", StandardCharsets.UTF_8);
+        assertThrows(IOException.class, () -> CategoryFrequencyCounter.countFrequencies(shortFile, vars));
+
+        File longFile = new File(tempDir, "long.tab");
+        Files.writeString(longFile.toPath(), "1\n2\n3\n4\n", StandardCharsets.UTF_8);
+        assertThrows(IOException.class, () -> CategoryFrequencyCounter.countFrequencies(longFile, vars));
+    }
+
+    private static DataVariable addVariable(DataTable dataTable, List<DataVariable> vars, boolean numeric, String... values) {
+        DataVariable variable = new DataVariable(vars.size(), dataTable);
+        if (numeric) {
+            variable.setTypeNumeric();
+        } else {
+            variable.setTypeCharacter();
+        }
+        List<VariableCategory> categories = new ArrayList<>();
+        for (String value : values) {
+            VariableCategory category = new VariableCategory();
+            category.setValue(value);
+            category.setDataVariable(variable);
+            categories.add(category);
+        }
+        variable.setCategories(categories);
+        vars.add(variable);
+        return variable;
+    }
+
+    private static List<Double> frequencies(DataVariable variable) {
+        List<Double> frequencies = new ArrayList<>();
+        for (VariableCategory category : variable.getCategories()) {
+            frequencies.add(category.getFrequency());
+        }
+        return frequencies;
+    }
+}
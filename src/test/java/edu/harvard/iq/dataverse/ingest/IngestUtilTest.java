@@ -5,6 +5,13 @@ import edu.harvard.iq.dataverse.DataTable;
 import edu.harvard.iq.dataverse.Dataset;
 import edu.harvard.iq.dataverse.DatasetVersion;
 import edu.harvard.iq.dataverse.FileMetadata;
+import edu.harvard.iq.dataverse.datavariable.DataVariable;
+import edu.harvard.iq.dataverse.datavariable.SummaryStatistic;
+import edu.harvard.iq.dataverse.datavariable.VariableCategory;
+import edu.harvard.iq.dataverse.ingest.tabulardata.impl.plugins.csv.CSVFileReader;
+import edu.harvard.iq.dataverse.ingest.tabulardata.impl.plugins.csv.CSVFileReaderSpi;
+import edu.harvard.iq.dataverse.ingest.tabulardata.impl.plugins.rdata.RDATAFileReader;
+import edu.harvard.iq.dataverse.ingest.tabulardata.impl.plugins.rdata.RDATAFileReaderSpi;
 import edu.harvard.iq.dataverse.mocks.MocksFactory;
 import static edu.harvard.iq.dataverse.mocks.MocksFactory.makeDataset;
 import java.io.IOException;
@@ -730,4 +737,86 @@ public class IngestUtilTest {
         assertTrue(IngestUtil.conflictsWithExistingFilenames(pathPlusFilename, fileMetadatas));
     }
 
+    @Test
+    public void testGetIngestPluginVersion() {
+        assertNull(IngestUtil.getIngestPluginVersion(null));
+        // (the version is that of the reader, not the shared SDIO version)
+        assertEquals("CSVFileReader/" + CSVFileReader.READER_VERSION,
+                IngestUtil.getIngestPluginVersion(new CSVFileReader(new CSVFileReaderSpi(), ',')));
+        assertNotEquals("CSVFileReader/4.0", IngestUtil.getIngestPluginVersion(new CSVFileReader(new CSVFileReaderSpi(), ',')));
+        // (the RData files read without Rserve, by default, are not mistaken for those read on Rserve)
+        assertEquals("RDATAFileReader/" + RDATAFileReader.READER_VERSION,
+                IngestUtil.getIngestPluginVersion(new RDATAFileReader(new RDATAFileReaderSpi())));
+        assertNotEquals(RDATAFileReader.READER_VERSION, RDATAFileReader.RSERVE_READER_VERSION);
+    }
+
+    @Test
+    public void testCopyDataTable() {
+        DataTable source = new DataTable();
+        source.setId(1L);
+        source.setUnf("UNF:6:tableUnf==");
+        source.setCaseQuantity(3L);
+        source.setVarQuantity(1L);
+        source.setStoredWithVariableHeader(true);
+        source.setIngestPluginVersion("CSVFileReader/4.0");
+
+        DataVariable sourceVar = new DataVariable(0, source);
+        sourceVar.setId(2L);
+        sourceVar.setName("var1");
+        sourceVar.setLabel("Variable 1");
+        sourceVar.setTypeNumeric();
+        sourceVar.setIntervalDiscrete();
+        sourceVar.setUnf("UNF:6:varUnf==");
+
+        SummaryStatistic sourceStat = new SummaryStatistic();
+        sourceStat.setTypeMean();
+        sourceStat.setValue("2.0");
+        sourceStat.setDataVariable(sourceVar);
+        sourceVar.getSummaryStatistics().add(sourceStat);
+
+        VariableCategory sourceCat = new VariableCategory();
+        sourceCat.setValue("1");
+        sourceCat.setLabel("one");
+        sourceCat.setFrequency(2.0);
+        sourceCat.setDataVariable(sourceVar);
+        sourceVar.getCategories().add(sourceCat);
+
+        source.setDataVariables(new ArrayList<>(Arrays.asList(sourceVar)));
+
+        DataTable copy = IngestUtil.copyDataTable(source);
+
+        assertNull(copy.getId());
+        assertEquals("UNF:6:tableUnf==", copy.getUnf());
+        assertEquals(3L, copy.getCaseQuantity().longValue());
+        assertEquals(1L, copy.getVarQuantity().longValue());
+        assertTrue(copy.isStoredWithVariableHeader());
+        assertEquals("CSVFileReader/4.0", copy.getIngestPluginVersion());
+
+        assertEquals(1, copy.getDataVariables().size());
+        DataVariable var = copy.getDataVariables().get(0);
+        assertNotSame(sourceVar, var);
+        assertNull(var.getId());
+        assertSame(copy, var.getDataTable());
+        assertEquals("var1", var.getName());
+        assertEquals("Variable 1", var.getLabel());
+        assertTrue(var.isTypeNumeric());
+        assertTrue(var.isIntervalDiscrete());
+        assertEquals("UNF:6:varUnf==", var.getUnf());
+
+        assertEquals(1, var.getSummaryStatistics().size());
+        SummaryStatistic stat = var.getSummaryStatistics().iterator().next();
+        assertNotSame(sourceStat, stat);
+        assertSame(var, stat.getDataVariable());
+        assertTrue(stat.isTypeMean());
+        assertEquals("2.0", stat.getValue());
+
+        assertEquals(1, var.getCategories().size());
+        VariableCategory cat = var.getCategories().iterator().next();
+        assertNotSame(sourceCat, cat);
+        assertSame(var, cat.getDataVariable());
+        assertEquals("1", cat.getValue());
+        assertEquals("one", cat.getLabel());
+        assertEquals(2.0, cat.getFrequency().doubleValue());
+    }
+
 }
@@ -18,7 +18,9 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.util.Arrays;
+import java.util.List;
 import java.util.logging.Logger;
 import org.dataverse.unf.UNFUtil;
 import org.dataverse.unf.UnfException;
@@ -420,4 +422,71 @@ public class CSVFileReaderTest {
             assertEquals(expMessage, ex.getMessage());
         }
     }
+
+    /**
+     * Tests that splitting the file into (many, small) chunks, processed in
+     * parallel, produces the same tab file and the same variable types as
+     * processing it in one go.
+     */
+    @Test
+    public void testChunkedRead() throws IOException {
+        String[] testFiles = {"src/test/java/edu/harvard/iq/dataverse/ingest/tabulardata/impl/plugins/csv/IngestCSV.csv",
+            "src/test/java/edu/harvard/iq/dataverse/ingest/tabulardata/impl/plugins/csv/election_precincts.csv"};
+
+        for (String testFile : testFiles) {
+            TabularDataIngest expected;
+            try (BufferedInputStream stream = new BufferedInputStream(new FileInputStream(testFile))) {
+                CSVFileReader instance = new CSVFileReader(new CSVFileReaderSpi(), ',');
+                instance.setParallelism(1);
+                expected = instance.read(stream, true, null);
+            }
+
+            for (long chunkSize : new long[]{1L, 100L, 1000L}) {
+                TabularDataIngest result;
+                try (BufferedInputStream stream = new BufferedInputStream(new FileInputStream(testFile))) {
+                    CSVFileReader instance = new CSVFileReader(new CSVFileReaderSpi(), ',');
+                    instance.setChunkSize(chunkSize);
+                    instance.setParallelism(4);
+                    // (only a couple of chunks in flight at a time)
+                    instance.setMaxBytesInFlight(2 * chunkSize);
+                    result = instance.read(stream, true, null);
+                }
+
+                List<String> expectedLines = Files.readAllLines(expected.getTabDelimitedFile().toPath());
+                List<String> resultLines = Files.readAllLines(result.getTabDelimitedFile().toPath());
+                assertEquals(expectedLines, resultLines, testFile + ", chunk size " + chunkSize);
+
+                DataTable expectedTable = expected.getDataTable();
+                DataTable resultTable = result.getDataTable();
+                assertEquals(expectedTable.getCaseQuantity(), resultTable.getCaseQuantity());
+                assertEquals(expectedTable.getVarQuantity(), resultTable.getVarQuantity());
+                for (int i = 0; i < expectedTable.getVarQuantity(); i++) {
+                    assertEquals(expectedTable.getDataVariables().get(i).getType(), resultTable.getDataVariables().get(i).getType(), "variable " + i + ":");
+                    assertEquals(expectedTable.getDataVariables().get(i).getInterval(), resultTable.getDataVariables().get(i).getInterval(), "variable " + i + ":");
+                    assertEquals(expectedTable.getDataVariables().get(i).getFormat(), resultTable.getDataVariables().get(i).getFormat(), "variable " + i + ":");
+                    assertEquals(expectedTable.getDataVariables().get(i).getFormatCategory(), resultTable.getDataVariables().get(i).getFormatCategory(), "variable " + i + ":");
+                }
+            }
+        }
+    }
+
+    /**
+     * The line reported for a broken record must not depend on how the file
+     * was split into chunks.
+     */
+    @Test
+    public void testBrokenCSVChunked() {
+        String brokenFile = "src/test/java/edu/harvard/iq/dataverse/ingest/tabulardata/impl/plugins/csv/BrokenCSV.csv";
+        try (BufferedInputStream stream = new BufferedInputStream(
+                new FileInputStream(brokenFile))) {
+            CSVFileReader instance = new CSVFileReader(new CSVFileReaderSpi(), ',');
+            instance.setChunkSize(1L);
+            instance.read(stream, false, null);
+            fail("IOException was not thrown when collumns do not align.");
+        } catch (IOException ex) {
+            String expMessage = BundleUtil.getStringFromBundle("ingest.csv.recordMismatch",
+                                                               Arrays.asList(new String[]{"3", "6", "4"}));
+            assertEquals(expMessage, ex.getMessage());
+        }
+    }
 }
@@ -0,0 +1,334 @@
+package edu.harvard.iq.dataverse.ingest.tabulardata.impl.plugins.rdata;
+
+import edu.harvard.iq.dataverse.datavariable.DataVariable;
+import edu.harvard.iq.dataverse.datavariable.VariableCategory;
+import edu.harvard.iq.dataverse.ingest.tabulardata.TabularDataIngest;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RDataFrameReaderTest {
+
+    private static final int NA_INTEGER = Integer.MIN_VALUE;
+    private static final double NA_REAL = Double.longBitsToDouble(0x7FF00000000007A2L);
+
+    @TempDir
+    File tempDir;
+
+    /**
+     * A workspace with several objects; the first data frame in alphabetical
+     * order is the one ingested.
+     */
+    @Test
+    public void testReadRData() throws IOException {
+        RWriter writer = new RWriter();
+        writer.rdataHeader();
+
+        writer.pairListCell("b_frame");
+        writeDataFrame(writer, 2, List.of("v"), () -> writer.intVector(1, 2));
+        writer.pairListCell(".a_hidden");
+        writeDataFrame(writer, 2, List.of("v"), () -> writer.intVector(3, 4));
+        writer.pairListCell("a_frame");
+        writeMainDataFrame(writer);
+        writer.pairListCell("a_vector");
+        writer.realVector(1.0, 2.0);
+        writer.nil();
+
+        File rDataFile = writer.save(new File(tempDir, "test.RData"), true);
+
+        TabularDataIngest ingest = RDataFrameReader.read(rDataFile, false);
+
+        assertEquals(8L, ingest.getDataTable().getVarQuantity().longValue());
+        assertEquals(4L, ingest.getDataTable().getCaseQuantity().longValue());
+
+        List<DataVariable> variables = ingest.getDataTable().getDataVariables();
+        assertEquals("id", variables.get(0).getName());
+        assertTrue(variables.get(0).isTypeNumeric());
+        assertTrue(variables.get(0).isIntervalDiscrete());
+
+        assertTrue(variables.get(1).isTypeNumeric());
+        assertTrue(variables.get(1).isIntervalDiscrete());
+
+        assertTrue(variables.get(2).isTypeNumeric());
+        assertTrue(variables.get(2).isIntervalContinuous());
+
+        assertTrue(variables.get(3).isTypeNumeric());
+        assertEquals("Boolean", variables.get(3).getFormatCategory());
+        assertEquals(2, variables.get(3).getCategories().size());
+
+        assertTrue(variables.get(4).isTypeCharacter());
+        assertFalse(variables.get(4).isFactor());
+
+        DataVariable factor = variables.get(5);
+        assertTrue(factor.isTypeCharacter());
+        assertTrue(factor.isFactor());
+        assertTrue(factor.isOrderedCategorical());
+        List<VariableCategory> categories = new ArrayList<>(factor.getCategories());
+        assertEquals(2, categories.size());
+        assertEquals("low", categories.get(0).getValue());
+        assertEquals(1, categories.get(0).getOrder());
+        assertEquals("high", categories.get(1).getValue());
+
+        assertTrue(variables.get(6).isTypeCharacter());
+        assertEquals("date", variables.get(6).getFormatCategory());
+        assertEquals("yyyy-MM-dd", variables.get(6).getFormat());
+
+        assertTrue(variables.get(7).isTypeCharacter());
+        assertEquals("time", variables.get(7).getFormatCategory());
+
+        List<String> lines = Files.readAllLines(ingest.getTabDelimitedFile().toPath(), StandardCharsets.UTF_8);
+        assertEquals(List.of(
+                "1\t1\t1.5\t1\t\"a\"\t\"high\"\t1970-01-01\t1970-01-01 00:00:00.50 UTC",
+                "2\t\t\t0\t\t\"low\"\t2022-01-08\t1970-01-01 00:00:01.25 UTC",
+                "3\t-5\tNaN\t\t\"say \\\"hi\\\"\\tthere\"\t\t\t",
+                "4\t7\t-Inf\t1\t\"\"\t\"low\"\t1969-12-31\t1970-01-02 00:00:00.00 UTC"), lines);
+    }
+
+    @Test
+    public void testReadRDSWithHeader() throws IOException {
+        RWriter writer = new RWriter();
+        writer.rdsHeader();
+        writeDataFrame(writer, 2, List.of("x", "y"),
+                () -> writer.realVector(0.1, 1e-20),
+                () -> writer.strVector("\u00e9t\u00e9", "b"));
+
+        File rdsFile = writer.save(new File(tempDir, "test.rds"), false);
+
+        TabularDataIngest ingest = RDataFrameReader.read(rdsFile, true);
+
+        List<String> lines = Files.readAllLines(ingest.getTabDelimitedFile().toPath(), StandardCharsets.UTF_8);
+        assertEquals(List.of(
+                "x\ty",
+                "0.1\t\"\u00e9t\u00e9\"",
+                "1.0E-20\t\"b\""), lines);
+    }
+
+    @Test
+    public void testUnsupportedColumn() throws IOException {
+        RWriter writer = new RWriter();
+        writer.rdsHeader();
+        // a complex vector
+        writeDataFrame(writer, 1, List.of("z"), () -> {
+            writer.out.writeInt(15);
+            writer.out.writeInt(1);
+            writer.writeDouble(1.0);
+            writer.writeDouble(2.0);
+        });
+
+        File rdsFile = writer.save(new File(tempDir, "complex.rds"), true);
+
+        assertThrows(IOException.class, () -> RDataFrameReader.read(rdsFile, false));
+    }
+
+    @Test
+    public void testNotADataFrame() throws IOException {
+        RWriter writer = new RWriter();
+        writer.rdataHeader();
+        writer.pairListCell("a_vector");
+        writer.realVector(1.0, 2.0);
+        writer.nil();
+
+        File rDataFile = writer.save(new File(tempDir, "vector.RData"), true);
+
+        assertThrows(IOException.class, () -> RDataFrameReader.read(rDataFile, false));
+    }
+
+    private static void writeMainDataFrame(RWriter writer) throws IOException {
+        writeDataFrame(writer, 4, List.of("id", "int", "num", "lgl", "chr", "fct", "date", "time"),
+                // 1:4, as an ALTREP compact sequence
+                () -> {
+                    writer.out.writeInt(238);
+                    writer.pairListCell(null);
+                    writer.symbol("compact_intseq");
+                    writer.pairListCell(null);
+                    writer.symbol("base");
+                    writer.pairListCell(null);
+                    writer.intVector(13);
+                    writer.nil();
+                    writer.realVector(4, 1, 1);
+                    writer.nil();
+                },
+                () -> writer.intVector(1, NA_INTEGER, -5, 7),
+                () -> writer.realVector(1.5, NA_REAL, Double.NaN, Double.NEGATIVE_INFINITY),
+                () -> writer.lglVector(1, 0, NA_INTEGER, 1),
+                () -> writer.strVector("a", null, "say \"hi\"\tthere", ""),
+                () -> {
+                    writer.vectorHeader(13, true, 4);
+                    for (int code : new int[]{2, 1, NA_INTEGER, 1}) {
+                        writer.out.writeInt(code);
+                    }
+                    writer.pairListCell("levels");
+                    writer.strVector("low", "high");
+                    writer.pairListCell("class");
+                    writer.strVector("ordered", "factor");
+                    writer.nil();
+                },
+                () -> {
+                    writer.vectorHeader(14, true, 4);
+                    for (double day : new double[]{0, 19000, NA_REAL, -1}) {
+                        writer.writeDouble(day);
+                    }
+                    writer.pairListCell("class");
+                    writer.strVector("Date");
+                    writer.nil();
+                },
+                () -> {
+                    writer.vectorHeader(14, true, 4);
+                    for (double second : new double[]{0.5, 1.25, NA_REAL, 86400}) {
+                        writer.writeDouble(second);
+                    }
+                    writer.pairListCell("class");
+                    writer.strVector("POSIXct", "POSIXt");
+                    writer.pairListCell("tzone");
+                    writer.strVector("");
+                    writer.nil();
+                });
+    }
+
+    private static void writeDataFrame(RWriter writer, int rows, List<String> names, RItem... columns) throws IOException {
+        writer.out.writeInt(19 | RWriter.HAS_ATTR | RWriter.IS_OBJECT);
+        writer.out.writeInt(columns.length);
+        for (RItem column : columns) {
+            column.write();
+        }
+        writer.pairListCell("names");
+        writer.strVector(names.toArray(new String[0]));
+        writer.pairListCell("row.names");
+        writer.intVector(NA_INTEGER, -rows);
+        writer.pairListCell("class");
+        writer.strVector("data.frame");
+        // as in the data.table objects:
+        writer.pairListCell(".internal.selfref");
+        writer.out.writeInt(22);
+        writer.nil();
+        writer.nil();
+        writer.nil();
+    }
+
+    @FunctionalInterface
+    private interface RItem {
+
+        void write() throws IOException;
+    }
+
+    /*
+     * Writes the XDR flavor of the R serialization format, version 3.
+     */
+    private static class RWriter {
+
+        static final int IS_OBJECT = 1 << 8;
+        static final int HAS_ATTR = 1 << 9;
+        static final int HAS_TAG = 1 << 10;
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        private final Map<String, Integer> symbols = new HashMap<>();
+
+        void rdataHeader() throws IOException {
+            out.writeBytes("RDX3\n");
+            rdsHeader();
+        }
+
+        void rdsHeader() throws IOException {
+            out.writeBytes("X\n");
+            out.writeInt(3);
+            out.writeInt(0x040302);
+            out.writeInt(0x030500);
+            out.writeInt(5);
+            out.writeBytes("UTF-8");
+        }
+
+        void nil() throws IOException {
+            out.writeInt(254);
+        }
+
+        void symbol(String name) throws IOException {
+            Integer reference = symbols.get(name);
+            if (reference != null) {
+                out.writeInt(255 | (reference << 8));
+                return;
+            }
+            out.writeInt(1);
+            charsxp(name);
+            symbols.put(name, symbols.size() + 1);
+        }
+
+        void pairListCell(String tag) throws IOException {
+            out.writeInt(2 | (tag != null ? HAS_TAG : 0));
+            if (tag != null) {
+                symbol(tag);
+            }
+        }
+
+        void charsxp(String value) throws IOException {
+            if (value == null) {
+                out.writeInt(9);
+                out.writeInt(-1);
+                return;
+            }
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(9 | ((1 << 3) << 12));
+            out.writeInt(utf8.length);
+            out.write(utf8);
+        }
+
+        void vectorHeader(int type, boolean hasAttributes, int length) throws IOException {
+            out.writeInt(type | (hasAttributes ? HAS_ATTR | IS_OBJECT : 0));
+            out.writeInt(length);
+        }
+
+        void intVector(int... values) throws IOException {
+            vectorHeader(13, false, values.length);
+            for (int value : values) {
+                out.writeInt(value);
+            }
+        }
+
+        void lglVector(int... values) throws IOException {
+            vectorHeader(10, false, values.length);
+            for (int value : values) {
+                out.writeInt(value);
+            }
+        }
+
+        void realVector(double... values) throws IOException {
+            vectorHeader(14, false, values.length);
+            for (double value : values) {
+                writeDouble(value);
+            }
+        }
+
+        void writeDouble(double value) throws IOException {
+            // (the NAs are NaNs with a payload that must be preserved)
+            out.writeLong(Double.doubleToRawLongBits(value));
+        }
+
+        void strVector(String... values) throws IOException {
+            vectorHeader(16, false, values.length);
+            for (String value : values) {
+                charsxp(value);
+            }
+        }
+
+        File save(File file, boolean compress) throws IOException {
+            out.flush();
+            try (OutputStream fileOut = compress ? new GZIPOutputStream(Files.newOutputStream(file.toPath())) : Files.newOutputStream(file.toPath())) {
+                fileOut.write(bytes.toByteArray());
+            }
+            return file;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package edu.harvard.iq.dataverse.settings;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class SettingsCacheBeanTest {
+
+    private SettingsCacheBean bean;
+    private Cache<String, String> changesCache;
+    private final Map<Object, Object> transactionResources = new HashMap<>();
+    private int transactionStatus = Status.STATUS_NO_TRANSACTION;
+    private List<Setting> settings;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        changesCache = mock(Cache.class);
+        CacheManager manager = mock(CacheManager.class);
+        when(manager.getCache(SettingsCacheBean.SETTINGS_CHANGES_CACHE)).thenReturn((Cache) changesCache);
+
+        TransactionSynchronizationRegistry registry = mock(TransactionSynchronizationRegistry.class);
+        when(registry.getTransactionStatus()).thenAnswer(invocation -> transactionStatus);
+        when(registry.getResource(any())).thenAnswer(invocation -> transactionResources.get(invocation.getArgument(0)));
+        doAnswer(invocation -> transactionResources.put(invocation.getArgument(0), invocation.getArgument(1)))
+                .when(registry).putResource(any(), any());
+
+        bean = new SettingsCacheBean();
+        bean.manager = manager;
+        bean.transactionSynchronizationRegistry = registry;
+        bean.init();
+        // (the snapshot is static; starts from an empty one)
+        bean.settingsChanged();
+        clearInvocations(changesCache);
+
+        settings = new ArrayList<>();
+        settings.add(new Setting(":SiteUrl", "https://demo.dataverse.org"));
+        loads = new AtomicInteger();
+    }
+
+    private Supplier<java.util.Collection<Setting>> loader() {
+        return () -> {
+            loads.incrementAndGet();
+            return new ArrayList<>(settings);
+        };
+    }
+
+    @Test
+    public void testChangeNotSharedBeforeCommit() {
+        assertEquals("https://demo.dataverse.org", bean.getSnapshot(loader()).get(":SiteUrl"));
+
+        // A transaction changes the setting:
+        transactionStatus = Status.STATUS_ACTIVE;
+        settings.set(0, new Setting(":SiteUrl", "https://uncommitted.dataverse.org"));
+        bean.settingsChanged();
+        bean.settingsChanged();
+        ArgumentCaptor<Synchronization> synchronization = ArgumentCaptor.forClass(Synchronization.class);
+        verify(bean.transactionSynchronizationRegistry, times(1)).registerInterposedSynchronization(synchronization.capture());
+
+        // (it reads the settings from the database, without sharing them)
+        assertNull(bean.getSnapshot(loader()));
+        assertEquals(1, loads.get());
+
+        // Another transaction, meanwhile, reads the settings as committed:
+        transactionStatus = Status.STATUS_NO_TRANSACTION;
+        settings.set(0, new Setting(":SiteUrl", "https://demo.dataverse.org"));
+        assertEquals("https://demo.dataverse.org", bean.getSnapshot(loader()).get(":SiteUrl"));
+
+        // The change is rolled back: nothing is announced
+        synchronization.getValue().afterCompletion(Status.STATUS_ROLLEDBACK);
+        transactionResources.clear();
+        verify(changesCache, never()).put(eq("change"), anyString());
+        assertEquals("https://demo.dataverse.org", bean.getSnapshot(loader()).get(":SiteUrl"));
+    }
+
+    @Test
+    public void testChangeSharedAfterCommit() {
+        assertNotNull(bean.getSnapshot(loader()));
+
+        transactionStatus = Status.STATUS_ACTIVE;
+        settings.set(0, new Setting(":SiteUrl", "https://new.dataverse.org"));
+        bean.settingsChanged();
+        ArgumentCaptor<Synchronization> synchronization = ArgumentCaptor.forClass(Synchronization.class);
+        verify(bean.transactionSynchronizationRegistry).registerInterposedSynchronization(synchronization.capture());
+        assertNull(bean.getSnapshot(loader()));
+
+        synchronization.getValue().afterCompletion(Status.STATUS_COMMITTED);
+        transactionResources.clear();
+        transactionStatus = Status.STATUS_NO_TRANSACTION;
+        verify(changesCache).put(eq("change"), anyString());
+        assertEquals("https://new.dataverse.org", bean.getSnapshot(loader()).get(":SiteUrl"));
+        assertEquals(2, loads.get());
+    }
+}
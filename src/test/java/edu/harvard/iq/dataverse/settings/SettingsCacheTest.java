@@ -0,0 +1,108 @@
+package edu.harvard.iq.dataverse.settings;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class SettingsCacheTest {
+
+    private static final long MAX_AGE = 60000;
+
+    private SettingsCache cache;
+    private List<Setting> settings;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    public void setUp() {
+        cache = new SettingsCache();
+        settings = new ArrayList<>();
+        settings.add(new Setting(":SiteUrl", "https://demo.dataverse.org"));
+        settings.add(new Setting(":ApplicationTermsOfUse", "en", "Terms"));
+        settings.add(new Setting(":MaxFileUploadSizeInBytes", "1024"));
+        loads = new AtomicInteger();
+    }
+
+    private SettingsCache.Snapshot get() {
+        return cache.get(MAX_AGE, () -> {
+            loads.incrementAndGet();
+            return new ArrayList<>(settings);
+        });
+    }
+
+    @Test
+    public void testLoadedOnce() {
+        SettingsCache.Snapshot snapshot = get();
+        assertEquals("https://demo.dataverse.org", snapshot.get(":SiteUrl"));
+        assertNull(snapshot.get(":ApplicationTermsOfUse"));
+        assertEquals("Terms", snapshot.get(":ApplicationTermsOfUse", "en"));
+        assertNull(snapshot.get(":ApplicationTermsOfUse", "fr"));
+        assertNull(snapshot.get(":NoSuchSetting"));
+
+        assertSame(snapshot, get());
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void testReloadedWhenInvalidated() {
+        get();
+        settings.set(0, new Setting(":SiteUrl", "https://dataverse.example.edu"));
+        cache.invalidate();
+        assertEquals("https://dataverse.example.edu", get().get(":SiteUrl"));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testReloadedWhenTooOld() {
+        cache.get(MAX_AGE, () -> settings);
+        cache.get(0, () -> {
+            loads.incrementAndGet();
+            return settings;
+        });
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void testNotKeptIfChangedWhileLoading() {
+        // (invalidated while the snapshot is loaded: the caller gets it, but
+        // it is not kept)
+        SettingsCache.Snapshot snapshot = cache.get(MAX_AGE, () -> {
+            cache.invalidate();
+            return settings;
+        });
+        assertEquals("https://demo.dataverse.org", snapshot.get(":SiteUrl"));
+        get();
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void testParsedOnce() {
+        AtomicInteger parses = new AtomicInteger();
+        SettingsCache.Snapshot snapshot = get();
+        for (int i = 0; i < 3; i++) {
+            assertEquals(1024L, (long) snapshot.getParsed(":MaxFileUploadSizeInBytes", "long", val -> {
+                parses.incrementAndGet();
+                return Long.parseLong(val);
+            }));
+        }
+        assertEquals(1, parses.get());
+        // (not parsed when there is no value)
+        assertNull(snapshot.getParsed(":NoSuchSetting", "long", Long::parseLong));
+        // (a value that can't be parsed is parsed as null, once)
+        settings.set(2, new Setting(":MaxFileUploadSizeInBytes", "lots"));
+        cache.invalidate();
+        snapshot = get();
+        for (int i = 0; i < 3; i++) {
+            assertNull(snapshot.getParsed(":MaxFileUploadSizeInBytes", "long", val -> {
+                parses.incrementAndGet();
+                return null;
+            }));
+        }
+        assertEquals(2, parses.get());
+    }
+}
@@ -31,6 +31,7 @@ import javax.cache.integration.CompletionListener;
 import javax.cache.processor.EntryProcessor;
 import javax.cache.processor.EntryProcessorException;
 import javax.cache.processor.EntryProcessorResult;
+import javax.cache.processor.MutableEntry;
 import java.io.IOException;
 import java.util.Iterator;
 import java.util.Map;
@@ -292,7 +293,32 @@ public class CacheFactoryBeanTest {
         }
         @Override
         public <T> T invoke(String s, EntryProcessor<String, String, T> entryProcessor, Object... objects) throws EntryProcessorException {
-            return null;
+            return entryProcessor.process(new MutableEntry<>() {
+                @Override
+                public boolean exists() {
+                    return cache.containsKey(s);
+                }
+                @Override
+                public void remove() {
+                    cache.remove(s);
+                }
+                @Override
+                public void setValue(String value) {
+                    cache.put(s, value);
+                }
+                @Override
+                public String getKey() {
+                    return s;
+                }
+                @Override
+                public String getValue() {
+                    return cache.get(s);
+                }
+                @Override
+                public <U> U unwrap(Class<U> aClass) {
+                    return null;
+                }
+            }, objects);
         }
         @Override
         public <T> Map<String, EntryProcessorResult<T>> invokeAll(Set<? extends String> set, EntryProcessor<String, String, T> entryProcessor, Object... objects) {
@@ -0,0 +1,115 @@
+package edu.harvard.iq.dataverse.util.cache;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.cache.processor.MutableEntry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TokenBucketTest {
+
+    private static final long NOW = TimeUnit.DAYS.toMicros(20000);
+    private static final long SECOND = TimeUnit.SECONDS.toMicros(1);
+
+    @Test
+    public void testCapacity() {
+        TokenBucket sut = new TokenBucket(":guest:GetDatasetCommand");
+        // (120 calls per hour: one more every 30 seconds)
+        for (int i = 0; i < 120; i++) {
+            assertTrue(sut.tryAcquire(120, NOW), "call " + i);
+        }
+        assertFalse(sut.tryAcquire(120, NOW));
+        assertFalse(sut.tryAcquire(120, NOW + 29 * SECOND));
+        assertTrue(sut.tryAcquire(120, NOW + 30 * SECOND));
+        assertFalse(sut.tryAcquire(120, NOW + 30 * SECOND));
+        // (full again after an hour, not more)
+        for (int i = 0; i < 120; i++) {
+            assertTrue(sut.tryAcquire(120, NOW + 2 * TokenBucket.HOUR), "call " + i);
+        }
+        assertFalse(sut.tryAcquire(120, NOW + 2 * TokenBucket.HOUR));
+    }
+
+    @Test
+    public void testNoCapacity() {
+        assertFalse(new TokenBucket("@user:PublishDatasetCommand").tryAcquire(0, NOW));
+    }
+
+    @Test
+    public void testConcurrentCalls() throws InterruptedException {
+        TokenBucket sut = new TokenBucket("@user:GetDatasetCommand");
+        AtomicInteger allowed = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 2000; i++) {
+            executor.submit(() -> {
+                if (sut.tryAcquire(1000, NOW)) {
+                    allowed.incrementAndGet();
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(1000, allowed.get());
+    }
+
+    @Test
+    public void testSynchronization() {
+        Entry entry = new Entry(null);
+        TokenBucket.Synchronization sut = new TokenBucket.Synchronization();
+
+        // (a new bucket is full)
+        assertEquals(NOW, (long) sut.process(entry, 0L, NOW));
+        assertEquals(Long.toString(NOW), entry.value);
+        // (the calls of the servers add up)
+        assertEquals(NOW + 10 * SECOND, (long) sut.process(entry, 10 * SECOND, NOW));
+        assertEquals(NOW + 15 * SECOND, (long) sut.process(entry, 5 * SECOND, NOW + SECOND));
+        // (refilled in the meantime)
+        assertEquals(NOW + 25 * SECOND, (long) sut.process(entry, 5 * SECOND, NOW + 20 * SECOND));
+        assertEquals(Long.toString(NOW + 25 * SECOND), entry.value);
+
+        // (not a time)
+        assertEquals(NOW + SECOND, (long) sut.process(new Entry("x"), SECOND, NOW));
+    }
+
+    private static class Entry implements MutableEntry<String, String> {
+        String value;
+
+        Entry(String value) {
+            this.value = value;
+        }
+
+        @Override
+        public boolean exists() {
+            return value != null;
+        }
+
+        @Override
+        public void remove() {
+            value = null;
+        }
+
+        @Override
+        public void setValue(String value) {
+            this.value = value;
+        }
+
+        @Override
+        public String getKey() {
+            return "key";
+        }
+
+        @Override
+        public String getValue() {
+            return value;
+        }
+
+        @Override
+        public <T> T unwrap(Class<T> clazz) {
+            return null;
+        }
+    }
+}